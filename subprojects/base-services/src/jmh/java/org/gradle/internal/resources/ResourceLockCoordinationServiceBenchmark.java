@@ -0,0 +1,81 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.resources;
+
+import org.gradle.api.Action;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.gradle.internal.resources.DefaultResourceLockCoordinationService.lock;
+import static org.gradle.internal.resources.DefaultResourceLockCoordinationService.unlock;
+
+/**
+ * Stresses the coordination service with many threads repeatedly acquiring and releasing a small number of exclusive locks,
+ * like worker threads executing short tasks of a few projects.
+ */
+@Fork(2)
+@Threads(16)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@State(Scope.Benchmark)
+public class ResourceLockCoordinationServiceBenchmark {
+    private static final Action<ResourceLock> NO_ACTION = new Action<ResourceLock>() {
+        @Override
+        public void execute(ResourceLock resourceLock) {
+        }
+    };
+
+    @Param({"1", "4", "16"})
+    int numberOfLocks;
+
+    private final DefaultResourceLockCoordinationService coordinationService = new DefaultResourceLockCoordinationService();
+    private final AtomicInteger threadCounter = new AtomicInteger();
+    private ResourceLock[] locks;
+
+    @Setup
+    public void createLocks() {
+        locks = new ResourceLock[numberOfLocks];
+        for (int i = 0; i < numberOfLocks; i++) {
+            locks[i] = new ExclusiveAccessResourceLock("lock " + i, coordinationService, NO_ACTION, NO_ACTION);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadLock {
+        ResourceLock lock;
+
+        @Setup
+        public void assignLock(ResourceLockCoordinationServiceBenchmark benchmark) {
+            lock = benchmark.locks[benchmark.threadCounter.getAndIncrement() % benchmark.numberOfLocks];
+        }
+    }
+
+    @Benchmark
+    public void acquireAndReleaseExclusiveLock(ThreadLock threadLock) {
+        coordinationService.withStateLock(lock(threadLock.lock));
+        coordinationService.withStateLock(unlock(threadLock.lock));
+    }
+}
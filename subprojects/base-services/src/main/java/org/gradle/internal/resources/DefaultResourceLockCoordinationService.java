@@ -21,12 +21,26 @@
 import org.gradle.api.Transformer;
 import org.gradle.internal.UncheckedException;
 
+import javax.annotation.Nullable;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * Coordinates the changes to resource locks.
+ *
+ * A thread retrying a state change waits until some resource lock is unlocked or a state change is notified.
+ * When threads are waiting to acquire an exclusive lock, e.g. a project lock, unlocking the lock wakes only the thread
+ * which has been waiting the longest, as only one thread can acquire the lock.
+ * If that thread does not end up holding the lock, the wakeup is passed on to the next thread waiting for the lock.
+ * All other waiting threads are woken by any unlock.
+ */
 public class DefaultResourceLockCoordinationService implements ResourceLockCoordinationService {
-    private final Object lock = new Object();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Set<Waiter> waiters = Sets.newLinkedHashSet();
     private final ThreadLocal<List<ResourceLockState>> currentState = new ThreadLocal<List<ResourceLockState>>() {
         @Override
         protected List<ResourceLockState> initialValue() {
@@ -36,10 +50,13 @@ protected List<ResourceLockState> initialValue() {
 
     @Override
     public boolean withStateLock(Transformer<ResourceLockState.Disposition, ResourceLockState> stateLockAction) {
+        // The exclusive lock this thread has been woken for after it has been unlocked
+        ResourceLock wokenFor = null;
         while (true) {
             DefaultResourceLockState resourceLockState = new DefaultResourceLockState();
             ResourceLockState.Disposition disposition;
-            synchronized (lock) {
+            lock.lock();
+            try {
                 try {
                     currentState.get().add(resourceLockState);
                     disposition = stateLockAction.transform(resourceLockState);
@@ -47,31 +64,68 @@ public boolean withStateLock(Transformer<ResourceLockState.Disposition, Resource
                     switch (disposition) {
                         case RETRY:
                             resourceLockState.releaseLocks();
-                            try {
-                                lock.wait();
-                            } catch (InterruptedException e) {
-                                throw UncheckedException.throwAsUncheckedException(e);
-                            }
+                            maybePassOnWakeup(wokenFor);
+                            wokenFor = awaitStateChange(resourceLockState.blockedOn);
                             break;
                         case FINISHED:
                             maybeNotifyStateChange(resourceLockState);
+                            maybePassOnWakeup(wokenFor);
                             return true;
                         case FAILED:
                             resourceLockState.releaseLocks();
+                            maybeNotifyStateChange(resourceLockState);
+                            maybePassOnWakeup(wokenFor);
                             return false;
                         default:
                             throw new IllegalArgumentException("Unhandled disposition type: " + disposition.name());
                     }
                 } catch (Throwable t) {
                     resourceLockState.releaseLocks();
+                    maybeNotifyStateChange(resourceLockState);
+                    maybePassOnWakeup(wokenFor);
                     throw UncheckedException.throwAsUncheckedException(t);
                 } finally {
                     currentState.get().remove(resourceLockState);
                 }
+            } finally {
+                lock.unlock();
             }
         }
     }
 
+    /**
+     * Waits until this thread is woken.
+     *
+     * @return the exclusive lock which has been unlocked when the thread was waiting for it, {@code null} otherwise.
+     */
+    @Nullable
+    private ResourceLock awaitStateChange(@Nullable ResourceLock blockedOn) {
+        Waiter waiter = new Waiter(lock.newCondition(), blockedOn);
+        waiters.add(waiter);
+        try {
+            while (!waiter.woken) {
+                waiter.condition.await();
+            }
+            return blockedOn;
+        } catch (InterruptedException e) {
+            if (waiter.woken) {
+                maybePassOnWakeup(blockedOn);
+            }
+            throw UncheckedException.throwAsUncheckedException(e);
+        } finally {
+            waiters.remove(waiter);
+        }
+    }
+
+    /**
+     * Wakes the next thread waiting for the given exclusive lock when the lock has been unlocked for this thread and is still not locked.
+     */
+    private void maybePassOnWakeup(@Nullable ResourceLock wokenFor) {
+        if (wokenFor != null && !wokenFor.isLocked()) {
+            wakeWaiters(Collections.singleton(wokenFor));
+        }
+    }
+
     @Override
     public ResourceLockState getCurrent() {
         List<ResourceLockState> current = currentState.get();
@@ -85,20 +139,68 @@ public ResourceLockState getCurrent() {
 
     private void maybeNotifyStateChange(DefaultResourceLockState resourceLockState) {
         if (resourceLockState.hasUnlockedResources()) {
-            notifyStateChange();
+            wakeWaiters(resourceLockState.unlockedResources);
         }
     }
 
     @Override
     public void notifyStateChange() {
-        synchronized (lock) {
-            lock.notifyAll();
+        lock.lock();
+        try {
+            wakeWaiters(null);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Wakes the waiting threads which can make progress after the given resource locks have been unlocked,
+     * or all waiting threads when it is not known what changed.
+     *
+     * For each unlocked exclusive lock, only the longest waiting thread blocked on the lock is woken.
+     */
+    private void wakeWaiters(@Nullable Set<ResourceLock> unlockedResources) {
+        Set<ResourceLock> handedOver = null;
+        for (Waiter waiter : waiters) {
+            if (waiter.woken) {
+                continue;
+            }
+            if (unlockedResources == null || waiter.blockedOn == null) {
+                waiter.wake();
+            } else if (unlockedResources.contains(waiter.blockedOn)) {
+                if (handedOver == null) {
+                    handedOver = Sets.newHashSet();
+                }
+                if (handedOver.add(waiter.blockedOn)) {
+                    waiter.wake();
+                }
+            }
+        }
+    }
+
+    private static class Waiter {
+        private final Condition condition;
+        /**
+         * The exclusive lock the thread is waiting for, or {@code null} when the thread waits for any state change.
+         */
+        private final ResourceLock blockedOn;
+        private boolean woken;
+
+        Waiter(Condition condition, @Nullable ResourceLock blockedOn) {
+            this.condition = condition;
+            this.blockedOn = blockedOn;
+        }
+
+        void wake() {
+            woken = true;
+            condition.signal();
         }
     }
 
     private static class DefaultResourceLockState implements ResourceLockState {
         private Set<ResourceLock> lockedResources;
         private Set<ResourceLock> unlockedResources;
+        private ResourceLock blockedOn;
         boolean rollback;
 
         @Override
@@ -121,6 +223,13 @@ public void registerUnlocked(ResourceLock resourceLock) {
             }
         }
 
+        /**
+         * Records that the state change can only make progress once the given exclusive lock has been unlocked.
+         */
+        void blockedOn(ExclusiveAccessResourceLock resourceLock) {
+            blockedOn = resourceLock;
+        }
+
         boolean hasUnlockedResources() {
             return unlockedResources != null && !unlockedResources.isEmpty();
         }
@@ -196,7 +305,14 @@ private static class AcquireLocks implements Transformer<ResourceLockState.Dispo
         public ResourceLockState.Disposition transform(ResourceLockState resourceLockState) {
             for (ResourceLock resourceLock : resourceLocks) {
                 if (!resourceLock.tryLock()) {
-                    return blocking ? ResourceLockState.Disposition.RETRY : ResourceLockState.Disposition.FAILED;
+                    if (!blocking) {
+                        return ResourceLockState.Disposition.FAILED;
+                    }
+                    if (resourceLock instanceof ExclusiveAccessResourceLock && resourceLockState instanceof DefaultResourceLockState) {
+                        // Only another thread unlocking the lock allows acquiring it
+                        ((DefaultResourceLockState) resourceLockState).blockedOn((ExclusiveAccessResourceLock) resourceLock);
+                    }
+                    return ResourceLockState.Disposition.RETRY;
                 }
             }
             return ResourceLockState.Disposition.FINISHED;
@@ -21,6 +21,8 @@ import org.gradle.api.Transformer
 import org.gradle.test.fixtures.ConcurrentTestUtil
 import org.gradle.test.fixtures.concurrent.ConcurrentSpec
 
+import java.util.concurrent.atomic.AtomicInteger
+
 import static org.gradle.internal.resources.ResourceLockState.Disposition.*
 import static org.gradle.internal.resources.DefaultResourceLockCoordinationService.*
 
@@ -108,6 +110,116 @@ class DefaultResourceLockCoordinationServiceTest extends ConcurrentSpec {
         lock2.lockedState
     }
 
+    def "a thread waiting for an exclusive lock is only woken when that lock is unlocked"() {
+        def exclusiveLock = new ExclusiveAccessResourceLock("exclusive", coordinationService, Mock(Action), Mock(Action))
+        def otherLock = resourceLock("other")
+        def attempts = new AtomicInteger()
+
+        when:
+        async {
+            coordinationService.withStateLock(lock(exclusiveLock, otherLock))
+            start {
+                coordinationService.withStateLock(new Transformer<ResourceLockState.Disposition, ResourceLockState>() {
+                    @Override
+                    ResourceLockState.Disposition transform(ResourceLockState resourceLockState) {
+                        try {
+                            return lock(exclusiveLock).transform(resourceLockState)
+                        } finally {
+                            instant."attempt${attempts.incrementAndGet()}"
+                        }
+                    }
+                })
+                assert exclusiveLock.doIsLockedByCurrentThread()
+                coordinationService.withStateLock(unlock(exclusiveLock))
+            }
+
+            thread.blockUntil.attempt1
+            coordinationService.withStateLock(unlock(otherLock))
+            // Give the waiting thread the chance to retry, which it shouldn't
+            Thread.sleep(100)
+            assert attempts.get() == 1
+
+            coordinationService.withStateLock(unlock(exclusiveLock))
+            thread.blockUntil.attempt2
+        }
+
+        then:
+        attempts.get() == 2
+    }
+
+    def "unlocking an exclusive lock wakes only one of the threads waiting for it"() {
+        def exclusiveLock = new ExclusiveAccessResourceLock("exclusive", coordinationService, Mock(Action), Mock(Action))
+        def attempts = new AtomicInteger()
+        def acquired = new AtomicInteger()
+        def lockAction = new Transformer<ResourceLockState.Disposition, ResourceLockState>() {
+            @Override
+            ResourceLockState.Disposition transform(ResourceLockState resourceLockState) {
+                try {
+                    return lock(exclusiveLock).transform(resourceLockState)
+                } finally {
+                    instant."attempt${attempts.incrementAndGet()}"
+                }
+            }
+        }
+
+        when:
+        async {
+            coordinationService.withStateLock(lock(exclusiveLock))
+            2.times {
+                start {
+                    coordinationService.withStateLock(lockAction)
+                    instant."acquired${acquired.incrementAndGet()}"
+                    thread.blockUntil."release${acquired.get()}"
+                    coordinationService.withStateLock(unlock(exclusiveLock))
+                }
+            }
+
+            thread.blockUntil.attempt2
+            coordinationService.withStateLock(unlock(exclusiveLock))
+            thread.blockUntil.acquired1
+            // Give the other waiting thread the chance to retry, which it shouldn't
+            Thread.sleep(100)
+            assert attempts.get() == 3
+
+            instant.release1
+            thread.blockUntil.acquired2
+            instant.release2
+        }
+
+        then:
+        attempts.get() == 4
+    }
+
+    def "a thread waiting for an exclusive lock is woken when state change is notified"() {
+        def exclusiveLock = new ExclusiveAccessResourceLock("exclusive", coordinationService, Mock(Action), Mock(Action))
+        def attempts = new AtomicInteger()
+
+        when:
+        async {
+            coordinationService.withStateLock(lock(exclusiveLock))
+            start {
+                coordinationService.withStateLock(new Transformer<ResourceLockState.Disposition, ResourceLockState>() {
+                    @Override
+                    ResourceLockState.Disposition transform(ResourceLockState resourceLockState) {
+                        try {
+                            return attempts.get() == 0 ? lock(exclusiveLock).transform(resourceLockState) : FINISHED
+                        } finally {
+                            instant."attempt${attempts.incrementAndGet()}"
+                        }
+                    }
+                })
+            }
+
+            thread.blockUntil.attempt1
+            coordinationService.notifyStateChange()
+            thread.blockUntil.attempt2
+            coordinationService.withStateLock(unlock(exclusiveLock))
+        }
+
+        then:
+        attempts.get() == 2
+    }
+
     def "can nest multiple calls to withStateLock"() {
         def lock = [
             resourceLock("lock1"),
@@ -16,10 +16,13 @@
 
 package org.gradle.caching.http.internal
 
+import org.gradle.internal.concurrent.DefaultParallelismConfiguration
+import org.gradle.internal.resource.transport.http.DefaultHttpSettings
 import spock.lang.Specification
 import spock.lang.Unroll
 
 import static org.gradle.caching.http.internal.DefaultHttpBuildCacheServiceFactory.extractCredentialsFromUserInfo
+import static org.gradle.caching.http.internal.DefaultHttpBuildCacheServiceFactory.maxConnectionsFor
 
 @Unroll
 class DefaultHttpBuildCacheServiceFactoryTest extends Specification {
@@ -49,4 +52,15 @@ class DefaultHttpBuildCacheServiceFactoryTest extends Specification {
         credentials.username == 'us'
         credentials.password == 'er:password'
     }
+
+    def "keeps a connection per worker with #maxWorkers workers"() {
+        expect:
+        maxConnectionsFor(new DefaultParallelismConfiguration(true, maxWorkers)) == maxConnections
+
+        where:
+        maxWorkers | maxConnections
+        1          | DefaultHttpSettings.DEFAULT_MAX_CONNECTIONS
+        20         | DefaultHttpSettings.DEFAULT_MAX_CONNECTIONS
+        64         | 64
+    }
 }
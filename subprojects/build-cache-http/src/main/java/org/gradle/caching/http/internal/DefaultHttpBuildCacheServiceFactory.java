@@ -24,6 +24,7 @@
 import org.gradle.caching.BuildCacheServiceFactory;
 import org.gradle.caching.http.HttpBuildCache;
 import org.gradle.caching.http.HttpBuildCacheCredentials;
+import org.gradle.concurrent.ParallelismConfiguration;
 import org.gradle.internal.authentication.DefaultBasicAuthentication;
 import org.gradle.internal.deprecation.Documentation;
 import org.gradle.internal.resource.transport.http.DefaultHttpSettings;
@@ -46,12 +47,14 @@ public class DefaultHttpBuildCacheServiceFactory implements BuildCacheServiceFac
     private final SslContextFactory sslContextFactory;
     private final HttpBuildCacheRequestCustomizer requestCustomizer;
     private final HttpClientHelper.Factory httpClientHelperFactory;
+    private final ParallelismConfiguration parallelismConfiguration;
 
     @Inject
-    public DefaultHttpBuildCacheServiceFactory(SslContextFactory sslContextFactory, HttpBuildCacheRequestCustomizer requestCustomizer, HttpClientHelper.Factory httpClientHelperFactory) {
+    public DefaultHttpBuildCacheServiceFactory(SslContextFactory sslContextFactory, HttpBuildCacheRequestCustomizer requestCustomizer, HttpClientHelper.Factory httpClientHelperFactory, ParallelismConfiguration parallelismConfiguration) {
         this.sslContextFactory = sslContextFactory;
         this.requestCustomizer = requestCustomizer;
         this.httpClientHelperFactory = httpClientHelperFactory;
+        this.parallelismConfiguration = parallelismConfiguration;
     }
 
     @Override
@@ -85,7 +88,8 @@ public BuildCacheService createBuildCacheService(HttpBuildCache configuration, D
         DefaultHttpSettings.Builder builder = DefaultHttpSettings.builder()
             .withAuthenticationSettings(authentications)
             .followRedirects(false)
-            .withRedirectVerifier(redirectVerifier);
+            .withRedirectVerifier(redirectVerifier)
+            .withMaxConnections(maxConnectionsFor(parallelismConfiguration));
         if (allowUntrustedServer) {
             builder.allowUntrustedConnections();
         } else {
@@ -102,6 +106,15 @@ public BuildCacheService createBuildCacheService(HttpBuildCache configuration, D
         return new HttpBuildCacheService(httpClientHelper, noUserInfoUrl, requestCustomizer);
     }
 
+    /**
+     * Every worker may load or store a cache entry at the same time, so keep enough connections alive
+     * to serve all of them without waiting for a connection lease or opening a new connection per request.
+     */
+    @VisibleForTesting
+    static int maxConnectionsFor(ParallelismConfiguration parallelismConfiguration) {
+        return Math.max(DefaultHttpSettings.DEFAULT_MAX_CONNECTIONS, parallelismConfiguration.getMaxWorkerCount());
+    }
+
     private HttpRedirectVerifier createRedirectVerifier(URI url, boolean allowInsecureProtocol) {
         return HttpRedirectVerifierFactory
             .create(
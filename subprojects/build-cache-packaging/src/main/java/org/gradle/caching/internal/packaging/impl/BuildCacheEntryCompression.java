@@ -0,0 +1,106 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.packaging.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.util.Locale;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The compression applied to packed build cache entries.
+ *
+ * The compression is not stored separately: gzip streams are recognized by their magic header,
+ * everything else is read as an uncompressed archive.
+ * This keeps entries written with the default compression compatible with earlier versions.
+ */
+public enum BuildCacheEntryCompression {
+    /**
+     * Gzip with the default compression level.
+     */
+    GZIP {
+        @Override
+        OutputStream compress(OutputStream output) throws IOException {
+            return new GZIPOutputStream(output, BUFFER_SIZE);
+        }
+    },
+    /**
+     * Gzip with the fastest compression level, trading entry size for packing time.
+     */
+    GZIP_FAST {
+        @Override
+        OutputStream compress(OutputStream output) throws IOException {
+            return new GZIPOutputStream(output, BUFFER_SIZE) {
+                {
+                    def.setLevel(Deflater.BEST_SPEED);
+                }
+            };
+        }
+    },
+    /**
+     * No compression, for caches where disk space or bandwidth are cheaper than CPU time.
+     */
+    NONE {
+        @Override
+        OutputStream compress(OutputStream output) {
+            return output;
+        }
+    };
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int GZIP_MAGIC_FIRST_BYTE = GZIPInputStream.GZIP_MAGIC & 0xff;
+    private static final int GZIP_MAGIC_SECOND_BYTE = (GZIPInputStream.GZIP_MAGIC >> 8) & 0xff;
+
+    abstract OutputStream compress(OutputStream output) throws IOException;
+
+    static InputStream decompress(InputStream input) throws IOException {
+        PushbackInputStream pushbackInput = new PushbackInputStream(input, 2);
+        byte[] header = new byte[2];
+        int read = 0;
+        while (read < header.length) {
+            int count = pushbackInput.read(header, read, header.length - read);
+            if (count < 0) {
+                break;
+            }
+            read += count;
+        }
+        pushbackInput.unread(header, 0, read);
+        if (read == header.length
+            && (header[0] & 0xff) == GZIP_MAGIC_FIRST_BYTE
+            && (header[1] & 0xff) == GZIP_MAGIC_SECOND_BYTE) {
+            return new GZIPInputStream(pushbackInput, BUFFER_SIZE);
+        }
+        return pushbackInput;
+    }
+
+    /**
+     * Returns the compression with the given case-insensitive name, with either dashes or underscores as separators.
+     */
+    public static BuildCacheEntryCompression forName(String name) {
+        String normalizedName = name.trim().replace('-', '_').toUpperCase(Locale.ROOT);
+        for (BuildCacheEntryCompression compression : values()) {
+            if (compression.name().equals(normalizedName)) {
+                return compression;
+            }
+        }
+        throw new IllegalArgumentException(String.format("Unknown build cache entry compression '%s'. Supported values are: gzip, gzip-fast, none.", name));
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.packaging.impl
+
+import org.gradle.caching.internal.CacheableEntity
+import org.gradle.caching.internal.origin.OriginReader
+import org.gradle.caching.internal.origin.OriginWriter
+import org.gradle.caching.internal.packaging.BuildCacheEntryPacker
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.util.zip.GZIPInputStream
+import java.util.zip.GZIPOutputStream
+
+class CompressingBuildCacheEntryPackerTest extends Specification {
+    def content = ("METADATA" * 1000).bytes
+    def entity = Stub(CacheableEntity)
+    def delegate = Mock(BuildCacheEntryPacker)
+
+    @Unroll
+    def "can unpack entries packed with #compression compression"() {
+        def packer = new CompressingBuildCacheEntryPacker(delegate, compression)
+        def packed = new ByteArrayOutputStream()
+        byte[] unpacked = null
+
+        when:
+        packer.pack(entity, [:], packed, Stub(OriginWriter))
+        then:
+        1 * delegate.pack(entity, [:], _, _) >> { args ->
+            args[2].write(content)
+            new BuildCacheEntryPacker.PackResult(1)
+        }
+
+        when:
+        packer.unpack(entity, new ByteArrayInputStream(packed.toByteArray()), Stub(OriginReader))
+        then:
+        1 * delegate.unpack(entity, _, _) >> { args ->
+            unpacked = args[1].bytes
+            null
+        }
+        unpacked == content
+
+        where:
+        compression << BuildCacheEntryCompression.values()
+    }
+
+    def "fast gzip compression produces entries readable as gzip"() {
+        def packer = new CompressingBuildCacheEntryPacker(delegate, BuildCacheEntryCompression.GZIP_FAST)
+        def packed = new ByteArrayOutputStream()
+
+        when:
+        packer.pack(entity, [:], packed, Stub(OriginWriter))
+        then:
+        1 * delegate.pack(entity, [:], _, _) >> { args ->
+            args[2].write(content)
+            new BuildCacheEntryPacker.PackResult(1)
+        }
+        new GZIPInputStream(new ByteArrayInputStream(packed.toByteArray())).bytes == content
+    }
+
+    def "detects gzip compression regardless of the configured compression"() {
+        def packer = new CompressingBuildCacheEntryPacker(delegate, BuildCacheEntryCompression.NONE)
+        def packed = new ByteArrayOutputStream()
+        new GZIPOutputStream(packed).withCloseable { it.write(content) }
+        byte[] unpacked = null
+
+        when:
+        packer.unpack(entity, new ByteArrayInputStream(packed.toByteArray()), Stub(OriginReader))
+        then:
+        1 * delegate.unpack(entity, _, _) >> { args ->
+            unpacked = args[1].bytes
+            null
+        }
+        unpacked == content
+    }
+
+    @Unroll
+    def "parses compression name '#name'"() {
+        expect:
+        BuildCacheEntryCompression.forName(name) == compression
+
+        where:
+        name        | compression
+        "gzip"      | BuildCacheEntryCompression.GZIP
+        "GZIP"      | BuildCacheEntryCompression.GZIP
+        "gzip-fast" | BuildCacheEntryCompression.GZIP_FAST
+        "gzip_fast" | BuildCacheEntryCompression.GZIP_FAST
+        "none"      | BuildCacheEntryCompression.NONE
+    }
+
+    def "fails on unknown compression name"() {
+        when:
+        BuildCacheEntryCompression.forName("zstd")
+        then:
+        def e = thrown(IllegalArgumentException)
+        e.message == "Unknown build cache entry compression 'zstd'. Supported values are: gzip, gzip-fast, none."
+    }
+}
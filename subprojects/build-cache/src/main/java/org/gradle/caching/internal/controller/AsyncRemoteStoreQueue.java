@@ -0,0 +1,148 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.controller;
+
+import org.gradle.api.UncheckedIOException;
+import org.gradle.caching.BuildCacheKey;
+import org.gradle.caching.internal.controller.service.BuildCacheServiceHandle;
+import org.gradle.caching.internal.controller.service.StoreTarget;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedExecutor;
+import org.gradle.internal.file.TempFiles;
+import org.gradle.util.GFileUtils;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Uploads packed build cache entries to the remote cache in the background.
+ *
+ * The queue is bounded both by the number of pending entries and by their total size.
+ * When either limit is reached, callers block until earlier uploads have finished.
+ * Entries larger than the size limit on their own are uploaded synchronously.
+ * Closing the queue waits for all pending uploads to finish.
+ */
+class AsyncRemoteStoreQueue implements Closeable {
+
+    static final int UPLOAD_THREADS = 2;
+    static final int MAX_PENDING_ENTRIES = 64;
+    static final long MAX_PENDING_BYTES = 256L * 1024 * 1024;
+
+    private static final String UPLOAD_FILE_SUFFIX = ".upload";
+
+    private final BuildCacheServiceHandle remote;
+    private final File tempDir;
+    private final int maxPendingEntries;
+    private final long maxPendingBytes;
+    private final ManagedExecutor executor;
+    private final Object lock = new Object();
+
+    private int pendingEntries;
+    private long pendingBytes;
+
+    AsyncRemoteStoreQueue(BuildCacheServiceHandle remote, ExecutorFactory executorFactory, File tempDir) {
+        this(remote, executorFactory, tempDir, UPLOAD_THREADS, MAX_PENDING_ENTRIES, MAX_PENDING_BYTES);
+    }
+
+    AsyncRemoteStoreQueue(BuildCacheServiceHandle remote, ExecutorFactory executorFactory, File tempDir, int uploadThreads, int maxPendingEntries, long maxPendingBytes) {
+        this.remote = remote;
+        this.tempDir = tempDir;
+        this.maxPendingEntries = maxPendingEntries;
+        this.maxPendingBytes = maxPendingBytes;
+        this.executor = executorFactory.create("Remote build cache upload", uploadThreads);
+        GFileUtils.mkdirs(tempDir);
+    }
+
+    /**
+     * Schedules the upload of the given packed entry.
+     *
+     * @param reuseFile whether the queue may take over the given file instead of copying it
+     */
+    void store(BuildCacheKey key, File file, boolean reuseFile) {
+        long size = file.length();
+        if (size > maxPendingBytes) {
+            remote.store(key, new StoreTarget(file));
+            return;
+        }
+
+        File uploadFile = takeOver(key, file, reuseFile);
+        acquire(size);
+        try {
+            // The operation which stored the entry, e.g. the task execution, has usually completed by the time the upload runs,
+            // so the store operation runs without a parent rather than as a child of a completed operation
+            executor.execute(() -> {
+                try {
+                    if (remote.canStore()) {
+                        remote.store(key, new StoreTarget(uploadFile));
+                    }
+                } finally {
+                    GFileUtils.deleteQuietly(uploadFile);
+                    release(size);
+                }
+            });
+        } catch (RuntimeException e) {
+            GFileUtils.deleteQuietly(uploadFile);
+            release(size);
+            throw e;
+        }
+    }
+
+    private File takeOver(BuildCacheKey key, File file, boolean reuseFile) {
+        try {
+            File uploadFile = TempFiles.createTempFile(key.getHashCode() + "-", UPLOAD_FILE_SUFFIX, tempDir);
+            if (reuseFile) {
+                Files.move(file.toPath(), uploadFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } else {
+                Files.copy(file.toPath(), uploadFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            return uploadFile;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void acquire(long size) {
+        synchronized (lock) {
+            while (pendingEntries > 0 && (pendingEntries >= maxPendingEntries || pendingBytes + size > maxPendingBytes)) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    throw UncheckedException.throwAsUncheckedException(e);
+                }
+            }
+            pendingEntries++;
+            pendingBytes += size;
+        }
+    }
+
+    private void release(long size) {
+        synchronized (lock) {
+            pendingEntries--;
+            pendingBytes -= size;
+            lock.notifyAll();
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.stop();
+    }
+}
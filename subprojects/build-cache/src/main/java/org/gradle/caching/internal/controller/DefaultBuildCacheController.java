@@ -39,6 +39,7 @@
 import org.gradle.caching.local.internal.BuildCacheTempFileStore;
 import org.gradle.caching.local.internal.DefaultBuildCacheTempFileStore;
 import org.gradle.caching.local.internal.LocalBuildCacheService;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.operations.BuildOperationContext;
 import org.gradle.internal.operations.BuildOperationDescriptor;
 import org.gradle.internal.operations.BuildOperationExecutor;
@@ -54,6 +55,8 @@
 
 public class DefaultBuildCacheController implements BuildCacheController {
 
+    private static final String TEMP_DIR_NAME = "build-cache-tmp";
+
     @VisibleForTesting
     final BuildCacheServiceHandle remote;
 
@@ -61,6 +64,8 @@ public class DefaultBuildCacheController implements BuildCacheController {
     final LocalBuildCacheServiceHandle local;
 
     private final BuildCacheTempFileStore tmp;
+    @Nullable
+    private final AsyncRemoteStoreQueue remoteStoreQueue;
     private final BuildOperationExecutor buildOperationExecutor;
     private final boolean emitDebugLogging;
 
@@ -72,13 +77,18 @@ public DefaultBuildCacheController(
         File gradleUserHomeDir,
         boolean logStackTraces,
         boolean emitDebugLogging,
-        boolean disableRemoteOnError
+        boolean disableRemoteOnError,
+        boolean asyncRemoteStore,
+        ExecutorFactory executorFactory
     ) {
         this.buildOperationExecutor = buildOperationExecutor;
         this.emitDebugLogging = emitDebugLogging;
         this.local = toLocalHandle(config.getLocal(), config.isLocalPush());
         this.remote = toRemoteHandle(config.getRemote(), config.isRemotePush(), buildOperationExecutor, logStackTraces, disableRemoteOnError);
         this.tmp = toTempFileStore(config.getLocal(), gradleUserHomeDir);
+        this.remoteStoreQueue = asyncRemoteStore && remote.canStore()
+            ? new AsyncRemoteStoreQueue(remote, executorFactory, new File(gradleUserHomeDir, TEMP_DIR_NAME))
+            : null;
     }
 
     @Override
@@ -176,7 +186,12 @@ public void store(BuildCacheStoreCommand command) {
             pack.execute(file);
 
             if (remote.canStore()) {
-                remote.store(key, new StoreTarget(file));
+                if (remoteStoreQueue != null) {
+                    // The local cache takes ownership of the file, so the queue needs its own copy in that case
+                    remoteStoreQueue.store(key, file, !local.canStore());
+                } else {
+                    remote.store(key, new StoreTarget(file));
+                }
             }
 
             if (local.canStore()) {
@@ -224,6 +239,10 @@ public void close() throws IOException {
             Closer closer = Closer.create();
             closer.register(local);
             closer.register(remote);
+            if (remoteStoreQueue != null) {
+                // Registered last so pending uploads are drained before the remote cache is closed
+                closer.register(remoteStoreQueue);
+            }
             closer.close();
         }
     }
@@ -243,6 +262,6 @@ private static LocalBuildCacheServiceHandle toLocalHandle(@Nullable LocalBuildCa
     private static BuildCacheTempFileStore toTempFileStore(@Nullable LocalBuildCacheService local, File gradleUserHomeDir) {
         return local != null
             ? local
-            : new DefaultBuildCacheTempFileStore(new File(gradleUserHomeDir, "build-cache-tmp"));
+            : new DefaultBuildCacheTempFileStore(new File(gradleUserHomeDir, TEMP_DIR_NAME));
     }
 }
@@ -35,7 +35,8 @@ public class BaseBuildCacheServiceHandle implements BuildCacheServiceHandle {
     private final boolean logStackTraces;
     private final boolean disableOnError;
 
-    private boolean disabled;
+    // Written by the threads uploading entries in the background
+    private volatile boolean disabled;
 
     public BaseBuildCacheServiceHandle(
         BuildCacheService service,
@@ -0,0 +1,398 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.local.internal;
+
+import com.google.common.io.ByteStreams;
+import org.gradle.internal.file.FileAccessTracker;
+import org.gradle.internal.file.TempFiles;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.hash.Hashing;
+import org.gradle.internal.hash.HashingOutputStream;
+import org.gradle.util.GFileUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Stores build cache entries as manifests that reference the contents of the files in the entry by their hash.
+ *
+ * The entries are tar archives, optionally gzip compressed.
+ * Each regular file in the archive that is at least {@link #MIN_CHUNK_SIZE} bytes long is stored once
+ * as a chunk in the cache directory, named after the hash of its contents.
+ * Everything else in the archive is stored inline in the manifest, in segments of at most {@link #MAX_INLINE_SEGMENT_SIZE} bytes.
+ * PAX extended headers are kept inline, too, and the size they specify is used for the entry that follows them.
+ * Restoring an entry produces the uncompressed archive.
+ *
+ * Manifests are stored under the key of the entry with the {@link #MANIFEST_SUFFIX}, so they can be told apart from
+ * entries stored as is without reading them.
+ *
+ * Chunks live next to the manifests so they are tracked and cleaned up the same way.
+ * A chunk is marked as accessed whenever a manifest referencing it is stored or loaded,
+ * so least recently used cleanup never removes a chunk before the last manifest referencing it.
+ */
+public class ChunkedEntryStore {
+
+    static final int MIN_CHUNK_SIZE = 16 * 1024;
+    static final String CHUNK_PREFIX = "chunk-";
+    static final String MANIFEST_SUFFIX = ".manifest";
+    static final int MAX_INLINE_SEGMENT_SIZE = 64 * 1024;
+
+    private static final int MANIFEST_MAGIC = 0x47434D31; // "GCM1"
+    private static final byte INLINE_SEGMENT = 1;
+    private static final byte CHUNK_SEGMENT = 2;
+    private static final byte END_OF_MANIFEST = 0;
+
+    private static final int TAR_BLOCK_SIZE = 512;
+    private static final int TAR_SIZE_OFFSET = 124;
+    private static final int TAR_SIZE_LENGTH = 12;
+    private static final int TAR_CHECKSUM_OFFSET = 148;
+    private static final int TAR_CHECKSUM_LENGTH = 8;
+    private static final int TAR_TYPE_FLAG_OFFSET = 156;
+
+    private static final int MAX_PAX_HEADER_SIZE = 1024 * 1024;
+    private static final String PAX_SIZE_KEYWORD = "size";
+    private static final long NO_SIZE = -1;
+    private static final long MALFORMED_PAX_HEADER = -2;
+
+    private final File dir;
+    private final FileAccessTracker fileAccessTracker;
+
+    public ChunkedEntryStore(File dir, FileAccessTracker fileAccessTracker) {
+        this.dir = dir;
+        this.fileAccessTracker = fileAccessTracker;
+    }
+
+    /**
+     * Splits the given entry into chunks and writes the manifest for it.
+     */
+    public void writeManifest(File entry, File manifest) throws IOException {
+        try (InputStream input = openEntry(entry);
+             DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(manifest)))) {
+            output.writeInt(MANIFEST_MAGIC);
+            InlineSegmentWriter inline = new InlineSegmentWriter(output);
+            byte[] header = new byte[TAR_BLOCK_SIZE];
+            long sizeFromPaxHeader = NO_SIZE;
+            while (true) {
+                int read = ByteStreams.read(input, header, 0, TAR_BLOCK_SIZE);
+                inline.write(header, 0, read);
+                if (read < TAR_BLOCK_SIZE || isEndOfArchive(header)) {
+                    // Keep whatever comes after the last entry as is
+                    ByteStreams.copy(input, inline);
+                    break;
+                }
+                long size = sizeFromPaxHeader != NO_SIZE ? sizeFromPaxHeader : parseOctal(header, TAR_SIZE_OFFSET, TAR_SIZE_LENGTH);
+                sizeFromPaxHeader = NO_SIZE;
+                if (size < 0 || !hasValidChecksum(header) || isGlobalPaxHeader(header)) {
+                    // Not something we understand, or a global extended header that can override the size of all following entries:
+                    // don't try to interpret the rest of the archive
+                    ByteStreams.copy(input, inline);
+                    break;
+                }
+                long paddedSize = (size + TAR_BLOCK_SIZE - 1) / TAR_BLOCK_SIZE * TAR_BLOCK_SIZE;
+                if (isPaxHeader(header)) {
+                    // Extended headers hold long or non-ASCII names, and sizes that don't fit into the header of the next entry
+                    if (size > MAX_PAX_HEADER_SIZE) {
+                        ByteStreams.copy(input, inline);
+                        break;
+                    }
+                    byte[] records = new byte[(int) paddedSize];
+                    readFully(input, records, entry);
+                    inline.write(records);
+                    sizeFromPaxHeader = parsePaxSize(records, (int) size);
+                    if (sizeFromPaxHeader == MALFORMED_PAX_HEADER) {
+                        ByteStreams.copy(input, inline);
+                        break;
+                    }
+                } else if (isRegularFile(header) && size >= MIN_CHUNK_SIZE) {
+                    inline.writeSegment();
+                    HashCode hash = storeChunk(ByteStreams.limit(input, size), size);
+                    output.writeByte(CHUNK_SEGMENT);
+                    output.writeLong(size);
+                    output.writeUTF(hash.toString());
+                    int padding = (int) (paddedSize - size);
+                    ByteStreams.skipFully(input, padding);
+                    inline.write(new byte[padding]);
+                } else {
+                    long copied = ByteStreams.copy(ByteStreams.limit(input, paddedSize), inline);
+                    if (copied < paddedSize) {
+                        throw new EOFException("Unexpected end of build cache entry " + entry);
+                    }
+                }
+            }
+            inline.writeSegment();
+            output.writeByte(END_OF_MANIFEST);
+        }
+    }
+
+    /**
+     * Restores the uncompressed entry described by the given manifest.
+     *
+     * @return false when some of the chunks referenced by the manifest are not available anymore.
+     */
+    public boolean restore(File manifest, File target) throws IOException {
+        List<File> chunks = readChunks(manifest);
+        for (File chunk : chunks) {
+            if (!chunk.isFile()) {
+                return false;
+            }
+        }
+        for (File chunk : chunks) {
+            fileAccessTracker.markAccessed(chunk);
+        }
+
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(manifest)));
+             OutputStream output = new BufferedOutputStream(new FileOutputStream(target))) {
+            input.readInt();
+            byte type;
+            while ((type = input.readByte()) != END_OF_MANIFEST) {
+                if (type == INLINE_SEGMENT) {
+                    long length = input.readLong();
+                    ByteStreams.copy(ByteStreams.limit(input, length), output);
+                } else if (type == CHUNK_SEGMENT) {
+                    input.readLong();
+                    try (InputStream chunk = new FileInputStream(chunkFile(input.readUTF()))) {
+                        ByteStreams.copy(chunk, output);
+                    }
+                } else {
+                    throw new IOException("Invalid segment type " + type + " in " + manifest);
+                }
+            }
+        }
+        return true;
+    }
+
+    private List<File> readChunks(File manifest) throws IOException {
+        List<File> chunks = new ArrayList<>();
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(manifest)))) {
+            if (input.readInt() != MANIFEST_MAGIC) {
+                throw new IOException("Not a build cache entry manifest: " + manifest);
+            }
+            byte type;
+            while ((type = input.readByte()) != END_OF_MANIFEST) {
+                if (type == INLINE_SEGMENT) {
+                    long length = input.readLong();
+                    ByteStreams.skipFully(input, length);
+                } else if (type == CHUNK_SEGMENT) {
+                    input.readLong();
+                    chunks.add(chunkFile(input.readUTF()));
+                } else {
+                    throw new IOException("Invalid segment type " + type + " in " + manifest);
+                }
+            }
+        }
+        return chunks;
+    }
+
+    private HashCode storeChunk(InputStream content, long size) throws IOException {
+        File tempFile = TempFiles.createTempFile(CHUNK_PREFIX, BuildCacheTempFileStore.PARTIAL_FILE_SUFFIX, dir);
+        try {
+            HashCode hash;
+            try (HashingOutputStream output = new HashingOutputStream(Hashing.defaultFunction(), new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+                long copied = ByteStreams.copy(content, output);
+                if (copied < size) {
+                    throw new EOFException("Unexpected end of build cache entry");
+                }
+                output.flush();
+                hash = output.hash();
+            }
+            File chunk = chunkFile(hash.toString());
+            if (!chunk.isFile() && !tempFile.renameTo(chunk) && !chunk.isFile()) {
+                throw new IOException("Could not store build cache chunk " + chunk);
+            }
+            fileAccessTracker.markAccessed(chunk);
+            return hash;
+        } finally {
+            GFileUtils.deleteQuietly(tempFile);
+        }
+    }
+
+    private File chunkFile(String hash) {
+        return new File(dir, CHUNK_PREFIX + hash);
+    }
+
+    private static void readFully(InputStream input, byte[] buffer, File entry) throws IOException {
+        if (ByteStreams.read(input, buffer, 0, buffer.length) < buffer.length) {
+            throw new EOFException("Unexpected end of build cache entry " + entry);
+        }
+    }
+
+    private static InputStream openEntry(File entry) throws IOException {
+        PushbackInputStream input = new PushbackInputStream(new BufferedInputStream(new FileInputStream(entry)), 2);
+        int first = input.read();
+        int second = input.read();
+        if (second >= 0) {
+            input.unread(second);
+        }
+        if (first >= 0) {
+            input.unread(first);
+        }
+        if (first == (GZIPInputStream.GZIP_MAGIC & 0xff) && second == ((GZIPInputStream.GZIP_MAGIC >> 8) & 0xff)) {
+            return new BufferedInputStream(new GZIPInputStream(input));
+        }
+        return input;
+    }
+
+    private static boolean isEndOfArchive(byte[] header) {
+        for (byte b : header) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isPaxHeader(byte[] header) {
+        return header[TAR_TYPE_FLAG_OFFSET] == 'x';
+    }
+
+    private static boolean isGlobalPaxHeader(byte[] header) {
+        return header[TAR_TYPE_FLAG_OFFSET] == 'g';
+    }
+
+    private static boolean isRegularFile(byte[] header) {
+        byte typeFlag = header[TAR_TYPE_FLAG_OFFSET];
+        return typeFlag == '0' || typeFlag == 0;
+    }
+
+    private static boolean hasValidChecksum(byte[] header) {
+        long checksum = 0;
+        for (int i = 0; i < header.length; i++) {
+            boolean inChecksumField = i >= TAR_CHECKSUM_OFFSET && i < TAR_CHECKSUM_OFFSET + TAR_CHECKSUM_LENGTH;
+            checksum += inChecksumField ? ' ' : header[i] & 0xff;
+        }
+        return checksum == parseOctal(header, TAR_CHECKSUM_OFFSET, TAR_CHECKSUM_LENGTH);
+    }
+
+    /**
+     * Parses the records of a PAX extended header, each of the form {@code "<length> <keyword>=<value>\n"}.
+     *
+     * @return the size of the following entry, {@link #NO_SIZE} if the header does not specify it, or {@link #MALFORMED_PAX_HEADER}.
+     */
+    private static long parsePaxSize(byte[] records, int length) {
+        long size = NO_SIZE;
+        int recordStart = 0;
+        while (recordStart < length) {
+            int recordLength = 0;
+            int pos = recordStart;
+            while (pos < length && records[pos] >= '0' && records[pos] <= '9' && recordLength < length) {
+                recordLength = recordLength * 10 + records[pos] - '0';
+                pos++;
+            }
+            int recordEnd = recordStart + recordLength;
+            if (pos == recordStart || pos >= recordEnd || recordEnd > length || records[pos] != ' ' || records[recordEnd - 1] != '\n') {
+                return MALFORMED_PAX_HEADER;
+            }
+            String record = new String(records, pos + 1, recordEnd - pos - 2, StandardCharsets.UTF_8);
+            int separator = record.indexOf('=');
+            if (separator < 0) {
+                return MALFORMED_PAX_HEADER;
+            }
+            if (record.substring(0, separator).equals(PAX_SIZE_KEYWORD)) {
+                try {
+                    size = Long.parseLong(record.substring(separator + 1));
+                } catch (NumberFormatException e) {
+                    return MALFORMED_PAX_HEADER;
+                }
+                if (size < 0) {
+                    return MALFORMED_PAX_HEADER;
+                }
+            }
+            recordStart = recordEnd;
+        }
+        return size;
+    }
+
+    /**
+     * Parses an octal field of a tar header, returning -1 if it uses any other notation.
+     */
+    private static long parseOctal(byte[] header, int offset, int length) {
+        long value = 0;
+        boolean seenDigit = false;
+        for (int i = offset; i < offset + length; i++) {
+            byte b = header[i];
+            if (b >= '0' && b <= '7') {
+                value = value * 8 + (b - '0');
+                seenDigit = true;
+            } else if (b == 0 || b == ' ') {
+                if (seenDigit) {
+                    break;
+                }
+            } else {
+                return -1;
+            }
+        }
+        return seenDigit ? value : -1;
+    }
+
+    /**
+     * Writes the parts of the archive that are stored inline as segments of bounded size, so an entry is never held in memory as a whole.
+     */
+    private static class InlineSegmentWriter extends OutputStream {
+        private final DataOutputStream output;
+        private final byte[] buffer = new byte[MAX_INLINE_SEGMENT_SIZE];
+        private int count;
+
+        InlineSegmentWriter(DataOutputStream output) {
+            this.output = output;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (count == buffer.length) {
+                writeSegment();
+            }
+            buffer[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            while (length > 0) {
+                if (count == buffer.length) {
+                    writeSegment();
+                }
+                int copied = Math.min(length, buffer.length - count);
+                System.arraycopy(bytes, offset, buffer, count, copied);
+                count += copied;
+                offset += copied;
+                length -= copied;
+            }
+        }
+
+        void writeSegment() throws IOException {
+            if (count > 0) {
+                output.writeByte(INLINE_SEGMENT);
+                output.writeLong(count);
+                output.write(buffer, 0, count);
+                count = 0;
+            }
+        }
+    }
+}
@@ -46,14 +46,22 @@ public class DirectoryBuildCacheService implements LocalBuildCacheService, Build
     private final BuildCacheTempFileStore tempFileStore;
     private final FileAccessTracker fileAccessTracker;
     private final String failedFileSuffix;
+    private final ChunkedEntryStore chunkedEntryStore;
+    private final boolean storeChunked;
     private final ReadWriteLock lock = new ReentrantReadWriteLock();
 
     public DirectoryBuildCacheService(PathKeyFileStore fileStore, PersistentCache persistentCache, BuildCacheTempFileStore tempFileStore, FileAccessTracker fileAccessTracker, String failedFileSuffix) {
+        this(fileStore, persistentCache, tempFileStore, fileAccessTracker, failedFileSuffix, false);
+    }
+
+    public DirectoryBuildCacheService(PathKeyFileStore fileStore, PersistentCache persistentCache, BuildCacheTempFileStore tempFileStore, FileAccessTracker fileAccessTracker, String failedFileSuffix, boolean storeChunked) {
         this.fileStore = fileStore;
         this.persistentCache = persistentCache;
         this.tempFileStore = tempFileStore;
         this.fileAccessTracker = fileAccessTracker;
         this.failedFileSuffix = failedFileSuffix;
+        this.chunkedEntryStore = new ChunkedEntryStore(persistentCache.getBaseDir(), fileAccessTracker);
+        this.storeChunked = storeChunked;
     }
 
     private static class LoadAction implements Action<File> {
@@ -105,16 +113,25 @@ public void run() {
     }
 
     private void loadInsideLock(BuildCacheKey key, Action<? super File> reader) {
-        LocallyAvailableResource resource = fileStore.get(key.getHashCode());
+        // Entries stored as manifests stay readable even when chunked storage is turned off again
+        String manifestKey = key.getHashCode() + ChunkedEntryStore.MANIFEST_SUFFIX;
+        LocallyAvailableResource resource = fileStore.get(storeChunked ? manifestKey : key.getHashCode());
         if (resource == null) {
-            return;
+            resource = fileStore.get(storeChunked ? key.getHashCode() : manifestKey);
+            if (resource == null) {
+                return;
+            }
         }
 
         File file = resource.getFile();
         fileAccessTracker.markAccessed(file);
 
         try {
-            reader.execute(file);
+            if (file.getName().endsWith(ChunkedEntryStore.MANIFEST_SUFFIX)) {
+                loadFromManifest(key, file, reader);
+            } else {
+                reader.execute(file);
+            }
         } catch (Exception e) {
             // Try to move the file out of the way in case its permanently corrupt
             // Don't delete, so that it can be potentially used for debugging
@@ -127,6 +144,21 @@ private void loadInsideLock(BuildCacheKey key, Action<? super File> reader) {
         }
     }
 
+    private void loadFromManifest(BuildCacheKey key, File manifest, Action<? super File> reader) {
+        tempFileStore.withTempFile(key, restoredFile -> {
+            boolean restored;
+            try {
+                restored = chunkedEntryStore.restore(manifest, restoredFile);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            // A missing chunk means some of the entry's content has been cleaned up, treat it as a miss
+            if (restored) {
+                reader.execute(restoredFile);
+            }
+        });
+    }
+
     @Override
     public void store(final BuildCacheKey key, final BuildCacheEntryWriter result) throws BuildCacheException {
         tempFileStore.withTempFile(key, new Action<File>() {
@@ -166,8 +198,24 @@ public void run() {
     }
 
     private void storeInsideLock(BuildCacheKey key, File file) {
-        LocallyAvailableResource resource = fileStore.move(key.getHashCode(), file);
+        File entry = file;
+        String entryKey = key.getHashCode();
+        if (storeChunked) {
+            // Fall back to storing the entry as is when it cannot be split into chunks
+            File manifest = new File(file.getAbsolutePath() + ChunkedEntryStore.MANIFEST_SUFFIX);
+            try {
+                chunkedEntryStore.writeManifest(file, manifest);
+                entry = manifest;
+                entryKey += ChunkedEntryStore.MANIFEST_SUFFIX;
+            } catch (IOException e) {
+                GFileUtils.deleteQuietly(manifest);
+            }
+        }
+        LocallyAvailableResource resource = fileStore.move(entryKey, entry);
         fileAccessTracker.markAccessed(resource.getFile());
+        if (entry != file) {
+            GFileUtils.deleteQuietly(file);
+        }
     }
 
     @Override
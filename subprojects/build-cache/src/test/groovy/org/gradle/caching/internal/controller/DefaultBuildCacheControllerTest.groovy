@@ -23,7 +23,21 @@ import org.gradle.caching.BuildCacheKey
 import org.gradle.caching.BuildCacheService
 import org.gradle.caching.internal.controller.service.BuildCacheServicesConfiguration
 import org.gradle.caching.local.internal.LocalBuildCacheService
+import org.gradle.internal.concurrent.DefaultExecutorFactory
+import org.gradle.internal.concurrent.DefaultParallelismConfiguration
+import org.gradle.internal.concurrent.ExecutorFactory
+import org.gradle.internal.concurrent.ManagedExecutor
+import org.gradle.internal.operations.BuildOperationContext
+import org.gradle.internal.operations.BuildOperationDescriptor
+import org.gradle.internal.operations.BuildOperationExecutor
+import org.gradle.internal.operations.BuildOperationListener
+import org.gradle.internal.operations.BuildOperationQueueFactory
+import org.gradle.internal.operations.DefaultBuildOperationExecutor
+import org.gradle.internal.operations.DefaultBuildOperationIdFactory
+import org.gradle.internal.operations.RunnableBuildOperation
 import org.gradle.internal.operations.TestBuildOperationExecutor
+import org.gradle.internal.progress.NoOpProgressLoggerFactory
+import org.gradle.internal.time.Time
 import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
 import spock.lang.Specification
 import org.junit.Rule
@@ -83,7 +97,7 @@ class DefaultBuildCacheControllerTest extends Specification {
 
     interface Local extends BuildCacheService, LocalBuildCacheService {}
 
-    BuildCacheController getController(boolean disableRemoteOnError = true) {
+    BuildCacheController getController(boolean disableRemoteOnError = true, boolean asyncRemoteStore = false, BuildOperationExecutor buildOperationExecutor = operations, ExecutorFactory executorFactory = new DefaultExecutorFactory()) {
         new DefaultBuildCacheController(
             new BuildCacheServicesConfiguration(
                 local,
@@ -91,11 +105,13 @@ class DefaultBuildCacheControllerTest extends Specification {
                 remote,
                 remotePush
             ),
-            operations,
+            buildOperationExecutor,
             tmpDir.file("dir"),
             false,
             false,
-            disableRemoteOnError
+            disableRemoteOnError,
+            asyncRemoteStore,
+            executorFactory
         )
     }
 
@@ -283,4 +299,62 @@ class DefaultBuildCacheControllerTest extends Specification {
         1 * local.close()
         1 * remote.close()
     }
+
+    def "stores to remote in the background and drains uploads before closing remote"() {
+        when:
+        def controller = getController(true, true)
+        controller.store(storeCommand)
+        controller.close()
+
+        then:
+        1 * local.storeLocally(key, _)
+        1 * remote.store(key, _)
+
+        then:
+        1 * remote.close()
+    }
+
+    def "stores to remote in the background after the storing build operation has completed"() {
+        def buildOperationExecutor = new DefaultBuildOperationExecutor(Mock(BuildOperationListener), Time.clock(), new NoOpProgressLoggerFactory(), Mock(BuildOperationQueueFactory), new DefaultExecutorFactory(), new DefaultParallelismConfiguration(true, 1), new DefaultBuildOperationIdFactory())
+        def pendingUploads = []
+        def uploadExecutor = Stub(ManagedExecutor) {
+            execute(_ as Runnable) >> { Runnable upload -> pendingUploads << upload }
+            stop() >> { pendingUploads.each { it.run() } }
+        }
+        def executorFactory = Stub(ExecutorFactory) {
+            create(_ as String, _ as int) >> uploadExecutor
+        }
+
+        when:
+        def controller = getController(true, true, buildOperationExecutor, executorFactory)
+        buildOperationExecutor.run(new RunnableBuildOperation() {
+            @Override
+            void run(BuildOperationContext context) {
+                controller.store(storeCommand)
+            }
+
+            @Override
+            BuildOperationDescriptor.Builder description() {
+                BuildOperationDescriptor.displayName("Execute task")
+            }
+        })
+        controller.close()
+
+        then:
+        1 * remote.store(key, _)
+        0 * remote.store(_, _)
+    }
+
+    def "does suppress exceptions from background store"() {
+        local = null
+
+        when:
+        def controller = getController(true, true)
+        controller.store(storeCommand)
+        controller.close()
+
+        then:
+        1 * remote.store(key, _) >> { throw new RuntimeException() }
+        noExceptionThrown()
+    }
 }
@@ -0,0 +1,230 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.local.internal
+
+import org.gradle.internal.file.FileAccessTracker
+import org.gradle.test.fixtures.file.CleanupTestDirectory
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+import java.nio.charset.StandardCharsets
+import java.util.zip.GZIPOutputStream
+
+@CleanupTestDirectory
+class ChunkedEntryStoreTest extends Specification {
+    @Rule TestNameTestDirectoryProvider temporaryFolder = new TestNameTestDirectoryProvider(getClass())
+    def cacheDir = temporaryFolder.createDir("cache")
+    def fileAccessTracker = Mock(FileAccessTracker)
+    def store = new ChunkedEntryStore(cacheDir, fileAccessTracker)
+
+    def largeContent = ("large file content" * 2000).bytes
+    def smallContent = "small".bytes
+
+    def "restores uncompressed entry"() {
+        def archive = tar(["tree-output/large.bin": largeContent, "tree-output/small.txt": smallContent])
+        def entry = temporaryFolder.file("entry")
+        entry.bytes = archive
+        def manifest = temporaryFolder.file("manifest")
+        def restored = temporaryFolder.file("restored")
+
+        when:
+        store.writeManifest(entry, manifest)
+        then:
+        manifest.length() < archive.length
+        chunks().size() == 1
+
+        when:
+        def result = store.restore(manifest, restored)
+        then:
+        result
+        restored.bytes == archive
+    }
+
+    def "restores gzip compressed entry as uncompressed archive"() {
+        def archive = tar(["large.bin": largeContent])
+        def entry = temporaryFolder.file("entry")
+        entry.withOutputStream { new GZIPOutputStream(it).withCloseable { it.write(archive) } }
+        def manifest = temporaryFolder.file("manifest")
+        def restored = temporaryFolder.file("restored")
+
+        when:
+        store.writeManifest(entry, manifest)
+        store.restore(manifest, restored)
+        then:
+        restored.bytes == archive
+    }
+
+    def "entries share chunks for identical files"() {
+        def first = temporaryFolder.file("first")
+        first.bytes = tar(["a/large.bin": largeContent])
+        def second = temporaryFolder.file("second")
+        second.bytes = tar(["b/copy.bin": largeContent, "b/small.txt": smallContent])
+
+        when:
+        store.writeManifest(first, temporaryFolder.file("first-manifest"))
+        store.writeManifest(second, temporaryFolder.file("second-manifest"))
+        then:
+        chunks().size() == 1
+        2 * fileAccessTracker.markAccessed({ File it -> it.name.startsWith(ChunkedEntryStore.CHUNK_PREFIX) })
+    }
+
+    def "does not restore entry when a chunk is missing"() {
+        def entry = temporaryFolder.file("entry")
+        entry.bytes = tar(["large.bin": largeContent])
+        def manifest = temporaryFolder.file("manifest")
+        def restored = temporaryFolder.file("restored")
+        store.writeManifest(entry, manifest)
+
+        when:
+        chunks()*.delete()
+        then:
+        !store.restore(manifest, restored)
+        restored.length() == 0
+    }
+
+    def "stores content that is not a tar archive inline"() {
+        def entry = temporaryFolder.file("entry")
+        entry.bytes = ("not a tar archive" * 2000).bytes
+        def manifest = temporaryFolder.file("manifest")
+        def restored = temporaryFolder.file("restored")
+
+        when:
+        store.writeManifest(entry, manifest)
+        store.restore(manifest, restored)
+        then:
+        chunks().empty
+        restored.bytes == entry.bytes
+    }
+
+    def "keeps chunking files after entries with extended headers"() {
+        def longPath = "tree-output/" + ("very-long-directory-name/" * 6) + "large.bin"
+        def nonAsciiPath = "tree-output/gro\u00DFe-datei.bin"
+        def archive = tar([(longPath): largeContent, (nonAsciiPath): ("other large file content" * 2000).bytes, "tree-output/small.txt": smallContent])
+        def entry = temporaryFolder.file("entry")
+        entry.bytes = archive
+        def manifest = temporaryFolder.file("manifest")
+        def restored = temporaryFolder.file("restored")
+
+        when:
+        store.writeManifest(entry, manifest)
+        then:
+        chunks().size() == 2
+
+        when:
+        store.restore(manifest, restored)
+        then:
+        restored.bytes == archive
+    }
+
+    def "uses the size from extended headers"() {
+        def archive = tar(["large.bin": largeContent, "small.txt": smallContent], true)
+        def entry = temporaryFolder.file("entry")
+        entry.bytes = archive
+        def manifest = temporaryFolder.file("manifest")
+        def restored = temporaryFolder.file("restored")
+
+        when:
+        store.writeManifest(entry, manifest)
+        store.restore(manifest, restored)
+        then:
+        chunks().size() == 1
+        restored.bytes == archive
+    }
+
+    def "stores inline content larger than a segment"() {
+        def files = (0..<200).collectEntries { ["small-${it}.txt".toString(), ("small file content ${it}" * 40).bytes] }
+        def archive = tar(files + ["large.bin": largeContent])
+        assert archive.length > 2 * ChunkedEntryStore.MAX_INLINE_SEGMENT_SIZE
+        def entry = temporaryFolder.file("entry")
+        entry.bytes = archive
+        def manifest = temporaryFolder.file("manifest")
+        def restored = temporaryFolder.file("restored")
+
+        when:
+        store.writeManifest(entry, manifest)
+        store.restore(manifest, restored)
+        then:
+        chunks().size() == 1
+        restored.bytes == archive
+    }
+
+    private List<File> chunks() {
+        cacheDir.listFiles().findAll { it.name.startsWith(ChunkedEntryStore.CHUNK_PREFIX) }
+    }
+
+    private static byte[] tar(Map<String, byte[]> files, boolean sizesInExtendedHeaders = false) {
+        def output = new ByteArrayOutputStream()
+        files.each { name, content ->
+            def nameBytes = name.getBytes(StandardCharsets.UTF_8)
+            def records = ""
+            if (nameBytes.length > 100 || nameBytes.length != name.length()) {
+                records += paxRecord("path", name)
+            }
+            if (sizesInExtendedHeaders) {
+                records += paxRecord("size", String.valueOf(content.length))
+            }
+            if (records) {
+                def recordBytes = records.getBytes(StandardCharsets.UTF_8)
+                output.write(header("PaxHeaders.X/" + name.replaceAll(/[^\x20-\x7e]/, "_"), recordBytes.length, (byte) 'x'))
+                writePadded(output, recordBytes)
+            }
+            output.write(header(name.replaceAll(/[^\x20-\x7e]/, "_"), sizesInExtendedHeaders ? 0 : content.length, (byte) '0'))
+            writePadded(output, content)
+        }
+        output.write(new byte[1024])
+        output.toByteArray()
+    }
+
+    private static String paxRecord(String keyword, String value) {
+        def record = " ${keyword}=${value}\n"
+        def recordLength = record.getBytes(StandardCharsets.UTF_8).length
+        def length = recordLength + String.valueOf(recordLength).length()
+        if (String.valueOf(length).length() != String.valueOf(recordLength).length()) {
+            length++
+        }
+        return length + record
+    }
+
+    private static byte[] header(String name, long size, byte typeFlag) {
+        def header = new byte[512]
+        writeField(header, 0, 100, name)
+        writeField(header, 100, 8, "0000644")
+        writeField(header, 108, 8, "0000000")
+        writeField(header, 116, 8, "0000000")
+        writeField(header, 124, 12, String.format("%011o", size))
+        writeField(header, 136, 12, "00000000000")
+        header[156] = typeFlag
+        writeField(header, 257, 6, "ustar")
+        writeField(header, 263, 2, "00")
+        Arrays.fill(header, 148, 156, (byte) ' ')
+        long checksum = 0
+        header.each { checksum += it & 0xff }
+        writeField(header, 148, 8, String.format("%06o", checksum))
+        header
+    }
+
+    private static void writePadded(OutputStream output, byte[] content) {
+        output.write(content)
+        output.write(new byte[(512 - content.length % 512) % 512])
+    }
+
+    private static void writeField(byte[] header, int offset, int length, String value) {
+        def bytes = value.getBytes(StandardCharsets.US_ASCII)
+        System.arraycopy(bytes, 0, header, offset, Math.min(bytes.length, length))
+    }
+}
@@ -21,6 +21,7 @@ import org.gradle.api.internal.tasks.TaskPropertyUtils
 import org.gradle.api.internal.tasks.properties.GetInputFilesVisitor
 import org.gradle.api.internal.tasks.properties.PropertyWalker
 import org.gradle.integtests.fixtures.AbstractIntegrationSpec
+import org.gradle.internal.execution.impl.DefaultInputFingerprinter
 import org.gradle.integtests.fixtures.ToBeFixedForConfigurationCache
 import spock.lang.Issue
 import spock.lang.Unroll
@@ -154,6 +155,38 @@ class TaskInputFilePropertiesIntegrationTest extends AbstractIntegrationSpec {
         executed ":foo"
     }
 
+    def "resolves configurations used as input files when fingerprinting input files in parallel"() {
+        file("first.txt") << "first"
+        file("second.txt") << "second"
+        buildFile << """
+            configurations {
+                first
+                second
+            }
+
+            dependencies {
+                first files("first.txt")
+                second files("second.txt")
+            }
+
+            task consumer {
+                inputs.files(configurations.first).withPropertyName("first")
+                inputs.files(configurations.second).withPropertyName("second")
+                outputs.file("build/consumer.txt")
+                doLast {
+                    file("build/consumer.txt").text = "done"
+                }
+            }
+        """
+        executer.withArgument("-D${DefaultInputFingerprinter.PARALLEL_FINGERPRINTING_PROPERTY}=true")
+
+        when:
+        run "consumer"
+
+        then:
+        executedAndNotSkipped ":consumer"
+    }
+
     @Issue("https://github.com/gradle/gradle/issues/9674")
     def "allows @Input of task with no actions to be null"() {
         buildFile << """
@@ -40,7 +40,7 @@ public CrossBuildFileHashCache(@Nullable File cacheDir, CacheRepository reposito
         CacheBuilder cacheBuilder = cacheDir != null ? repository.cache(cacheDir) : repository.cache(cacheKind.cacheId);
         cache = cacheBuilder
             .withDisplayName(cacheKind.description)
-            .withLockOptions(mode(FileLockManager.LockMode.OnDemand)) // Lock on demand
+            .withLockOptions(mode(FileLockManager.LockMode.OnDemandShared)) // Lock on demand, allow concurrent readers
             .open();
     }
 
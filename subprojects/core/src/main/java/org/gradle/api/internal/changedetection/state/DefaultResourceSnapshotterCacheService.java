@@ -16,17 +16,33 @@
 
 package org.gradle.api.internal.changedetection.state;
 
+import org.gradle.api.internal.file.archive.ZipEntry;
 import org.gradle.cache.PersistentIndexedCache;
 import org.gradle.internal.hash.HashCode;
 import org.gradle.internal.hash.Hasher;
 import org.gradle.internal.hash.Hashing;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
 public class DefaultResourceSnapshotterCacheService implements ResourceSnapshotterCacheService {
+    /**
+     * Enables caching the hashes of zip entries by their name, size and CRC-32 checksum.
+     *
+     * Entries are not read again when an entry with the same name, size and checksum has been hashed before,
+     * even when that entry was in a different archive.
+     * The checksum is not collision resistant, so a changed entry may be taken for an unchanged one.
+     */
+    public static final String ZIP_ENTRY_HASH_CACHE_PROPERTY = "org.gradle.unsafe.zip-entry-hash-cache";
+
     private static final HashCode NO_HASH = Hashing.signature(CachingResourceHasher.class.getName() + " : no hash");
     private final PersistentIndexedCache<HashCode, HashCode> persistentCache;
+    private final boolean cacheZipEntryHashes;
 
-    public DefaultResourceSnapshotterCacheService(PersistentIndexedCache<HashCode, HashCode> persistentCache) {
+    public DefaultResourceSnapshotterCacheService(PersistentIndexedCache<HashCode, HashCode> persistentCache, boolean cacheZipEntryHashes) {
         this.persistentCache = persistentCache;
+        this.cacheZipEntryHashes = cacheZipEntryHashes;
     }
 
     @Override
@@ -51,10 +67,108 @@ public HashCode hashFile(RegularFileSnapshotContext fileSnapshotContext, Regular
         return resourceHash;
     }
 
+    @Override
+    public HashCode hashZipEntry(ZipEntryContext zipEntryContext, ZipEntryHasher hasher, HashCode configurationHash) throws IOException {
+        ZipEntry entry = zipEntryContext.getEntry();
+        // The checksum and size are taken from the central directory or the local header, so they are unknown for some entries in nested archives
+        if (!cacheZipEntryHashes || entry.getCrc() == -1 || entry.size() == -1) {
+            return hasher.hash(zipEntryContext);
+        }
+        HashCode entryHashCacheKey = zipEntryHashCacheKey(entry, configurationHash);
+
+        HashCode entryHash = persistentCache.getIfPresent(entryHashCacheKey);
+        if (entryHash != null) {
+            if (entryHash.equals(NO_HASH)) {
+                return null;
+            }
+            return entryHash;
+        }
+
+        entryHash = hasher.hash(zipEntryContext);
+
+        persistentCache.put(entryHashCacheKey, entryHash != null ? entryHash : NO_HASH);
+        return entryHash;
+    }
+
+    @Override
+    public HashCode hashZipEntryContent(ZipEntryContext zipEntryContext, ZipEntryHasher hasher, HashCode configurationHash) throws IOException {
+        ZipEntry entry = zipEntryContext.getEntry();
+        if (cacheZipEntryHashes && entry.getCrc() != -1 && entry.size() != -1) {
+            return hashZipEntry(zipEntryContext, hasher, configurationHash);
+        }
+        byte[] content = entry.getContent();
+        // Keyed by the content of the entry, so an unchanged entry is not hashed again when other entries of the archive changed
+        HashCode entryHashCacheKey = resourceHashCacheKey(Hashing.hashBytes(content), configurationHash);
+
+        HashCode entryHash = persistentCache.getIfPresent(entryHashCacheKey);
+        if (entryHash != null) {
+            if (entryHash.equals(NO_HASH)) {
+                return null;
+            }
+            return entryHash;
+        }
+
+        // The content of the entry can only be read once
+        ZipEntryContext readEntryContext = new ZipEntryContext(new ReadZipEntry(entry, content), zipEntryContext.getFullName(), zipEntryContext.getRootParentName());
+        entryHash = hasher.hash(readEntryContext);
+
+        persistentCache.put(entryHashCacheKey, entryHash != null ? entryHash : NO_HASH);
+        return entryHash;
+    }
+
+    private static HashCode zipEntryHashCacheKey(ZipEntry entry, HashCode configurationHash) {
+        Hasher hasher = Hashing.newHasher();
+        hasher.putHash(configurationHash);
+        hasher.putString(entry.getName());
+        hasher.putInt(entry.size());
+        hasher.putLong(entry.getCrc());
+        return hasher.hash();
+    }
+
     private static HashCode resourceHashCacheKey(HashCode contentHash, HashCode configurationHash) {
         Hasher hasher = Hashing.newHasher();
         hasher.putHash(configurationHash);
         hasher.putHash(contentHash);
         return hasher.hash();
     }
+
+    private static class ReadZipEntry implements ZipEntry {
+        private final ZipEntry entry;
+        private final byte[] content;
+
+        public ReadZipEntry(ZipEntry entry, byte[] content) {
+            this.entry = entry;
+            this.content = content;
+        }
+
+        @Override
+        public boolean isDirectory() {
+            return entry.isDirectory();
+        }
+
+        @Override
+        public String getName() {
+            return entry.getName();
+        }
+
+        @Override
+        public byte[] getContent() {
+            return content;
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return new ByteArrayInputStream(content);
+        }
+
+        @Override
+        public int size() {
+            return content.length;
+        }
+
+        @Override
+        public long getCrc() {
+            return entry.getCrc();
+        }
+    }
 }
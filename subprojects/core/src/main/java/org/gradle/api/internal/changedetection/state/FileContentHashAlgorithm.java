@@ -0,0 +1,79 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import org.gradle.internal.hash.HashFunction;
+import org.gradle.internal.hash.Hashing;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+/**
+ * The hash function used to hash the contents of files.
+ *
+ * File content hashes end up in build cache keys, so builds sharing a build cache should use the same algorithm.
+ * The hashes are persisted in the file hash caches, which are kept separately for each algorithm.
+ * A daemon only runs builds requesting the algorithm it has been started with, since the virtual file system retains file hashes across builds.
+ *
+ * Other hashes, like the ones used by incremental compilation or for archive contents, are not affected.
+ */
+public enum FileContentHashAlgorithm {
+    MD5(Hashing.md5()),
+    MURMUR3(Hashing.murmur3());
+
+    /**
+     * Selects the algorithm. It is read when the daemon starts, so it needs to be passed as a JVM argument of the daemon, via {@code org.gradle.jvmargs} or {@code GRADLE_OPTS}.
+     */
+    public static final String SYSTEM_PROPERTY = "org.gradle.unsafe.file-content-hash";
+
+    private final HashFunction hashFunction;
+
+    FileContentHashAlgorithm(HashFunction hashFunction) {
+        this.hashFunction = hashFunction;
+    }
+
+    public HashFunction getHashFunction() {
+        return hashFunction;
+    }
+
+    /**
+     * The name of the indexed cache to persist file hashes created with this algorithm in.
+     */
+    public String getFileHashesCacheName() {
+        return this == MD5 ? "fileHashes" : "fileHashes-" + getId();
+    }
+
+    public String getId() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    public static FileContentHashAlgorithm fromSystemProperties() {
+        String id = System.getProperty(SYSTEM_PROPERTY);
+        return id == null ? MD5 : forId(id);
+    }
+
+    public static FileContentHashAlgorithm forId(String id) {
+        for (FileContentHashAlgorithm algorithm : values()) {
+            if (algorithm.getId().equals(id.trim().toLowerCase(Locale.ROOT))) {
+                return algorithm;
+            }
+        }
+        throw new IllegalArgumentException(String.format("Unknown file content hash algorithm '%s' set via '%s'. Supported values are: %s.",
+            id, SYSTEM_PROPERTY, Arrays.stream(values()).map(FileContentHashAlgorithm::getId).collect(Collectors.joining(", "))));
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedExecutor;
+import org.gradle.internal.concurrent.Stoppable;
+
+import javax.annotation.Nullable;
+import java.util.concurrent.Executor;
+
+/**
+ * Provides the bounded executor used to hash the files of large hierarchies in parallel.
+ *
+ * The executor has one thread per worker of the current build.
+ * When a build uses a different maximum number of workers, the executor is replaced and the previous one is stopped.
+ * File system accesses configured for an earlier build keep using the current executor, since they only see this delegating executor.
+ */
+public class FileHashingExecutors implements Executor, Stoppable {
+    private final ExecutorFactory executorFactory;
+    @Nullable
+    private volatile ManagedExecutor executor;
+    private int executorSize;
+
+    public FileHashingExecutors(ExecutorFactory executorFactory) {
+        this.executorFactory = executorFactory;
+    }
+
+    public Executor forMaxWorkers(int maxWorkers) {
+        ManagedExecutor previousExecutor = null;
+        synchronized (this) {
+            if (executor == null || executorSize != maxWorkers) {
+                previousExecutor = executor;
+                executor = executorFactory.create("File hashing", maxWorkers);
+                executorSize = maxWorkers;
+            }
+        }
+        if (previousExecutor != null) {
+            // Waits for the hashing already submitted to the previous executor
+            previousExecutor.stop();
+        }
+        return this;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        ManagedExecutor currentExecutor = executor;
+        if (currentExecutor == null) {
+            throw new IllegalStateException("No file hashing executor has been configured.");
+        }
+        currentExecutor.execute(command);
+    }
+
+    @Override
+    public void stop() {
+        ManagedExecutor previousExecutor;
+        synchronized (this) {
+            previousExecutor = executor;
+            executor = null;
+        }
+        if (previousExecutor != null) {
+            previousExecutor.stop();
+        }
+    }
+}
@@ -19,6 +19,8 @@
 import org.gradle.cache.GlobalCacheLocations;
 import org.gradle.internal.hash.HashCode;
 
+import java.io.IOException;
+
 /**
  * A {@link ResourceSnapshotterCacheService} that delegates to the global service for immutable files
  * and uses the local service for all other files. This ensures optimal cache utilization.
@@ -42,4 +44,22 @@ public HashCode hashFile(RegularFileSnapshotContext fileSnapshotContext, Regular
             return localCache.hashFile(fileSnapshotContext, hasher, configurationHash);
         }
     }
+
+    @Override
+    public HashCode hashZipEntry(ZipEntryContext zipEntryContext, ZipEntryHasher hasher, HashCode configurationHash) throws IOException {
+        if (globalCacheLocations.isInsideGlobalCache(zipEntryContext.getRootParentName())) {
+            return globalCache.hashZipEntry(zipEntryContext, hasher, configurationHash);
+        } else {
+            return localCache.hashZipEntry(zipEntryContext, hasher, configurationHash);
+        }
+    }
+
+    @Override
+    public HashCode hashZipEntryContent(ZipEntryContext zipEntryContext, ZipEntryHasher hasher, HashCode configurationHash) throws IOException {
+        if (globalCacheLocations.isInsideGlobalCache(zipEntryContext.getRootParentName())) {
+            return globalCache.hashZipEntryContent(zipEntryContext, hasher, configurationHash);
+        } else {
+            return localCache.hashZipEntryContent(zipEntryContext, hasher, configurationHash);
+        }
+    }
 }
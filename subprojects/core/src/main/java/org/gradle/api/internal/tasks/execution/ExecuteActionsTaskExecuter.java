@@ -315,9 +315,9 @@ public void visitInputs(InputVisitor visitor) {
                         ? InputPropertyType.INCREMENTAL
                         : InputPropertyType.NON_INCREMENTAL;
                 String propertyName = inputFileProperty.getPropertyName();
-                visitor.visitInputFileProperty(propertyName, type, NON_IDENTITY, value, () -> {
+                visitor.visitInputFileProperty(propertyName, type, NON_IDENTITY, value, (ResolvingFileFingerprinter) () -> {
                     FileCollectionFingerprinter fingerprinter = fingerprinterRegistry.getFingerprinter(inputFileProperty);
-                    return fingerprinter.fingerprint(inputFileProperty.getPropertyFiles());
+                    return fingerprinter.resolve(inputFileProperty.getPropertyFiles());
                 });
             }
         }
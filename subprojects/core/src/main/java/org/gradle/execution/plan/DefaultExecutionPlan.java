@@ -47,6 +47,7 @@
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -56,6 +57,7 @@
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.stream.Stream;
 
 import static com.google.common.collect.Lists.newLinkedList;
@@ -70,7 +72,18 @@ public class DefaultExecutionPlan implements ExecutionPlan {
 
     private final Set<Node> entryNodes = new LinkedHashSet<>();
     private final NodeMapping nodeMapping = new NodeMapping();
-    private final List<Node> executionQueue = new LinkedList<>();
+    private final Set<Node> executionQueue = new LinkedHashSet<>();
+    private final Map<Node, Integer> executionQueuePositions = new HashMap<>();
+    private final Map<Node, Long> remainingCriticalPathDurations = new HashMap<>();
+    /**
+     * The nodes from the execution queue whose dependencies are complete, the ones with the longest remaining critical path first,
+     * then in execution queue order.
+     * Updated when dependencies complete, so selecting the next node doesn't need to scan the whole execution queue.
+     */
+    private final Set<Node> readyNodes = new TreeSet<>(
+        Comparator.<Node>comparingLong(node -> -remainingCriticalPathDurations.getOrDefault(node, 0L))
+            .thenComparingInt(executionQueuePositions::get)
+    );
     private final Set<ResourceLock> projectLocks = new HashSet<>();
     private final FailureCollector failureCollector = new FailureCollector();
     private final String displayName;
@@ -80,6 +93,7 @@ public class DefaultExecutionPlan implements ExecutionPlan {
     private final ExecutionNodeAccessHierarchy inputHierarchy;
     private final ExecutionNodeAccessHierarchy outputHierarchy;
     private final ExecutionNodeAccessHierarchy destroyableHierarchy;
+    private final NodeDurationEstimator durationEstimator;
     private Spec<? super Task> filter = Specs.satisfyAll();
 
     private boolean invalidNodeRunning;
@@ -102,6 +116,19 @@ public DefaultExecutionPlan(
         ExecutionNodeAccessHierarchy inputHierarchy,
         ExecutionNodeAccessHierarchy outputHierarchy,
         ExecutionNodeAccessHierarchy destroyableHierarchy
+    ) {
+        this(displayName, taskNodeFactory, dependencyResolver, nodeValidator, inputHierarchy, outputHierarchy, destroyableHierarchy, NodeDurationEstimator.NONE);
+    }
+
+    public DefaultExecutionPlan(
+        String displayName,
+        TaskNodeFactory taskNodeFactory,
+        TaskDependencyResolver dependencyResolver,
+        NodeValidator nodeValidator,
+        ExecutionNodeAccessHierarchy inputHierarchy,
+        ExecutionNodeAccessHierarchy outputHierarchy,
+        ExecutionNodeAccessHierarchy destroyableHierarchy,
+        NodeDurationEstimator durationEstimator
     ) {
         this.displayName = displayName;
         this.taskNodeFactory = taskNodeFactory;
@@ -110,6 +137,7 @@ public DefaultExecutionPlan(
         this.inputHierarchy = inputHierarchy;
         this.outputHierarchy = outputHierarchy;
         this.destroyableHierarchy = destroyableHierarchy;
+        this.durationEstimator = durationEstimator;
     }
 
     @Override
@@ -353,16 +381,46 @@ public NodeInVisitingSegment apply(Node node) {
                 }
             }
         }
+        readyNodes.clear();
         executionQueue.clear();
+        executionQueuePositions.clear();
         dependencyResolver.clear();
         nodeMapping.removeIf(Node::requiresMonitoring);
         executionQueue.addAll(nodeMapping);
+        for (Node node : executionQueue) {
+            executionQueuePositions.put(node, executionQueuePositions.size());
+        }
+        estimateRemainingCriticalPathDurations();
         for (Node node : executionQueue) {
             maybeNodesReady |= node.updateAllDependenciesComplete() && node.isReady();
+            if (node.allDependenciesComplete()) {
+                readyNodes.add(node);
+            }
         }
         this.dependenciesWhichRequireMonitoring.addAll(dependenciesWhichRequireMonitoring);
     }
 
+    /**
+     * Estimates for each node how long it takes at least to execute the node and all the nodes waiting for it.
+     * Nodes without an estimated duration don't add to the critical path, so without any estimates the nodes are started in execution queue order.
+     */
+    private void estimateRemainingCriticalPathDurations() {
+        remainingCriticalPathDurations.clear();
+        if (durationEstimator == NodeDurationEstimator.NONE) {
+            return;
+        }
+        // Nodes are queued after the nodes they wait for, so the nodes waiting for a node have been visited when visiting it in reverse
+        List<Node> nodesInReverseOrder = new ArrayList<>(executionQueue);
+        Collections.reverse(nodesInReverseOrder);
+        for (Node node : nodesInReverseOrder) {
+            long longestWaitingPath = 0;
+            for (Node predecessor : node.getAllPredecessors()) {
+                longestWaitingPath = Math.max(longestWaitingPath, remainingCriticalPathDurations.getOrDefault(predecessor, 0L));
+            }
+            remainingCriticalPathDurations.put(node, durationEstimator.estimateDurationMillis(node) + longestWaitingPath);
+        }
+    }
+
     private void maybeRemoveProcessedShouldRunAfterEdge(Deque<GraphEdge> walkedShouldRunAfterEdges, Node node) {
         GraphEdge edge = walkedShouldRunAfterEdges.peek();
         if (edge != null && edge.to.equals(node)) {
@@ -498,7 +556,10 @@ public void clear() {
         dependencyResolver.clear();
         entryNodes.clear();
         nodeMapping.clear();
+        readyNodes.clear();
         executionQueue.clear();
+        executionQueuePositions.clear();
+        remainingCriticalPathDurations.clear();
         projectLocks.clear();
         failureCollector.clearFailures();
         producedButNotYetConsumed.clear();
@@ -556,11 +617,6 @@ public void setContinueOnFailure(boolean continueOnFailure) {
     @Override
     @Nullable
     public Node selectNext(WorkerLeaseRegistry.WorkerLease workerLease, ResourceLockState resourceLockState) {
-        if (allProjectsLocked()) {
-            // TODO - this is incorrect. We can still run nodes that don't need a project lock
-            return null;
-        }
-
         for (Iterator<Node> iterator = dependenciesWhichRequireMonitoring.iterator(); iterator.hasNext();) {
             Node node = iterator.next();
             if (node.isComplete()) {
@@ -572,59 +628,96 @@ public Node selectNext(WorkerLeaseRegistry.WorkerLease workerLease, ResourceLock
         if (!maybeNodesReady) {
             return null;
         }
-        Iterator<Node> iterator = executionQueue.iterator();
+        Iterator<Node> iterator = readyNodes.iterator();
         boolean foundReadyNode = false;
+        // The lock state doesn't change while selecting a node, so a project lock which can't be acquired for one node can't be acquired for any other node
+        Set<ResourceLock> unavailableProjectLocks = new HashSet<>();
+        // When all projects are locked, only nodes which don't need a project lock can be started
+        boolean allProjectsLocked = allProjectsLocked();
         while (iterator.hasNext()) {
             Node node = iterator.next();
-            if (node.isReady() && node.allDependenciesComplete()) {
-                foundReadyNode = true;
-                MutationInfo mutations = getResolvedMutationInfo(node);
-
-                if (!tryAcquireLocksForNode(node, workerLease, mutations)) {
-                    resourceLockState.releaseLocks();
-                    continue;
+            if (!node.isReady() || !node.allDependenciesComplete()) {
+                // The node will be added again when it becomes ready
+                iterator.remove();
+                continue;
+            }
+            foundReadyNode = true;
+            ResourceLock projectLock = node.getProjectToLock();
+            if (projectLock != null && (allProjectsLocked || unavailableProjectLocks.contains(projectLock))) {
+                continue;
+            }
+            MutationInfo mutations = getResolvedMutationInfo(node);
+
+            LockAcquisition lockAcquisition = tryAcquireLocksForNode(node, workerLease, mutations);
+            if (lockAcquisition != LockAcquisition.ACQUIRED) {
+                resourceLockState.releaseLocks();
+                if (lockAcquisition == LockAcquisition.NO_WORKER_LEASE) {
+                    // No other node can be started without a worker lease either
+                    break;
+                }
+                if (lockAcquisition == LockAcquisition.NO_PROJECT_LOCK) {
+                    unavailableProjectLocks.add(projectLock);
                 }
+                continue;
+            }
 
-                if (node.allDependenciesSuccessful()) {
-                    node.startExecution(this::recordNodeExecutionStarted);
-                    if (mutations.hasValidationProblem) {
-                        invalidNodeRunning = true;
-                    }
-                } else {
-                    node.skipExecution(this::recordNodeCompleted);
+            // Remove the node before changing its state, since skipping the node can make other nodes ready
+            iterator.remove();
+            executionQueue.remove(node);
+            if (node.allDependenciesSuccessful()) {
+                node.startExecution(this::recordNodeExecutionStarted);
+                if (mutations.hasValidationProblem) {
+                    invalidNodeRunning = true;
                 }
-                iterator.remove();
-                return node;
+            } else {
+                node.skipExecution(this::recordNodeCompleted);
             }
+            return node;
         }
         LOGGER.debug("No node could be selected, nodes ready: {}", foundReadyNode);
         maybeNodesReady = foundReadyNode;
         return null;
     }
 
-    private boolean tryAcquireLocksForNode(Node node, WorkerLeaseRegistry.WorkerLease workerLease, MutationInfo mutations) {
+    private LockAcquisition tryAcquireLocksForNode(Node node, WorkerLeaseRegistry.WorkerLease workerLease, MutationInfo mutations) {
         if (!tryLockProjectFor(node)) {
             LOGGER.debug("Cannot acquire project lock for node {}", node);
-            return false;
+            return LockAcquisition.NO_PROJECT_LOCK;
         } else if (!tryLockSharedResourceFor(node)) {
             LOGGER.debug("Cannot acquire shared resource lock for node {}", node);
-            return false;
+            return LockAcquisition.BLOCKED;
         } else if (!workerLease.tryLock()) {
             LOGGER.debug("Cannot acquire worker lease lock for node {}", node);
-            return false;
+            return LockAcquisition.NO_WORKER_LEASE;
             // TODO: convert output file checks to a resource lock
         } else if (!canRunWithCurrentlyExecutedNodes(mutations)) {
             LOGGER.debug("Node {} cannot run with currently running nodes {}", node, runningNodes);
-            return false;
+            return LockAcquisition.BLOCKED;
         } else if (doesDestroyNotYetConsumedOutputOfAnotherNode(node, mutations.destroyablePaths)) {
-            return false;
+            return LockAcquisition.BLOCKED;
         }
-        return true;
+        return LockAcquisition.ACQUIRED;
+    }
+
+    private enum LockAcquisition {
+        ACQUIRED,
+        NO_PROJECT_LOCK,
+        NO_WORKER_LEASE,
+        BLOCKED
     }
 
     private void updateAllDependenciesCompleteForPredecessors(Node node) {
         for (Node predecessor : node.getAllPredecessors()) {
-            maybeNodesReady |= predecessor.updateAllDependenciesComplete() && predecessor.isReady();
+            if (predecessor.updateAllDependenciesComplete()) {
+                maybeNodesReady |= predecessor.isReady();
+                addToReadyNodes(predecessor);
+            }
+        }
+    }
+
+    private void addToReadyNodes(Node node) {
+        if (executionQueue.contains(node)) {
+            readyNodes.add(node);
         }
     }
 
@@ -801,7 +894,7 @@ public void finishedExecuting(Node node) {
         }
     }
 
-    private static void enforceFinalizers(Node node) {
+    private void enforceFinalizers(Node node) {
         for (Node finalizerNode : node.getFinalizers()) {
             if (finalizerNode.isRequired() || finalizerNode.isMustNotRun()) {
                 enforceWithDependencies(finalizerNode);
@@ -809,7 +902,7 @@ private static void enforceFinalizers(Node node) {
         }
     }
 
-    private static void enforceWithDependencies(Node node) {
+    private void enforceWithDependencies(Node node) {
         Set<Node> enforcedNodes = new HashSet<>();
 
         Deque<Node> candidates = new ArrayDeque<>();
@@ -824,9 +917,15 @@ private static void enforceWithDependencies(Node node) {
 
                 if (candidate.isMustNotRun() || candidate.isRequired()) {
                     candidate.enforceRun();
+                    if (candidate.allDependenciesComplete()) {
+                        addToReadyNodes(candidate);
+                    }
                     // Completed changed from true to false - inform all nodes depending on this one.
                     for (Node predecessor : candidate.getAllPredecessors()) {
                         predecessor.forceAllDependenciesCompleteUpdate();
+                        if (predecessor.allDependenciesComplete()) {
+                            addToReadyNodes(predecessor);
+                        }
                     }
                 }
             }
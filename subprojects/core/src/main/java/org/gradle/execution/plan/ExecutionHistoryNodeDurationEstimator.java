@@ -0,0 +1,50 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.plan;
+
+import org.gradle.caching.internal.origin.OriginMetadata;
+import org.gradle.internal.execution.history.AfterPreviousExecutionState;
+import org.gradle.internal.execution.history.ExecutionHistoryStore;
+
+/**
+ * Estimates the duration of task nodes by the execution time of their last execution recorded in the execution history.
+ */
+public class ExecutionHistoryNodeDurationEstimator implements NodeDurationEstimator {
+    /**
+     * Enables starting the ready nodes with the longest estimated remaining critical path first.
+     */
+    public static final String CRITICAL_PATH_SCHEDULING_PROPERTY = "org.gradle.unsafe.critical-path-scheduling";
+
+    private final ExecutionHistoryStore executionHistoryStore;
+
+    public ExecutionHistoryNodeDurationEstimator(ExecutionHistoryStore executionHistoryStore) {
+        this.executionHistoryStore = executionHistoryStore;
+    }
+
+    @Override
+    public long estimateDurationMillis(Node node) {
+        if (!(node instanceof LocalTaskNode)) {
+            return 0;
+        }
+        // Tasks are identified by their path in the execution history
+        String taskPath = ((LocalTaskNode) node).getTask().getPath();
+        return executionHistoryStore.load(taskPath)
+            .map(AfterPreviousExecutionState::getOriginMetadata)
+            .map(OriginMetadata::getExecutionTime)
+            .orElse(0L);
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.filewatch;
+
+import com.google.common.collect.Iterables;
+import org.gradle.api.Action;
+import org.gradle.api.internal.file.FileSystemSubset;
+import org.gradle.internal.watch.registry.FileWatcherRegistry;
+import org.gradle.internal.watch.vfs.BuildLifecycleAwareVirtualFileSystem;
+import org.gradle.internal.watch.vfs.FileChangeListener;
+import org.gradle.internal.watch.vfs.FileChangeListeners;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Watches for changes by listening to the changes reported to the virtual file system by file system watching.
+ *
+ * File system watching already watches the locations which have been snapshotted during the build,
+ * so this does not need to register any watches or to scan any directories.
+ * Changes written by the build itself are not reported, so only changes made by the user trigger a new build.
+ * Locations which are not watched by file system watching, e.g. because they are not within the root directory of a build,
+ * are watched by the fallback {@link FileWatcherFactory}.
+ */
+public class VirtualFileSystemFileWatcherFactory implements FileWatcherFactory {
+    /**
+     * Enables using file system watching to detect changes in continuous builds.
+     */
+    public static final String CONTINUOUS_BUILD_VFS_EVENTS_PROPERTY = "org.gradle.unsafe.continuous-build.vfs-events";
+
+    private final FileChangeListeners fileChangeListeners;
+    private final BuildLifecycleAwareVirtualFileSystem virtualFileSystem;
+    private final FileWatcherFactory fallbackFileWatcherFactory;
+
+    public VirtualFileSystemFileWatcherFactory(FileChangeListeners fileChangeListeners, BuildLifecycleAwareVirtualFileSystem virtualFileSystem, FileWatcherFactory fallbackFileWatcherFactory) {
+        this.fileChangeListeners = fileChangeListeners;
+        this.virtualFileSystem = virtualFileSystem;
+        this.fallbackFileWatcherFactory = fallbackFileWatcherFactory;
+    }
+
+    @Override
+    public FileWatcher watch(Action<? super Throwable> onError, FileWatcherListener listener) {
+        VirtualFileSystemFileWatcher watcher = new VirtualFileSystemFileWatcher(onError, listener);
+        fileChangeListeners.addListener(watcher);
+        return watcher;
+    }
+
+    private class VirtualFileSystemFileWatcher implements FileWatcher, FileChangeListener {
+        private final Action<? super Throwable> onError;
+        private final FileWatcherListener listener;
+        private final List<FileSystemSubset> watchedSubsets = new CopyOnWriteArrayList<FileSystemSubset>();
+        private final List<File> watchedRoots = new CopyOnWriteArrayList<File>();
+        private volatile boolean running = true;
+        private FileWatcher fallbackWatcher;
+
+        public VirtualFileSystemFileWatcher(Action<? super Throwable> onError, FileWatcherListener listener) {
+            this.onError = onError;
+            this.listener = listener;
+        }
+
+        @Override
+        public boolean isRunning() {
+            return running;
+        }
+
+        @Override
+        public void watch(FileSystemSubset fileSystemSubset) throws IOException {
+            Iterable<? extends File> roots = fileSystemSubset.getRoots();
+            if (Iterables.all(roots, virtualFileSystem::isWatchable)) {
+                watchedSubsets.add(fileSystemSubset);
+                Iterables.addAll(watchedRoots, roots);
+            } else {
+                getFallbackWatcher().watch(fileSystemSubset);
+            }
+        }
+
+        private synchronized FileWatcher getFallbackWatcher() {
+            if (fallbackWatcher == null) {
+                fallbackWatcher = fallbackFileWatcherFactory.watch(onError, (watcher, event) -> listener.onChange(this, event));
+            }
+            return fallbackWatcher;
+        }
+
+        @Override
+        public void handleChange(FileWatcherRegistry.Type type, Path path) {
+            if (!running) {
+                return;
+            }
+            if (type == FileWatcherRegistry.Type.INVALIDATED) {
+                // Something changed in the hierarchy, though we don't know what
+                listener.onChange(this, FileWatcherEvent.undefined());
+                return;
+            }
+            File file = path.toFile();
+            if (isWatched(file)) {
+                listener.onChange(this, toEvent(type, file));
+            }
+        }
+
+        private boolean isWatched(File file) {
+            for (FileSystemSubset watchedSubset : watchedSubsets) {
+                if (watchedSubset.contains(file)) {
+                    return true;
+                }
+            }
+            // Removing or moving an ancestor of a watched root changes the root as well
+            String absolutePath = file.getAbsolutePath();
+            for (File root : watchedRoots) {
+                if (root.getAbsolutePath().startsWith(absolutePath + File.separatorChar)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void stopWatchingAfterError() {
+            if (running) {
+                // Changes can't be detected any more, so run the build again, which will watch the inputs with the fallback watcher
+                listener.onChange(this, FileWatcherEvent.undefined());
+            }
+        }
+
+        @Override
+        public synchronized void stop() {
+            running = false;
+            fileChangeListeners.removeListener(this);
+            if (fallbackWatcher != null) {
+                fallbackWatcher.stop();
+            }
+        }
+    }
+
+    private static FileWatcherEvent toEvent(FileWatcherRegistry.Type type, File file) {
+        switch (type) {
+            case CREATED:
+                return FileWatcherEvent.create(file);
+            case REMOVED:
+                return FileWatcherEvent.delete(file);
+            case MODIFIED:
+                return FileWatcherEvent.modify(file);
+            default:
+                return FileWatcherEvent.undefined();
+        }
+    }
+}
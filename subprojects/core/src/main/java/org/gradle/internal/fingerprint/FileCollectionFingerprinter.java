@@ -20,6 +20,8 @@
 import org.gradle.internal.snapshot.FileSystemLocationSnapshot;
 import org.gradle.internal.snapshot.FileSystemSnapshot;
 
+import java.util.function.Supplier;
+
 public interface FileCollectionFingerprinter {
     /**
      * The type used to refer to this fingerprinter in the {@link FileCollectionFingerprinterRegistry}.
@@ -31,6 +33,15 @@ public interface FileCollectionFingerprinter {
      */
     CurrentFileCollectionFingerprint fingerprint(FileCollection files);
 
+    /**
+     * Resolves the given collection and returns a supplier which fingerprints the contents of its roots.
+     * Only the returned supplier accesses the file system.
+     */
+    default Supplier<CurrentFileCollectionFingerprint> resolve(FileCollection files) {
+        CurrentFileCollectionFingerprint fingerprint = fingerprint(files);
+        return () -> fingerprint;
+    }
+
     /**
      * Creates a fingerprint of the contents of the given roots.
      */
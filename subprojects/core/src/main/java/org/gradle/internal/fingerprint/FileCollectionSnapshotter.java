@@ -19,6 +19,8 @@
 import org.gradle.api.file.FileCollection;
 import org.gradle.internal.snapshot.FileSystemSnapshot;
 
+import java.util.function.Supplier;
+
 /**
  * Service for snapshotting {@link FileCollection}s.
  */
@@ -27,4 +29,13 @@ public interface FileCollectionSnapshotter {
      * Returns snapshots of the roots of a file collection.
      */
     FileSystemSnapshot snapshot(FileCollection fileCollection);
+
+    /**
+     * Resolves the roots of a file collection and returns a supplier which snapshots them.
+     * Only the returned supplier accesses the file system.
+     */
+    default Supplier<FileSystemSnapshot> resolve(FileCollection fileCollection) {
+        FileSystemSnapshot snapshot = snapshot(fileCollection);
+        return () -> snapshot;
+    }
 }
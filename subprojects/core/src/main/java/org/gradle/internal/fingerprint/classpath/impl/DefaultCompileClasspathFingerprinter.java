@@ -18,7 +18,7 @@
 
 import org.gradle.api.internal.cache.StringInterner;
 import org.gradle.api.internal.changedetection.state.AbiExtractingClasspathResourceHasher;
-import org.gradle.api.internal.changedetection.state.CachingResourceHasher;
+import org.gradle.api.internal.changedetection.state.ContentCachingResourceHasher;
 import org.gradle.api.internal.changedetection.state.ResourceSnapshotterCacheService;
 import org.gradle.api.tasks.CompileClasspathNormalizer;
 import org.gradle.api.tasks.FileNormalizer;
@@ -29,7 +29,8 @@
 public class DefaultCompileClasspathFingerprinter extends AbstractFileCollectionFingerprinter implements CompileClasspathFingerprinter {
     public DefaultCompileClasspathFingerprinter(ResourceSnapshotterCacheService cacheService, FileCollectionSnapshotter fileCollectionSnapshotter, StringInterner stringInterner) {
         super(ClasspathFingerprintingStrategy.compileClasspath(
-            new CachingResourceHasher(new AbiExtractingClasspathResourceHasher(), cacheService),
+            // Extracting the ABI is expensive, so it is only done for classes with changed content
+            new ContentCachingResourceHasher(new AbiExtractingClasspathResourceHasher(), cacheService, AbiExtractingClasspathResourceHasher::isClassFile),
             cacheService,
             stringInterner
         ), fileCollectionSnapshotter);
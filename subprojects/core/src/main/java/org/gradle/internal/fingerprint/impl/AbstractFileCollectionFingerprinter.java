@@ -27,6 +27,8 @@
 import org.gradle.internal.snapshot.FileSystemLocationSnapshot;
 import org.gradle.internal.snapshot.FileSystemSnapshot;
 
+import java.util.function.Supplier;
+
 /**
  * Responsible for calculating a {@link FileCollectionFingerprint} for a particular {@link FileCollection}.
  */
@@ -47,6 +49,12 @@ public CurrentFileCollectionFingerprint fingerprint(FileCollection files) {
         return DefaultCurrentFileCollectionFingerprint.from(roots, fingerprintingStrategy);
     }
 
+    @Override
+    public Supplier<CurrentFileCollectionFingerprint> resolve(FileCollection files) {
+        Supplier<FileSystemSnapshot> roots = fileCollectionSnapshotter.resolve(files);
+        return () -> DefaultCurrentFileCollectionFingerprint.from(roots.get(), fingerprintingStrategy);
+    }
+
     @Override
     public CurrentFileCollectionFingerprint fingerprint(FileSystemSnapshot roots) {
         return DefaultCurrentFileCollectionFingerprint.from(roots, fingerprintingStrategy);
@@ -33,6 +33,8 @@
 import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 public class DefaultFileCollectionSnapshotter implements FileCollectionSnapshotter {
     private final FileSystemAccess fileSystemAccess;
@@ -47,46 +49,66 @@ public DefaultFileCollectionSnapshotter(FileSystemAccess fileSystemAccess, Gener
 
     @Override
     public FileSystemSnapshot snapshot(FileCollection fileCollection) {
-        SnapshottingVisitor visitor = new SnapshottingVisitor();
+        return resolve(fileCollection).get();
+    }
+
+    @Override
+    public Supplier<FileSystemSnapshot> resolve(FileCollection fileCollection) {
+        ResolvingVisitor visitor = new ResolvingVisitor();
         ((FileCollectionInternal) fileCollection).visitStructure(visitor);
-        return CompositeFileSystemSnapshot.of(visitor.getRoots());
+        List<Consumer<List<FileSystemSnapshot>>> rootSnapshotters = visitor.getRootSnapshotters();
+        return () -> {
+            List<FileSystemSnapshot> roots = new ArrayList<>();
+            for (Consumer<List<FileSystemSnapshot>> rootSnapshotter : rootSnapshotters) {
+                rootSnapshotter.accept(roots);
+            }
+            return CompositeFileSystemSnapshot.of(roots);
+        };
     }
 
-    private class SnapshottingVisitor implements FileCollectionStructureVisitor {
-        private final List<FileSystemSnapshot> roots = new ArrayList<>();
+    /**
+     * Visits the structure of the file collection, which resolves it, and records how to snapshot each of its roots.
+     */
+    private class ResolvingVisitor implements FileCollectionStructureVisitor {
+        private final List<Consumer<List<FileSystemSnapshot>>> rootSnapshotters = new ArrayList<>();
 
         @Override
         public void visitCollection(FileCollectionInternal.Source source, Iterable<File> contents) {
             for (File file : contents) {
-                fileSystemAccess.read(file.getAbsolutePath(), roots::add);
+                String absolutePath = file.getAbsolutePath();
+                rootSnapshotters.add(roots -> fileSystemAccess.read(absolutePath, roots::add));
             }
         }
 
         @Override
         public void visitGenericFileTree(FileTreeInternal fileTree, FileSystemMirroringFileTree sourceTree) {
-            roots.add(genericFileTreeSnapshotter.snapshotFileTree(fileTree));
+            // Generic trees are resolved while visiting their elements, so snapshot them right away
+            FileSystemSnapshot snapshot = genericFileTreeSnapshotter.snapshotFileTree(fileTree);
+            rootSnapshotters.add(roots -> roots.add(snapshot));
         }
 
         @Override
         public void visitFileTree(File root, PatternSet patterns, FileTreeInternal fileTree) {
-            fileSystemAccess.read(
-                root.getAbsolutePath(),
+            String absolutePath = root.getAbsolutePath();
+            rootSnapshotters.add(roots -> fileSystemAccess.read(
+                absolutePath,
                 new PatternSetSnapshottingFilter(patterns, stat),
                 snapshot -> {
                     if (snapshot.getType() != FileType.Missing) {
                         roots.add(snapshot);
                     }
                 }
-            );
+            ));
         }
 
         @Override
         public void visitFileTreeBackedByFile(File file, FileTreeInternal fileTree, FileSystemMirroringFileTree sourceTree) {
-            fileSystemAccess.read(file.getAbsolutePath(), roots::add);
+            String absolutePath = file.getAbsolutePath();
+            rootSnapshotters.add(roots -> fileSystemAccess.read(absolutePath, roots::add));
         }
 
-        public List<FileSystemSnapshot> getRoots() {
-            return roots;
+        public List<Consumer<List<FileSystemSnapshot>>> getRootSnapshotters() {
+            return rootSnapshotters;
         }
     }
 }
@@ -45,6 +45,7 @@
 import org.gradle.internal.execution.history.impl.DefaultExecutionHistoryStore;
 import org.gradle.internal.execution.history.impl.DefaultOutputFilesRepository;
 import org.gradle.internal.execution.impl.DefaultExecutionEngine;
+import org.gradle.internal.execution.impl.DefaultInputFingerprinter;
 import org.gradle.internal.execution.steps.AssignWorkspaceStep;
 import org.gradle.internal.execution.steps.BroadcastChangingOutputsStep;
 import org.gradle.internal.execution.steps.BuildCacheStep;
@@ -76,6 +77,7 @@
 import org.gradle.internal.resources.ResourceLockCoordinationService;
 import org.gradle.internal.resources.SharedResourceLeaseRegistry;
 import org.gradle.internal.scopeids.id.BuildInvocationScopeId;
+import org.gradle.internal.snapshot.ValueSnapshotter;
 import org.gradle.internal.vfs.VirtualFileSystem;
 import org.gradle.internal.work.WorkerLeaseService;
 import org.gradle.util.GradleVersion;
@@ -85,6 +87,8 @@
 import static org.gradle.cache.internal.filelock.LockOptionsBuilder.mode;
 
 public class ExecutionGradleServices {
+    private static final int MAX_PENDING_EXECUTION_HISTORY_UPDATES = 1000;
+
     ExecutionHistoryCacheAccess createCacheAccess(Gradle gradle, CacheRepository cacheRepository) {
         return new DefaultExecutionHistoryCacheAccess(gradle, cacheRepository);
     }
@@ -94,10 +98,12 @@ ExecutionHistoryStore createExecutionHistoryStore(
         InMemoryCacheDecoratorFactory inMemoryCacheDecoratorFactory,
         StringInterner stringInterner
     ) {
+        // The store is closed at the end of the build, which writes any pending updates
         return new DefaultExecutionHistoryStore(
             executionHistoryCacheAccess,
             inMemoryCacheDecoratorFactory,
-            stringInterner
+            stringInterner,
+            MAX_PENDING_EXECUTION_HISTORY_UPDATES
         );
     }
 
@@ -154,9 +160,13 @@ public ExecutionEngine createExecutionEngine(
         OverlappingOutputDetector overlappingOutputDetector,
         TimeoutHandler timeoutHandler,
         ValidateStep.ValidationWarningRecorder validationWarningRecorder,
+        ValueSnapshotter valueSnapshotter,
         VirtualFileSystem virtualFileSystem,
         DocumentationRegistry documentationRegistry
     ) {
+        InputFingerprinter beforeExecutionInputFingerprinter = Boolean.getBoolean(DefaultInputFingerprinter.PARALLEL_FINGERPRINTING_PROPERTY)
+            ? new DefaultInputFingerprinter(valueSnapshotter, buildOperationExecutor)
+            : inputFingerprinter;
         // @formatter:off
         return new DefaultExecutionEngine(
                 documentationRegistry, new IdentifyStep<>(inputFingerprinter,
@@ -166,7 +176,7 @@ public ExecutionEngine createExecutionEngine(
             new MarkSnapshottingInputsStartedStep<>(
             new SkipEmptyWorkStep<>(
             new ValidateStep<>(virtualFileSystem, validationWarningRecorder,
-            new CaptureStateBeforeExecutionStep(buildOperationExecutor, classLoaderHierarchyHasher, inputFingerprinter, outputSnapshotter, overlappingOutputDetector,
+            new CaptureStateBeforeExecutionStep(buildOperationExecutor, classLoaderHierarchyHasher, beforeExecutionInputFingerprinter, outputSnapshotter, overlappingOutputDetector,
             new ResolveCachingStateStep(buildCacheController, gradleEnterprisePluginManager.isPresent(),
             new MarkSnapshottingInputsFinishedStep<>(
             new ResolveChangesStep<>(changeDetector,
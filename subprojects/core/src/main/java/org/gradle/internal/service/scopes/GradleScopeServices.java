@@ -68,9 +68,11 @@
 import org.gradle.execution.plan.DefaultExecutionPlan;
 import org.gradle.execution.plan.DefaultNodeValidator;
 import org.gradle.execution.plan.DependencyResolver;
+import org.gradle.execution.plan.ExecutionHistoryNodeDurationEstimator;
 import org.gradle.execution.plan.ExecutionNodeAccessHierarchies;
 import org.gradle.execution.plan.ExecutionPlan;
 import org.gradle.execution.plan.LocalTaskNodeExecutor;
+import org.gradle.execution.plan.NodeDurationEstimator;
 import org.gradle.execution.plan.NodeExecutor;
 import org.gradle.execution.plan.PlanExecutor;
 import org.gradle.execution.plan.TaskDependencyResolver;
@@ -93,6 +95,7 @@
 import org.gradle.internal.event.ListenerBroadcast;
 import org.gradle.internal.event.ListenerManager;
 import org.gradle.internal.execution.BuildOutputCleanupRegistry;
+import org.gradle.internal.execution.history.ExecutionHistoryStore;
 import org.gradle.internal.file.Stat;
 import org.gradle.internal.id.UniqueId;
 import org.gradle.internal.instantiation.InstantiatorFactory;
@@ -238,8 +241,13 @@ ExecutionPlan createExecutionPlan(
         GradleInternal gradleInternal,
         TaskNodeFactory taskNodeFactory,
         TaskDependencyResolver dependencyResolver,
-        ExecutionNodeAccessHierarchies executionNodeAccessHierarchies
+        ExecutionNodeAccessHierarchies executionNodeAccessHierarchies,
+        ServiceRegistry services
     ) {
+        // Only look up the execution history when it is used for scheduling, since it opens the execution history cache
+        NodeDurationEstimator durationEstimator = Boolean.getBoolean(ExecutionHistoryNodeDurationEstimator.CRITICAL_PATH_SCHEDULING_PROPERTY)
+            ? new ExecutionHistoryNodeDurationEstimator(services.get(ExecutionHistoryStore.class))
+            : NodeDurationEstimator.NONE;
         return new DefaultExecutionPlan(
             gradleInternal.getIdentityPath().toString(),
             taskNodeFactory,
@@ -247,7 +255,8 @@ ExecutionPlan createExecutionPlan(
             new DefaultNodeValidator(),
             executionNodeAccessHierarchies.getInputHierarchy(),
             executionNodeAccessHierarchies.getOutputHierarchy(),
-            executionNodeAccessHierarchies.getDestroyableHierarchy()
+            executionNodeAccessHierarchies.getDestroyableHierarchy(),
+            durationEstimator
         );
     }
 
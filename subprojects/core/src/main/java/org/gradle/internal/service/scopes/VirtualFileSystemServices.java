@@ -29,6 +29,8 @@
 import org.gradle.api.internal.changedetection.state.CachingFileHasher;
 import org.gradle.api.internal.changedetection.state.CrossBuildFileHashCache;
 import org.gradle.api.internal.changedetection.state.DefaultResourceSnapshotterCacheService;
+import org.gradle.api.internal.changedetection.state.FileContentHashAlgorithm;
+import org.gradle.api.internal.changedetection.state.FileHashingExecutors;
 import org.gradle.api.internal.changedetection.state.FileHasherStatistics;
 import org.gradle.api.internal.changedetection.state.GradleUserHomeScopeFileTimeStampInspector;
 import org.gradle.api.internal.changedetection.state.PropertiesFileFilter;
@@ -47,10 +49,12 @@
 import org.gradle.cache.internal.CacheScopeMapping;
 import org.gradle.cache.internal.InMemoryCacheDecoratorFactory;
 import org.gradle.cache.internal.VersionStrategy;
+import org.gradle.concurrent.ParallelismConfiguration;
 import org.gradle.initialization.RootBuildLifecycleListener;
 import org.gradle.initialization.layout.ProjectCacheDir;
 import org.gradle.internal.build.BuildAddedListener;
 import org.gradle.internal.classloader.ClasspathHasher;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.event.ListenerManager;
 import org.gradle.internal.execution.DefaultOutputSnapshotter;
 import org.gradle.internal.execution.OutputChangeListener;
@@ -73,9 +77,9 @@
 import org.gradle.internal.fingerprint.impl.NameOnlyFileCollectionFingerprinter;
 import org.gradle.internal.fingerprint.impl.RelativePathFileCollectionFingerprinter;
 import org.gradle.internal.hash.DefaultFileHasher;
+import org.gradle.internal.hash.DefaultStreamHasher;
 import org.gradle.internal.hash.FileHasher;
 import org.gradle.internal.hash.HashCode;
-import org.gradle.internal.hash.StreamHasher;
 import org.gradle.internal.nativeintegration.NativeCapabilities;
 import org.gradle.internal.nativeintegration.filesystem.FileSystem;
 import org.gradle.internal.os.OperatingSystem;
@@ -93,6 +97,10 @@
 import org.gradle.internal.watch.registry.impl.LinuxFileWatcherRegistryFactory;
 import org.gradle.internal.watch.registry.impl.WindowsFileWatcherRegistryFactory;
 import org.gradle.internal.watch.vfs.BuildLifecycleAwareVirtualFileSystem;
+import org.gradle.internal.watch.vfs.FileChangeListeners;
+import org.gradle.internal.watch.vfs.VirtualFileSystemCheckpoint;
+import org.gradle.internal.watch.vfs.impl.DefaultFileChangeListeners;
+import org.gradle.internal.watch.vfs.impl.FileBasedVirtualFileSystemCheckpoint;
 import org.gradle.internal.watch.vfs.impl.LocationsWrittenByCurrentBuild;
 import org.gradle.internal.watch.vfs.impl.WatchingNotSupportedVirtualFileSystem;
 import org.gradle.internal.watch.vfs.impl.WatchingVirtualFileSystem;
@@ -101,6 +109,7 @@
 
 import javax.annotation.Nullable;
 import java.io.File;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -122,6 +131,12 @@ public class VirtualFileSystemServices extends AbstractPluginServiceRegistry {
 
     public static final String MAX_HIERARCHIES_TO_WATCH_PROPERTY = "org.gradle.vfs.watch.hierarchies.max";
 
+    /**
+     * When file system watching is enabled, this system property can be used to keep the VFS across daemons.
+     * The checkpoint is validated against file modification times and lengths when it is loaded by a new daemon.
+     */
+    public static final String VFS_CHECKPOINT_PROPERTY = "org.gradle.unsafe.vfs.checkpoint";
+
     private static final int DEFAULT_MAX_HIERARCHIES_TO_WATCH = 50;
     private static final int FILE_HASHER_MEMORY_CACHE_SIZE = 400000;
 
@@ -165,6 +180,11 @@ FileHasherStatistics.Collector createCachingFileHasherStatisticsCollector() {
         DirectorySnapshotterStatistics.Collector createDirectorySnapshotterStatisticsCollector() {
             return new DirectorySnapshotterStatistics.Collector();
         }
+
+        FileContentHashAlgorithm createFileContentHashAlgorithm() {
+            // The system property is a daemon compatibility criterion, so it does not change during the lifetime of the daemon
+            return FileContentHashAlgorithm.fromSystemProperties();
+        }
     }
 
     @VisibleForTesting
@@ -179,10 +199,10 @@ FileHasher createCachingFileHasher(
             CrossBuildFileHashCache fileStore,
             FileSystem fileSystem,
             GradleUserHomeScopeFileTimeStampInspector fileTimeStampInspector,
-            StreamHasher streamHasher,
+            FileContentHashAlgorithm fileContentHashAlgorithm,
             StringInterner stringInterner
         ) {
-            CachingFileHasher fileHasher = new CachingFileHasher(new DefaultFileHasher(streamHasher), fileStore, stringInterner, fileTimeStampInspector, "fileHashes", fileSystem, FILE_HASHER_MEMORY_CACHE_SIZE, statisticsCollector);
+            CachingFileHasher fileHasher = new CachingFileHasher(new DefaultFileHasher(new DefaultStreamHasher(fileContentHashAlgorithm.getHashFunction())), fileStore, stringInterner, fileTimeStampInspector, fileContentHashAlgorithm.getFileHashesCacheName(), fileSystem, FILE_HASHER_MEMORY_CACHE_SIZE, statisticsCollector);
             fileTimeStampInspector.attach(fileHasher);
             return fileHasher;
         }
@@ -203,13 +223,21 @@ public void beforeComplete(GradleInternal gradle) {
             return locationsWrittenByCurrentBuild;
         }
 
+        FileChangeListeners createFileChangeListeners() {
+            return new DefaultFileChangeListeners();
+        }
+
         BuildLifecycleAwareVirtualFileSystem createVirtualFileSystem(
             LocationsWrittenByCurrentBuild locationsWrittenByCurrentBuild,
             DocumentationRegistry documentationRegistry,
             NativeCapabilities nativeCapabilities,
             ListenerManager listenerManager,
             FileSystem fileSystem,
-            GlobalCacheLocations globalCacheLocations
+            Stat stat,
+            GlobalCacheLocations globalCacheLocations,
+            CacheScopeMapping cacheScopeMapping,
+            FileContentHashAlgorithm fileContentHashAlgorithm,
+            FileChangeListeners fileChangeListeners
         ) {
             CaseSensitivity caseSensitivity = fileSystem.isCaseSensitive() ? CASE_SENSITIVE : CASE_INSENSITIVE;
             VfsRootReference rootReference = new VfsRootReference(DefaultSnapshotHierarchy.empty(caseSensitivity));
@@ -217,12 +245,22 @@ BuildLifecycleAwareVirtualFileSystem createVirtualFileSystem(
             // to minimize the number of watches we don't watch anything within the global caches.
             Predicate<String> watchFilter = path -> !globalCacheLocations.isInsideGlobalCache(path);
 
+            // The checkpoint contains file hashes, so it is specific to the hash algorithm
+            VirtualFileSystemCheckpoint checkpoint = Boolean.getBoolean(VFS_CHECKPOINT_PROPERTY)
+                ? new FileBasedVirtualFileSystemCheckpoint(
+                    new File(cacheScopeMapping.getBaseDirectory(null, "vfs", VersionStrategy.CachePerVersion), "checkpoint-" + fileContentHashAlgorithm.getId() + ".bin"),
+                    stat,
+                    () -> Arrays.asList(DirectoryScanner.getDefaultExcludes())
+                )
+                : VirtualFileSystemCheckpoint.NONE;
             BuildLifecycleAwareVirtualFileSystem virtualFileSystem = determineWatcherRegistryFactory(OperatingSystem.current(), nativeCapabilities, watchFilter)
                 .<BuildLifecycleAwareVirtualFileSystem>map(watcherRegistryFactory -> new WatchingVirtualFileSystem(
                     watcherRegistryFactory,
                     rootReference,
                     sectionId -> documentationRegistry.getDocumentationFor("gradle_daemon", sectionId),
-                    locationsWrittenByCurrentBuild
+                    locationsWrittenByCurrentBuild,
+                    checkpoint,
+                    fileChangeListeners
                 ))
                 .orElse(new WatchingNotSupportedVirtualFileSystem(rootReference));
             listenerManager.addListener((BuildAddedListener) buildState ->
@@ -231,6 +269,10 @@ BuildLifecycleAwareVirtualFileSystem createVirtualFileSystem(
             return virtualFileSystem;
         }
 
+        FileHashingExecutors createFileHashingExecutors(ExecutorFactory executorFactory) {
+            return new FileHashingExecutors(executorFactory);
+        }
+
         FileSystemAccess createFileSystemAccess(
             FileHasher hasher,
             VirtualFileSystem virtualFileSystem,
@@ -239,7 +281,8 @@ FileSystemAccess createFileSystemAccess(
             ListenerManager listenerManager,
             PatternSpecFactory patternSpecFactory,
             FileSystemAccess.WriteListener writeListener,
-            DirectorySnapshotterStatistics.Collector statisticsCollector
+            DirectorySnapshotterStatistics.Collector statisticsCollector,
+            FileHashingExecutors fileHashingExecutors
         ) {
             DefaultFileSystemAccess fileSystemAccess = new DefaultFileSystemAccess(
                 hasher,
@@ -267,6 +310,8 @@ public void afterStart(GradleInternal gradle) {
                     String[] defaultExcludes = DirectoryScanner.getDefaultExcludes();
                     patternSpecFactory.setDefaultExcludesFromSettings(defaultExcludes);
                     PatternSpecFactory.INSTANCE.setDefaultExcludesFromSettings(defaultExcludes);
+                    int maxWorkers = gradle.getStartParameter().getMaxWorkerCount();
+                    fileSystemAccess.useParallelHashing(fileHashingExecutors.forMaxWorkers(maxWorkers), maxWorkers);
                 }
 
                 @Override
@@ -306,7 +351,7 @@ ResourceSnapshotterCacheService createResourceSnapshotterCacheService(CrossBuild
                 PersistentIndexedCacheParameters.of("resourceHashesCache", HashCode.class, new HashCodeSerializer()),
                 400000,
                 true);
-            return new DefaultResourceSnapshotterCacheService(resourceHashesCache);
+            return new DefaultResourceSnapshotterCacheService(resourceHashesCache, Boolean.getBoolean(DefaultResourceSnapshotterCacheService.ZIP_ENTRY_HASH_CACHE_PROPERTY));
         }
 
         ClasspathFingerprinter createClasspathFingerprinter(ResourceSnapshotterCacheService resourceSnapshotterCacheService, FileCollectionSnapshotter fileCollectionSnapshotter, StringInterner stringInterner) {
@@ -331,11 +376,11 @@ FileHasher createFileHasher(
             CrossBuildFileHashCache cacheAccess,
             FileHasher globalHasher,
             FileSystem fileSystem,
-            StreamHasher streamHasher,
+            FileContentHashAlgorithm fileContentHashAlgorithm,
             StringInterner stringInterner,
             FileHasherStatistics.Collector statisticsCollector
         ) {
-            CachingFileHasher localHasher = new CachingFileHasher(new DefaultFileHasher(streamHasher), cacheAccess, stringInterner, fileTimeStampInspector, "fileHashes", fileSystem, FILE_HASHER_MEMORY_CACHE_SIZE, statisticsCollector);
+            CachingFileHasher localHasher = new CachingFileHasher(new DefaultFileHasher(new DefaultStreamHasher(fileContentHashAlgorithm.getHashFunction())), cacheAccess, stringInterner, fileTimeStampInspector, fileContentHashAlgorithm.getFileHashesCacheName(), fileSystem, FILE_HASHER_MEMORY_CACHE_SIZE, statisticsCollector);
             return new SplitFileHasher(globalHasher, localHasher, globalCacheLocations);
         }
 
@@ -346,7 +391,9 @@ FileSystemAccess createFileSystemAccess(
             StringInterner stringInterner,
             VirtualFileSystem root,
             FileSystemAccess.WriteListener writeListener,
-            DirectorySnapshotterStatistics.Collector statisticsCollector
+            DirectorySnapshotterStatistics.Collector statisticsCollector,
+            FileHashingExecutors fileHashingExecutors,
+            ParallelismConfiguration parallelismConfiguration
         ) {
             DefaultFileSystemAccess buildSessionsScopedVirtualFileSystem = new DefaultFileSystemAccess(
                 hasher,
@@ -357,6 +404,8 @@ FileSystemAccess createFileSystemAccess(
                 statisticsCollector,
                 DirectoryScanner.getDefaultExcludes()
             );
+            int maxWorkers = parallelismConfiguration.getMaxWorkerCount();
+            buildSessionsScopedVirtualFileSystem.useParallelHashing(fileHashingExecutors.forMaxWorkers(maxWorkers), maxWorkers);
 
             listenerManager.addListener(new DefaultExcludesBuildListener(buildSessionsScopedVirtualFileSystem));
             listenerManager.addListener((OutputChangeListener) affectedOutputPaths -> buildSessionsScopedVirtualFileSystem.write(affectedOutputPaths, () -> {}));
@@ -414,7 +463,7 @@ ResourceSnapshotterCacheService createResourceSnapshotterCacheService(
             ResourceSnapshotterCacheService globalCache
         ) {
             PersistentIndexedCache<HashCode, HashCode> resourceHashesCache = store.createCache(PersistentIndexedCacheParameters.of("resourceHashesCache", HashCode.class, new HashCodeSerializer()), 800000, true);
-            DefaultResourceSnapshotterCacheService localCache = new DefaultResourceSnapshotterCacheService(resourceHashesCache);
+            DefaultResourceSnapshotterCacheService localCache = new DefaultResourceSnapshotterCacheService(resourceHashesCache, Boolean.getBoolean(DefaultResourceSnapshotterCacheService.ZIP_ENTRY_HASH_CACHE_PROPERTY));
             return new SplitResourceSnapshotterCacheService(globalCache, localCache, globalCacheLocations);
         }
 
@@ -16,6 +16,7 @@
 
 package org.gradle.api.internal.changedetection.state
 
+import org.gradle.api.internal.file.archive.ZipEntry
 import org.gradle.internal.file.FileMetadata
 import org.gradle.internal.file.impl.DefaultFileMetadata
 import org.gradle.internal.hash.HashCode
@@ -28,10 +29,11 @@ import spock.lang.Specification
 
 class DefaultResourceSnapshotterCacheServiceTest extends Specification {
     def delegate = Mock(ResourceHasher)
+    def cache = new TestInMemoryPersistentIndexedCache(new HashCodeSerializer())
     def path = "some"
     def snapshot = new RegularFileSnapshot(path, "path", HashCode.fromInt(456), DefaultFileMetadata.file(3456, 456, FileMetadata.AccessType.DIRECT))
     def snapshotContext = new DefaultRegularFileSnapshotContext({path}, snapshot)
-    def snapshotterCache = new DefaultResourceSnapshotterCacheService(new TestInMemoryPersistentIndexedCache(new HashCodeSerializer()))
+    def snapshotterCache = new DefaultResourceSnapshotterCacheService(cache, true)
 
     def "returns result from delegate"() {
         def expectedHash = HashCode.fromInt(123)
@@ -76,6 +78,110 @@ class DefaultResourceSnapshotterCacheServiceTest extends Specification {
         0 * _
     }
 
+    def "caches zip entry hashes by name, size and checksum"() {
+        def expectedHash = HashCode.fromInt(123)
+        def entryContext = zipEntryContext("a.class", 12, 789)
+        def sameEntryInOtherZipContext = zipEntryContext("a.class", 12, 789, "other.zip")
+
+        when:
+        def actualHash = snapshotterCache.hashZipEntry(entryContext, delegate, configurationHash)
+        then:
+        1 * delegate.hash(entryContext) >> expectedHash
+        actualHash == expectedHash
+
+        when:
+        actualHash = snapshotterCache.hashZipEntry(sameEntryInOtherZipContext, delegate, configurationHash)
+        then:
+        0 * delegate.hash(_)
+        actualHash == expectedHash
+
+        when:
+        def changedEntryContext = zipEntryContext("a.class", 12, 790)
+        actualHash = snapshotterCache.hashZipEntry(changedEntryContext, delegate, configurationHash)
+        then:
+        1 * delegate.hash(changedEntryContext) >> HashCode.fromInt(456)
+        actualHash == HashCode.fromInt(456)
+    }
+
+    def "caches 'no signature' results for zip entries too"() {
+        def entryContext = zipEntryContext("a.class", 12, 789)
+
+        when:
+        def actualHash = snapshotterCache.hashZipEntry(entryContext, delegate, configurationHash)
+        then:
+        1 * delegate.hash(entryContext) >> null
+        actualHash == null
+
+        when:
+        actualHash = snapshotterCache.hashZipEntry(entryContext, delegate, configurationHash)
+        then:
+        0 * delegate.hash(_)
+        actualHash == null
+    }
+
+    def "does not cache zip entries with unknown checksum or size"() {
+        def expectedHash = HashCode.fromInt(123)
+        def entryContext = zipEntryContext("a.class", size, crc)
+
+        when:
+        snapshotterCache.hashZipEntry(entryContext, delegate, configurationHash)
+        snapshotterCache.hashZipEntry(entryContext, delegate, configurationHash)
+        then:
+        2 * delegate.hash(entryContext) >> expectedHash
+
+        where:
+        size | crc
+        -1   | 789
+        12   | -1
+    }
+
+    def "does not cache zip entries when disabled"() {
+        def cacheService = new DefaultResourceSnapshotterCacheService(cache, false)
+        def entryContext = zipEntryContext("a.class", 12, 789)
+
+        when:
+        cacheService.hashZipEntry(entryContext, delegate, configurationHash)
+        cacheService.hashZipEntry(entryContext, delegate, configurationHash)
+        then:
+        2 * delegate.hash(entryContext) >> HashCode.fromInt(123)
+    }
+
+    def "caches zip entry hashes by content"() {
+        def cacheService = new DefaultResourceSnapshotterCacheService(cache, false)
+        def expectedHash = HashCode.fromInt(123)
+        def entryContext = zipEntryContext("a.class", 12, 789, "foo.zip", "content".bytes)
+        def sameContentContext = zipEntryContext("a.class", 12, 790, "other.zip", "content".bytes)
+
+        when:
+        def actualHash = cacheService.hashZipEntryContent(entryContext, delegate, configurationHash)
+        then:
+        1 * delegate.hash({ ZipEntryContext context -> context.entry.content == "content".bytes && context.entry.name == "a.class" }) >> expectedHash
+        actualHash == expectedHash
+
+        when:
+        actualHash = cacheService.hashZipEntryContent(sameContentContext, delegate, configurationHash)
+        then:
+        0 * delegate.hash(_)
+        actualHash == expectedHash
+
+        when:
+        def changedContext = zipEntryContext("a.class", 12, 789, "foo.zip", "changed".bytes)
+        actualHash = cacheService.hashZipEntryContent(changedContext, delegate, configurationHash)
+        then:
+        1 * delegate.hash(_) >> HashCode.fromInt(456)
+        actualHash == HashCode.fromInt(456)
+    }
+
+    private ZipEntryContext zipEntryContext(String name, int size, long crc, String rootParentName = "foo.zip", byte[] content = new byte[0]) {
+        def entry = Stub(ZipEntry) {
+            getName() >> name
+            size() >> size
+            getCrc() >> crc
+            getContent() >> content
+        }
+        return new ZipEntryContext(entry, name, rootParentName)
+    }
+
     private HashCode getConfigurationHash() {
         def hasher = Hashing.newHasher()
         hasher.putString(delegate.getClass().getName())
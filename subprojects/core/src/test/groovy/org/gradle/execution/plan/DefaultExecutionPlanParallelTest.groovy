@@ -22,6 +22,7 @@ import org.gradle.api.file.FileCollection
 import org.gradle.api.internal.TaskInternal
 import org.gradle.api.internal.project.ProjectInternal
 import org.gradle.api.internal.tasks.TaskStateInternal
+import org.gradle.api.internal.tasks.WorkNodeAction
 import org.gradle.api.tasks.Destroys
 import org.gradle.api.tasks.InputDirectory
 import org.gradle.api.tasks.InputFile
@@ -53,9 +54,13 @@ class DefaultExecutionPlanParallelTest extends AbstractExecutionPlanSpec {
 
     def setup() {
         _ * lease.tryLock() >> true
+        executionPlan = createExecutionPlan(NodeDurationEstimator.NONE)
+    }
+
+    private DefaultExecutionPlan createExecutionPlan(NodeDurationEstimator durationEstimator) {
         def taskNodeFactory = new TaskNodeFactory(project.gradle, Stub(IncludedBuildTaskGraph))
         def dependencyResolver = new TaskDependencyResolver([new TaskNodeDependencyResolver(taskNodeFactory)])
-        executionPlan = new DefaultExecutionPlan(Path.ROOT.toString(), taskNodeFactory, dependencyResolver, nodeValidator, new ExecutionNodeAccessHierarchy(CASE_SENSITIVE, fs), new ExecutionNodeAccessHierarchy(CASE_SENSITIVE, fs), new ExecutionNodeAccessHierarchy(CASE_SENSITIVE, fs))
+        return new DefaultExecutionPlan(Path.ROOT.toString(), taskNodeFactory, dependencyResolver, nodeValidator, new ExecutionNodeAccessHierarchy(CASE_SENSITIVE, fs), new ExecutionNodeAccessHierarchy(CASE_SENSITIVE, fs), new ExecutionNodeAccessHierarchy(CASE_SENSITIVE, fs), durationEstimator)
     }
 
     TaskInternal task(Map<String, ?> options = [:], String name) {
@@ -115,6 +120,95 @@ class DefaultExecutionPlanParallelTest extends AbstractExecutionPlanSpec {
         !taskNode3.task.project.is(taskNode4.task.project)
     }
 
+    def "a task from another project is selected when the project of earlier ready tasks is locked"() {
+        given:
+        def projectA = project(project, "a")
+        def projectB = project(project, "b")
+
+        def fooA = task("foo", project: projectA)
+        def barA = task("bar", project: projectA)
+        def bazA = task("baz", project: projectA, dependsOn: [barA])
+        def fooB = task("foo", project: projectB, dependsOn: [fooA])
+        def barB = task("bar", project: projectB)
+
+        when:
+        addToGraphAndPopulate(fooA, barA, bazA, fooB, barB)
+        def taskNode1 = selectNextTaskNode()
+        def taskNode2 = selectNextTaskNode()
+
+        then:
+        taskNode1.task == barA
+        taskNode2.task == barB
+        selectNextTask() == null
+
+        when:
+        executionPlan.finishedExecuting(taskNode1)
+        def taskNode3 = selectNextTaskNode()
+
+        then:
+        taskNode3.task == bazA
+        selectNextTask() == null
+
+        when:
+        executionPlan.finishedExecuting(taskNode3)
+        def taskNode4 = selectNextTaskNode()
+        executionPlan.finishedExecuting(taskNode4)
+        executionPlan.finishedExecuting(taskNode2)
+
+        then:
+        taskNode4.task == fooA
+        selectNextTask() == fooB
+    }
+
+    def "a node which needs no project lock is selected when all projects are locked"() {
+        given:
+        def projectA = project(project, "a")
+        def projectB = project(project, "b")
+
+        def fooA = task("foo", project: projectA)
+        def fooB = task("foo", project: projectB)
+        def action = Stub(WorkNodeAction)
+        _ * action.owningProject >> null
+        def actionNode = new ActionNode(action)
+        actionNode.require()
+        actionNode.dependenciesProcessed()
+
+        when:
+        executionPlan.addEntryTasks([fooA, fooB])
+        executionPlan.addNodes([actionNode])
+        executionPlan.determineExecutionPlan()
+        def taskNode1 = selectNextTaskNode()
+        def taskNode2 = selectNextTaskNode()
+
+        then:
+        [taskNode1.task, taskNode2.task] as Set == [fooA, fooB] as Set
+        lockedProjects == [projectA, projectB] as Set
+        selectNextNode() == actionNode
+        selectNextNode() == null
+    }
+
+    def "ready tasks with the longest estimated remaining critical path are started first"() {
+        given:
+        def durations = [:]
+        executionPlan = createExecutionPlan({ Node node -> durations[(node as LocalTaskNode).task] ?: 0L } as NodeDurationEstimator)
+        def a = task("a", type: Async)
+        def b = task("b", type: Async)
+        def c = task("c", type: Async, dependsOn: [b])
+        def d = task("d", type: Async)
+        durations[a] = 10L
+        durations[b] = 5L
+        durations[c] = 20L
+
+        when:
+        addToGraphAndPopulate(a, c, d)
+
+        then:
+        selectNextTask() == b
+        selectNextTask() == a
+        selectNextTask() == d
+        selectNextTask() == null
+    }
+
     def "a non-async task can start while an async task from the same project is waiting for work to complete"() {
         given:
         def bar = task("bar", type: Async)
@@ -920,6 +1014,14 @@ class DefaultExecutionPlanParallelTest extends AbstractExecutionPlanSpec {
         }
     }
 
+    private Node selectNextNode() {
+        def nextNode
+        recordLocks {
+            nextNode = executionPlan.selectNext(lease, resourceLockState)
+        }
+        return nextNode
+    }
+
     private TaskInternal selectNextTask() {
         selectNextTaskNode()?.task
     }
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.filewatch
+
+import org.gradle.api.Action
+import org.gradle.api.internal.file.FileSystemSubset
+import org.gradle.internal.watch.registry.FileWatcherRegistry
+import org.gradle.internal.watch.vfs.BuildLifecycleAwareVirtualFileSystem
+import org.gradle.internal.watch.vfs.impl.DefaultFileChangeListeners
+import spock.lang.Specification
+
+class VirtualFileSystemFileWatcherFactoryTest extends Specification {
+    def fileChangeListeners = new DefaultFileChangeListeners()
+    def virtualFileSystem = Stub(BuildLifecycleAwareVirtualFileSystem) {
+        isWatchable(_ as File) >> { File location -> location.absolutePath.startsWith(watchableDir.absolutePath) }
+    }
+    def fallbackFileWatcherFactory = Mock(FileWatcherFactory)
+    def factory = new VirtualFileSystemFileWatcherFactory(fileChangeListeners, virtualFileSystem, fallbackFileWatcherFactory)
+
+    def watchableDir = new File("/watchable").absoluteFile
+    def events = []
+    def listener = { FileWatcher watcher, FileWatcherEvent event -> events << [event.type, event.file] } as FileWatcherListener
+    def onError = Mock(Action)
+
+    def "reports changes to watched locations"() {
+        def watcher = factory.watch(onError, listener)
+        def inputDir = new File(watchableDir, "input")
+        watcher.watch(FileSystemSubset.builder().add(inputDir).build())
+
+        when:
+        fileChangeListeners.broadcastChange(FileWatcherRegistry.Type.MODIFIED, new File(inputDir, "file.txt").toPath())
+        fileChangeListeners.broadcastChange(FileWatcherRegistry.Type.CREATED, new File(watchableDir, "other/file.txt").toPath())
+        fileChangeListeners.broadcastChange(FileWatcherRegistry.Type.REMOVED, watchableDir.toPath())
+
+        then:
+        events == [
+            [FileWatcherEvent.Type.MODIFY, new File(inputDir, "file.txt")],
+            [FileWatcherEvent.Type.DELETE, watchableDir]
+        ]
+        0 * _
+    }
+
+    def "reports undefined change when hierarchy is invalidated or watching fails"() {
+        def watcher = factory.watch(onError, listener)
+        watcher.watch(FileSystemSubset.builder().add(new File(watchableDir, "input")).build())
+
+        when:
+        fileChangeListeners.broadcastChange(FileWatcherRegistry.Type.INVALIDATED, new File(watchableDir, "other").toPath())
+        fileChangeListeners.broadcastWatchingError()
+
+        then:
+        events == [
+            [FileWatcherEvent.Type.UNDEFINED, null],
+            [FileWatcherEvent.Type.UNDEFINED, null]
+        ]
+    }
+
+    def "watches locations not watched by file system watching with the fallback watcher"() {
+        def fallbackWatcher = Mock(FileWatcher)
+        def watcher = factory.watch(onError, listener)
+        def unwatchableSubset = FileSystemSubset.builder().add(new File("/unwatchable").absoluteFile).build()
+
+        when:
+        watcher.watch(unwatchableSubset)
+
+        then:
+        1 * fallbackFileWatcherFactory.watch(onError, _) >> fallbackWatcher
+        1 * fallbackWatcher.watch(unwatchableSubset)
+        0 * _
+
+        when:
+        watcher.stop()
+        fileChangeListeners.broadcastChange(FileWatcherRegistry.Type.MODIFIED, new File(watchableDir, "input").toPath())
+
+        then:
+        1 * fallbackWatcher.stop()
+        !watcher.running
+        events.empty
+    }
+}
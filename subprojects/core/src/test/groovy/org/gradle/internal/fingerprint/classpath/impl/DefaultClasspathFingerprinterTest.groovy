@@ -46,7 +46,7 @@ class DefaultClasspathFingerprinterTest extends Specification {
     def fileSystemAccess = TestFiles.fileSystemAccess()
     def fileCollectionSnapshotter = new DefaultFileCollectionSnapshotter(fileSystemAccess, TestFiles.genericFileTreeSnapshotter(), TestFiles.fileSystem())
     TestInMemoryPersistentIndexedCache<HashCode, HashCode> resourceHashesCache = new TestInMemoryPersistentIndexedCache<>(new HashCodeSerializer())
-    def cacheService = new DefaultResourceSnapshotterCacheService(resourceHashesCache)
+    def cacheService = new DefaultResourceSnapshotterCacheService(resourceHashesCache, false)
     def fingerprinter = new DefaultClasspathFingerprinter(
         cacheService,
         fileCollectionSnapshotter,
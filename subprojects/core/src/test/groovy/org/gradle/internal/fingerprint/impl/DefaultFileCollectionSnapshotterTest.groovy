@@ -36,6 +36,7 @@ import org.junit.Rule
 import spock.lang.Specification
 
 import javax.annotation.Nullable
+import java.util.concurrent.Callable
 
 class DefaultFileCollectionSnapshotterTest extends Specification {
     @Rule
@@ -188,6 +189,30 @@ class DefaultFileCollectionSnapshotterTest extends Specification {
         assertEmptyTree(tree.matching { exclude file.name })
     }
 
+    def "resolves a file collection before snapshotting its roots"() {
+        given:
+        def file = tmpDir.file('testFile')
+        def resolved = false
+        def fileCollection = TestFiles.fileCollectionFactory().resolving({
+            resolved = true
+            return file
+        } as Callable<File>)
+
+        when:
+        def roots = snapshotter.resolve(fileCollection)
+
+        then:
+        resolved
+
+        when:
+        file.text = "content"
+        def snapshot = roots.get()
+
+        then:
+        assertSingleFileSnapshot(snapshot)
+        snapshot.absolutePath == file.absolutePath
+    }
+
     private TemporaryFileProvider testFileProvider() {
         new TemporaryFileProvider() {
             @Override
@@ -79,7 +79,7 @@ public CrossBuildCachingKeyService(CacheRepository cacheRepository,
         cache = cacheRepository
             .cache("keyrings")
             .withCrossVersionCache(CacheBuilder.LockTarget.DefaultTarget)
-            .withLockOptions(LockOptionsBuilder.mode(FileLockManager.LockMode.OnDemand))
+            .withLockOptions(LockOptionsBuilder.mode(FileLockManager.LockMode.OnDemandShared)) // Mostly read, allow concurrent readers
             .open();
         this.buildOperationExecutor = buildOperationExecutor;
         this.delegate = delegate;
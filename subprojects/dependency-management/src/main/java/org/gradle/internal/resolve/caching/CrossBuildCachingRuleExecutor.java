@@ -80,7 +80,7 @@ public CrossBuildCachingRuleExecutor(String name,
         this.timeProvider = timeProvider;
         this.cache = cacheRepository
             .cache(name)
-            .withLockOptions(LockOptionsBuilder.mode(FileLockManager.LockMode.OnDemand))
+            .withLockOptions(LockOptionsBuilder.mode(FileLockManager.LockMode.OnDemandShared)) // Mostly read, allow concurrent readers
             .open();
         PersistentIndexedCacheParameters<HashCode, CachedEntry<RESULT>> cacheParams = createCacheConfiguration(name, resultSerializer, cacheDecoratorFactory);
         this.store = this.cache.createCache(cacheParams);
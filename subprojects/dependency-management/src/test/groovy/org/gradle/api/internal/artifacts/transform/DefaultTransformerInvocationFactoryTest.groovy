@@ -150,6 +150,7 @@ class DefaultTransformerInvocationFactoryTest extends AbstractProjectBuilderSpec
                 .undocumented()
                 .nagUser()
         },
+        valueSnapshotter,
         virtualFileSystem,
         documentationRegistry
     )
@@ -134,6 +134,25 @@ interface ValueSupplier {
         Object getValue();
     }
 
+    /**
+     * Fingerprints the files of an input file property in two steps.
+     *
+     * Resolving the files may require access to mutable project state, e.g. to resolve a configuration,
+     * and so happens on the thread visiting the inputs.
+     * Snapshotting and fingerprinting the resolved files only accesses the file system and can happen on any thread.
+     */
+    interface ResolvingFileFingerprinter extends Supplier<CurrentFileCollectionFingerprint> {
+        /**
+         * Resolves the files of the property and returns a supplier which snapshots and fingerprints them.
+         */
+        Supplier<CurrentFileCollectionFingerprint> resolve();
+
+        @Override
+        default CurrentFileCollectionFingerprint get() {
+            return resolve().get();
+        }
+    }
+
     enum InputPropertyType {
         /**
          * Non-incremental inputs.
@@ -33,20 +33,47 @@
 import org.gradle.internal.snapshot.ValueSnapshot;
 import org.gradle.internal.snapshot.impl.ImplementationSnapshot;
 
+import javax.annotation.Nullable;
+
+import java.io.Closeable;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Supplier;
 
 import static com.google.common.collect.ImmutableSortedMap.copyOfSorted;
 import static com.google.common.collect.Maps.transformValues;
 
-public class DefaultExecutionHistoryStore implements ExecutionHistoryStore {
+/**
+ * Stores the execution history in a persistent cache.
+ *
+ * When created with a positive number of pending updates, updates are written behind:
+ * they are kept in memory, where they are visible to {@link #load(String)}, and written to the cache in batches.
+ * A batch is written once the given number of updates is pending, and when the store is closed.
+ * Updates to the same key in between are coalesced, and each batch is written while holding the cache lock only once.
+ */
+public class DefaultExecutionHistoryStore implements ExecutionHistoryStore, Closeable {
 
+    private final PersistentCache cache;
     private final PersistentIndexedCache<String, AfterPreviousExecutionState> store;
+    private final int maxPendingUpdates;
+    private final Map<String, Optional<AfterPreviousExecutionState>> pendingUpdates = new ConcurrentHashMap<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
 
     public DefaultExecutionHistoryStore(
         Supplier<PersistentCache> cache,
         InMemoryCacheDecoratorFactory inMemoryCacheDecoratorFactory,
         Interner<String> stringInterner
+    ) {
+        this(cache, inMemoryCacheDecoratorFactory, stringInterner, 0);
+    }
+
+    public DefaultExecutionHistoryStore(
+        Supplier<PersistentCache> cache,
+        InMemoryCacheDecoratorFactory inMemoryCacheDecoratorFactory,
+        Interner<String> stringInterner,
+        int maxPendingUpdates
     ) {
         DefaultPreviousExecutionStateSerializer serializer = new DefaultPreviousExecutionStateSerializer(
             new FileCollectionFingerprintSerializer(stringInterner),
@@ -54,7 +81,9 @@ public DefaultExecutionHistoryStore(
         );
 
         CacheDecorator inMemoryCacheDecorator = inMemoryCacheDecoratorFactory.decorator(10000, false);
-        this.store = cache.get().createCache(
+        this.cache = cache.get();
+        this.maxPendingUpdates = maxPendingUpdates;
+        this.store = this.cache.createCache(
             PersistentIndexedCacheParameters.of("executionHistory", String.class, serializer)
             .withCacheDecorator(inMemoryCacheDecorator)
         );
@@ -62,6 +91,10 @@ public DefaultExecutionHistoryStore(
 
     @Override
     public Optional<AfterPreviousExecutionState> load(String key) {
+        Optional<AfterPreviousExecutionState> pendingUpdate = pendingUpdates.get(key);
+        if (pendingUpdate != null) {
+            return pendingUpdate;
+        }
         return Optional.ofNullable(store.getIfPresent(key));
     }
 
@@ -76,7 +109,7 @@ public void store(
         ImmutableSortedMap<String, FileSystemSnapshot> outputFileProperties,
         boolean successful
     ) {
-        store.put(key, new DefaultAfterPreviousExecutionState(
+        update(key, new DefaultAfterPreviousExecutionState(
             originMetadata,
             implementation,
             additionalImplementations,
@@ -89,7 +122,56 @@ public void store(
 
     @Override
     public void remove(String key) {
-        store.remove(key);
+        update(key, null);
+    }
+
+    @Override
+    public void close() {
+        flushLock.lock();
+        try {
+            flushPendingUpdates();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void update(String key, @Nullable AfterPreviousExecutionState state) {
+        if (maxPendingUpdates <= 0) {
+            if (state == null) {
+                store.remove(key);
+            } else {
+                store.put(key, state);
+            }
+            return;
+        }
+        pendingUpdates.put(key, Optional.ofNullable(state));
+        // Only one thread needs to write the batch, the others can carry on
+        if (pendingUpdates.size() >= maxPendingUpdates && flushLock.tryLock()) {
+            try {
+                flushPendingUpdates();
+            } finally {
+                flushLock.unlock();
+            }
+        }
+    }
+
+    private void flushPendingUpdates() {
+        if (pendingUpdates.isEmpty()) {
+            return;
+        }
+        cache.useCache(() -> {
+            for (Map.Entry<String, Optional<AfterPreviousExecutionState>> entry : pendingUpdates.entrySet()) {
+                String key = entry.getKey();
+                Optional<AfterPreviousExecutionState> update = entry.getValue();
+                if (update.isPresent()) {
+                    store.put(key, update.get());
+                } else {
+                    store.remove(key);
+                }
+                // Keep the entry when it has been updated again in the meantime, so that the later update is written by the next batch
+                pendingUpdates.remove(key, update);
+            }
+        });
     }
 
     private static ImmutableSortedMap<String, FileCollectionFingerprint> prepareForSerialization(ImmutableSortedMap<String, CurrentFileCollectionFingerprint> fingerprints) {
@@ -17,6 +17,7 @@
 package org.gradle.internal.execution.history.impl;
 
 import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMultimap;
 import com.google.common.collect.Interner;
 import org.gradle.internal.fingerprint.FileCollectionFingerprint;
@@ -24,35 +25,48 @@
 import org.gradle.internal.hash.HashCode;
 import org.gradle.internal.serialize.Decoder;
 import org.gradle.internal.serialize.Encoder;
-import org.gradle.internal.serialize.HashCodeSerializer;
 import org.gradle.internal.serialize.Serializer;
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
+/**
+ * Serializes file collection fingerprints so that the fingerprints of the individual files are only read when needed.
+ *
+ * The root hashes are read eagerly, since they are enough to find out that nothing has changed.
+ * The fingerprints are kept in their serialized form, and only deserialized the first time they are requested.
+ */
 public class FileCollectionFingerprintSerializer implements Serializer<FileCollectionFingerprint> {
 
     private final FingerprintMapSerializer fingerprintMapSerializer;
     private final Interner<String> stringInterner;
-    private final HashCodeSerializer hashCodeSerializer;
 
     public FileCollectionFingerprintSerializer(Interner<String> stringInterner) {
         this.fingerprintMapSerializer = new FingerprintMapSerializer(stringInterner);
         this.stringInterner = stringInterner;
-        this.hashCodeSerializer = new HashCodeSerializer();
     }
 
     @Override
     public FileCollectionFingerprint read(Decoder decoder) throws IOException {
-        Map<String, FileSystemLocationFingerprint> fingerprints = fingerprintMapSerializer.read(decoder);
-        if (fingerprints.isEmpty()) {
+        int fingerprintCount = decoder.readSmallInt();
+        if (fingerprintCount == 0) {
             return FileCollectionFingerprint.EMPTY;
         }
-        ImmutableMultimap<String, HashCode> rootHashes = readRootHashes(decoder);
-        return new SerializableFileCollectionFingerprint(fingerprints, rootHashes);
+        List<HashCode> knownHashes = new ArrayList<>();
+        ImmutableMultimap<String, HashCode> rootHashes = readRootHashes(decoder, knownHashes);
+        byte[] serializedFingerprints = decoder.readBinary();
+        return new LazyFileCollectionFingerprint(fingerprintMapSerializer, serializedFingerprints, ImmutableList.copyOf(knownHashes), rootHashes);
     }
 
-    private ImmutableMultimap<String, HashCode> readRootHashes(Decoder decoder) throws IOException {
+    private ImmutableMultimap<String, HashCode> readRootHashes(Decoder decoder, List<HashCode> knownHashes) throws IOException {
         int numberOfRoots = decoder.readSmallInt();
         if (numberOfRoots == 0) {
             return ImmutableMultimap.of();
@@ -60,7 +74,7 @@ private ImmutableMultimap<String, HashCode> readRootHashes(Decoder decoder) thro
         ImmutableMultimap.Builder<String, HashCode> builder = ImmutableMultimap.builder();
         for (int i = 0; i < numberOfRoots; i++) {
             String absolutePath = stringInterner.intern(decoder.readString());
-            HashCode rootHash = hashCodeSerializer.read(decoder);
+            HashCode rootHash = fingerprintMapSerializer.readHashCode(decoder, knownHashes);
             builder.put(absolutePath, rootHash);
         }
         return builder.build();
@@ -68,17 +82,26 @@ private ImmutableMultimap<String, HashCode> readRootHashes(Decoder decoder) thro
 
     @Override
     public void write(Encoder encoder, FileCollectionFingerprint value) throws Exception {
-        fingerprintMapSerializer.write(encoder, value.getFingerprints());
-        if (!value.getFingerprints().isEmpty()) {
-            writeRootHashes(encoder, value.getRootHashes());
+        Map<String, FileSystemLocationFingerprint> fingerprints = value.getFingerprints();
+        encoder.writeSmallInt(fingerprints.size());
+        if (fingerprints.isEmpty()) {
+            return;
         }
+        // Hashes of single file roots are the same as the hashes of the files, so share them
+        Map<HashCode, Integer> knownHashes = new HashMap<>();
+        writeRootHashes(encoder, value.getRootHashes(), knownHashes);
+        ByteArrayOutputStream serializedFingerprints = new ByteArrayOutputStream();
+        try (KryoBackedEncoder fingerprintsEncoder = new KryoBackedEncoder(serializedFingerprints)) {
+            fingerprintMapSerializer.write(fingerprintsEncoder, fingerprints, knownHashes);
+        }
+        encoder.writeBinary(serializedFingerprints.toByteArray());
     }
 
-    private void writeRootHashes(Encoder encoder, ImmutableMultimap<String, HashCode> rootHashes) throws IOException {
+    private void writeRootHashes(Encoder encoder, ImmutableMultimap<String, HashCode> rootHashes, Map<HashCode, Integer> knownHashes) throws IOException {
         encoder.writeSmallInt(rootHashes.size());
         for (Map.Entry<String, HashCode> entry : rootHashes.entries()) {
             encoder.writeString(entry.getKey());
-            hashCodeSerializer.write(encoder, entry.getValue());
+            fingerprintMapSerializer.writeHashCode(encoder, entry.getValue(), knownHashes);
         }
     }
 
@@ -89,12 +112,44 @@ public boolean equals(Object obj) {
         }
 
         FileCollectionFingerprintSerializer rhs = (FileCollectionFingerprintSerializer) obj;
-        return Objects.equal(fingerprintMapSerializer, rhs.fingerprintMapSerializer)
-            && Objects.equal(hashCodeSerializer, rhs.hashCodeSerializer);
+        return Objects.equal(fingerprintMapSerializer, rhs.fingerprintMapSerializer);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hashCode(super.hashCode(), fingerprintMapSerializer, hashCodeSerializer);
+        return Objects.hashCode(super.hashCode(), fingerprintMapSerializer);
+    }
+
+    private static class LazyFileCollectionFingerprint implements FileCollectionFingerprint {
+        private final FingerprintMapSerializer fingerprintMapSerializer;
+        private final ImmutableList<HashCode> knownHashes;
+        private final ImmutableMultimap<String, HashCode> rootHashes;
+        private byte[] serializedFingerprints;
+        private Map<String, FileSystemLocationFingerprint> fingerprints;
+
+        LazyFileCollectionFingerprint(FingerprintMapSerializer fingerprintMapSerializer, byte[] serializedFingerprints, ImmutableList<HashCode> knownHashes, ImmutableMultimap<String, HashCode> rootHashes) {
+            this.fingerprintMapSerializer = fingerprintMapSerializer;
+            this.serializedFingerprints = serializedFingerprints;
+            this.knownHashes = knownHashes;
+            this.rootHashes = rootHashes;
+        }
+
+        @Override
+        public synchronized Map<String, FileSystemLocationFingerprint> getFingerprints() {
+            if (fingerprints == null) {
+                try (KryoBackedDecoder decoder = new KryoBackedDecoder(new ByteArrayInputStream(serializedFingerprints))) {
+                    fingerprints = fingerprintMapSerializer.read(decoder, new ArrayList<>(knownHashes));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                serializedFingerprints = null;
+            }
+            return fingerprints;
+        }
+
+        @Override
+        public ImmutableMultimap<String, HashCode> getRootHashes() {
+            return rootHashes;
+        }
     }
 }
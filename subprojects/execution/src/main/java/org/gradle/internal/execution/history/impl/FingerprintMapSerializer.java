@@ -30,16 +30,31 @@
 import org.gradle.internal.serialize.HashCodeSerializer;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
+/**
+ * Serializes fingerprints compactly.
+ *
+ * <ul>
+ *     <li>Absolute paths are written as the length of the prefix shared with the previous path, followed by the rest of the path.</li>
+ *     <li>Normalized paths that are a suffix of the absolute path, like relative paths and names, are written as their length.</li>
+ *     <li>Each distinct content hash is written once, and referred to by its index afterwards.</li>
+ * </ul>
+ */
 public class FingerprintMapSerializer extends AbstractSerializer<Map<String, FileSystemLocationFingerprint>> {
     private static final byte DEFAULT_NORMALIZATION = 1;
     private static final byte IGNORED_PATH_NORMALIZATION = 2;
+    private static final byte SUFFIX_NORMALIZATION = 3;
 
     private static final byte DIR_FINGERPRINT = 1;
     private static final byte MISSING_FILE_FINGERPRINT = 2;
     private static final byte REGULAR_FILE_FINGERPRINT = 3;
 
+    private static final int NEW_HASH = 0;
+
     private final HashCodeSerializer hashCodeSerializer = new HashCodeSerializer();
     private final Interner<String> stringInterner;
 
@@ -49,25 +64,41 @@ public FingerprintMapSerializer(Interner<String> stringInterner) {
 
     @Override
     public Map<String, FileSystemLocationFingerprint> read(Decoder decoder) throws IOException {
+        return read(decoder, new ArrayList<>());
+    }
+
+    /**
+     * Reads fingerprints written by {@link #write(Encoder, Map, Map)}.
+     *
+     * @param knownHashes the hashes known to the writer before writing the fingerprints, in the order of their indexes.
+     */
+    public Map<String, FileSystemLocationFingerprint> read(Decoder decoder, List<HashCode> knownHashes) throws IOException {
         int fingerprintCount = decoder.readSmallInt();
         ImmutableMap.Builder<String, FileSystemLocationFingerprint> fingerprints = ImmutableMap.builderWithExpectedSize(fingerprintCount);
+        String previousPath = "";
         for (int i = 0; i < fingerprintCount; i++) {
-            String absolutePath = stringInterner.intern(decoder.readString());
-            FileSystemLocationFingerprint fingerprint = readFingerprint(decoder);
+            int sharedPrefixLength = decoder.readSmallInt();
+            String absolutePath = stringInterner.intern(previousPath.substring(0, sharedPrefixLength) + decoder.readString());
+            FileSystemLocationFingerprint fingerprint = readFingerprint(decoder, absolutePath, knownHashes);
             fingerprints.put(absolutePath, fingerprint);
+            previousPath = absolutePath;
         }
         return fingerprints.build();
     }
 
-    private FileSystemLocationFingerprint readFingerprint(Decoder decoder) throws IOException {
+    private FileSystemLocationFingerprint readFingerprint(Decoder decoder, String absolutePath, List<HashCode> knownHashes) throws IOException {
         FileType fileType = readFileType(decoder);
-        HashCode contentHash = readContentHash(fileType, decoder);
+        HashCode contentHash = readContentHash(fileType, decoder, knownHashes);
 
         byte fingerprintKind = decoder.readByte();
         switch (fingerprintKind) {
             case DEFAULT_NORMALIZATION:
                 String normalizedPath = decoder.readString();
                 return new DefaultFileSystemLocationFingerprint(stringInterner.intern(normalizedPath), fileType, contentHash);
+            case SUFFIX_NORMALIZATION:
+                int normalizedPathLength = decoder.readSmallInt();
+                String suffix = absolutePath.substring(absolutePath.length() - normalizedPathLength);
+                return new DefaultFileSystemLocationFingerprint(stringInterner.intern(suffix), fileType, contentHash);
             case IGNORED_PATH_NORMALIZATION:
                 return IgnoredPathFileSystemLocationFingerprint.create(fileType, contentHash);
             default:
@@ -75,19 +106,32 @@ private FileSystemLocationFingerprint readFingerprint(Decoder decoder) throws IO
         }
     }
 
-    private HashCode readContentHash(FileType fileType, Decoder decoder) throws IOException {
+    private HashCode readContentHash(FileType fileType, Decoder decoder, List<HashCode> knownHashes) throws IOException {
         switch (fileType) {
             case Directory:
                 return FileSystemLocationFingerprint.DIR_SIGNATURE;
             case Missing:
                 return FileSystemLocationFingerprint.MISSING_FILE_SIGNATURE;
             case RegularFile:
-                return hashCodeSerializer.read(decoder);
+                return readHashCode(decoder, knownHashes);
             default:
                 throw new RuntimeException("Unable to read serialized file fingerprint. Unrecognized value found in the data stream.");
         }
     }
 
+    /**
+     * Reads a hash written by {@link #writeHashCode(Encoder, HashCode, Map)}.
+     */
+    HashCode readHashCode(Decoder decoder, List<HashCode> knownHashes) throws IOException {
+        int index = decoder.readSmallInt();
+        if (index == NEW_HASH) {
+            HashCode hash = hashCodeSerializer.read(decoder);
+            knownHashes.add(hash);
+            return hash;
+        }
+        return knownHashes.get(index - 1);
+    }
+
     private FileType readFileType(Decoder decoder) throws IOException {
         byte fileKind = decoder.readByte();
         switch (fileKind) {
@@ -104,11 +148,24 @@ private FileType readFileType(Decoder decoder) throws IOException {
 
     @Override
     public void write(Encoder encoder, Map<String, FileSystemLocationFingerprint> value) throws Exception {
+        write(encoder, value, new HashMap<>());
+    }
+
+    /**
+     * Writes the fingerprints, referring to hashes which have already been written by their index.
+     *
+     * @param knownHashes the indexes of the hashes written so far, updated with the hashes written for the fingerprints.
+     */
+    public void write(Encoder encoder, Map<String, FileSystemLocationFingerprint> value, Map<HashCode, Integer> knownHashes) throws IOException {
         encoder.writeSmallInt(value.size());
-        for (String key : value.keySet()) {
-            encoder.writeString(key);
-            FileSystemLocationFingerprint fingerprint = value.get(key);
-            writeFingerprint(encoder, fingerprint);
+        String previousPath = "";
+        for (Map.Entry<String, FileSystemLocationFingerprint> entry : value.entrySet()) {
+            String absolutePath = entry.getKey();
+            int sharedPrefixLength = sharedPrefixLength(previousPath, absolutePath);
+            encoder.writeSmallInt(sharedPrefixLength);
+            encoder.writeString(absolutePath.substring(sharedPrefixLength));
+            writeFingerprint(encoder, absolutePath, entry.getValue(), knownHashes);
+            previousPath = absolutePath;
         }
     }
 
@@ -127,7 +184,7 @@ public int hashCode() {
         return Objects.hashCode(super.hashCode(), hashCodeSerializer);
     }
 
-    private void writeFingerprint(Encoder encoder, FileSystemLocationFingerprint value) throws IOException {
+    private void writeFingerprint(Encoder encoder, String absolutePath, FileSystemLocationFingerprint value, Map<HashCode, Integer> knownHashes) throws IOException {
         switch (value.getType()) {
             case Directory:
                 encoder.writeByte(DIR_FINGERPRINT);
@@ -137,19 +194,49 @@ private void writeFingerprint(Encoder encoder, FileSystemLocationFingerprint val
                 break;
             case RegularFile:
                 encoder.writeByte(REGULAR_FILE_FINGERPRINT);
-                hashCodeSerializer.write(encoder, value.getNormalizedContentHash());
+                writeHashCode(encoder, value.getNormalizedContentHash(), knownHashes);
                 break;
             default:
                 throw new AssertionError();
         }
 
         if (value instanceof DefaultFileSystemLocationFingerprint) {
-            encoder.writeByte(DEFAULT_NORMALIZATION);
-            encoder.writeString(value.getNormalizedPath());
+            String normalizedPath = value.getNormalizedPath();
+            if (absolutePath.endsWith(normalizedPath)) {
+                encoder.writeByte(SUFFIX_NORMALIZATION);
+                encoder.writeSmallInt(normalizedPath.length());
+            } else {
+                encoder.writeByte(DEFAULT_NORMALIZATION);
+                encoder.writeString(normalizedPath);
+            }
         } else if (value instanceof IgnoredPathFileSystemLocationFingerprint) {
             encoder.writeByte(IGNORED_PATH_NORMALIZATION);
         } else {
             throw new AssertionError();
         }
     }
+
+    void writeHashCode(Encoder encoder, HashCode hash, Map<HashCode, Integer> knownHashes) throws IOException {
+        Integer index = knownHashes.get(hash);
+        if (index != null) {
+            encoder.writeSmallInt(index);
+        } else {
+            encoder.writeSmallInt(NEW_HASH);
+            hashCodeSerializer.write(encoder, hash);
+            knownHashes.put(hash, knownHashes.size() + 1);
+        }
+    }
+
+    private static int sharedPrefixLength(String previous, String current) {
+        int maxLength = Math.min(previous.length(), current.length());
+        int length = 0;
+        while (length < maxLength && previous.charAt(length) == current.charAt(length)) {
+            length++;
+        }
+        // Don't split surrogate pairs
+        if (length > 0 && Character.isHighSurrogate(current.charAt(length - 1))) {
+            length--;
+        }
+        return length;
+    }
 }
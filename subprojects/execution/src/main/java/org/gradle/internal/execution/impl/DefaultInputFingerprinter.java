@@ -19,23 +19,49 @@
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableSortedMap;
 import org.gradle.api.UncheckedIOException;
+import org.gradle.internal.UncheckedException;
 import org.gradle.internal.execution.InputFingerprinter;
 import org.gradle.internal.execution.UnitOfWork;
 import org.gradle.internal.fingerprint.CurrentFileCollectionFingerprint;
+import org.gradle.internal.operations.BuildOperationContext;
+import org.gradle.internal.operations.BuildOperationDescriptor;
+import org.gradle.internal.operations.BuildOperationExecutor;
+import org.gradle.internal.operations.BuildOperationQueue;
+import org.gradle.internal.operations.RunnableBuildOperation;
 import org.gradle.internal.snapshot.ValueSnapshot;
 import org.gradle.internal.snapshot.ValueSnapshotter;
 
 import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.function.Supplier;
 
 import static org.gradle.internal.execution.UnitOfWork.InputPropertyType.NON_INCREMENTAL;
 
 public class DefaultInputFingerprinter implements InputFingerprinter {
+    /**
+     * Enables fingerprinting the input file properties of a unit of work in parallel.
+     *
+     * The files of each property are resolved on the calling thread, since resolving them may require access to mutable project state.
+     * Only snapshotting and fingerprinting the resolved files happens on the build operation worker threads,
+     * and only for properties using a {@link UnitOfWork.ResolvingFileFingerprinter}.
+     */
+    public static final String PARALLEL_FINGERPRINTING_PROPERTY = "org.gradle.unsafe.parallel-input-fingerprinting";
 
     private final ValueSnapshotter valueSnapshotter;
+    private final BuildOperationExecutor buildOperationExecutor;
 
     public DefaultInputFingerprinter(ValueSnapshotter valueSnapshotter) {
+        this(valueSnapshotter, null);
+    }
+
+    /**
+     * Creates an input fingerprinter which fingerprints independent input file properties concurrently
+     * using the build operation worker pool when a build operation executor is given.
+     */
+    public DefaultInputFingerprinter(ValueSnapshotter valueSnapshotter, @Nullable BuildOperationExecutor buildOperationExecutor) {
         this.valueSnapshotter = valueSnapshotter;
+        this.buildOperationExecutor = buildOperationExecutor;
     }
 
     @Override
@@ -46,7 +72,7 @@ public Result fingerprintInputProperties(
         ImmutableSortedMap<String, CurrentFileCollectionFingerprint> knownFingerprints,
         InputPropertyPredicate filter
     ) {
-        InputCollectingVisitor visitor = new InputCollectingVisitor(work, previousValueSnapshots, valueSnapshotter, knownValueSnapshots, knownFingerprints, filter);
+        InputCollectingVisitor visitor = new InputCollectingVisitor(work, previousValueSnapshots, valueSnapshotter, buildOperationExecutor, knownValueSnapshots, knownFingerprints, filter);
         work.visitInputs(visitor);
         return visitor.complete();
     }
@@ -55,17 +81,20 @@ private static class InputCollectingVisitor implements UnitOfWork.InputVisitor {
         private final UnitOfWork work;
         private final ImmutableSortedMap<String, ValueSnapshot> previousValueSnapshots;
         private final ValueSnapshotter valueSnapshotter;
+        private final BuildOperationExecutor buildOperationExecutor;
         private final ImmutableSortedMap<String, ValueSnapshot> knownValueSnapshots;
         private final ImmutableSortedMap<String, CurrentFileCollectionFingerprint> knownFingerprints;
         private final InputPropertyPredicate filter;
 
         private final ImmutableSortedMap.Builder<String, ValueSnapshot> valueSnapshotsBuilder = ImmutableSortedMap.naturalOrder();
         private final ImmutableSortedMap.Builder<String, CurrentFileCollectionFingerprint> fingerprintsBuilder = ImmutableSortedMap.naturalOrder();
+        private final List<FingerprintInputFileProperty> pendingFingerprints = new ArrayList<>();
 
         public InputCollectingVisitor(
             UnitOfWork work,
             ImmutableSortedMap<String, ValueSnapshot> previousValueSnapshots,
             ValueSnapshotter valueSnapshotter,
+            @Nullable BuildOperationExecutor buildOperationExecutor,
             ImmutableSortedMap<String, ValueSnapshot> knownValueSnapshots,
             ImmutableSortedMap<String, CurrentFileCollectionFingerprint> knownFingerprints,
             InputPropertyPredicate filter
@@ -73,6 +102,7 @@ public InputCollectingVisitor(
             this.work = work;
             this.previousValueSnapshots = previousValueSnapshots;
             this.valueSnapshotter = valueSnapshotter;
+            this.buildOperationExecutor = buildOperationExecutor;
             this.knownValueSnapshots = knownValueSnapshots;
             this.knownFingerprints = knownFingerprints;
             this.filter = filter;
@@ -108,12 +138,67 @@ public void visitInputFileProperty(String propertyName, UnitOfWork.InputProperty
             if (!filter.include(propertyName, type, identity)) {
                 return;
             }
-            fingerprintsBuilder.put(propertyName, fingerprinter.get());
+            if (buildOperationExecutor != null && fingerprinter instanceof UnitOfWork.ResolvingFileFingerprinter) {
+                pendingFingerprints.add(new FingerprintInputFileProperty(work, propertyName, ((UnitOfWork.ResolvingFileFingerprinter) fingerprinter).resolve()));
+            } else {
+                fingerprintsBuilder.put(propertyName, fingerprinter.get());
+            }
         }
 
         public Result complete() {
+            fingerprintPendingProperties();
             return new InputFingerprints(valueSnapshotsBuilder.build(), fingerprintsBuilder.build());
         }
+
+        private void fingerprintPendingProperties() {
+            if (pendingFingerprints.isEmpty()) {
+                return;
+            }
+            if (pendingFingerprints.size() == 1) {
+                pendingFingerprints.get(0).fingerprint();
+            } else {
+                buildOperationExecutor.runAll((BuildOperationQueue<FingerprintInputFileProperty> queue) -> pendingFingerprints.forEach(queue::add));
+            }
+            // Report the failure of the first property in visiting order, regardless of which fingerprint finished first
+            for (FingerprintInputFileProperty operation : pendingFingerprints) {
+                if (operation.failure != null) {
+                    throw UncheckedException.throwAsUncheckedException(operation.failure);
+                }
+                fingerprintsBuilder.put(operation.propertyName, operation.fingerprint);
+            }
+        }
+    }
+
+    private static class FingerprintInputFileProperty implements RunnableBuildOperation {
+        private final UnitOfWork work;
+        private final String propertyName;
+        private final Supplier<CurrentFileCollectionFingerprint> fingerprinter;
+        private CurrentFileCollectionFingerprint fingerprint;
+        private Throwable failure;
+
+        public FingerprintInputFileProperty(UnitOfWork work, String propertyName, Supplier<CurrentFileCollectionFingerprint> fingerprinter) {
+            this.work = work;
+            this.propertyName = propertyName;
+            this.fingerprinter = fingerprinter;
+        }
+
+        @Override
+        public void run(BuildOperationContext context) {
+            fingerprint();
+        }
+
+        private void fingerprint() {
+            try {
+                fingerprint = fingerprinter.get();
+            } catch (Throwable t) {
+                failure = t;
+            }
+        }
+
+        @Override
+        public BuildOperationDescriptor.Builder description() {
+            return BuildOperationDescriptor.displayName("Fingerprint input property '" + propertyName + "' of " + work.getDisplayName());
+        }
     }
 
     @VisibleForTesting
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.execution.history.impl
+
+import com.google.common.collect.ImmutableList
+import com.google.common.collect.ImmutableSortedMap
+import org.gradle.api.internal.cache.StringInterner
+import org.gradle.cache.PersistentCache
+import org.gradle.cache.PersistentIndexedCache
+import org.gradle.cache.internal.InMemoryCacheDecoratorFactory
+import org.gradle.caching.internal.origin.OriginMetadata
+import org.gradle.internal.execution.history.AfterPreviousExecutionState
+import org.gradle.internal.snapshot.impl.ImplementationSnapshot
+import spock.lang.Specification
+
+class DefaultExecutionHistoryStoreTest extends Specification {
+    def indexedCache = Mock(PersistentIndexedCache)
+    def cache = Mock(PersistentCache) {
+        createCache(_) >> indexedCache
+    }
+    def inMemoryCacheDecoratorFactory = Stub(InMemoryCacheDecoratorFactory)
+
+    def "writes updates through when write behind is disabled"() {
+        def store = new DefaultExecutionHistoryStore({ cache }, inMemoryCacheDecoratorFactory, new StringInterner())
+
+        when:
+        store(store, "key")
+        store.remove("other")
+
+        then:
+        1 * indexedCache.put("key", _ as AfterPreviousExecutionState)
+        1 * indexedCache.remove("other")
+        0 * cache.useCache(_)
+    }
+
+    def "keeps pending updates in memory until batch is full"() {
+        def store = new DefaultExecutionHistoryStore({ cache }, inMemoryCacheDecoratorFactory, new StringInterner(), 3)
+
+        when:
+        store(store, "key")
+        store(store, "key")
+        store.remove("removed")
+
+        then:
+        store.load("key").present
+        !store.load("removed").present
+        0 * indexedCache._
+
+        when:
+        store(store, "other")
+
+        then:
+        1 * cache.useCache(_) >> { Runnable action -> action.run() }
+        1 * indexedCache.put("key", _)
+        1 * indexedCache.put("other", _)
+        1 * indexedCache.remove("removed")
+        0 * indexedCache._
+
+        when:
+        def loaded = store.load("key")
+
+        then:
+        1 * indexedCache.getIfPresent("key") >> Stub(AfterPreviousExecutionState)
+        loaded.present
+    }
+
+    def "writes pending updates on close"() {
+        def store = new DefaultExecutionHistoryStore({ cache }, inMemoryCacheDecoratorFactory, new StringInterner(), 100)
+        store(store, "key")
+
+        when:
+        store.close()
+
+        then:
+        1 * cache.useCache(_) >> { Runnable action -> action.run() }
+        1 * indexedCache.put("key", _)
+
+        when:
+        store.close()
+
+        then:
+        0 * cache.useCache(_)
+    }
+
+    private static void store(DefaultExecutionHistoryStore store, String key) {
+        store.store(
+            key,
+            new OriginMetadata("build-id", 1),
+            ImplementationSnapshot.of("SomeType", null),
+            ImmutableList.of(),
+            ImmutableSortedMap.of(),
+            ImmutableSortedMap.of(),
+            ImmutableSortedMap.of(),
+            true
+        )
+    }
+}
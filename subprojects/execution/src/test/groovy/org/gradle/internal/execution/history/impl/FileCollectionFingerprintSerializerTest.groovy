@@ -90,4 +90,28 @@ class FileCollectionFingerprintSerializerTest extends SerializerSpec {
         out.fingerprints.keySet() as List == ["/3", "/2", "/1"]
         out.rootHashes.keySet() as List == ["/3", "/2", "/1"]
     }
+
+    def "reads and writes fingerprints with shared paths and hashes"() {
+        def hash = HashCode.fromInt(1234)
+        def otherHash = HashCode.fromInt(5678)
+        def fingerprints = [
+            "/root/dir/a.txt": new DefaultFileSystemLocationFingerprint("dir/a.txt", FileType.RegularFile, hash),
+            "/root/dir/b.txt": new DefaultFileSystemLocationFingerprint("b.txt", FileType.RegularFile, hash),
+            "/root/other/b.txt": new DefaultFileSystemLocationFingerprint("renamed.txt", FileType.RegularFile, otherHash),
+            "/root/other/\u00e4\u00f6\ud83d\ude00": new DefaultFileSystemLocationFingerprint("\ud83d\ude00", FileType.RegularFile, hash),
+            "/root/other/\u00e4\u00f6\ud83d\ude01": new DefaultFileSystemLocationFingerprint("", FileType.Directory, FileSystemLocationFingerprint.DIR_SIGNATURE),
+        ]
+        def rootHashes = ImmutableMultimap.of("/root/dir", HashCode.fromInt(42), "/root/other/b.txt", otherHash)
+
+        when:
+        def out = serialize(new SerializableFileCollectionFingerprint(fingerprints, rootHashes), serializer)
+
+        then:
+        out.rootHashes == rootHashes
+        out.fingerprints.keySet() as List == fingerprints.keySet() as List
+        fingerprints.every { path, fingerprint ->
+            def read = out.fingerprints[path]
+            read.type == fingerprint.type && read.normalizedPath == fingerprint.normalizedPath && read.normalizedContentHash == fingerprint.normalizedContentHash
+        }
+    }
 }
@@ -21,10 +21,13 @@ import org.gradle.internal.execution.InputFingerprinter
 import org.gradle.internal.execution.InputFingerprinter.Result
 import org.gradle.internal.execution.UnitOfWork
 import org.gradle.internal.fingerprint.CurrentFileCollectionFingerprint
+import org.gradle.internal.operations.TestBuildOperationExecutor
 import org.gradle.internal.snapshot.ValueSnapshot
 import org.gradle.internal.snapshot.ValueSnapshotter
 import spock.lang.Specification
 
+import java.util.function.Supplier
+
 import static org.gradle.internal.execution.UnitOfWork.IdentityKind.NON_IDENTITY
 import static org.gradle.internal.execution.UnitOfWork.InputPropertyType.NON_INCREMENTAL
 
@@ -125,6 +128,104 @@ class DefaultInputFingerprinterTest extends Specification {
         result.fileFingerprints as Map == [:]
     }
 
+    def "fingerprints input file properties as separate build operations when running in parallel"() {
+        def buildOperationExecutor = new TestBuildOperationExecutor()
+        inputFingerprinter = new DefaultInputFingerprinter(valueSnapshotter, buildOperationExecutor)
+
+        when:
+        def result = fingerprintInputProperties()
+
+        then:
+        1 * work.visitInputs(_) >> { UnitOfWork.InputVisitor visitor ->
+            visitor.visitInputProperty("identity", UnitOfWork.IdentityKind.IDENTITY) { identityInput }
+            visitor.visitInputFileProperty("non-identity-file", NON_INCREMENTAL, NON_IDENTITY, Mock(Object), resolvingFingerprinter { nonIdentityFileInputFingerprint })
+            visitor.visitInputFileProperty("identity-file", NON_INCREMENTAL, UnitOfWork.IdentityKind.IDENTITY, Mock(Object), resolvingFingerprinter { identityFileInputFingerprint })
+        }
+        _ * work.displayName >> "work"
+        1 * valueSnapshotter.snapshot(identityInput) >> identityInputSnapshot
+        0 * _
+
+        then:
+        result.valueSnapshots as Map == ["identity": identityInputSnapshot]
+        result.fileFingerprints as Map == ["identity-file": identityFileInputFingerprint, "non-identity-file": nonIdentityFileInputFingerprint]
+        buildOperationExecutor.operations*.displayName == [
+            "Fingerprint input property 'non-identity-file' of work",
+            "Fingerprint input property 'identity-file' of work"
+        ]
+    }
+
+    def "reports failure of first input file property when running in parallel"() {
+        def buildOperationExecutor = new TestBuildOperationExecutor()
+        inputFingerprinter = new DefaultInputFingerprinter(valueSnapshotter, buildOperationExecutor)
+        def firstFailure = new RuntimeException("first")
+
+        when:
+        fingerprintInputProperties()
+
+        then:
+        1 * work.visitInputs(_) >> { UnitOfWork.InputVisitor visitor ->
+            visitor.visitInputFileProperty("first-file", NON_INCREMENTAL, NON_IDENTITY, Mock(Object), resolvingFingerprinter { throw firstFailure })
+            visitor.visitInputFileProperty("second-file", NON_INCREMENTAL, NON_IDENTITY, Mock(Object), resolvingFingerprinter { throw new RuntimeException("second") })
+        }
+        def ex = thrown(RuntimeException)
+        ex.is(firstFailure)
+    }
+
+    def "resolves input files on the calling thread before fingerprinting them in parallel"() {
+        def buildOperationExecutor = new TestBuildOperationExecutor()
+        inputFingerprinter = new DefaultInputFingerprinter(valueSnapshotter, buildOperationExecutor)
+        def callingThread = Thread.currentThread()
+        def events = []
+        def fingerprinter = { String propertyName, CurrentFileCollectionFingerprint fingerprint ->
+            { ->
+                events << "resolve $propertyName on ${Thread.currentThread() == callingThread ? 'calling thread' : 'worker'}".toString()
+                return { ->
+                    events << "fingerprint $propertyName".toString()
+                    fingerprint
+                } as Supplier<CurrentFileCollectionFingerprint>
+            } as UnitOfWork.ResolvingFileFingerprinter
+        }
+
+        when:
+        def result = fingerprintInputProperties()
+
+        then:
+        1 * work.visitInputs(_) >> { UnitOfWork.InputVisitor visitor ->
+            visitor.visitInputFileProperty("first-file", NON_INCREMENTAL, NON_IDENTITY, Mock(Object), fingerprinter("first-file", identityFileInputFingerprint))
+            visitor.visitInputFileProperty("second-file", NON_INCREMENTAL, NON_IDENTITY, Mock(Object), fingerprinter("second-file", nonIdentityFileInputFingerprint))
+        }
+        _ * work.displayName >> "work"
+        0 * _
+
+        then:
+        result.fileFingerprints as Map == ["first-file": identityFileInputFingerprint, "second-file": nonIdentityFileInputFingerprint]
+        events == [
+            "resolve first-file on calling thread",
+            "resolve second-file on calling thread",
+            "fingerprint first-file",
+            "fingerprint second-file"
+        ]
+    }
+
+    def "fingerprints input file properties which cannot be resolved separately on the calling thread when running in parallel"() {
+        def buildOperationExecutor = new TestBuildOperationExecutor()
+        inputFingerprinter = new DefaultInputFingerprinter(valueSnapshotter, buildOperationExecutor)
+
+        when:
+        def result = fingerprintInputProperties()
+
+        then:
+        1 * work.visitInputs(_) >> { UnitOfWork.InputVisitor visitor ->
+            visitor.visitInputFileProperty("first-file", NON_INCREMENTAL, NON_IDENTITY, Mock(Object)) { identityFileInputFingerprint }
+            visitor.visitInputFileProperty("second-file", NON_INCREMENTAL, NON_IDENTITY, Mock(Object)) { nonIdentityFileInputFingerprint }
+        }
+        0 * _
+
+        then:
+        result.fileFingerprints as Map == ["first-file": identityFileInputFingerprint, "second-file": nonIdentityFileInputFingerprint]
+        buildOperationExecutor.operations.empty
+    }
+
     private Result fingerprintInputProperties(
         ImmutableSortedMap<String, ValueSnapshot> previousValueSnapshots = ImmutableSortedMap.of(),
         ImmutableSortedMap<String, ValueSnapshot> knownValueSnapshots = ImmutableSortedMap.of(),
@@ -133,4 +234,8 @@ class DefaultInputFingerprinterTest extends Specification {
     ) {
         inputFingerprinter.fingerprintInputProperties(work, previousValueSnapshots, knownValueSnapshots, knownFingerprints, filter)
     }
+
+    private static UnitOfWork.ResolvingFileFingerprinter resolvingFingerprinter(Closure<CurrentFileCollectionFingerprint> fingerprinter) {
+        return { -> fingerprinter as Supplier<CurrentFileCollectionFingerprint> } as UnitOfWork.ResolvingFileFingerprinter
+    }
 }
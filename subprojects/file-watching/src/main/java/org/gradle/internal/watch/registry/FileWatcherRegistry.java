@@ -52,6 +52,14 @@ enum Type {
      */
     void registerWatchableHierarchy(File watchableHierarchy, SnapshotHierarchy root);
 
+    /**
+     * Whether the location is watched once it is in the virtual file system.
+     *
+     * This is the case for locations within watchable hierarchies which are not excluded from watching.
+     * Locations accessed via symlinks are never watched.
+     */
+    boolean isWatchable(File location);
+
     /**
      * Updates the watchers after changes to the root.
      *
@@ -74,6 +82,12 @@ enum Type {
      */
     FileWatchingStatistics getAndResetStatistics();
 
+    /**
+     * Get statistics about the hierarchies dropped by the last call to {@link #buildFinished(SnapshotHierarchy, int)}
+     * because of the maximum number of watched hierarchies.
+     */
+    RetentionStatistics getRetentionStatistics();
+
     /**
      * Configures debug logging.
      *
@@ -93,4 +107,21 @@ interface FileWatchingStatistics {
         int getNumberOfReceivedEvents();
         int getNumberOfWatchedHierarchies();
     }
+
+    interface RetentionStatistics {
+        RetentionStatistics NOTHING_DROPPED = new RetentionStatistics() {
+            @Override
+            public int getNumberOfDroppedHierarchies() {
+                return 0;
+            }
+
+            @Override
+            public int getNumberOfDroppedSnapshotEntries() {
+                return 0;
+            }
+        };
+
+        int getNumberOfDroppedHierarchies();
+        int getNumberOfDroppedSnapshotEntries();
+    }
 }
@@ -48,4 +48,18 @@ public interface FileWatcherUpdater {
     SnapshotHierarchy buildFinished(SnapshotHierarchy root, int maximumNumberOfWatchedHierarchies);
 
     Collection<Path> getWatchedHierarchies();
+
+    /**
+     * Statistics about the hierarchies dropped by the last call to {@link #buildFinished(SnapshotHierarchy, int)}.
+     *
+     * @see FileWatcherRegistry#getRetentionStatistics()
+     */
+    FileWatcherRegistry.RetentionStatistics getRetentionStatistics();
+
+    /**
+     * Whether the location is watched once it is in the virtual file system.
+     *
+     * @see FileWatcherRegistry#isWatchable(File)
+     */
+    boolean isWatchable(File location);
 }
@@ -135,6 +135,11 @@ public void registerWatchableHierarchy(File watchableHierarchy, SnapshotHierarch
         fileWatcherUpdater.registerWatchableHierarchy(watchableHierarchy, root);
     }
 
+    @Override
+    public boolean isWatchable(File location) {
+        return fileWatcherUpdater.isWatchable(location);
+    }
+
     @Override
     public void virtualFileSystemContentsChanged(Collection<FileSystemLocationSnapshot> removedSnapshots, Collection<FileSystemLocationSnapshot> addedSnapshots, SnapshotHierarchy root) {
         fileWatcherUpdater.virtualFileSystemContentsChanged(removedSnapshots, addedSnapshots, root);
@@ -187,6 +192,11 @@ public int getNumberOfWatchedHierarchies() {
         };
     }
 
+    @Override
+    public RetentionStatistics getRetentionStatistics() {
+        return fileWatcherUpdater.getRetentionStatistics();
+    }
+
     @Override
     public void setDebugLoggingEnabled(boolean debugLoggingEnabled) {
         java.util.logging.Logger.getLogger(NativeLogger.class.getName()).setLevel(debugLoggingEnabled
@@ -19,6 +19,7 @@
 import net.rubygrapefruit.platform.file.FileWatcher;
 import org.gradle.internal.snapshot.FileSystemLocationSnapshot;
 import org.gradle.internal.snapshot.SnapshotHierarchy;
+import org.gradle.internal.watch.registry.FileWatcherRegistry;
 import org.gradle.internal.watch.registry.FileWatcherUpdater;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -116,6 +117,16 @@ public Collection<Path> getWatchedHierarchies() {
         return watchedHierarchies.getWatchedRoots();
     }
 
+    @Override
+    public FileWatcherRegistry.RetentionStatistics getRetentionStatistics() {
+        return watchableHierarchies.getRetentionStatistics();
+    }
+
+    @Override
+    public boolean isWatchable(File location) {
+        return watchableHierarchies.isWatchable(location.getAbsolutePath());
+    }
+
     private void updateWatchedHierarchies(SnapshotHierarchy root) {
         Set<Path> oldWatchedRoots = watchedHierarchies.getWatchedRoots();
         watchedHierarchies.updateWatchedHierarchies(watchableHierarchies, root);
@@ -30,6 +30,7 @@
 import org.gradle.internal.snapshot.SnapshotHierarchy;
 import org.gradle.internal.snapshot.SnapshotVisitResult;
 import org.gradle.internal.watch.WatchingNotSupportedException;
+import org.gradle.internal.watch.registry.FileWatcherRegistry;
 import org.gradle.internal.watch.registry.FileWatcherUpdater;
 import org.gradle.internal.watch.registry.SnapshotCollectingDiffListener;
 import org.slf4j.Logger;
@@ -115,6 +116,16 @@ public Collection<Path> getWatchedHierarchies() {
         return watchableHierarchies.getWatchableHierarchies();
     }
 
+    @Override
+    public FileWatcherRegistry.RetentionStatistics getRetentionStatistics() {
+        return watchableHierarchies.getRetentionStatistics();
+    }
+
+    @Override
+    public boolean isWatchable(File location) {
+        return watchableHierarchies.isWatchable(location.getAbsolutePath());
+    }
+
     private boolean containsSnapshots(Path location, SnapshotHierarchy root) {
         CheckIfNonEmptySnapshotVisitor checkIfNonEmptySnapshotVisitor = new CheckIfNonEmptySnapshotVisitor(watchableHierarchies);
         root.visitSnapshotRoots(location.toString(), checkIfNonEmptySnapshotVisitor);
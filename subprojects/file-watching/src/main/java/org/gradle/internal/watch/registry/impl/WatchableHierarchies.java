@@ -23,6 +23,7 @@
 import org.gradle.internal.snapshot.FileSystemSnapshotHierarchyVisitor;
 import org.gradle.internal.snapshot.SnapshotHierarchy;
 import org.gradle.internal.snapshot.SnapshotVisitResult;
+import org.gradle.internal.watch.registry.FileWatcherRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -30,17 +31,39 @@
 import java.io.File;
 import java.nio.file.Path;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.function.Predicate;
 
+/**
+ * Keeps track of the hierarchies which may be watched.
+ *
+ * When there are more watched hierarchies than allowed at the end of a build, the least valuable hierarchies are dropped.
+ * The value of a hierarchy is the number of snapshot entries retained in it, weighted by how often the hierarchy has been used by recent builds.
+ * Hierarchies with the same value are dropped in least recently used order.
+ */
 public class WatchableHierarchies {
     private static final Logger LOGGER = LoggerFactory.getLogger(WatchableHierarchies.class);
 
+    /**
+     * How much of the reuse score of a hierarchy is kept for each build finishing.
+     */
+    private static final double REUSE_SCORE_DECAY = 0.5;
+
     private final Predicate<String> watchFilter;
 
-    private FileHierarchySet watchableHierarchies = DefaultFileHierarchySet.of();
+    private volatile FileHierarchySet watchableHierarchies = DefaultFileHierarchySet.of();
     private final Deque<Path> recentlyUsedHierarchies = new ArrayDeque<>();
+    private final Set<Path> hierarchiesUsedInCurrentBuild = new HashSet<>();
+    private final Map<Path, Double> reuseScores = new HashMap<>();
+    private FileWatcherRegistry.RetentionStatistics retentionStatistics = FileWatcherRegistry.RetentionStatistics.NOTHING_DROPPED;
 
     public WatchableHierarchies(Predicate<String> watchFilter) {
         this.watchFilter = watchFilter;
@@ -63,6 +86,7 @@ public void registerWatchableHierarchy(File watchableHierarchy, SnapshotHierarch
             recentlyUsedHierarchies.remove(watchableHierarchyPath);
             recentlyUsedHierarchies.addFirst(watchableHierarchyPath);
         }
+        hierarchiesUsedInCurrentBuild.add(watchableHierarchyPath);
         LOGGER.info("Now considering {} as hierarchies to watch", recentlyUsedHierarchies);
     }
 
@@ -76,6 +100,7 @@ public SnapshotHierarchy removeUnwatchedSnapshots(SnapshotHierarchy root, Invali
     @CheckReturnValue
     public SnapshotHierarchy removeWatchedHierarchiesOverLimit(SnapshotHierarchy root, Predicate<Path> isWatchedHierarchy, int maximumNumberOfWatchedHierarchies, Invalidator invalidator) {
         recentlyUsedHierarchies.removeIf(hierarchy -> !isWatchedHierarchy.test(hierarchy));
+        updateReuseScores();
         SnapshotHierarchy result = root;
         int toRemove = recentlyUsedHierarchies.size() - maximumNumberOfWatchedHierarchies;
         if (toRemove > 0) {
@@ -84,10 +109,17 @@ public SnapshotHierarchy removeWatchedHierarchiesOverLimit(SnapshotHierarchy roo
                 recentlyUsedHierarchies.size(),
                 maximumNumberOfWatchedHierarchies
             );
-            for (int i = 0; i < toRemove; i++) {
-                Path locationToRemove = recentlyUsedHierarchies.removeLast();
-                result = invalidator.invalidate(locationToRemove.toString(), result);
+            int droppedSnapshotEntries = 0;
+            for (RankedHierarchy hierarchyToRemove : rankByLeastValuable(root).subList(0, toRemove)) {
+                LOGGER.info("Dropping hierarchy {} with {} retained entries and reuse score {}", hierarchyToRemove.path, hierarchyToRemove.retainedEntries, hierarchyToRemove.reuseScore);
+                recentlyUsedHierarchies.remove(hierarchyToRemove.path);
+                reuseScores.remove(hierarchyToRemove.path);
+                droppedSnapshotEntries += hierarchyToRemove.retainedEntries;
+                result = invalidator.invalidate(hierarchyToRemove.path.toString(), result);
             }
+            retentionStatistics = new DefaultRetentionStatistics(toRemove, droppedSnapshotEntries);
+        } else {
+            retentionStatistics = FileWatcherRegistry.RetentionStatistics.NOTHING_DROPPED;
         }
         this.watchableHierarchies = DefaultFileHierarchySet.of(recentlyUsedHierarchies.stream().map(Path::toFile)::iterator);
         return result;
@@ -97,6 +129,87 @@ public Collection<Path> getWatchableHierarchies() {
         return recentlyUsedHierarchies;
     }
 
+    /**
+     * Statistics about the hierarchies dropped by the last call to {@link #removeWatchedHierarchiesOverLimit(SnapshotHierarchy, Predicate, int, Invalidator)}.
+     */
+    public FileWatcherRegistry.RetentionStatistics getRetentionStatistics() {
+        return retentionStatistics;
+    }
+
+    private void updateReuseScores() {
+        reuseScores.keySet().retainAll(recentlyUsedHierarchies);
+        for (Path hierarchy : recentlyUsedHierarchies) {
+            double decayedScore = reuseScores.getOrDefault(hierarchy, 0d) * REUSE_SCORE_DECAY;
+            reuseScores.put(hierarchy, hierarchiesUsedInCurrentBuild.contains(hierarchy) ? decayedScore + 1 : decayedScore);
+        }
+        hierarchiesUsedInCurrentBuild.clear();
+    }
+
+    private List<RankedHierarchy> rankByLeastValuable(SnapshotHierarchy root) {
+        List<RankedHierarchy> rankedHierarchies = new ArrayList<>(recentlyUsedHierarchies.size());
+        int recency = 0;
+        for (Path hierarchy : recentlyUsedHierarchies) {
+            rankedHierarchies.add(new RankedHierarchy(hierarchy, countRetainedEntries(hierarchy, root), reuseScores.get(hierarchy), recency++));
+        }
+        rankedHierarchies.sort(Comparator.comparingDouble(RankedHierarchy::getValue)
+            .thenComparing(Comparator.comparingInt(RankedHierarchy::getRecency).reversed()));
+        return rankedHierarchies;
+    }
+
+    private static int countRetainedEntries(Path hierarchy, SnapshotHierarchy root) {
+        int[] retainedEntries = new int[1];
+        root.visitSnapshotRoots(hierarchy.toString(), snapshotRoot -> snapshotRoot.accept(entrySnapshot -> {
+            retainedEntries[0]++;
+            return SnapshotVisitResult.CONTINUE;
+        }));
+        return retainedEntries[0];
+    }
+
+    private static class RankedHierarchy {
+        private final Path path;
+        private final int retainedEntries;
+        private final double reuseScore;
+        private final int recency;
+
+        public RankedHierarchy(Path path, int retainedEntries, double reuseScore, int recency) {
+            this.path = path;
+            this.retainedEntries = retainedEntries;
+            this.reuseScore = reuseScore;
+            this.recency = recency;
+        }
+
+        public double getValue() {
+            return retainedEntries * reuseScore;
+        }
+
+        /**
+         * The position in the recently used hierarchies, 0 being the most recently used one.
+         */
+        public int getRecency() {
+            return recency;
+        }
+    }
+
+    private static class DefaultRetentionStatistics implements FileWatcherRegistry.RetentionStatistics {
+        private final int numberOfDroppedHierarchies;
+        private final int numberOfDroppedSnapshotEntries;
+
+        public DefaultRetentionStatistics(int numberOfDroppedHierarchies, int numberOfDroppedSnapshotEntries) {
+            this.numberOfDroppedHierarchies = numberOfDroppedHierarchies;
+            this.numberOfDroppedSnapshotEntries = numberOfDroppedSnapshotEntries;
+        }
+
+        @Override
+        public int getNumberOfDroppedHierarchies() {
+            return numberOfDroppedHierarchies;
+        }
+
+        @Override
+        public int getNumberOfDroppedSnapshotEntries() {
+            return numberOfDroppedSnapshotEntries;
+        }
+    }
+
     private void checkThatNothingExistsInNewWatchableHierarchy(String watchableHierarchy, SnapshotHierarchy vfsRoot) {
         vfsRoot.visitSnapshotRoots(watchableHierarchy, snapshotRoot -> {
             if (!isInWatchableHierarchy(snapshotRoot.getAbsolutePath()) && !ignoredForWatching(snapshotRoot)) {
@@ -117,6 +230,10 @@ public boolean isInWatchableHierarchy(String path) {
         return watchableHierarchies.contains(path);
     }
 
+    public boolean isWatchable(String path) {
+        return watchFilter.test(path) && isInWatchableHierarchy(path);
+    }
+
     public boolean shouldWatch(FileSystemLocationSnapshot snapshot) {
         return !ignoredForWatching(snapshot) && isInWatchableHierarchy(snapshot.getAbsolutePath());
     }
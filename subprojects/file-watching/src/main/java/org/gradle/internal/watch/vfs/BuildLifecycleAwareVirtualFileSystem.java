@@ -47,6 +47,11 @@ public interface BuildLifecycleAwareVirtualFileSystem extends VirtualFileSystem
      */
     void registerWatchableHierarchy(File rootDirectoryForWatching);
 
+    /**
+     * Whether changes to the location are reported to {@link FileChangeListener}s once the location is in the virtual file system.
+     */
+    boolean isWatchable(File location);
+
     /**
      * Called when the build is finished.
      */
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.internal.watch.vfs;
+
+import org.gradle.internal.watch.registry.FileWatcherRegistry;
+
+import java.nio.file.Path;
+
+/**
+ * Receives the changes to the file system reported by file system watching.
+ */
+public interface FileChangeListener {
+    /**
+     * Called when a watched location changed.
+     *
+     * Changes to locations written by the current build are not reported.
+     */
+    void handleChange(FileWatcherRegistry.Type type, Path path);
+
+    /**
+     * Called when file system watching stopped because of an error, so no more changes will be reported.
+     */
+    void stopWatchingAfterError();
+}
@@ -23,4 +23,14 @@ public interface FileSystemWatchingStatistics {
     int getRetainedRegularFiles();
     int getRetainedDirectories();
     int getRetainedMissingFiles();
+
+    /**
+     * The number of hierarchies which stopped being watched since there were more watched hierarchies than allowed.
+     */
+    int getNumberOfDroppedHierarchies();
+
+    /**
+     * The number of snapshot entries removed from the virtual file system together with the dropped hierarchies.
+     */
+    int getNumberOfDroppedSnapshotEntries();
 }
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.watch.vfs;
+
+import org.gradle.internal.snapshot.FileSystemLocationSnapshot;
+import org.gradle.internal.snapshot.SnapshotHierarchy;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Keeps the contents of the virtual file system across daemons.
+ */
+public interface VirtualFileSystemCheckpoint {
+    VirtualFileSystemCheckpoint NONE = new VirtualFileSystemCheckpoint() {
+        @Override
+        public void save(SnapshotHierarchy root) {
+        }
+
+        @Override
+        public List<FileSystemLocationSnapshot> load() {
+            return Collections.emptyList();
+        }
+    };
+
+    /**
+     * Saves the snapshot roots of the given hierarchy, replacing the previous checkpoint.
+     */
+    void save(SnapshotHierarchy root);
+
+    /**
+     * Loads the snapshots from the last checkpoint which still match the file system.
+     */
+    List<FileSystemLocationSnapshot> load();
+}
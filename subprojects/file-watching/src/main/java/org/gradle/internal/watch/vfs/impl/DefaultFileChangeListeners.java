@@ -0,0 +1,52 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.internal.watch.vfs.impl;
+
+import org.gradle.internal.watch.registry.FileWatcherRegistry;
+import org.gradle.internal.watch.vfs.FileChangeListener;
+import org.gradle.internal.watch.vfs.FileChangeListeners;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class DefaultFileChangeListeners implements FileChangeListeners {
+    private final List<FileChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void addListener(FileChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void removeListener(FileChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public void broadcastChange(FileWatcherRegistry.Type type, Path path) {
+        for (FileChangeListener listener : listeners) {
+            listener.handleChange(type, path);
+        }
+    }
+
+    @Override
+    public void broadcastWatchingError() {
+        for (FileChangeListener listener : listeners) {
+            listener.stopWatchingAfterError();
+        }
+    }
+}
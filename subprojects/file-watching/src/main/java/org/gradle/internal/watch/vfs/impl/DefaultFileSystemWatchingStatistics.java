@@ -27,13 +27,16 @@
 
 public class DefaultFileSystemWatchingStatistics implements FileSystemWatchingStatistics {
     private final FileWatcherRegistry.FileWatchingStatistics fileWatchingStatistics;
+    private final FileWatcherRegistry.RetentionStatistics retentionStatistics;
     private final VirtualFileSystemStatistics vfsStatistics;
 
     public DefaultFileSystemWatchingStatistics(
         FileWatcherRegistry.FileWatchingStatistics fileWatchingStatistics,
+        FileWatcherRegistry.RetentionStatistics retentionStatistics,
         SnapshotHierarchy vfsRoot
     ) {
         this.fileWatchingStatistics = fileWatchingStatistics;
+        this.retentionStatistics = retentionStatistics;
         this.vfsStatistics = getStatistics(vfsRoot);
     }
 
@@ -62,6 +65,16 @@ public int getRetainedMissingFiles() {
         return vfsStatistics.getRetained(FileType.Missing);
     }
 
+    @Override
+    public int getNumberOfDroppedHierarchies() {
+        return retentionStatistics.getNumberOfDroppedHierarchies();
+    }
+
+    @Override
+    public int getNumberOfDroppedSnapshotEntries() {
+        return retentionStatistics.getNumberOfDroppedSnapshotEntries();
+    }
+
     private static VirtualFileSystemStatistics getStatistics(SnapshotHierarchy root) {
         EnumMultiset<FileType> retained = EnumMultiset.create(FileType.class);
         root.visitSnapshotRoots(snapshot -> snapshot.accept(entrySnapshot -> {
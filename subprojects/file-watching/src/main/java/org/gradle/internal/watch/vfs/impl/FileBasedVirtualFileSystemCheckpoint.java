@@ -0,0 +1,328 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.watch.vfs.impl;
+
+import org.gradle.internal.file.FileMetadata;
+import org.gradle.internal.file.FileMetadata.AccessType;
+import org.gradle.internal.file.FileType;
+import org.gradle.internal.file.Stat;
+import org.gradle.internal.file.impl.DefaultFileMetadata;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.snapshot.DirectorySnapshot;
+import org.gradle.internal.snapshot.FileSystemLocationSnapshot;
+import org.gradle.internal.snapshot.RegularFileSnapshot;
+import org.gradle.internal.snapshot.SnapshotHierarchy;
+import org.gradle.internal.snapshot.impl.DirectorySnapshotter;
+import org.gradle.internal.watch.vfs.VirtualFileSystemCheckpoint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Stores the snapshot roots of the virtual file system in a file.
+ *
+ * The checkpoint does not know which changes happened to the file system since it has been saved,
+ * so loading it checks every snapshot against the file system.
+ * Regular files need to have the same length, modification time and file key, like the inode number, when the file system provides one.
+ * Directories need to have the same children, ignoring the children excluded by the default excludes.
+ * Since file systems store modification times with limited precision, a file changed shortly after the checkpoint has been saved
+ * can have the same modification time as before. Files with a modification time close to or after the time the checkpoint was saved are therefore always snapshotted again.
+ * The checkpoint is ignored when the default excludes changed since it has been saved.
+ * A directory with changed contents is dropped, though the snapshots of its unchanged children are kept.
+ * Missing files are not stored, since checking them is as expensive as snapshotting them again.
+ */
+public class FileBasedVirtualFileSystemCheckpoint implements VirtualFileSystemCheckpoint {
+    private static final Logger LOGGER = LoggerFactory.getLogger(FileBasedVirtualFileSystemCheckpoint.class);
+
+    private static final int FORMAT_VERSION = 2;
+    // The coarsest precision of modification times of commonly used file systems, which is the one of FAT
+    private static final long MODIFICATION_TIME_PRECISION_MILLIS = 2000;
+    private static final String NO_FILE_KEY = "";
+    private static final byte REGULAR_FILE = 1;
+    private static final byte DIRECTORY = 2;
+
+    private final File checkpointFile;
+    private final Stat stat;
+    private final Supplier<List<String>> defaultExcludes;
+    // The file keys of the snapshots last saved or loaded, so saving only needs to read the file keys of new snapshots
+    private Map<RegularFileSnapshot, String> knownFileKeys = new IdentityHashMap<>();
+
+    public FileBasedVirtualFileSystemCheckpoint(File checkpointFile, Stat stat, Supplier<List<String>> defaultExcludes) {
+        this.checkpointFile = checkpointFile;
+        this.stat = stat;
+        this.defaultExcludes = defaultExcludes;
+    }
+
+    @Override
+    public void save(SnapshotHierarchy root) {
+        // Taken before writing any snapshot, so any change not reflected in the snapshots happens after this time
+        long saveTime = System.currentTimeMillis();
+        File parentDir = checkpointFile.getParentFile();
+        File tempFile = null;
+        try {
+            Files.createDirectories(parentDir.toPath());
+            tempFile = File.createTempFile(checkpointFile.getName(), ".tmp", parentDir);
+            Map<RegularFileSnapshot, String> fileKeys = new IdentityHashMap<>();
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+                output.writeInt(FORMAT_VERSION);
+                output.writeLong(saveTime);
+                List<String> excludes = defaultExcludes.get();
+                output.writeInt(excludes.size());
+                for (String exclude : excludes) {
+                    output.writeUTF(exclude);
+                }
+                List<FileSystemLocationSnapshot> snapshotRoots = new ArrayList<>();
+                root.visitSnapshotRoots(snapshotRoots::add);
+                for (FileSystemLocationSnapshot snapshotRoot : snapshotRoots) {
+                    if (snapshotRoot.getType() != FileType.Missing) {
+                        output.writeUTF(snapshotRoot.getAbsolutePath());
+                        writeSnapshot(snapshotRoot, output, fileKeys);
+                    }
+                }
+                // Absolute paths are never empty
+                output.writeUTF("");
+            }
+            knownFileKeys = fileKeys;
+            // Other daemons may be loading the checkpoint concurrently
+            Files.move(tempFile.toPath(), checkpointFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOGGER.info("Could not save virtual file system checkpoint to {}", checkpointFile, e);
+        } finally {
+            if (tempFile != null && tempFile.exists() && !tempFile.delete()) {
+                LOGGER.debug("Could not delete {}", tempFile);
+            }
+        }
+    }
+
+    @Override
+    public List<FileSystemLocationSnapshot> load() {
+        List<FileSystemLocationSnapshot> upToDateSnapshots = new ArrayList<>();
+        if (!checkpointFile.isFile()) {
+            return upToDateSnapshots;
+        }
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(checkpointFile)))) {
+            if (input.readInt() != FORMAT_VERSION) {
+                LOGGER.info("Ignoring virtual file system checkpoint {} with unknown format", checkpointFile);
+                return upToDateSnapshots;
+            }
+            long modificationTimeLimit = input.readLong() - MODIFICATION_TIME_PRECISION_MILLIS;
+            int excludeCount = input.readInt();
+            List<String> excludes = new ArrayList<>(excludeCount);
+            for (int i = 0; i < excludeCount; i++) {
+                excludes.add(input.readUTF());
+            }
+            if (!new HashSet<>(excludes).equals(new HashSet<>(defaultExcludes.get()))) {
+                LOGGER.info("Ignoring virtual file system checkpoint {} since the default excludes changed", checkpointFile);
+                return upToDateSnapshots;
+            }
+            DirectorySnapshotter.DefaultExcludes excludedNames = new DirectorySnapshotter.DefaultExcludes(excludes);
+            Map<RegularFileSnapshot, String> fileKeys = new IdentityHashMap<>();
+            while (true) {
+                String absolutePath = input.readUTF();
+                if (absolutePath.isEmpty()) {
+                    break;
+                }
+                FileSystemLocationSnapshot snapshotRoot = readSnapshot(absolutePath, input, fileKeys);
+                if (isUpToDate(snapshotRoot, excludedNames, modificationTimeLimit, fileKeys, upToDateSnapshots::add)) {
+                    upToDateSnapshots.add(snapshotRoot);
+                }
+            }
+            knownFileKeys = fileKeys;
+        } catch (IOException e) {
+            LOGGER.info("Could not load virtual file system checkpoint from {}", checkpointFile, e);
+            upToDateSnapshots.clear();
+        }
+        return upToDateSnapshots;
+    }
+
+    private void writeSnapshot(FileSystemLocationSnapshot snapshot, DataOutputStream output, Map<RegularFileSnapshot, String> fileKeys) throws IOException {
+        if (snapshot.getType() == FileType.RegularFile) {
+            RegularFileSnapshot fileSnapshot = (RegularFileSnapshot) snapshot;
+            FileMetadata metadata = fileSnapshot.getMetadata();
+            output.writeByte(REGULAR_FILE);
+            output.writeBoolean(metadata.getAccessType() == AccessType.VIA_SYMLINK);
+            writeHash(snapshot.getHash(), output);
+            output.writeLong(metadata.getLastModified());
+            output.writeLong(metadata.getLength());
+            String fileKey = knownFileKeys.get(fileSnapshot);
+            if (fileKey == null) {
+                fileKey = fileKeyOf(new File(snapshot.getAbsolutePath()));
+            }
+            fileKeys.put(fileSnapshot, fileKey);
+            output.writeUTF(fileKey);
+        } else {
+            List<FileSystemLocationSnapshot> children = ((DirectorySnapshot) snapshot).getChildren();
+            output.writeByte(DIRECTORY);
+            output.writeBoolean(snapshot.getAccessType() == AccessType.VIA_SYMLINK);
+            writeHash(snapshot.getHash(), output);
+            output.writeInt(children.size());
+            for (FileSystemLocationSnapshot child : children) {
+                output.writeUTF(child.getName());
+                writeSnapshot(child, output, fileKeys);
+            }
+        }
+    }
+
+    private static FileSystemLocationSnapshot readSnapshot(String absolutePath, DataInputStream input, Map<RegularFileSnapshot, String> fileKeys) throws IOException {
+        String name = nameOf(absolutePath);
+        byte type = input.readByte();
+        AccessType accessType = AccessType.viaSymlink(input.readBoolean());
+        HashCode hash = readHash(input);
+        switch (type) {
+            case REGULAR_FILE:
+                long lastModified = input.readLong();
+                long length = input.readLong();
+                String fileKey = input.readUTF();
+                RegularFileSnapshot fileSnapshot = new RegularFileSnapshot(absolutePath, name, hash, DefaultFileMetadata.file(lastModified, length, accessType));
+                fileKeys.put(fileSnapshot, fileKey);
+                return fileSnapshot;
+            case DIRECTORY:
+                int childCount = input.readInt();
+                List<FileSystemLocationSnapshot> children = new ArrayList<>(childCount);
+                String childPathPrefix = absolutePath.endsWith(File.separator) ? absolutePath : absolutePath + File.separatorChar;
+                for (int i = 0; i < childCount; i++) {
+                    children.add(readSnapshot(childPathPrefix + input.readUTF(), input, fileKeys));
+                }
+                return new DirectorySnapshot(absolutePath, name, accessType, hash, children);
+            default:
+                throw new IOException("Unknown snapshot type " + type);
+        }
+    }
+
+    /**
+     * Checks whether the snapshot still matches the file system.
+     *
+     * When only parts of a directory snapshot match the file system, the matching child snapshots are passed to the consumer.
+     */
+    private boolean isUpToDate(FileSystemLocationSnapshot snapshot, DirectorySnapshotter.DefaultExcludes excludedNames, long modificationTimeLimit, Map<RegularFileSnapshot, String> fileKeys, Consumer<FileSystemLocationSnapshot> upToDateDescendants) {
+        File file = new File(snapshot.getAbsolutePath());
+        FileMetadata currentMetadata;
+        try {
+            currentMetadata = stat.stat(file);
+        } catch (RuntimeException e) {
+            return false;
+        }
+        if (currentMetadata.getAccessType() != snapshot.getAccessType()) {
+            return false;
+        }
+        if (snapshot.getType() == FileType.RegularFile) {
+            FileMetadata metadata = ((RegularFileSnapshot) snapshot).getMetadata();
+            String fileKey = fileKeys.get(snapshot);
+            return currentMetadata.getType() == FileType.RegularFile
+                && metadata.getLastModified() < modificationTimeLimit
+                && currentMetadata.getLastModified() == metadata.getLastModified()
+                && currentMetadata.getLength() == metadata.getLength()
+                && (fileKey.equals(NO_FILE_KEY) || fileKey.equals(fileKeyOf(file)));
+        }
+        if (currentMetadata.getType() != FileType.Directory) {
+            return false;
+        }
+        List<FileSystemLocationSnapshot> children = ((DirectorySnapshot) snapshot).getChildren();
+        String[] currentChildNames = file.list();
+        boolean upToDate = currentChildNames != null && hasSameChildren(file, children, currentChildNames, excludedNames);
+        List<FileSystemLocationSnapshot> upToDateChildren = new ArrayList<>(children.size());
+        for (FileSystemLocationSnapshot child : children) {
+            if (isUpToDate(child, excludedNames, modificationTimeLimit, fileKeys, upToDateDescendants)) {
+                upToDateChildren.add(child);
+            } else {
+                upToDate = false;
+            }
+        }
+        if (!upToDate) {
+            upToDateChildren.forEach(upToDateDescendants);
+        }
+        return upToDate;
+    }
+
+    private boolean hasSameChildren(File directory, List<FileSystemLocationSnapshot> children, String[] currentChildNames, DirectorySnapshotter.DefaultExcludes excludedNames) {
+        Set<String> childNames = new HashSet<>(children.size());
+        for (FileSystemLocationSnapshot child : children) {
+            childNames.add(child.getName());
+        }
+        int matchingChildren = 0;
+        for (String currentChildName : currentChildNames) {
+            if (childNames.contains(currentChildName)) {
+                matchingChildren++;
+            } else if (!isExcluded(new File(directory, currentChildName), excludedNames)) {
+                return false;
+            }
+        }
+        return matchingChildren == childNames.size();
+    }
+
+    private boolean isExcluded(File file, DirectorySnapshotter.DefaultExcludes excludedNames) {
+        String name = file.getName();
+        try {
+            return stat.stat(file).getType() == FileType.Directory
+                ? excludedNames.excludeDir(name)
+                : excludedNames.excludeFile(name);
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the file key of the file, which identifies a replaced file with the same length and modification time as the original one.
+     */
+    private static String fileKeyOf(File file) {
+        try {
+            Object fileKey = Files.readAttributes(file.toPath(), BasicFileAttributes.class).fileKey();
+            return fileKey == null ? NO_FILE_KEY : fileKey.toString();
+        } catch (IOException | RuntimeException e) {
+            return NO_FILE_KEY;
+        }
+    }
+
+    private static String nameOf(String absolutePath) {
+        int lastSeparator = absolutePath.lastIndexOf(File.separatorChar);
+        if (lastSeparator < 0 || lastSeparator == absolutePath.length() - 1) {
+            return absolutePath;
+        }
+        return absolutePath.substring(lastSeparator + 1);
+    }
+
+    private static void writeHash(HashCode hash, DataOutputStream output) throws IOException {
+        byte[] bytes = hash.toByteArray();
+        output.writeByte(bytes.length);
+        output.write(bytes);
+    }
+
+    private static HashCode readHash(DataInputStream input) throws IOException {
+        byte[] bytes = new byte[input.readUnsignedByte()];
+        input.readFully(bytes);
+        return HashCode.fromBytes(bytes);
+    }
+}
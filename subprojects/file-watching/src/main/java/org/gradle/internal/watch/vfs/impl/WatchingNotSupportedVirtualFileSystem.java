@@ -79,6 +79,11 @@ public BuildOperationDescriptor.Builder description() {
     public void registerWatchableHierarchy(File rootDirectoryForWatching) {
     }
 
+    @Override
+    public boolean isWatchable(File location) {
+        return false;
+    }
+
     @Override
     public void beforeBuildFinished(WatchMode watchMode, VfsLogging vfsLogging, WatchLogging watchLogging, BuildOperationRunner buildOperationRunner, int maximumNumberOfWatchedHierarchies) {
         rootReference.update(vfsRoot -> buildOperationRunner.call(new CallableBuildOperation<SnapshotHierarchy>() {
@@ -22,6 +22,7 @@
 import org.gradle.internal.operations.BuildOperationDescriptor;
 import org.gradle.internal.operations.BuildOperationRunner;
 import org.gradle.internal.operations.CallableBuildOperation;
+import org.gradle.internal.snapshot.FileSystemLocationSnapshot;
 import org.gradle.internal.snapshot.FileSystemNode;
 import org.gradle.internal.snapshot.SnapshotHierarchy;
 import org.gradle.internal.vfs.impl.AbstractVirtualFileSystem;
@@ -34,8 +35,10 @@
 import org.gradle.internal.watch.vfs.BuildFinishedFileSystemWatchingBuildOperationType;
 import org.gradle.internal.watch.vfs.BuildLifecycleAwareVirtualFileSystem;
 import org.gradle.internal.watch.vfs.BuildStartedFileSystemWatchingBuildOperationType;
+import org.gradle.internal.watch.vfs.FileChangeListeners;
 import org.gradle.internal.watch.vfs.FileSystemWatchingStatistics;
 import org.gradle.internal.watch.vfs.VfsLogging;
+import org.gradle.internal.watch.vfs.VirtualFileSystemCheckpoint;
 import org.gradle.internal.watch.vfs.WatchLogging;
 import org.gradle.internal.watch.vfs.WatchMode;
 import org.slf4j.Logger;
@@ -46,6 +49,7 @@
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.function.Supplier;
 
@@ -57,21 +61,28 @@ public class WatchingVirtualFileSystem extends AbstractVirtualFileSystem impleme
     private final FileWatcherRegistryFactory watcherRegistryFactory;
     private final DaemonDocumentationIndex daemonDocumentationIndex;
     private final LocationsWrittenByCurrentBuild locationsWrittenByCurrentBuild;
+    private final VirtualFileSystemCheckpoint checkpoint;
+    private final FileChangeListeners fileChangeListeners;
     private final Set<File> watchableHierarchies = new HashSet<>();
 
-    private FileWatcherRegistry watchRegistry;
+    private volatile FileWatcherRegistry watchRegistry;
     private Exception reasonForNotWatchingFiles;
+    private SnapshotHierarchy lastCheckpointedRoot;
 
     public WatchingVirtualFileSystem(
         FileWatcherRegistryFactory watcherRegistryFactory,
         VfsRootReference rootReference,
         DaemonDocumentationIndex daemonDocumentationIndex,
-        LocationsWrittenByCurrentBuild locationsWrittenByCurrentBuild
+        LocationsWrittenByCurrentBuild locationsWrittenByCurrentBuild,
+        VirtualFileSystemCheckpoint checkpoint,
+        FileChangeListeners fileChangeListeners
     ) {
         super(rootReference);
         this.watcherRegistryFactory = watcherRegistryFactory;
         this.daemonDocumentationIndex = daemonDocumentationIndex;
         this.locationsWrittenByCurrentBuild = locationsWrittenByCurrentBuild;
+        this.checkpoint = checkpoint;
+        this.fileChangeListeners = fileChangeListeners;
     }
 
     @Override
@@ -99,7 +110,7 @@ public SnapshotHierarchy call(BuildOperationContext context) {
                     if (watchRegistry == null) {
                         context.setStatus("Starting file system watching");
                         startWatching(currentRoot);
-                        newRoot = currentRoot.empty();
+                        newRoot = restoreFromCheckpoint(currentRoot.empty(), vfsLogging);
                         statisticsSinceLastBuild = null;
                     } else {
                         FileWatcherRegistry.FileWatchingStatistics statistics = watchRegistry.getAndResetStatistics();
@@ -108,7 +119,7 @@ public SnapshotHierarchy call(BuildOperationContext context) {
                         } else {
                             newRoot = currentRoot;
                         }
-                        statisticsSinceLastBuild = new DefaultFileSystemWatchingStatistics(statistics, newRoot);
+                        statisticsSinceLastBuild = new DefaultFileSystemWatchingStatistics(statistics, FileWatcherRegistry.RetentionStatistics.NOTHING_DROPPED, newRoot);
                         if (vfsLogging == VfsLogging.VERBOSE) {
                             LOGGER.warn("Received {} file system events since last build while watching {} hierarchies",
                                 statisticsSinceLastBuild.getNumberOfReceivedEvents(),
@@ -170,6 +181,12 @@ public void registerWatchableHierarchy(File watchableHierarchy) {
         });
     }
 
+    @Override
+    public boolean isWatchable(File location) {
+        FileWatcherRegistry currentWatchRegistry = watchRegistry;
+        return currentWatchRegistry != null && currentWatchRegistry.isWatchable(location);
+    }
+
     @Override
     public void beforeBuildFinished(WatchMode watchMode, VfsLogging vfsLogging, WatchLogging watchLogging, BuildOperationRunner buildOperationRunner, int maximumNumberOfWatchedHierarchies) {
         rootReference.update(currentRoot -> buildOperationRunner.call(new CallableBuildOperation<SnapshotHierarchy>() {
@@ -189,12 +206,17 @@ public SnapshotHierarchy call(BuildOperationContext context) {
                         newRoot = currentRoot.empty();
                     } else {
                         FileWatcherRegistry.FileWatchingStatistics statistics = watchRegistry.getAndResetStatistics();
+                        FileWatcherRegistry.RetentionStatistics retentionStatistics;
                         if (hasDroppedStateBecauseOfErrorsReceivedWhileWatching(statistics)) {
                             newRoot = stopWatchingAndInvalidateHierarchy(currentRoot);
+                            retentionStatistics = FileWatcherRegistry.RetentionStatistics.NOTHING_DROPPED;
                         } else {
-                            newRoot = withWatcherChangeErrorHandling(currentRoot, () -> watchRegistry.buildFinished(currentRoot, maximumNumberOfWatchedHierarchies));
+                            FileWatcherRegistry currentWatchRegistry = watchRegistry;
+                            newRoot = withWatcherChangeErrorHandling(currentRoot, () -> currentWatchRegistry.buildFinished(currentRoot, maximumNumberOfWatchedHierarchies));
+                            retentionStatistics = currentWatchRegistry.getRetentionStatistics();
+                            saveCheckpoint(newRoot);
                         }
-                        statisticsDuringBuild = new DefaultFileSystemWatchingStatistics(statistics, newRoot);
+                        statisticsDuringBuild = new DefaultFileSystemWatchingStatistics(statistics, retentionStatistics, newRoot);
                         if (vfsLogging == VfsLogging.VERBOSE) {
                             LOGGER.warn("Received {} file system events during the current build while watching {} hierarchies",
                                 statisticsDuringBuild.getNumberOfReceivedEvents(),
@@ -204,6 +226,12 @@ public SnapshotHierarchy call(BuildOperationContext context) {
                                 statisticsDuringBuild.getRetainedDirectories(),
                                 statisticsDuringBuild.getRetainedMissingFiles()
                             );
+                            if (statisticsDuringBuild.getNumberOfDroppedHierarchies() > 0) {
+                                LOGGER.warn("Stopped watching {} hierarchies with {} retained entries to stay within the maximum number of watched hierarchies",
+                                    statisticsDuringBuild.getNumberOfDroppedHierarchies(),
+                                    statisticsDuringBuild.getNumberOfDroppedSnapshotEntries()
+                                );
+                            }
                         }
                     }
                     boolean stoppedWatchingDuringTheBuild = watchRegistry == null;
@@ -252,6 +280,7 @@ public void handleChange(FileWatcherRegistry.Type type, Path path) {
                             rootReference.update(root -> updateNotifyingListeners(
                                 diffListener -> root.invalidate(absolutePath, new VfsChangeLoggingNodeDiffListener(type, path, diffListener))
                             ));
+                            fileChangeListeners.broadcastChange(type, path);
                         }
                     } catch (Exception e) {
                         LOGGER.error("Error while processing file events", e);
@@ -272,6 +301,42 @@ public void stopWatchingAfterError() {
         }
     }
 
+    /**
+     * Restores the snapshots from the checkpoint which are still up-to-date.
+     *
+     * The snapshots are only watched once they are stored in the hierarchy, after they have been checked against the file system.
+     * So a change happening between checking a snapshot and registering the watch for it is not noticed.
+     */
+    private SnapshotHierarchy restoreFromCheckpoint(SnapshotHierarchy emptyRoot, VfsLogging vfsLogging) {
+        if (watchRegistry == null) {
+            return emptyRoot;
+        }
+        List<FileSystemLocationSnapshot> snapshots = checkpoint.load();
+        if (vfsLogging == VfsLogging.VERBOSE) {
+            LOGGER.warn("Restored {} snapshots from the virtual file system checkpoint", snapshots.size());
+        }
+        if (snapshots.isEmpty()) {
+            return emptyRoot;
+        }
+        SnapshotHierarchy newRoot = updateNotifyingListeners(diffListener -> {
+            SnapshotHierarchy root = emptyRoot;
+            for (FileSystemLocationSnapshot snapshot : snapshots) {
+                root = root.store(snapshot.getAbsolutePath(), snapshot, diffListener);
+            }
+            return root;
+        });
+        lastCheckpointedRoot = newRoot;
+        return newRoot;
+    }
+
+    private void saveCheckpoint(SnapshotHierarchy root) {
+        // The hierarchy is immutable, so there is nothing to save when it did not change since the last checkpoint
+        if (watchRegistry != null && root != lastCheckpointedRoot) {
+            checkpoint.save(root);
+            lastCheckpointedRoot = root;
+        }
+    }
+
     private static class VfsChangeLoggingNodeDiffListener implements SnapshotHierarchy.NodeDiffListener {
         private final FileWatcherRegistry.Type type;
         private final Path path;
@@ -354,6 +419,8 @@ private SnapshotHierarchy stopWatchingAndInvalidateHierarchy(SnapshotHierarchy c
             } catch (IOException ex) {
                 LOGGER.error("Unable to close file watcher registry", ex);
             }
+            // Listeners can't rely on being notified about changes any more
+            fileChangeListeners.broadcastWatchingError();
         }
         return currentRoot.empty();
     }
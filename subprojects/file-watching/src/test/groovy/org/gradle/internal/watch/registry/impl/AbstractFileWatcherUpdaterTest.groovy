@@ -219,6 +219,51 @@ abstract class AbstractFileWatcherUpdaterTest extends Specification {
 
         !vfsHasSnapshotsAt(oldestRegisteredWatchableHierarchy)
         vfsHasSnapshotsAt(newestRegisteredWatchableHierarchy)
+        updater.retentionStatistics.numberOfDroppedHierarchies == 1
+        updater.retentionStatistics.numberOfDroppedSnapshotEntries == 1
+    }
+
+    def "keeps watching hierarchies with more retained snapshots when maximum number of hierarchies to watch has been reached"() {
+        def largeWatchableHierarchy = file("largeWatchable").createDir()
+        def smallWatchableHierarchy = file("smallWatchable").createDir()
+        def largeHierarchyContents = largeWatchableHierarchy.createDir("contents")
+        (1..10).each { largeHierarchyContents.file("file${it}.txt").createFile() }
+
+        when:
+        registerWatchableHierarchies([largeWatchableHierarchy, smallWatchableHierarchy])
+        addSnapshot(snapshotDirectory(largeHierarchyContents))
+        addSnapshot(snapshotRegularFile(smallWatchableHierarchy.file("watched.txt").createFile()))
+        then:
+        _ * watcher.startWatching(_)
+
+        when:
+        buildFinished(1)
+        then:
+        _ * watcher.stopWatching(_)
+
+        vfsHasSnapshotsAt(largeWatchableHierarchy)
+        !vfsHasSnapshotsAt(smallWatchableHierarchy)
+        updater.retentionStatistics.numberOfDroppedHierarchies == 1
+        updater.retentionStatistics.numberOfDroppedSnapshotEntries == 1
+    }
+
+    def "keeps watching frequently used hierarchies when maximum number of hierarchies to watch has been reached"() {
+        def frequentlyUsedHierarchy = file("frequentlyUsed").createDir()
+        def onceUsedHierarchy = file("onceUsed").createDir()
+
+        when:
+        registerWatchableHierarchies([frequentlyUsedHierarchy])
+        addSnapshot(snapshotRegularFile(frequentlyUsedHierarchy.file("watched.txt").createFile()))
+        buildFinished()
+        registerWatchableHierarchies([frequentlyUsedHierarchy, onceUsedHierarchy])
+        addSnapshot(snapshotRegularFile(onceUsedHierarchy.file("watched.txt").createFile()))
+        buildFinished(1)
+        then:
+        _ * watcher.startWatching(_)
+        _ * watcher.stopWatching(_)
+
+        vfsHasSnapshotsAt(frequentlyUsedHierarchy)
+        !vfsHasSnapshotsAt(onceUsedHierarchy)
     }
 
     TestFile file(Object... path) {
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.watch.vfs.impl
+
+import org.gradle.api.internal.file.TestFiles
+import org.gradle.internal.snapshot.CaseSensitivity
+import org.gradle.internal.snapshot.FileSystemLocationSnapshot
+import org.gradle.internal.snapshot.FileSystemSnapshotHierarchyVisitor
+import org.gradle.internal.snapshot.SnapshotHierarchy
+import org.gradle.internal.snapshot.SnapshotVisitResult
+import org.gradle.internal.vfs.impl.DefaultSnapshotHierarchy
+import org.gradle.test.fixtures.file.CleanupTestDirectory
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.gradle.util.Requires
+import org.gradle.util.TestPrecondition
+import org.junit.Rule
+import spock.lang.Specification
+
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+
+@CleanupTestDirectory
+class FileBasedVirtualFileSystemCheckpointTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider temporaryFolder = new TestNameTestDirectoryProvider(getClass())
+
+    def checkpointFile = temporaryFolder.file("checkpoint/vfs.bin")
+    def defaultExcludes = []
+    def checkpoint = new FileBasedVirtualFileSystemCheckpoint(checkpointFile, TestFiles.fileSystem(), { defaultExcludes })
+    def root = temporaryFolder.createDir("root")
+
+    def setup() {
+        root.file("a.txt").text = "a"
+        root.file("sub/b.txt").text = "b"
+        root.file("sub/nested/c.txt").text = "c"
+        root.file("other/d.txt").text = "d"
+        // Files modified shortly before saving the checkpoint are never restored
+        [root.file("a.txt"), root.file("sub/b.txt"), root.file("sub/nested/c.txt"), root.file("other/d.txt")].each {
+            it.lastModified = System.currentTimeMillis() - 10_000
+        }
+    }
+
+    def "restores unchanged snapshots"() {
+        def snapshot = snapshot(root)
+        checkpoint.save(hierarchyOf(snapshot))
+
+        when:
+        def restored = checkpoint.load()
+        then:
+        restored.size() == 1
+        restored[0].absolutePath == root.absolutePath
+        restored[0].name == root.name
+        restored[0].hash == snapshot.hash
+        restored[0].isContentAndMetadataUpToDate(snapshot)
+        descendantPaths(restored[0]) == descendantPaths(snapshot)
+    }
+
+    def "does not restore changed files"() {
+        def file = root.file("a.txt")
+        checkpoint.save(hierarchyOf(snapshot(file), snapshot(root.file("other"))))
+
+        when:
+        file.text = "changed"
+        def restored = checkpoint.load()
+        then:
+        restored*.absolutePath == [root.file("other").absolutePath]
+    }
+
+    def "does not restore files modified shortly before the checkpoint has been saved"() {
+        def file = root.file("a.txt")
+        file.lastModified = System.currentTimeMillis()
+        checkpoint.save(hierarchyOf(snapshot(file), snapshot(root.file("other"))))
+
+        when:
+        def restored = checkpoint.load()
+        then:
+        restored*.absolutePath == [root.file("other").absolutePath]
+    }
+
+    @Requires(TestPrecondition.NOT_WINDOWS)
+    def "does not restore files replaced by a file with the same length and modification time"() {
+        def file = root.file("a.txt")
+        checkpoint.save(hierarchyOf(snapshot(file), snapshot(root.file("other"))))
+
+        when:
+        def replacement = root.file("replacement.txt")
+        replacement.text = "b"
+        replacement.lastModified = file.lastModified()
+        Files.move(replacement.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING)
+        def restored = checkpoint.load()
+        then:
+        restored*.absolutePath == [root.file("other").absolutePath]
+    }
+
+    @Requires(TestPrecondition.NOT_WINDOWS)
+    def "keeps file keys of restored snapshots when saving them again"() {
+        def file = root.file("a.txt")
+        checkpoint.save(hierarchyOf(snapshot(file), snapshot(root.file("other"))))
+        checkpoint.save(hierarchyOf(checkpoint.load() as FileSystemLocationSnapshot[]))
+
+        when:
+        def replacement = root.file("replacement.txt")
+        replacement.text = "b"
+        replacement.lastModified = file.lastModified()
+        Files.move(replacement.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING)
+        def restored = new FileBasedVirtualFileSystemCheckpoint(checkpointFile, TestFiles.fileSystem(), { defaultExcludes }).load()
+        then:
+        restored*.absolutePath == [root.file("other").absolutePath]
+    }
+
+    def "keeps unchanged children of changed directories"() {
+        checkpoint.save(hierarchyOf(snapshot(root)))
+
+        when:
+        root.file("sub/new.txt").text = "new"
+        root.file("a.txt").text = "changed"
+        def restored = checkpoint.load()
+        then:
+        restored*.absolutePath as Set == [root.file("sub/nested"), root.file("sub/b.txt"), root.file("other")]*.absolutePath as Set
+    }
+
+    def "does not restore directories with removed children"() {
+        checkpoint.save(hierarchyOf(snapshot(root.file("sub"))))
+
+        when:
+        root.file("sub/b.txt").delete()
+        def restored = checkpoint.load()
+        then:
+        restored*.absolutePath == [root.file("sub/nested").absolutePath]
+    }
+
+    def "ignores children excluded by default excludes"() {
+        defaultExcludes = ["**/.gitignore"]
+        checkpoint.save(hierarchyOf(snapshot(root)))
+
+        when:
+        root.file(".gitignore").text = "ignored"
+        def restored = checkpoint.load()
+        then:
+        restored*.absolutePath == [root.absolutePath]
+    }
+
+    def "ignores checkpoint when default excludes changed"() {
+        checkpoint.save(hierarchyOf(snapshot(root)))
+
+        when:
+        defaultExcludes = ["**/.gitignore"]
+        then:
+        checkpoint.load().empty
+    }
+
+    def "ignores missing or corrupt checkpoint"() {
+        expect:
+        checkpoint.load().empty
+
+        when:
+        checkpointFile.parentFile.mkdirs()
+        checkpointFile.text = "not a checkpoint"
+        then:
+        checkpoint.load().empty
+    }
+
+    private static FileSystemLocationSnapshot snapshot(File location) {
+        TestFiles.fileSystemAccess().read(location.absolutePath, { it })
+    }
+
+    private static SnapshotHierarchy hierarchyOf(FileSystemLocationSnapshot... snapshots) {
+        SnapshotHierarchy hierarchy = DefaultSnapshotHierarchy.empty(CaseSensitivity.CASE_SENSITIVE)
+        snapshots.each { hierarchy = hierarchy.store(it.absolutePath, it, SnapshotHierarchy.NodeDiffListener.NOOP) }
+        return hierarchy
+    }
+
+    private static List<String> descendantPaths(FileSystemLocationSnapshot snapshot) {
+        def paths = []
+        snapshot.accept({ FileSystemLocationSnapshot entry ->
+            paths << entry.absolutePath
+            return SnapshotVisitResult.CONTINUE
+        } as FileSystemSnapshotHierarchyVisitor)
+        return paths
+    }
+}
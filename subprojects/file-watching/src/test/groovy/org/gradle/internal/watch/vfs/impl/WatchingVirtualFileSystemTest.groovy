@@ -16,7 +16,9 @@
 
 package org.gradle.internal.watch.vfs.impl
 
+import org.gradle.internal.file.FileMetadata
 import org.gradle.internal.operations.TestBuildOperationExecutor
+import org.gradle.internal.snapshot.MissingFileSnapshot
 import org.gradle.internal.snapshot.CaseSensitivity
 import org.gradle.internal.snapshot.SnapshotHierarchy
 import org.gradle.internal.vfs.impl.DefaultSnapshotHierarchy
@@ -24,11 +26,15 @@ import org.gradle.internal.vfs.impl.VfsRootReference
 import org.gradle.internal.watch.registry.FileWatcherRegistry
 import org.gradle.internal.watch.registry.FileWatcherRegistryFactory
 import org.gradle.internal.watch.registry.impl.DaemonDocumentationIndex
+import org.gradle.internal.watch.vfs.FileChangeListener
 import org.gradle.internal.watch.vfs.VfsLogging
+import org.gradle.internal.watch.vfs.VirtualFileSystemCheckpoint
 import org.gradle.internal.watch.vfs.WatchLogging
 import org.gradle.internal.watch.vfs.WatchMode
 import spock.lang.Specification
 
+import java.nio.file.Paths
+
 class WatchingVirtualFileSystemTest extends Specification {
     def watcherRegistryFactory = Mock(FileWatcherRegistryFactory)
     def watcherRegistry = Mock(FileWatcherRegistry)
@@ -40,11 +46,14 @@ class WatchingVirtualFileSystemTest extends Specification {
     def daemonDocumentationIndex = Mock(DaemonDocumentationIndex)
     def locationsUpdatedByCurrentBuild = Mock(LocationsWrittenByCurrentBuild)
     def buildOperationRunner = new TestBuildOperationExecutor()
+    def fileChangeListeners = new DefaultFileChangeListeners()
     def watchingVirtualFileSystem = new WatchingVirtualFileSystem(
         watcherRegistryFactory,
         rootReference,
         daemonDocumentationIndex,
-        locationsUpdatedByCurrentBuild
+        locationsUpdatedByCurrentBuild,
+        VirtualFileSystemCheckpoint.NONE,
+        fileChangeListeners
     )
 
     def "invalidates the virtual file system before and after the build when watching is disabled"() {
@@ -78,6 +87,7 @@ class WatchingVirtualFileSystemTest extends Specification {
         then:
         1 * watcherRegistry.getAndResetStatistics() >> Stub(FileWatcherRegistry.FileWatchingStatistics)
         1 * watcherRegistry.buildFinished(_, Integer.MAX_VALUE) >> rootReference.getRoot()
+        1 * watcherRegistry.getRetentionStatistics() >> FileWatcherRegistry.RetentionStatistics.NOTHING_DROPPED
         0 * _
 
         when:
@@ -103,6 +113,7 @@ class WatchingVirtualFileSystemTest extends Specification {
         then:
         1 * watcherRegistry.getAndResetStatistics() >> Stub(FileWatcherRegistry.FileWatchingStatistics)
         1 * watcherRegistry.buildFinished(_, Integer.MAX_VALUE) >> rootReference.getRoot()
+        1 * watcherRegistry.getRetentionStatistics() >> FileWatcherRegistry.RetentionStatistics.NOTHING_DROPPED
         0 * _
 
         when:
@@ -144,6 +155,7 @@ class WatchingVirtualFileSystemTest extends Specification {
         then:
         1 * watcherRegistry.getAndResetStatistics() >> Stub(FileWatcherRegistry.FileWatchingStatistics)
         1 * watcherRegistry.buildFinished(_, Integer.MAX_VALUE) >> rootReference.getRoot()
+        1 * watcherRegistry.getRetentionStatistics() >> FileWatcherRegistry.RetentionStatistics.NOTHING_DROPPED
         0 * _
 
         when:
@@ -151,4 +163,83 @@ class WatchingVirtualFileSystemTest extends Specification {
         then:
         1 * watcherRegistry.registerWatchableHierarchy(newWatchableHierarchy, _)
     }
+
+    def "notifies file change listeners about changes not written by the current build"() {
+        def listener = Mock(FileChangeListener)
+        fileChangeListeners.addListener(listener)
+        FileWatcherRegistry.ChangeHandler changeHandler = null
+        def changedPath = Paths.get("/some/changed")
+        def writtenPath = Paths.get("/some/written")
+
+        when:
+        watchingVirtualFileSystem.afterBuildStarted(WatchMode.ENABLED, VfsLogging.NORMAL, WatchLogging.NORMAL, buildOperationRunner)
+        then:
+        1 * watcherRegistryFactory.createFileWatcherRegistry(_) >> { args ->
+            changeHandler = args[0]
+            watcherRegistry
+        }
+        1 * watcherRegistry.setDebugLoggingEnabled(false)
+        0 * _
+
+        when:
+        changeHandler.handleChange(FileWatcherRegistry.Type.MODIFIED, changedPath)
+        changeHandler.handleChange(FileWatcherRegistry.Type.MODIFIED, writtenPath)
+        then:
+        1 * locationsUpdatedByCurrentBuild.wasLocationWritten(changedPath.toString()) >> false
+        1 * locationsUpdatedByCurrentBuild.wasLocationWritten(writtenPath.toString()) >> true
+        1 * listener.handleChange(FileWatcherRegistry.Type.MODIFIED, changedPath)
+        0 * listener._
+
+        when:
+        changeHandler.stopWatchingAfterError()
+        then:
+        1 * watcherRegistry.close()
+        1 * listener.stopWatchingAfterError()
+        0 * listener._
+    }
+
+    def "restores the checkpoint after starting to watch and saves it when the build finishes"() {
+        def checkpoint = Mock(VirtualFileSystemCheckpoint)
+        def checkpointingVirtualFileSystem = new WatchingVirtualFileSystem(
+            watcherRegistryFactory,
+            rootReference,
+            daemonDocumentationIndex,
+            locationsUpdatedByCurrentBuild,
+            checkpoint,
+            fileChangeListeners
+        )
+        def restoredSnapshot = new MissingFileSnapshot("/some/location", FileMetadata.AccessType.DIRECT)
+
+        when:
+        checkpointingVirtualFileSystem.afterBuildStarted(WatchMode.ENABLED, VfsLogging.NORMAL, WatchLogging.NORMAL, buildOperationRunner)
+        then:
+        1 * watcherRegistryFactory.createFileWatcherRegistry(_) >> watcherRegistry
+        then:
+        1 * checkpoint.load() >> [restoredSnapshot]
+        1 * watcherRegistry.virtualFileSystemContentsChanged([], [restoredSnapshot], _)
+        1 * watcherRegistry.setDebugLoggingEnabled(false)
+        0 * _
+
+        rootReference.getRoot().getSnapshot("/some/location").get() == restoredSnapshot
+
+        when:
+        checkpointingVirtualFileSystem.beforeBuildFinished(WatchMode.ENABLED, VfsLogging.NORMAL, WatchLogging.NORMAL, buildOperationRunner, Integer.MAX_VALUE)
+        then:
+        1 * watcherRegistry.getAndResetStatistics() >> Stub(FileWatcherRegistry.FileWatchingStatistics)
+        1 * watcherRegistry.buildFinished(_, Integer.MAX_VALUE) >> emptySnapshotHierarchy
+        1 * watcherRegistry.getRetentionStatistics() >> FileWatcherRegistry.RetentionStatistics.NOTHING_DROPPED
+        1 * checkpoint.save(emptySnapshotHierarchy)
+        0 * _
+
+        when:
+        checkpointingVirtualFileSystem.afterBuildStarted(WatchMode.ENABLED, VfsLogging.NORMAL, WatchLogging.NORMAL, buildOperationRunner)
+        checkpointingVirtualFileSystem.beforeBuildFinished(WatchMode.ENABLED, VfsLogging.NORMAL, WatchLogging.NORMAL, buildOperationRunner, Integer.MAX_VALUE)
+        then:
+        2 * watcherRegistry.getAndResetStatistics() >> Stub(FileWatcherRegistry.FileWatchingStatistics)
+        1 * watcherRegistry.setDebugLoggingEnabled(false)
+        1 * watcherRegistry.buildFinished(_, Integer.MAX_VALUE) >> emptySnapshotHierarchy
+        1 * watcherRegistry.getRetentionStatistics() >> FileWatcherRegistry.RetentionStatistics.NOTHING_DROPPED
+        0 * checkpoint.save(_)
+        0 * _
+    }
 }
@@ -39,4 +39,9 @@ public interface ZipEntry {
      * The size of the content in bytes, or -1 if not known.
      */
     int size();
+
+    /**
+     * The CRC-32 checksum of the content, or -1 if not known.
+     */
+    long getCrc();
 }
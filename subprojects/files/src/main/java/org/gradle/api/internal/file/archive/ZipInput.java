@@ -18,6 +18,11 @@
 
 import java.io.Closeable;
 
+/**
+ * The entries of a zip file.
+ *
+ * An entry may only be used until the iteration moves to the next entry.
+ */
 public interface ZipInput extends Iterable<ZipEntry>, Closeable {
 
 }
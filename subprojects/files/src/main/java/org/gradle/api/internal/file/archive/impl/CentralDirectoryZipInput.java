@@ -0,0 +1,448 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.file.archive.impl;
+
+import com.google.common.collect.AbstractIterator;
+import org.gradle.api.internal.file.archive.ZipEntry;
+import org.gradle.api.internal.file.archive.ZipInput;
+import org.gradle.internal.file.FileException;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Reads the entries of a zip file from its central directory.
+ *
+ * The central directory is read with a single read, and the entries are iterated by moving a cursor over it.
+ * Apart from the entry names, iterating does not allocate any objects per entry, so the returned {@link ZipEntry}
+ * is only valid until the iteration moves to the next entry.
+ * All entries share a single {@link Inflater} and a single buffer for the compressed content.
+ *
+ * Zip64 archives and archives with data before the first entry are not supported, see {@link #tryOpen(File)}.
+ */
+public class CentralDirectoryZipInput implements ZipInput {
+    private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+    private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int CENTRAL_DIRECTORY_HEADER_SIGNATURE = 0x02014b50;
+    private static final int LOCAL_FILE_HEADER_SIGNATURE = 0x04034b50;
+    private static final int END_OF_CENTRAL_DIRECTORY_LENGTH = 22;
+    private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_LENGTH = 20;
+    private static final int CENTRAL_DIRECTORY_HEADER_LENGTH = 46;
+    private static final int LOCAL_FILE_HEADER_LENGTH = 30;
+    private static final int MAX_COMMENT_LENGTH = 0xFFFF;
+    private static final int ZIP64_MAGIC_COUNT = 0xFFFF;
+    private static final long ZIP64_MAGIC_VALUE = 0xFFFFFFFFL;
+    private static final int ZIP64_EXTRA_FIELD_ID = 0x0001;
+    private static final int ENCRYPTED_FLAG = 1;
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+    private static final int BUFFER_SIZE = 8192;
+    // java.util.zip.ZipFile decodes names as UTF-8 as well, regardless of the language encoding flag
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final ByteBuffer centralDirectory;
+    private final ByteBuffer localFileHeader = ByteBuffer.allocate(LOCAL_FILE_HEADER_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private final Inflater inflater = new Inflater(true);
+
+    /**
+     * Opens the given zip file. Caller is responsible for closing the return value.
+     *
+     * @return the opened zip file, or {@code null} if the format of the zip file is not supported.
+     * @throws FileException on failure to open the Zip
+     */
+    @Nullable
+    public static CentralDirectoryZipInput tryOpen(File file) throws FileException {
+        RandomAccessFile randomAccessFile;
+        try {
+            randomAccessFile = new RandomAccessFile(file, "r");
+        } catch (FileNotFoundException e) {
+            throw new FileException(e);
+        }
+        CentralDirectoryZipInput zipInput = null;
+        try {
+            ByteBuffer centralDirectory = readCentralDirectory(randomAccessFile.getChannel());
+            if (centralDirectory != null) {
+                zipInput = new CentralDirectoryZipInput(randomAccessFile, centralDirectory);
+            }
+            return zipInput;
+        } catch (IOException e) {
+            throw new FileException(e);
+        } finally {
+            if (zipInput == null) {
+                closeQuietly(randomAccessFile);
+            }
+        }
+    }
+
+    private CentralDirectoryZipInput(RandomAccessFile file, ByteBuffer centralDirectory) {
+        this.file = file;
+        this.channel = file.getChannel();
+        this.centralDirectory = centralDirectory;
+    }
+
+    @Nullable
+    private static ByteBuffer readCentralDirectory(FileChannel channel) throws IOException {
+        long fileLength = channel.size();
+        if (fileLength < END_OF_CENTRAL_DIRECTORY_LENGTH) {
+            throw new ZipException("zip file is empty");
+        }
+        int tailLength = (int) Math.min(fileLength, END_OF_CENTRAL_DIRECTORY_LENGTH + MAX_COMMENT_LENGTH);
+        long tailOffset = fileLength - tailLength;
+        ByteBuffer tail = readFully(channel, tailOffset, tailLength);
+        int endOfCentralDirectory = findEndOfCentralDirectory(tail);
+        if (endOfCentralDirectory < 0) {
+            throw new ZipException("zip END header not found");
+        }
+        int entryCount = tail.getShort(endOfCentralDirectory + 10) & 0xFFFF;
+        long centralDirectoryLength = tail.getInt(endOfCentralDirectory + 12) & 0xFFFFFFFFL;
+        long centralDirectoryOffset = tail.getInt(endOfCentralDirectory + 16) & 0xFFFFFFFFL;
+        if (entryCount == ZIP64_MAGIC_COUNT
+            || centralDirectoryLength == ZIP64_MAGIC_VALUE
+            || centralDirectoryOffset == ZIP64_MAGIC_VALUE
+            || hasZip64Locator(tail, endOfCentralDirectory)) {
+            return null;
+        }
+        if (centralDirectoryOffset + centralDirectoryLength != tailOffset + endOfCentralDirectory) {
+            // Either the archive is malformed or there is data before the first entry, which is the case for self-extracting archives
+            return null;
+        }
+        return readFully(channel, centralDirectoryOffset, (int) centralDirectoryLength);
+    }
+
+    private static int findEndOfCentralDirectory(ByteBuffer tail) {
+        for (int position = tail.limit() - END_OF_CENTRAL_DIRECTORY_LENGTH; position >= 0; position--) {
+            if (tail.getInt(position) == END_OF_CENTRAL_DIRECTORY_SIGNATURE) {
+                int commentLength = tail.getShort(position + 20) & 0xFFFF;
+                if (position + END_OF_CENTRAL_DIRECTORY_LENGTH + commentLength == tail.limit()) {
+                    return position;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static boolean hasZip64Locator(ByteBuffer tail, int endOfCentralDirectory) {
+        int locator = endOfCentralDirectory - ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_LENGTH;
+        return locator >= 0 && tail.getInt(locator) == ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIGNATURE;
+    }
+
+    @Override
+    public Iterator<ZipEntry> iterator() {
+        final CentralDirectoryEntry entry = new CentralDirectoryEntry();
+        return new AbstractIterator<ZipEntry>() {
+            private int nextHeader;
+
+            @Override
+            protected ZipEntry computeNext() {
+                if (nextHeader == centralDirectory.limit()) {
+                    return endOfData();
+                }
+                try {
+                    nextHeader = entry.moveTo(nextHeader);
+                } catch (ZipException e) {
+                    throw new FileException(e);
+                }
+                return entry;
+            }
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        inflater.end();
+        file.close();
+    }
+
+    private class CentralDirectoryEntry implements ZipEntry {
+        private String name;
+        private int flags;
+        private int method;
+        private long crc;
+        private long compressedSize;
+        private long size;
+        private long localFileHeaderOffset;
+
+        /**
+         * Reads the central directory header at the given position.
+         *
+         * @return the position of the next header
+         */
+        int moveTo(int header) throws ZipException {
+            ByteBuffer headers = centralDirectory;
+            if (headers.limit() - header < CENTRAL_DIRECTORY_HEADER_LENGTH || headers.getInt(header) != CENTRAL_DIRECTORY_HEADER_SIGNATURE) {
+                throw new ZipException("invalid CEN header (bad signature)");
+            }
+            flags = headers.getShort(header + 8) & 0xFFFF;
+            method = headers.getShort(header + 10) & 0xFFFF;
+            crc = headers.getInt(header + 16) & 0xFFFFFFFFL;
+            compressedSize = headers.getInt(header + 20) & 0xFFFFFFFFL;
+            size = headers.getInt(header + 24) & 0xFFFFFFFFL;
+            int nameLength = headers.getShort(header + 28) & 0xFFFF;
+            int extraLength = headers.getShort(header + 30) & 0xFFFF;
+            int commentLength = headers.getShort(header + 32) & 0xFFFF;
+            localFileHeaderOffset = headers.getInt(header + 42) & 0xFFFFFFFFL;
+            int nameStart = header + CENTRAL_DIRECTORY_HEADER_LENGTH;
+            int extraStart = nameStart + nameLength;
+            int nextHeader = extraStart + extraLength + commentLength;
+            if (nextHeader > headers.limit()) {
+                throw new ZipException("invalid CEN header (bad header size)");
+            }
+            name = new String(headers.array(), headers.arrayOffset() + nameStart, nameLength, UTF_8);
+            if (size == ZIP64_MAGIC_VALUE || compressedSize == ZIP64_MAGIC_VALUE || localFileHeaderOffset == ZIP64_MAGIC_VALUE) {
+                readZip64ExtraField(extraStart, extraStart + extraLength);
+            }
+            return nextHeader;
+        }
+
+        private void readZip64ExtraField(int start, int end) throws ZipException {
+            ByteBuffer headers = centralDirectory;
+            int field = start;
+            while (field + 4 <= end) {
+                int id = headers.getShort(field) & 0xFFFF;
+                int length = headers.getShort(field + 2) & 0xFFFF;
+                int value = field + 4;
+                field = value + length;
+                if (id != ZIP64_EXTRA_FIELD_ID || field > end) {
+                    continue;
+                }
+                if (size == ZIP64_MAGIC_VALUE && value + 8 <= field) {
+                    size = headers.getLong(value);
+                    value += 8;
+                }
+                if (compressedSize == ZIP64_MAGIC_VALUE && value + 8 <= field) {
+                    compressedSize = headers.getLong(value);
+                    value += 8;
+                }
+                if (localFileHeaderOffset == ZIP64_MAGIC_VALUE && value + 8 <= field) {
+                    localFileHeaderOffset = headers.getLong(value);
+                }
+                return;
+            }
+            throw new ZipException("invalid CEN header (bad zip64 extra data field) for " + name);
+        }
+
+        @Override
+        public boolean isDirectory() {
+            return name.endsWith("/");
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public byte[] getContent() throws IOException {
+            if (size > Integer.MAX_VALUE) {
+                throw new ZipException("Entry " + name + " is too large to be read into memory");
+            }
+            byte[] content = new byte[(int) size];
+            InputStream inputStream = openStream();
+            int read = 0;
+            while (read < content.length) {
+                int count = inputStream.read(content, read, content.length - read);
+                if (count < 0) {
+                    throw new ZipException("Unexpected end of entry " + name);
+                }
+                read += count;
+            }
+            return content;
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            try {
+                return openStream();
+            } catch (IOException e) {
+                throw new FileException(e);
+            }
+        }
+
+        private InputStream openStream() throws IOException {
+            if ((flags & ENCRYPTED_FLAG) != 0) {
+                throw new ZipException("Entry " + name + " is encrypted");
+            }
+            if (method != STORED && method != DEFLATED) {
+                throw new ZipException("Entry " + name + " uses unsupported compression method " + method);
+            }
+            localFileHeader.clear();
+            readFully(channel, localFileHeader, localFileHeaderOffset);
+            if (localFileHeader.getInt(0) != LOCAL_FILE_HEADER_SIGNATURE) {
+                throw new ZipException("invalid LOC header (bad signature) for " + name);
+            }
+            int nameLength = localFileHeader.getShort(26) & 0xFFFF;
+            int extraLength = localFileHeader.getShort(28) & 0xFFFF;
+            long dataOffset = localFileHeaderOffset + LOCAL_FILE_HEADER_LENGTH + nameLength + extraLength;
+            if (method == STORED) {
+                return new StoredEntryInputStream(name, dataOffset, size);
+            }
+            inflater.reset();
+            return new DeflatedEntryInputStream(name, dataOffset, compressedSize, size);
+        }
+
+        @Override
+        public int size() {
+            return (int) size;
+        }
+
+        @Override
+        public long getCrc() {
+            return crc;
+        }
+    }
+
+    private abstract static class EntryInputStream extends InputStream {
+        private final byte[] singleByte = new byte[1];
+
+        @Override
+        public int read() throws IOException {
+            return read(singleByte, 0, 1) < 0 ? -1 : singleByte[0] & 0xFF;
+        }
+    }
+
+    private class StoredEntryInputStream extends EntryInputStream {
+        private final String name;
+        private long position;
+        private long remaining;
+
+        StoredEntryInputStream(String name, long dataOffset, long size) {
+            this.name = name;
+            this.position = dataOffset;
+            this.remaining = size;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (remaining == 0) {
+                return -1;
+            }
+            int count = (int) Math.min(length, remaining);
+            if (count == 0) {
+                return 0;
+            }
+            int read = channel.read(ByteBuffer.wrap(bytes, offset, count), position);
+            if (read < 0) {
+                throw new ZipException("Unexpected end of entry " + name);
+            }
+            position += read;
+            remaining -= read;
+            return read;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(remaining, Integer.MAX_VALUE);
+        }
+    }
+
+    private class DeflatedEntryInputStream extends EntryInputStream {
+        private final String name;
+        private long position;
+        private long remainingCompressed;
+        private long remaining;
+
+        DeflatedEntryInputStream(String name, long dataOffset, long compressedSize, long size) {
+            this.name = name;
+            this.position = dataOffset;
+            this.remainingCompressed = compressedSize;
+            this.remaining = size;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (remaining == 0) {
+                return -1;
+            }
+            int count = (int) Math.min(length, remaining);
+            if (count == 0) {
+                return 0;
+            }
+            try {
+                int inflated;
+                while ((inflated = inflater.inflate(bytes, offset, count)) == 0) {
+                    if (inflater.finished() || inflater.needsDictionary()) {
+                        throw new ZipException("Unexpected end of entry " + name);
+                    }
+                    if (inflater.needsInput()) {
+                        fillInflater();
+                    }
+                }
+                remaining -= inflated;
+                return inflated;
+            } catch (DataFormatException e) {
+                throw new ZipException("Invalid compressed data for entry " + name + ": " + e.getMessage());
+            }
+        }
+
+        private void fillInflater() throws IOException {
+            if (remainingCompressed == 0) {
+                throw new ZipException("Unexpected end of entry " + name);
+            }
+            int length = (int) Math.min(remainingCompressed, buffer.length);
+            readFully(channel, ByteBuffer.wrap(buffer, 0, length), position);
+            position += length;
+            remainingCompressed -= length;
+            inflater.setInput(buffer, 0, length);
+        }
+
+        @Override
+        public int available() {
+            return remaining == 0 ? 0 : 1;
+        }
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, buffer, position);
+        return buffer;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long currentPosition = position;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, currentPosition);
+            if (read < 0) {
+                throw new ZipException("Unexpected end of zip file");
+            }
+            currentPosition += read;
+        }
+        buffer.flip();
+    }
+
+    private static void closeQuietly(RandomAccessFile file) {
+        try {
+            file.close();
+        } catch (IOException e) {
+            // Ignore
+        }
+    }
+}
@@ -33,12 +33,23 @@
 
 public class FileZipInput implements ZipInput {
 
+    /**
+     * Reads zip files with {@link CentralDirectoryZipInput} instead of {@link ZipFile} or {@link java.util.zip.ZipInputStream}.
+     */
+    public static final String CENTRAL_DIRECTORY_ZIP_INPUT_PROPERTY = "org.gradle.unsafe.central-directory-zip-input";
+
     /**
      * Creates a stream of the entries in the given zip file. Caller is responsible for closing the return value.
      *
      * @throws FileException on failure to open the Zip
      */
     public static ZipInput create(File file) throws FileException {
+        if (Boolean.getBoolean(CENTRAL_DIRECTORY_ZIP_INPUT_PROPERTY)) {
+            ZipInput zipInput = CentralDirectoryZipInput.tryOpen(file);
+            if (zipInput != null) {
+                return zipInput;
+            }
+        }
         if (isZipFileSafeToUse()) {
             return new FileZipInput(file);
         } else {
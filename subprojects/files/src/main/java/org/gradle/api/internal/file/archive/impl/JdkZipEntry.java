@@ -64,4 +64,9 @@ public InputStream getInputStream() {
     public int size() {
         return (int) entry.getSize();
     }
+
+    @Override
+    public long getCrc() {
+        return entry.getCrc();
+    }
 }
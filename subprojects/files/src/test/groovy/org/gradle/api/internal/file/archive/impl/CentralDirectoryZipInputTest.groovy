@@ -0,0 +1,107 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.file.archive.impl
+
+import org.gradle.internal.file.FileException
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+import java.util.zip.CRC32
+import java.util.zip.ZipEntry
+import java.util.zip.ZipOutputStream
+
+class CentralDirectoryZipInputTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider temporaryFolder = new TestNameTestDirectoryProvider(getClass())
+
+    def "reads the same entries as ZipFile"() {
+        def file = temporaryFolder.file("foo.zip")
+        def largeContent = (1..100000).collect { it.toString() }.join(",").bytes
+        new ZipOutputStream(new FileOutputStream(file)).withCloseable { zip ->
+            zip.putNextEntry(new ZipEntry("dir/"))
+            zip.closeEntry()
+            zip.putNextEntry(new ZipEntry("dir/deflated.txt"))
+            zip.write("deflated".bytes)
+            zip.closeEntry()
+            zip.putNextEntry(new ZipEntry("dir/large.txt"))
+            zip.write(largeContent)
+            zip.closeEntry()
+            zip.putNextEntry(new ZipEntry("empty.txt"))
+            zip.closeEntry()
+            zip.putNextEntry(storedEntry("stored-ä.txt", "stored".bytes))
+            zip.write("stored".bytes)
+            zip.closeEntry()
+        }
+
+        when:
+        def entries = []
+        def zipInput = CentralDirectoryZipInput.tryOpen(file)
+        def readAsStream = false
+        zipInput.each { entry ->
+            byte[] content = readAsStream ? entry.inputStream.bytes : entry.content
+            readAsStream = !readAsStream
+            entries << [entry.name, entry.directory, entry.size(), entry.crc, content]
+        }
+
+        then:
+        entries == new java.util.zip.ZipFile(file).withCloseable { zipFile ->
+            zipFile.entries().collect { entry ->
+                [entry.name, entry.directory, entry.size as int, entry.crc, zipFile.getInputStream(entry).bytes]
+            }
+        }
+        entries.find { it[0] == "dir/large.txt" }[4] == largeContent
+
+        cleanup:
+        zipInput?.close()
+    }
+
+    def "does not open archives with data before the first entry"() {
+        def file = temporaryFolder.file("self-extracting.zip")
+        def zip = new ByteArrayOutputStream()
+        new ZipOutputStream(zip).withCloseable {
+            it.putNextEntry(new ZipEntry("foo.txt"))
+            it.write("foo".bytes)
+            it.closeEntry()
+        }
+        file.bytes = "#!/bin/sh\n".bytes + zip.toByteArray()
+
+        expect:
+        CentralDirectoryZipInput.tryOpen(file) == null
+    }
+
+    def "throws FileException when zip is badly formed"() {
+        def file = temporaryFolder.file("badly-formed").createFile()
+
+        when:
+        CentralDirectoryZipInput.tryOpen(file)
+
+        then:
+        thrown(FileException)
+    }
+
+    private static ZipEntry storedEntry(String name, byte[] content) {
+        def entry = new ZipEntry(name)
+        def crc = new CRC32()
+        crc.update(content)
+        entry.method = ZipEntry.STORED
+        entry.size = content.length
+        entry.compressedSize = content.length
+        entry.crc = crc.value
+        return entry
+    }
+}
@@ -126,4 +126,33 @@ class HashingTest extends Specification {
         }
         hasher.hash()
     }
+
+    def 'murmur3 hashers produce 128 bit hashes consistent with hashing bytes directly'() {
+        given:
+        def bytes = ('a'..'z').join().bytes
+
+        when:
+        def hasher = Hashing.murmur3().newPrimitiveHasher()
+        hasher.putBytes(bytes, 0, 10)
+        hasher.putBytes(bytes, 10, bytes.length - 10)
+        def hash = hasher.hash()
+
+        then:
+        hash.length() == 16
+        Hashing.murmur3().hexDigits == 32
+        hash == Hashing.murmur3().hashBytes(bytes)
+        hash != Hashing.md5().hashBytes(bytes)
+    }
+
+    def 'cannot reuse murmur3 hasher'() {
+        given:
+        def hasher = Hashing.murmur3().newPrimitiveHasher()
+        hasher.hash()
+
+        when:
+        hasher.putInt(1)
+
+        then:
+        thrown(IllegalStateException)
+    }
 }
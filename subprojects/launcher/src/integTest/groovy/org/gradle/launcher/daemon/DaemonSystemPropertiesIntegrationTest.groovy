@@ -16,6 +16,7 @@
 
 package org.gradle.launcher.daemon
 
+import org.gradle.api.internal.changedetection.state.FileContentHashAlgorithm
 import org.gradle.cache.internal.HeapProportionalCacheSizer
 import org.gradle.integtests.fixtures.daemon.DaemonIntegrationSpec
 import org.gradle.integtests.fixtures.executer.GradleContextualExecuter
@@ -232,6 +233,36 @@ task verify {
         daemons(gradleVersion).daemons.size() == 2
     }
 
+    @IgnoreIf({ GradleContextualExecuter.embedded }) // need to start Gradle process from command line to use GRADLE_OPTS
+    def "forks new daemon for changed file content hash algorithm sys property"() {
+        setup:
+        buildScript """
+            println "GRADLE_VERSION: " + gradle.gradleVersion
+
+            task verify {
+                doFirst {
+                    println "verified = " + System.getProperty('${FileContentHashAlgorithm.SYSTEM_PROPERTY}', 'none')
+                }
+            }
+        """
+
+        when:
+        run "verify"
+
+        then:
+        String gradleVersion = (output =~ /GRADLE_VERSION: (.*)/)[0][1]
+        daemons(gradleVersion).daemons.size() == 1
+        output.contains("verified = none")
+
+        when:
+        executer.withEnvironmentVars(GRADLE_OPTS: "-D${FileContentHashAlgorithm.SYSTEM_PROPERTY}=murmur3");
+        run "verify"
+
+        then:
+        output.contains("verified = murmur3")
+        daemons(gradleVersion).daemons.size() == 2
+    }
+
     String tempFolder(String folderName) {
         def dir = temporaryFolder.createDir(folderName)
         dir.mkdirs();
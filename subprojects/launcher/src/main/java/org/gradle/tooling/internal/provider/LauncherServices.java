@@ -32,6 +32,7 @@
 import org.gradle.internal.filewatch.DefaultFileSystemChangeWaiterFactory;
 import org.gradle.internal.filewatch.FileSystemChangeWaiterFactory;
 import org.gradle.internal.filewatch.FileWatcherFactory;
+import org.gradle.internal.filewatch.VirtualFileSystemFileWatcherFactory;
 import org.gradle.internal.invocation.BuildActionRunner;
 import org.gradle.internal.logging.LoggingManagerInternal;
 import org.gradle.internal.logging.text.StyledTextOutputFactory;
@@ -44,6 +45,8 @@
 import org.gradle.internal.service.scopes.GradleUserHomeScopeServiceRegistry;
 import org.gradle.internal.time.Clock;
 import org.gradle.internal.time.Time;
+import org.gradle.internal.watch.vfs.BuildLifecycleAwareVirtualFileSystem;
+import org.gradle.internal.watch.vfs.FileChangeListeners;
 import org.gradle.launcher.exec.BuildCompletionNotifyingBuildActionRunner;
 import org.gradle.launcher.exec.BuildExecuter;
 import org.gradle.launcher.exec.BuildOutcomeReportingBuildActionRunner;
@@ -138,6 +141,9 @@ SessionScopeBuildActionExecutor createActionExecutor(BuildEventListenerFactory l
                                                              TaskInputsListeners inputsListeners,
                                                              StyledTextOutputFactory styledTextOutputFactory,
                                                              FileSystemChangeWaiterFactory fileSystemChangeWaiterFactory,
+                                                             FileWatcherFactory fileWatcherFactory,
+                                                             FileChangeListeners fileChangeListeners,
+                                                             BuildLifecycleAwareVirtualFileSystem virtualFileSystem,
                                                              BuildRequestMetaData requestMetaData,
                                                              BuildCancellationToken cancellationToken,
                                                              DeploymentRegistryInternal deploymentRegistry,
@@ -145,8 +151,11 @@ SessionScopeBuildActionExecutor createActionExecutor(BuildEventListenerFactory l
                                                              BuildStartedTime buildStartedTime,
                                                              Clock clock
         ) {
+            FileSystemChangeWaiterFactory changeWaiterFactory = Boolean.getBoolean(VirtualFileSystemFileWatcherFactory.CONTINUOUS_BUILD_VFS_EVENTS_PROPERTY)
+                ? new DefaultFileSystemChangeWaiterFactory(new VirtualFileSystemFileWatcherFactory(fileChangeListeners, virtualFileSystem, fileWatcherFactory))
+                : fileSystemChangeWaiterFactory;
             return new SubscribableBuildActionExecuter(listenerManager, buildOperationListenerManager, listenerFactory, eventConsumer,
-                new ContinuousBuildActionExecuter(fileSystemChangeWaiterFactory, inputsListeners, styledTextOutputFactory, executorFactory, requestMetaData, cancellationToken, deploymentRegistry, listenerManager, buildStartedTime, clock,
+                new ContinuousBuildActionExecuter(changeWaiterFactory, inputsListeners, styledTextOutputFactory, executorFactory, requestMetaData, cancellationToken, deploymentRegistry, listenerManager, buildStartedTime, clock,
                     new BuildTreeScopeLifecycleBuildActionExecuter()));
         }
     }
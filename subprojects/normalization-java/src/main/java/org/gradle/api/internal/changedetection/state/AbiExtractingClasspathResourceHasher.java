@@ -82,7 +82,7 @@ public HashCode hash(ZipEntryContext zipEntryContext) throws IOException {
         return hashClassBytes(content);
     }
 
-    private boolean isClassFile(String name) {
+    public static boolean isClassFile(String name) {
         return name.endsWith(".class");
     }
 
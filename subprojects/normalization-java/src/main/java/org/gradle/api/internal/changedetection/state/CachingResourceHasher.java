@@ -25,8 +25,7 @@
 import java.io.IOException;
 
 /**
- * Caches the result of hashing regular files with a {@link ResourceHasher}.
- * It does not cache the result of hashing {@link ZipEntry}s.
+ * Caches the result of hashing regular files and {@link ZipEntry}s with a {@link ResourceHasher}.
  * It also caches the absence of a hash.
  */
 public class CachingResourceHasher implements ResourceHasher {
@@ -50,7 +49,7 @@ public HashCode hash(RegularFileSnapshotContext fileSnapshotContext) {
 
     @Override
     public HashCode hash(ZipEntryContext zipEntryContext) throws IOException {
-        return delegate.hash(zipEntryContext);
+        return resourceSnapshotterCacheService.hashZipEntry(zipEntryContext, delegate, delegateConfigurationHash);
     }
 
     @Override
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import org.gradle.api.internal.file.archive.ZipEntry;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.hash.Hasher;
+import org.gradle.internal.hash.Hashing;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.function.Predicate;
+
+/**
+ * Caches the result of hashing regular files and {@link ZipEntry}s with a {@link ResourceHasher} by their content.
+ *
+ * Unlike {@link CachingResourceHasher}, a changed archive does not cause all of its entries to be hashed again by the delegate,
+ * only the entries with changed content are.
+ * Since this requires reading the content of the entries, it is only done for entries accepted by the given predicate.
+ */
+public class ContentCachingResourceHasher implements ResourceHasher {
+    private final ResourceHasher delegate;
+    private final ResourceSnapshotterCacheService resourceSnapshotterCacheService;
+    private final Predicate<String> contentCachedEntryNames;
+    private final HashCode delegateConfigurationHash;
+
+    public ContentCachingResourceHasher(ResourceHasher delegate, ResourceSnapshotterCacheService resourceSnapshotterCacheService, Predicate<String> contentCachedEntryNames) {
+        this.delegate = delegate;
+        this.resourceSnapshotterCacheService = resourceSnapshotterCacheService;
+        this.contentCachedEntryNames = contentCachedEntryNames;
+        Hasher hasher = Hashing.newHasher();
+        delegate.appendConfigurationToHasher(hasher);
+        this.delegateConfigurationHash = hasher.hash();
+    }
+
+    @Nullable
+    @Override
+    public HashCode hash(RegularFileSnapshotContext fileSnapshotContext) {
+        return resourceSnapshotterCacheService.hashFile(fileSnapshotContext, delegate, delegateConfigurationHash);
+    }
+
+    @Nullable
+    @Override
+    public HashCode hash(ZipEntryContext zipEntryContext) throws IOException {
+        if (contentCachedEntryNames.test(zipEntryContext.getEntry().getName())) {
+            return resourceSnapshotterCacheService.hashZipEntryContent(zipEntryContext, delegate, delegateConfigurationHash);
+        }
+        return resourceSnapshotterCacheService.hashZipEntry(zipEntryContext, delegate, delegateConfigurationHash);
+    }
+
+    @Override
+    public void appendConfigurationToHasher(Hasher hasher) {
+        delegate.appendConfigurationToHasher(hasher);
+    }
+}
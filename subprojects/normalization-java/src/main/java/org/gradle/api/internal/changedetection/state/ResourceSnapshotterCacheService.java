@@ -19,8 +19,23 @@
 import org.gradle.internal.hash.HashCode;
 
 import javax.annotation.Nullable;
+import java.io.IOException;
 
 public interface ResourceSnapshotterCacheService {
     @Nullable
     HashCode hashFile(RegularFileSnapshotContext fileSnapshotContext, RegularFileHasher hasher, HashCode configurationHash);
+
+    /**
+     * Hashes a zip entry, possibly reusing the result for another entry with the same name, size and CRC-32 checksum.
+     */
+    @Nullable
+    HashCode hashZipEntry(ZipEntryContext zipEntryContext, ZipEntryHasher hasher, HashCode configurationHash) throws IOException;
+
+    /**
+     * Hashes a zip entry, reusing the result for entries and regular files with the same content.
+     *
+     * The content of the entry is always read, so this only pays off for hashers which are expensive compared to hashing the content.
+     */
+    @Nullable
+    HashCode hashZipEntryContent(ZipEntryContext zipEntryContext, ZipEntryHasher hasher, HashCode configurationHash) throws IOException;
 }
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state
+
+import org.gradle.api.internal.file.archive.ZipEntry
+import org.gradle.internal.file.FileMetadata.AccessType
+import org.gradle.internal.file.impl.DefaultFileMetadata
+import org.gradle.internal.hash.HashCode
+import org.gradle.internal.snapshot.RegularFileSnapshot
+import spock.lang.Specification
+
+class ContentCachingResourceHasherTest extends Specification {
+    def delegate = Mock(ResourceHasher)
+    def snapshotterCacheService = Mock(ResourceSnapshotterCacheService)
+    def cachingHasher = new ContentCachingResourceHasher(delegate, snapshotterCacheService, { String name -> name.endsWith(".class") })
+
+    def "uses cache service for snapshots"() {
+        def snapshot = new RegularFileSnapshot("some", "path", HashCode.fromInt(456), DefaultFileMetadata.file(3456, 456, AccessType.DIRECT))
+        def snapshotContext = new DefaultRegularFileSnapshotContext({ "some" }, snapshot)
+
+        when:
+        cachingHasher.hash(snapshotContext)
+        then:
+        1 * snapshotterCacheService.hashFile(snapshotContext, delegate, _)
+        0 * _
+    }
+
+    def "caches accepted zip entries by content"() {
+        def expectedHash = HashCode.fromInt(123)
+        def zipEntryContext = new ZipEntryContext(Stub(ZipEntry) { getName() >> "Foo.class" }, "Foo.class", "foo.zip")
+
+        when:
+        def actualHash = cachingHasher.hash(zipEntryContext)
+        then:
+        1 * snapshotterCacheService.hashZipEntryContent(zipEntryContext, delegate, _) >> expectedHash
+        0 * _
+        actualHash == expectedHash
+    }
+
+    def "does not read other zip entries for caching"() {
+        def expectedHash = HashCode.fromInt(123)
+        def zipEntryContext = new ZipEntryContext(Stub(ZipEntry) { getName() >> "foo.txt" }, "foo.txt", "foo.zip")
+
+        when:
+        def actualHash = cachingHasher.hash(zipEntryContext)
+        then:
+        1 * snapshotterCacheService.hashZipEntry(zipEntryContext, delegate, _) >> expectedHash
+        0 * _
+        actualHash == expectedHash
+    }
+}
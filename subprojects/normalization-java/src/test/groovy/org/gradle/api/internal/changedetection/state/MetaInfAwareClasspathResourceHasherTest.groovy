@@ -440,6 +440,11 @@ class MetaInfAwareClasspathResourceHasherTest extends Specification {
             int size() {
                 return bos.size()
             }
+
+            @Override
+            long getCrc() {
+                return -1
+            }
         }
         return new ZipEntryContext(zipEntry, path, "foo.zip")
     }
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal;
+
+import org.gradle.cache.internal.btree.BTreePersistentIndexedCache;
+import org.gradle.cache.internal.mapped.MappedPersistentIndexedCache;
+import org.gradle.internal.serialize.BaseSerializerFactory;
+import org.gradle.internal.serialize.Serializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Compares the B-tree and the memory mapped indexed cache stores.
+ *
+ * Access to the B-tree is serialized, as it is not thread-safe.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class IndexedCacheStoreBenchmark {
+    private static final Serializer<String> STRING_SERIALIZER = new BaseSerializerFactory().getSerializerFor(String.class);
+
+    @Param({"btree", "mapped"})
+    String storeType;
+
+    @Param({"100000"})
+    int entryCount;
+
+    File tempDir;
+    IndexedCacheStore<String, String> store;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        tempDir = Files.createTempDirectory("indexed-cache").toFile();
+        File cacheFile = new File(tempDir, "cache.bin");
+        if (storeType.equals("btree")) {
+            store = new SynchronizedStore<>(new BTreePersistentIndexedCache<>(cacheFile, STRING_SERIALIZER, STRING_SERIALIZER));
+        } else {
+            MappedPersistentIndexedCache<String, String> mappedStore = new MappedPersistentIndexedCache<>(cacheFile, STRING_SERIALIZER, STRING_SERIALIZER);
+            mappedStore.open();
+            store = mappedStore;
+        }
+        for (int i = 0; i < entryCount; i++) {
+            store.put(key(i), value(i));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        store.close();
+        File[] files = tempDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                Files.delete(file.toPath());
+            }
+        }
+        Files.delete(tempDir.toPath());
+    }
+
+    @Benchmark
+    public String get() {
+        return store.get(key(ThreadLocalRandom.current().nextInt(entryCount)));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String getConcurrently() {
+        return store.get(key(ThreadLocalRandom.current().nextInt(entryCount)));
+    }
+
+    @Benchmark
+    public void put() {
+        int i = ThreadLocalRandom.current().nextInt(entryCount);
+        store.put(key(i), value(i));
+    }
+
+    private static String key(int i) {
+        return "/some/path/to/a/file/in/the/build/" + i + ".class";
+    }
+
+    private static String value(int i) {
+        return "hash-of-the-file-" + i;
+    }
+
+    private static class SynchronizedStore<K, V> implements IndexedCacheStore<K, V> {
+        private final IndexedCacheStore<K, V> delegate;
+
+        SynchronizedStore(IndexedCacheStore<K, V> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public synchronized V get(K key) {
+            return delegate.get(key);
+        }
+
+        @Override
+        public synchronized void put(K key, V value) {
+            delegate.put(key, value);
+        }
+
+        @Override
+        public synchronized void remove(K key) {
+            delegate.remove(key);
+        }
+
+        @Override
+        public synchronized void close() {
+            delegate.close();
+        }
+    }
+}
@@ -63,6 +63,11 @@ enum LockMode {
          * No synchronisation is done.
          */
         OnDemand,
+        /**
+         * Like {@link #OnDemand}, but holds a shared lock while the cache is only read, so that multiple processes can read the cache at the same time.
+         * The lock is upgraded to an exclusive lock when the cache is written to.
+         */
+        OnDemandShared,
         /**
          * Multiple readers, no writers.
          */
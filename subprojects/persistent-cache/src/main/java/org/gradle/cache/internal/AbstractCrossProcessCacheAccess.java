@@ -31,4 +31,11 @@ public abstract class AbstractCrossProcessCacheAccess implements CrossProcessCac
      */
     @Override
     public abstract void close();
+
+    /**
+     * Replaces the shared file lock held by this process with an exclusive one, if this cache access supports it.
+     * Does nothing when no lock is held or when the held lock is already exclusive. State lock is held while this method is called.
+     */
+    public void upgradeToExclusiveLock() {
+    }
 }
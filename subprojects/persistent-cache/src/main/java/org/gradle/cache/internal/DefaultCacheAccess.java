@@ -32,6 +32,7 @@
 import org.gradle.cache.PersistentIndexedCacheParameters;
 import org.gradle.cache.internal.btree.BTreePersistentIndexedCache;
 import org.gradle.cache.internal.cacheops.CacheAccessOperationsStack;
+import org.gradle.cache.internal.mapped.MappedPersistentIndexedCache;
 import org.gradle.internal.Cast;
 import org.gradle.internal.Factories;
 import org.gradle.internal.Factory;
@@ -57,6 +58,7 @@
 import java.util.concurrent.locks.ReentrantLock;
 
 import static org.gradle.cache.FileLockManager.LockMode.Exclusive;
+import static org.gradle.cache.FileLockManager.LockMode.Shared;
 
 @ThreadSafe
 public class DefaultCacheAccess implements CacheCoordinator {
@@ -70,6 +72,7 @@ public class DefaultCacheAccess implements CacheCoordinator {
     private final CacheCleanupAction cleanupAction;
     private final ExecutorFactory executorFactory;
     private final FileAccess fileAccess;
+    private final boolean sharedReads;
     private final Map<String, IndexedCacheEntry<?, ?>> caches = new HashMap<String, IndexedCacheEntry<?, ?>>();
     private final AbstractCrossProcessCacheAccess crossProcessCacheAccess;
     private final CacheAccessOperationsStack operations;
@@ -92,6 +95,7 @@ public DefaultCacheAccess(String cacheDisplayName, File lockTarget, LockOptions
         this.cleanupAction = cleanupAction;
         this.executorFactory = executorFactory;
         this.operations = new CacheAccessOperationsStack();
+        this.sharedReads = lockOptions.getMode() == FileLockManager.LockMode.OnDemandShared;
 
         Action<FileLock> onFileLockAcquireAction = this::afterLockAcquire;
         Action<FileLock> onFileLockReleaseAction = this::beforeLockRelease;
@@ -109,6 +113,10 @@ public DefaultCacheAccess(String cacheDisplayName, File lockTarget, LockOptions
                 crossProcessCacheAccess = new LockOnDemandCrossProcessCacheAccess(cacheDisplayName, lockTarget, lockOptions.withMode(Exclusive), lockManager, stateLock, initializationAction, onFileLockAcquireAction, onFileLockReleaseAction);
                 fileAccess = new UnitOfWorkFileAccess();
                 break;
+            case OnDemandShared:
+                crossProcessCacheAccess = new LockOnDemandCrossProcessCacheAccess(cacheDisplayName, lockTarget, lockOptions.withMode(Shared), lockManager, stateLock, initializationAction, onFileLockAcquireAction, onFileLockReleaseAction);
+                fileAccess = new UnitOfWorkFileAccess();
+                break;
             case None:
                 crossProcessCacheAccess = new NoLockingCacheAccess(this::notifyFinish);
                 fileAccess = TransparentFileAccess.INSTANCE;
@@ -282,9 +290,30 @@ public <K, V> MultiProcessSafePersistentIndexedCache<K, V> newCache(final Persis
             if (entry == null) {
                 File cacheFile = findCacheFile(parameters);
                 LOG.debug("Creating new cache for {}, path {}, access {}", parameters.getCacheName(), cacheFile, this);
-                Factory<BTreePersistentIndexedCache<K, V>> indexedCacheFactory = () -> doCreateCache(cacheFile, parameters.getKeySerializer(), parameters.getValueSerializer());
+                Factory<? extends IndexedCacheStore<K, V>> indexedCacheFactory;
+                Factory<? extends IndexedCacheStore<K, V>> readOnlyIndexedCacheFactory;
+                if (parameters.isMemoryMapped()) {
+                    // Keep the in-memory index between units of work, so that only the records appended in the meantime need to be read
+                    MappedPersistentIndexedCache<K, V> mappedCache = new MappedPersistentIndexedCache<>(cacheFile, parameters.getKeySerializer(), parameters.getValueSerializer());
+                    indexedCacheFactory = () -> {
+                        mappedCache.open();
+                        return mappedCache;
+                    };
+                    readOnlyIndexedCacheFactory = () -> {
+                        if (!cacheFile.exists()) {
+                            return null;
+                        }
+                        mappedCache.openReadOnly();
+                        return mappedCache;
+                    };
+                } else {
+                    indexedCacheFactory = () -> doCreateCache(cacheFile, parameters.getKeySerializer(), parameters.getValueSerializer());
+                    readOnlyIndexedCacheFactory = () -> cacheFile.exists()
+                        ? new BTreePersistentIndexedCache<>(cacheFile, parameters.getKeySerializer(), parameters.getValueSerializer(), true)
+                        : null;
+                }
 
-                MultiProcessSafePersistentIndexedCache<K, V> indexedCache = new DefaultMultiProcessSafePersistentIndexedCache<K, V>(indexedCacheFactory, fileAccess);
+                MultiProcessSafePersistentIndexedCache<K, V> indexedCache = new DefaultMultiProcessSafePersistentIndexedCache<K, V>(indexedCacheFactory, sharedReads ? readOnlyIndexedCacheFactory : null, fileAccess);
                 CacheDecorator decorator = parameters.getCacheDecorator();
                 if (decorator != null) {
                     indexedCache = decorator.decorate(cacheFile.getAbsolutePath(), parameters.getCacheName(), indexedCache, crossProcessCacheAccess, getCacheAccessWorker());
@@ -307,7 +336,9 @@ public <K, V> MultiProcessSafePersistentIndexedCache<K, V> newCache(final Persis
     }
 
     private <K, V> File findCacheFile(PersistentIndexedCacheParameters<K, V> parameters) {
-        return new File(baseDir, parameters.getCacheName() + ".bin");
+        // Use a different file for each storage format, so that switching between them does not discard the entries
+        String suffix = parameters.isMemoryMapped() ? ".mapped.bin" : ".bin";
+        return new File(baseDir, parameters.getCacheName() + suffix);
     }
 
     @Override
@@ -441,12 +472,21 @@ public <T> T readFile(Factory<? extends T> action) throws LockTimeoutException {
 
         @Override
         public void updateFile(Runnable action) throws LockTimeoutException {
-            getFileLock().updateFile(action);
+            getExclusiveFileLock().updateFile(action);
         }
 
         @Override
         public void writeFile(Runnable action) throws LockTimeoutException {
-            getFileLock().writeFile(action);
+            getExclusiveFileLock().writeFile(action);
+        }
+
+        private FileLock getExclusiveFileLock() {
+            FileLock fileLock = getFileLock();
+            if (sharedReads && fileLock != null && fileLock.getMode() == Shared) {
+                crossProcessCacheAccess.upgradeToExclusiveLock();
+                fileLock = getFileLock();
+            }
+            return fileLock;
         }
     }
 
@@ -482,6 +522,7 @@ void assertCompatibleCacheParameters(PersistentIndexedCacheParameters<K, V> para
             checkCompatibleKeySerializer(faultMessages, parameters.getKeySerializer());
             checkCompatibleValueSerializer(faultMessages, parameters.getValueSerializer());
             checkCompatibleCacheDecorator(faultMessages, parameters.getCacheDecorator());
+            checkCompatibleStorage(faultMessages, parameters.isMemoryMapped());
 
             if (!faultMessages.isEmpty()) {
                 String lineSeparator = SystemProperties.getInstance().getLineSeparator();
@@ -524,6 +565,14 @@ private void checkCompatibleCacheDecorator(Collection<String> faultMessages, Cac
                         cacheDecorator, parameters.getCacheDecorator()));
             }
         }
+
+        private void checkCompatibleStorage(Collection<String> faultMessages, boolean memoryMapped) {
+            if (memoryMapped != parameters.isMemoryMapped()) {
+                faultMessages.add(
+                    String.format(" * Requested memory mapped storage (%s) doesn't match current cache storage (%s)",
+                        memoryMapped, parameters.isMemoryMapped()));
+            }
+        }
     }
 
     @VisibleForTesting
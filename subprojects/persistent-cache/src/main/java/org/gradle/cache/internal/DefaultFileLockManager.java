@@ -98,7 +98,7 @@ public FileLock lock(File target, LockOptions options, String targetDisplayName,
 
     @Override
     public FileLock lock(File target, LockOptions options, String targetDisplayName, String operationDisplayName, Action<FileLockReleasedSignal> whenContended) {
-        if (options.getMode() == LockMode.OnDemand) {
+        if (options.getMode() == LockMode.OnDemand || options.getMode() == LockMode.OnDemandShared) {
             throw new UnsupportedOperationException(String.format("No %s mode lock implementation available.", options));
         }
         File canonicalTarget = FileUtils.canonicalize(target);
@@ -133,12 +133,15 @@ private class DefaultFileLock extends AbstractFileAccess implements FileLock {
         private LockState lockState;
         private final int port;
         private final long lockId;
+        private final boolean contendable;
+        private LockInfo previousSharedLockOwner;
 
         public DefaultFileLock(File target, LockOptions options, String displayName, String operationDisplayName, int port, Action<FileLockReleasedSignal> whenContended) throws Throwable {
             this.port = port;
             this.lockId = generator.generateId();
-            if (options.getMode() == LockMode.OnDemand) {
-                throw new UnsupportedOperationException("Locking mode OnDemand is not supported.");
+            this.contendable = whenContended != null && port != -1;
+            if (options.getMode() == LockMode.OnDemand || options.getMode() == LockMode.OnDemandShared) {
+                throw new UnsupportedOperationException(String.format("Locking mode %s is not supported.", options.getMode()));
             }
 
             this.target = target;
@@ -260,6 +263,8 @@ public void stop() {
                                         info.release();
                                     }
                                 }
+                            } else if (lock != null && contendable) {
+                                handOverSharedLockOwnership();
                             }
                         } finally {
                             lockFileAccess.close();
@@ -295,11 +300,62 @@ public LockMode getMode() {
             return mode;
         }
 
+        /**
+         * Records this process as the owner of a shared lock, so that other processes can ask it to release the lock.
+         * The previous owner, which may be another process still holding a shared lock, is remembered so it can take over when this process releases the lock.
+         */
+        private void recordSharedLockOwnership() throws IOException, InterruptedException {
+            java.nio.channels.FileLock informationRegionLock = lockInformationRegion(LockMode.Exclusive, newExponentialBackoff(shortTimeoutMs));
+            if (informationRegionLock == null) {
+                throw new IllegalStateException(String.format("Unable to lock the information region for %s", displayName));
+            }
+            try {
+                LockInfo previousOwner = lockFileAccess.readLockInfo();
+                previousSharedLockOwner = previousOwner.port != -1 && previousOwner.lockId != lockId ? previousOwner : null;
+                lockFileAccess.writeLockInfo(port, lockId, metaDataProvider.getProcessIdentifier(), operationDisplayName);
+            } finally {
+                informationRegionLock.release();
+            }
+        }
+
+        private void handOverSharedLockOwnership() throws IOException {
+            java.nio.channels.FileLock informationRegionLock;
+            try {
+                informationRegionLock = lockInformationRegion(LockMode.Exclusive, newExponentialBackoff(shortTimeoutMs));
+            } catch (InterruptedException e) {
+                throw throwAsUncheckedException(e);
+            }
+            if (informationRegionLock == null) {
+                return;
+            }
+            try {
+                LockInfo owner = lockFileAccess.readLockInfo();
+                if (owner.port == port && owner.lockId == lockId) {
+                    // Other processes will ask the previous owner to release the lock from now on
+                    if (previousSharedLockOwner != null) {
+                        lockFileAccess.writeLockInfo(previousSharedLockOwner.port, previousSharedLockOwner.lockId, previousSharedLockOwner.pid, previousSharedLockOwner.operation);
+                    } else {
+                        lockFileAccess.clearLockInfo();
+                    }
+                } else if (previousSharedLockOwner != null) {
+                    // A later owner still refers to this process as its previous owner, so nobody would ask the previous owner of this process to release the lock anymore
+                    fileLockContentionHandler.maybePingOwner(previousSharedLockOwner.port, previousSharedLockOwner.lockId, displayName, Long.MAX_VALUE, null);
+                }
+            } finally {
+                informationRegionLock.release();
+            }
+        }
+
         private LockState lock(LockMode lockMode) throws Throwable {
             LOGGER.debug("Waiting to acquire {} lock on {}.", lockMode.toString().toLowerCase(), displayName);
 
             // Lock the state region, with the requested mode
             java.nio.channels.FileLock stateRegionLock = lockStateRegion(lockMode);
+            if (stateRegionLock != null && stateRegionLock.isShared() && contendable && !lockFileAccess.hasLockState()) {
+                // The holder of a shared lock can only be asked to release it once the lock file has been initialized, which requires an exclusive lock
+                stateRegionLock.release();
+                stateRegionLock = lockStateRegion(LockMode.Exclusive);
+            }
             if (stateRegionLock == null) {
                 LockInfo lockInfo = readInformationRegion(newExponentialBackoff(shortTimeoutMs));
                 throw new LockTimeoutException(displayName, lockInfo.pid, metaDataProvider.getProcessIdentifier(), lockInfo.operation, operationDisplayName, lockFile);
@@ -327,6 +383,9 @@ private LockState lock(LockMode lockMode) throws Throwable {
                 } else {
                     // Just read the state region
                     lockState = lockFileAccess.readLockState();
+                    if (contendable) {
+                        recordSharedLockOwnership();
+                    }
                 }
                 LOGGER.debug("Lock acquired on {}.", displayName);
                 lock = stateRegionLock;
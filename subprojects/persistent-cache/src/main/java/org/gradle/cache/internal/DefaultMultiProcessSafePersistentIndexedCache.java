@@ -19,18 +19,29 @@
 import org.gradle.cache.FileIntegrityViolationException;
 import org.gradle.cache.FileLock;
 import org.gradle.cache.MultiProcessSafePersistentIndexedCache;
-import org.gradle.cache.internal.btree.BTreePersistentIndexedCache;
 import org.gradle.internal.Factory;
 
+import javax.annotation.Nullable;
 import java.util.function.Function;
 
 public class DefaultMultiProcessSafePersistentIndexedCache<K, V> implements MultiProcessSafePersistentIndexedCache<K, V> {
     private final FileAccess fileAccess;
-    private final Factory<BTreePersistentIndexedCache<K, V>> factory;
-    private BTreePersistentIndexedCache<K, V> cache;
+    private final Factory<? extends IndexedCacheStore<K, V>> factory;
+    private final Factory<? extends IndexedCacheStore<K, V>> readOnlyFactory;
+    private IndexedCacheStore<K, V> cache;
+    private boolean openedForWriting;
 
-    public DefaultMultiProcessSafePersistentIndexedCache(Factory<BTreePersistentIndexedCache<K, V>> factory, FileAccess fileAccess) {
+    public DefaultMultiProcessSafePersistentIndexedCache(Factory<? extends IndexedCacheStore<K, V>> factory, FileAccess fileAccess) {
+        this(factory, null, fileAccess);
+    }
+
+    /**
+     * @param readOnlyFactory opens the store for reading only while holding a shared lock, or returns null when the file of the store does not exist yet.
+     * When null, the store is always opened for writing.
+     */
+    public DefaultMultiProcessSafePersistentIndexedCache(Factory<? extends IndexedCacheStore<K, V>> factory, @Nullable Factory<? extends IndexedCacheStore<K, V>> readOnlyFactory, FileAccess fileAccess) {
         this.factory = factory;
+        this.readOnlyFactory = readOnlyFactory;
         this.fileAccess = fileAccess;
     }
 
@@ -41,7 +52,14 @@ public String toString() {
 
     @Override
     public V getIfPresent(final K key) {
-        final BTreePersistentIndexedCache<K, V> cache = getCache();
+        if (readOnlyFactory != null) {
+            return getIfPresentForSharedReads(key);
+        }
+        return getIfPresentFromStoreOpenedForWriting(key);
+    }
+
+    private V getIfPresentFromStoreOpenedForWriting(K key) {
+        final IndexedCacheStore<K, V> cache = getCache();
         try {
             return fileAccess.readFile((Factory<V>) () -> cache.get(key));
         } catch (FileIntegrityViolationException e) {
@@ -49,6 +67,25 @@ public V getIfPresent(final K key) {
         }
     }
 
+    private V getIfPresentForSharedReads(K key) {
+        try {
+            return fileAccess.readFile((Factory<V>) () -> {
+                if (cache == null) {
+                    cache = readOnlyFactory.create();
+                    if (cache == null) {
+                        return null;
+                    }
+                }
+                return cache.get(key);
+            });
+        } catch (IndexedCacheStore.WriteRequiredException e) {
+            // The store needs to be initialized or repaired, which requires an exclusive lock
+        } catch (FileIntegrityViolationException e) {
+            return null;
+        }
+        return getIfPresentFromStoreOpenedForWriting(key);
+    }
+
     @Override
     public V get(K key, Function<? super K, ? extends V> producer) {
         V value = getIfPresent(key);
@@ -61,7 +98,7 @@ public V get(K key, Function<? super K, ? extends V> producer) {
 
     @Override
     public void put(final K key, final V value) {
-        final BTreePersistentIndexedCache<K, V> cache = getCache();
+        final IndexedCacheStore<K, V> cache = getCache();
         // Use writeFile because the cache can internally recover from datafile
         // corruption, so we don't care at this level if it's corrupt
         fileAccess.writeFile(() -> cache.put(key, value));
@@ -69,7 +106,7 @@ public void put(final K key, final V value) {
 
     @Override
     public void remove(final K key) {
-        final BTreePersistentIndexedCache<K, V> cache = getCache();
+        final IndexedCacheStore<K, V> cache = getCache();
         // Use writeFile because the cache can internally recover from datafile
         // corruption, so we don't care at this level if it's corrupt
         fileAccess.writeFile(() -> cache.remove(key));
@@ -83,9 +120,15 @@ public void afterLockAcquire(FileLock.State currentCacheState) {
     public void finishWork() {
         if (cache != null) {
             try {
-                fileAccess.writeFile(() -> cache.close());
+                if (openedForWriting) {
+                    fileAccess.writeFile(() -> cache.close());
+                } else {
+                    // Nothing has been written, which means the lock may still be a shared lock
+                    cache.close();
+                }
             } finally {
                 cache = null;
+                openedForWriting = false;
             }
         }
     }
@@ -94,11 +137,18 @@ public void finishWork() {
     public void beforeLockRelease(FileLock.State currentCacheState) {
     }
 
-    private BTreePersistentIndexedCache<K, V> getCache() {
-        if (cache == null) {
+    private IndexedCacheStore<K, V> getCache() {
+        if (cache == null || !openedForWriting) {
             // Use writeFile because the cache can internally recover from datafile
             // corruption, so we don't care at this level if it's corrupt
-            fileAccess.writeFile(() -> cache = factory.create());
+            fileAccess.writeFile(() -> {
+                // Acquiring an exclusive lock may already have closed a store opened for reading only
+                if (cache != null) {
+                    cache.close();
+                }
+                cache = factory.create();
+                openedForWriting = true;
+            });
         }
         return cache;
     }
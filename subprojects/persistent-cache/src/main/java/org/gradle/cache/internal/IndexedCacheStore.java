@@ -0,0 +1,46 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal;
+
+import javax.annotation.Nullable;
+
+/**
+ * The file backed storage of a {@link org.gradle.cache.PersistentIndexedCache}.
+ *
+ * Implementations are used while holding the file lock of the cache, and are closed before the lock is released.
+ * A store opened for reading only can be used while holding a shared lock.
+ */
+public interface IndexedCacheStore<K, V> {
+    @Nullable
+    V get(K key);
+
+    void put(K key, V value);
+
+    void remove(K key);
+
+    void close();
+
+    /**
+     * Thrown by a store that has been opened for reading only when it needs to modify its file, for example to discard it when it is corrupt.
+     * The store needs to be opened for writing, while holding an exclusive lock, instead.
+     */
+    class WriteRequiredException extends RuntimeException {
+        public WriteRequiredException(String message) {
+            super(message);
+        }
+    }
+}
@@ -19,6 +19,7 @@
 import org.gradle.api.Action;
 import org.gradle.cache.FileLock;
 import org.gradle.cache.FileLockManager;
+import org.gradle.cache.FileLockManager.LockMode;
 import org.gradle.cache.FileLockReleasedSignal;
 import org.gradle.cache.LockOptions;
 import org.gradle.internal.Factory;
@@ -34,6 +35,7 @@ class LockOnDemandCrossProcessCacheAccess extends AbstractCrossProcessCacheAcces
     private final String cacheDisplayName;
     private final File lockTarget;
     private final LockOptions lockOptions;
+    private final boolean sharedReads;
     private final FileLockManager lockManager;
     private final Lock stateLock;
     private final Action<FileLock> onOpen;
@@ -48,6 +50,9 @@ class LockOnDemandCrossProcessCacheAccess extends AbstractCrossProcessCacheAcces
     /**
      * Actions are notified when lock is opened or closed. Actions are called while holding state lock, so that no other threads are working with cache while these are running.
      *
+     * <p>When the lock options request a shared lock, a shared lock is acquired on demand and upgraded to an exclusive lock by {@link #upgradeToExclusiveLock()}.
+     * Like an exclusive lock, a shared lock is retained until another process asks for it to be released.</p>
+     *
      * @param stateLock Lock to hold while mutating state.
      * @param onOpen Action to run when the lock is opened. Action is called while holding state lock
      * @param onClose Action to run when the lock is closed. Action is called while holding state lock
@@ -56,6 +61,7 @@ public LockOnDemandCrossProcessCacheAccess(String cacheDisplayName, File lockTar
         this.cacheDisplayName = cacheDisplayName;
         this.lockTarget = lockTarget;
         this.lockOptions = lockOptions;
+        this.sharedReads = lockOptions.getMode() == LockMode.Shared;
         this.lockManager = lockManager;
         this.stateLock = stateLock;
         this.initAction = initAction;
@@ -103,24 +109,56 @@ private void incrementLockCount() {
                 if (LOGGER.isDebugEnabled()) {
                     LOGGER.debug("Acquiring file lock for {}", cacheDisplayName);
                 }
-                fileLock = lockManager.lock(lockTarget, lockOptions, cacheDisplayName, "", whenContended);
-                try {
-                    if (initAction.requiresInitialization(fileLock)) {
-                        fileLock.writeFile(new Runnable() {
-                            @Override
-                            public void run() {
-                                initAction.initialize(fileLock);
-                            }
-                        });
-                    }
-                    onOpen.execute(fileLock);
-                } catch (Exception e) {
+                acquireLock(lockOptions);
+            }
+            lockCount++;
+        } finally {
+            stateLock.unlock();
+        }
+    }
+
+    private void acquireLock(LockOptions options) {
+        fileLock = lockManager.lock(lockTarget, options, cacheDisplayName, "", whenContended);
+        try {
+            if (initAction.requiresInitialization(fileLock)) {
+                if (isSharedLockHeld()) {
+                    // Initialization requires an exclusive lock
                     fileLock.close();
                     fileLock = null;
-                    throw UncheckedException.throwAsUncheckedException(e);
+                    acquireLock(options.withMode(LockMode.Exclusive));
+                    return;
                 }
+                fileLock.writeFile(new Runnable() {
+                    @Override
+                    public void run() {
+                        initAction.initialize(fileLock);
+                    }
+                });
             }
-            lockCount++;
+            onOpen.execute(fileLock);
+        } catch (Exception e) {
+            if (fileLock != null) {
+                fileLock.close();
+                fileLock = null;
+            }
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+    }
+
+    @Override
+    public void upgradeToExclusiveLock() {
+        stateLock.lock();
+        try {
+            if (!isSharedLockHeld()) {
+                return;
+            }
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Upgrading file lock for {} to an exclusive lock", cacheDisplayName);
+            }
+            // A shared lock cannot be upgraded in place, so release it first. Another process may update the cache in between,
+            // which the listeners are notified about in the same way as for any other release and acquisition of the lock
+            releaseLockIfHeld();
+            acquireLock(lockOptions.withMode(LockMode.Exclusive));
         } finally {
             stateLock.unlock();
         }
@@ -129,7 +167,8 @@ public void run() {
     private void decrementLockCount() {
         stateLock.lock();
         try {
-            if (lockCount <= 0 || fileLock == null) {
+            // The lock may be missing when upgrading it failed
+            if (lockCount <= 0 || (fileLock == null && !sharedReads)) {
                 throw new IllegalStateException("Mismatched lock count.");
             }
             lockCount--;
@@ -141,6 +180,10 @@ private void decrementLockCount() {
         }
     }
 
+    private boolean isSharedLockHeld() {
+        return sharedReads && fileLock != null && fileLock.getMode() == LockMode.Shared;
+    }
+
     private void releaseLockIfHeld() {
         if (fileLock == null) {
             return;
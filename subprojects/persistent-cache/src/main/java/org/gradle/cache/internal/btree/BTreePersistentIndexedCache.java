@@ -17,6 +17,8 @@
 
 import com.google.common.collect.ImmutableSet;
 import org.gradle.api.UncheckedIOException;
+import org.gradle.cache.internal.IndexedCacheStore;
+import org.gradle.cache.internal.IndexedCacheStore.WriteRequiredException;
 import org.gradle.internal.UncheckedException;
 import org.gradle.internal.io.StreamByteBuffer;
 import org.gradle.internal.serialize.Serializer;
@@ -47,7 +49,7 @@
 // todo - merge adjacent free blocks
 // todo - use more efficient lookup for free block with nearest size
 @SuppressWarnings("unchecked")
-public class BTreePersistentIndexedCache<K, V> {
+public class BTreePersistentIndexedCache<K, V> implements IndexedCacheStore<K, V> {
     private static final Logger LOGGER = LoggerFactory.getLogger(BTreePersistentIndexedCache.class);
     private final File cacheFile;
     private final KeyHasher<K> keyHasher;
@@ -55,23 +57,40 @@
     private final short maxChildIndexEntries;
     private final int minIndexChildNodes;
     private final StateCheckBlockStore store;
+    private final boolean readOnly;
     private HeaderBlock header;
 
     public BTreePersistentIndexedCache(File cacheFile, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
-        this(cacheFile, keySerializer, valueSerializer, (short) 512, 512);
+        this(cacheFile, keySerializer, valueSerializer, false);
+    }
+
+    /**
+     * @param readOnly whether to open the cache for reading only. Such a cache does not create, rebuild or otherwise modify its file,
+     * but throws {@link WriteRequiredException} when that is needed.
+     */
+    public BTreePersistentIndexedCache(File cacheFile, Serializer<K> keySerializer, Serializer<V> valueSerializer, boolean readOnly) {
+        this(cacheFile, keySerializer, valueSerializer, (short) 512, 512, readOnly);
     }
 
     public BTreePersistentIndexedCache(File cacheFile, Serializer<K> keySerializer, Serializer<V> valueSerializer,
                                        short maxChildIndexEntries, int maxFreeListEntries) {
+        this(cacheFile, keySerializer, valueSerializer, maxChildIndexEntries, maxFreeListEntries, false);
+    }
+
+    private BTreePersistentIndexedCache(File cacheFile, Serializer<K> keySerializer, Serializer<V> valueSerializer,
+                                        short maxChildIndexEntries, int maxFreeListEntries, boolean readOnly) {
         this.cacheFile = cacheFile;
         this.keyHasher = new KeyHasher<K>(keySerializer);
         this.serializer = valueSerializer;
         this.maxChildIndexEntries = maxChildIndexEntries;
         this.minIndexChildNodes = maxChildIndexEntries / 2;
-        BlockStore cachingStore = new CachingBlockStore(new FileBackedBlockStore(cacheFile), ImmutableSet.of(IndexBlock.class, FreeListBlockStore.FreeListBlock.class));
+        this.readOnly = readOnly;
+        BlockStore cachingStore = new CachingBlockStore(new FileBackedBlockStore(cacheFile, readOnly), ImmutableSet.of(IndexBlock.class, FreeListBlockStore.FreeListBlock.class));
         this.store = new StateCheckBlockStore(new FreeListBlockStore(cachingStore, maxFreeListEntries));
         try {
             open();
+        } catch (WriteRequiredException e) {
+            throw e;
         } catch (Exception e) {
             throw new UncheckedIOException(String.format("Could not open %s.", this), e);
         }
@@ -84,6 +103,9 @@ public String toString() {
 
     private void open() throws Exception {
         LOGGER.debug("Opening {}", this);
+        if (readOnly && cacheFile.length() == 0) {
+            throw new WriteRequiredException(String.format("%s needs to be initialized.", this));
+        }
         try {
             doOpen();
         } catch (CorruptedCacheException e) {
@@ -121,6 +143,7 @@ public void run() {
         header = store.readFirst(HeaderBlock.class);
     }
 
+    @Override
     public V get(K key) {
         try {
             try {
@@ -133,11 +156,14 @@ public V get(K key) {
                 rebuild();
                 return null;
             }
+        } catch (WriteRequiredException e) {
+            throw e;
         } catch (Exception e) {
             throw new UncheckedIOException(String.format("Could not read entry '%s' from %s.", key, this), e);
         }
     }
 
+    @Override
     public void put(K key, V value) {
         try {
             long hashCode = keyHasher.getHashCode(key);
@@ -163,6 +189,7 @@ public void put(K key, V value) {
         }
     }
 
+    @Override
     public void remove(K key) {
         try {
             Lookup lookup = header.getRoot().find(key);
@@ -195,6 +222,7 @@ public void reset() {
         }
     }
 
+    @Override
     public void close() {
         LOGGER.debug("Closing {}", this);
         try {
@@ -209,6 +237,10 @@ public boolean isOpen() {
     }
 
     private void rebuild() {
+        if (readOnly) {
+            close();
+            throw new WriteRequiredException(String.format("%s is corrupt and needs to be discarded.", this));
+        }
         LOGGER.warn("{} is corrupt. Discarding.", this);
         try {
             clear();
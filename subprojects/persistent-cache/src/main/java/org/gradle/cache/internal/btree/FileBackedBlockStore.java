@@ -26,6 +26,7 @@
 
 public class FileBackedBlockStore implements BlockStore {
     private final File cacheFile;
+    private final boolean readOnly;
     private RandomAccessFile file;
     private ByteOutput output;
     private ByteInput input;
@@ -34,7 +35,12 @@ public class FileBackedBlockStore implements BlockStore {
     private long currentFileSize;
 
     public FileBackedBlockStore(File cacheFile) {
+        this(cacheFile, false);
+    }
+
+    public FileBackedBlockStore(File cacheFile, boolean readOnly) {
         this.cacheFile = cacheFile;
+        this.readOnly = readOnly;
     }
 
     @Override
@@ -61,6 +67,9 @@ public void open(Runnable runnable, Factory factory) {
     }
 
     private RandomAccessFile openRandomAccessFile() throws FileNotFoundException {
+        if (readOnly) {
+            return randomAccessFile("r");
+        }
         try {
             return randomAccessFile("rw");
         } catch (FileNotFoundException e) {
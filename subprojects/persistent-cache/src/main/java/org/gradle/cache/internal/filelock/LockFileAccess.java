@@ -71,6 +71,13 @@ public LockState markDirty(LockState lockState) throws IOException {
         return newState;
     }
 
+    /**
+     * Returns whether the lock file contains the lock state, that is whether it has been locked exclusively before.
+     */
+    public boolean hasLockState() throws IOException {
+        return lockFileAccess.length() >= lockStateAccess.getRegionEnd();
+    }
+
     public void clearLockInfo() throws IOException {
         lockInfoAccess.clearLockInfo(lockFileAccess);
     }
@@ -0,0 +1,464 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.mapped;
+
+import com.google.common.annotations.VisibleForTesting;
+import org.gradle.api.UncheckedIOException;
+import org.gradle.cache.internal.IndexedCacheStore;
+import org.gradle.cache.internal.IndexedCacheStore.WriteRequiredException;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.hash.Hashing;
+import org.gradle.internal.serialize.Serializer;
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.CRC32;
+
+/**
+ * An indexed cache store that appends its entries to a log file and reads them back through memory mapped segments of the file.
+ *
+ * <p>The position of the latest record for each key is kept in an in-memory index. Lookups only consult the index and the
+ * mapped segments, so they can run concurrently with each other and with writes. Writes append a record to the end of the file,
+ * superseding any earlier record for the same key. Records that cross a segment boundary, or that are in the last, partially
+ * filled segment, are read through the file channel instead.</p>
+ *
+ * <p>When the store is opened and most of the file consists of superseded records, the live records are copied to a new file
+ * which replaces the old one. If the old file cannot be replaced, for example because it is still mapped by another process
+ * on Windows, compaction is skipped.</p>
+ *
+ * <p>The store can be opened again after it has been closed. It then only reads the records that were appended in the meantime,
+ * for example by another process, unless the file has been compacted or discarded.</p>
+ *
+ * <p>When opened for reading only, the store does not discard, truncate or compact the file, but throws
+ * {@link WriteRequiredException} if the file needs to be discarded. A partially written last record is ignored.</p>
+ */
+public class MappedPersistentIndexedCache<K, V> implements IndexedCacheStore<K, V> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MappedPersistentIndexedCache.class);
+
+    private static final int MAGIC = 0x474D4331; // "GMC1"
+    private static final int VERSION = 1;
+    private static final int FILE_HEADER_SIZE = 16;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final byte VALUE_RECORD = 1;
+    private static final byte REMOVED_RECORD = 2;
+
+    static final int DEFAULT_SEGMENT_SIZE = 8 * 1024 * 1024;
+    private static final long MIN_SIZE_TO_COMPACT = 1024 * 1024;
+
+    private final File cacheFile;
+    private final Serializer<K> keySerializer;
+    private final Serializer<V> valueSerializer;
+    private final int segmentSize;
+    private final Map<HashCode, Long> index = new ConcurrentHashMap<>();
+    private final Object writeLock = new Object();
+    private final Object segmentLock = new Object();
+
+    private volatile FileChannel channel;
+    private volatile MappedByteBuffer[] segments = new MappedByteBuffer[0];
+    private volatile long end;
+    private long generation;
+    private long supersededBytes;
+
+    public MappedPersistentIndexedCache(File cacheFile, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+        this(cacheFile, keySerializer, valueSerializer, DEFAULT_SEGMENT_SIZE);
+    }
+
+    @VisibleForTesting
+    MappedPersistentIndexedCache(File cacheFile, Serializer<K> keySerializer, Serializer<V> valueSerializer, int segmentSize) {
+        this.cacheFile = cacheFile;
+        this.keySerializer = keySerializer;
+        this.valueSerializer = valueSerializer;
+        this.segmentSize = segmentSize;
+    }
+
+    @Override
+    public String toString() {
+        return "cache " + cacheFile.getName() + " (" + cacheFile + ")";
+    }
+
+    public void open() {
+        open(false);
+    }
+
+    /**
+     * Opens the store for reading only.
+     */
+    public void openReadOnly() {
+        open(true);
+    }
+
+    private void open(boolean readOnly) {
+        synchronized (writeLock) {
+            LOGGER.debug("Opening {}", this);
+            try {
+                doOpen(readOnly);
+            } catch (WriteRequiredException e) {
+                close();
+                throw e;
+            } catch (Exception e) {
+                // Read the whole file again on the next attempt
+                end = 0;
+                close();
+                throw new UncheckedIOException(String.format("Could not open %s.", this), e);
+            }
+        }
+    }
+
+    private void doOpen(boolean readOnly) throws IOException {
+        channel = readOnly
+            ? FileChannel.open(cacheFile.toPath(), StandardOpenOption.READ)
+            : FileChannel.open(cacheFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = channel.size();
+        if (size < FILE_HEADER_SIZE) {
+            if (readOnly) {
+                throw new WriteRequiredException(String.format("%s needs to be initialized.", this));
+            }
+            discard();
+            return;
+        }
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+        readFully(header, 0);
+        header.flip();
+        if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+            if (readOnly) {
+                throw new WriteRequiredException(String.format("%s is corrupt and needs to be discarded.", this));
+            }
+            LOGGER.warn("{} is corrupt. Discarding.", this);
+            discard();
+            return;
+        }
+        long fileGeneration = header.getLong();
+        if (end == 0 || fileGeneration != generation || size < end) {
+            // Either this is the first time the file is read, or it has been replaced: start from scratch
+            reset(fileGeneration);
+        }
+        readRecords(size);
+        if (readOnly) {
+            return;
+        }
+        if (end < size) {
+            // The last record was not completely written
+            channel.truncate(end);
+        }
+        if (end >= MIN_SIZE_TO_COMPACT && supersededBytes * 2 > end) {
+            compact();
+        }
+    }
+
+    private void discard() throws IOException {
+        reset(newGeneration());
+        channel.truncate(0);
+        writeFileHeader(channel, generation);
+        end = FILE_HEADER_SIZE;
+    }
+
+    private void reset(long generation) {
+        this.generation = generation;
+        index.clear();
+        end = FILE_HEADER_SIZE;
+        supersededBytes = 0;
+        synchronized (segmentLock) {
+            segments = new MappedByteBuffer[0];
+        }
+    }
+
+    private void readRecords(long size) throws IOException {
+        long position = end;
+        channel.position(position);
+        DataInputStream input = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+        CRC32 crc = new CRC32();
+        while (position + RECORD_HEADER_SIZE <= size) {
+            int length = input.readInt();
+            int checksum = input.readInt();
+            if (length < 2 || position + RECORD_HEADER_SIZE + length > size) {
+                break;
+            }
+            byte[] body = new byte[length];
+            input.readFully(body);
+            crc.reset();
+            crc.update(body, 0, length);
+            if ((int) crc.getValue() != checksum || 2 + body[1] > length) {
+                break;
+            }
+            HashCode keyHash = HashCode.fromBytes(Arrays.copyOfRange(body, 2, 2 + body[1]));
+            recordAppended(keyHash, body[0] == VALUE_RECORD, position, RECORD_HEADER_SIZE + length);
+            position += RECORD_HEADER_SIZE + length;
+        }
+        end = position;
+    }
+
+    private void compact() throws IOException {
+        LOGGER.debug("Compacting {}", this);
+        File compactedFile = new File(cacheFile.getPath() + ".compact");
+        long compactedGeneration = newGeneration();
+        Map<HashCode, Long> compactedIndex = new HashMap<>();
+        long position = FILE_HEADER_SIZE;
+        try (FileChannel target = FileChannel.open(compactedFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            writeFileHeader(target, compactedGeneration);
+            for (Map.Entry<HashCode, Long> entry : index.entrySet()) {
+                ByteBuffer record = ByteBuffer.wrap(readRecord(entry.getValue(), true));
+                compactedIndex.put(entry.getKey(), position);
+                while (record.hasRemaining()) {
+                    position += target.write(record, position);
+                }
+            }
+        }
+        channel.close();
+        try {
+            Files.move(compactedFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOGGER.debug("Could not replace {} with its compacted version.", this, e);
+            Files.deleteIfExists(compactedFile.toPath());
+            channel = FileChannel.open(cacheFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+            return;
+        }
+        channel = FileChannel.open(cacheFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        reset(compactedGeneration);
+        index.putAll(compactedIndex);
+        end = position;
+    }
+
+    @Nullable
+    @Override
+    public V get(K key) {
+        try {
+            HashCode keyHash = hashKey(key);
+            Long position = index.get(keyHash);
+            if (position == null) {
+                return null;
+            }
+            byte[] body = readRecord(position, false);
+            int valueOffset = 2 + body[1];
+            KryoBackedDecoder decoder = new KryoBackedDecoder(new ByteArrayInputStream(body, valueOffset, body.length - valueOffset));
+            return valueSerializer.read(decoder);
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not read entry '%s' from %s.", key, this), e);
+        }
+    }
+
+    @Override
+    public void put(K key, V value) {
+        try {
+            HashCode keyHash = hashKey(key);
+            ByteArrayOutputStream body = startRecord(VALUE_RECORD, keyHash);
+            KryoBackedEncoder encoder = new KryoBackedEncoder(body);
+            valueSerializer.write(encoder, value);
+            encoder.flush();
+            append(keyHash, true, body.toByteArray());
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not add entry '%s' to %s.", key, this), e);
+        }
+    }
+
+    @Override
+    public void remove(K key) {
+        try {
+            HashCode keyHash = hashKey(key);
+            if (!index.containsKey(keyHash)) {
+                return;
+            }
+            append(keyHash, false, startRecord(REMOVED_RECORD, keyHash).toByteArray());
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not remove entry '%s' from %s.", key, this), e);
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (writeLock) {
+            LOGGER.debug("Closing {}", this);
+            synchronized (segmentLock) {
+                segments = new MappedByteBuffer[0];
+            }
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } finally {
+                    channel = null;
+                }
+            }
+        }
+    }
+
+    private HashCode hashKey(K key) throws Exception {
+        ByteArrayOutputStream keyBytes = new ByteArrayOutputStream();
+        KryoBackedEncoder encoder = new KryoBackedEncoder(keyBytes);
+        keySerializer.write(encoder, key);
+        encoder.flush();
+        return Hashing.hashBytes(keyBytes.toByteArray());
+    }
+
+    private static ByteArrayOutputStream startRecord(byte type, HashCode keyHash) {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        body.write(type);
+        body.write(keyHash.length());
+        byte[] hashBytes = keyHash.toByteArray();
+        body.write(hashBytes, 0, hashBytes.length);
+        return body;
+    }
+
+    private void append(HashCode keyHash, boolean isValue, byte[] body) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(body, 0, body.length);
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + body.length);
+        record.putInt(body.length);
+        record.putInt((int) crc.getValue());
+        record.put(body);
+        record.flip();
+        synchronized (writeLock) {
+            FileChannel channel = openChannel();
+            long position = end;
+            while (record.hasRemaining()) {
+                channel.write(record, position + record.position());
+            }
+            end = position + record.limit();
+            recordAppended(keyHash, isValue, position, record.limit());
+        }
+    }
+
+    private void recordAppended(HashCode keyHash, boolean isValue, long position, int recordSize) throws IOException {
+        Long previous = isValue ? index.put(keyHash, position) : index.remove(keyHash);
+        if (previous != null) {
+            supersededBytes += RECORD_HEADER_SIZE + readInt(previous);
+        }
+        if (!isValue) {
+            supersededBytes += recordSize;
+        }
+    }
+
+    private int readInt(long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4);
+        read(buffer, position);
+        buffer.flip();
+        return buffer.getInt();
+    }
+
+    private byte[] readRecord(long position, boolean includeHeader) throws IOException {
+        int length = readInt(position);
+        int headerSize = includeHeader ? RECORD_HEADER_SIZE : 0;
+        ByteBuffer record = ByteBuffer.allocate(headerSize + length);
+        read(record, position + RECORD_HEADER_SIZE - headerSize);
+        return record.array();
+    }
+
+    /**
+     * Fills the given buffer with the contents of the file at the given position, using the mapped segment containing it if possible.
+     */
+    private void read(ByteBuffer buffer, long position) throws IOException {
+        int segmentIndex = (int) (position / segmentSize);
+        long segmentStart = (long) segmentIndex * segmentSize;
+        if (position + buffer.remaining() <= segmentStart + segmentSize) {
+            ByteBuffer segment = segment(segmentIndex);
+            if (segment != null) {
+                ByteBuffer source = segment.duplicate();
+                source.position((int) (position - segmentStart));
+                source.limit(source.position() + buffer.remaining());
+                buffer.put(source);
+                return;
+            }
+        }
+        readFully(buffer, position);
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        FileChannel channel = openChannel();
+        long offset = position;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, offset);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of " + this);
+            }
+            offset += read;
+        }
+    }
+
+    /**
+     * Returns the mapped segment with the given index, or null when the file does not cover the whole segment yet.
+     */
+    @Nullable
+    private ByteBuffer segment(int segmentIndex) throws IOException {
+        MappedByteBuffer[] current = segments;
+        if (segmentIndex < current.length && current[segmentIndex] != null) {
+            return current[segmentIndex];
+        }
+        long segmentStart = (long) segmentIndex * segmentSize;
+        if (segmentStart + segmentSize > end) {
+            return null;
+        }
+        synchronized (segmentLock) {
+            current = segments;
+            if (segmentIndex < current.length && current[segmentIndex] != null) {
+                return current[segmentIndex];
+            }
+            MappedByteBuffer[] grown = Arrays.copyOf(current, Math.max(current.length, segmentIndex + 1));
+            grown[segmentIndex] = openChannel().map(FileChannel.MapMode.READ_ONLY, segmentStart, segmentSize);
+            segments = grown;
+            return grown[segmentIndex];
+        }
+    }
+
+    private FileChannel openChannel() {
+        FileChannel channel = this.channel;
+        if (channel == null) {
+            throw new IllegalStateException(String.format("%s is not open.", this));
+        }
+        return channel;
+    }
+
+    private static void writeFileHeader(FileChannel target, long generation) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.putLong(generation);
+        header.flip();
+        while (header.hasRemaining()) {
+            target.write(header, header.position());
+        }
+    }
+
+    private static long newGeneration() {
+        long generation;
+        do {
+            generation = ThreadLocalRandom.current().nextLong();
+        } while (generation == 0);
+        return generation;
+    }
+}
@@ -71,6 +71,37 @@ class DefaultFileLockManagerContentionTest extends ConcurrentSpec {
         lockMode << [Exclusive, Shared]
     }
 
+    def "lock manager is notified while holding a shared lock when another lock manager in same process requires exclusive lock"() {
+        given:
+        def file = tmpDir.file("lock-file.bin")
+        createLock(Exclusive, file).close()
+        def action = Mock(Action)
+
+        def lock = createLock(Shared, file, manager, action)
+
+        when:
+        def lock2 = createLock(Exclusive, file, manager2)
+
+        then:
+        lock.mode == Shared
+        lock2
+        1 * action.execute(_) >> { FileLockReleasedSignal signal ->
+            lock.close()
+            signal.trigger()
+        }
+    }
+
+    def "acquires exclusive lock when shared lock that can be released on request is required before the lock file has been initialized"() {
+        given:
+        def file = tmpDir.file("lock-file.bin")
+
+        when:
+        def lock = createLock(Shared, file, manager, Mock(Action))
+
+        then:
+        lock.mode == Exclusive
+    }
+
     @Unroll
     def "cannot acquire lock with mode #lockMode while another lock manager in same process is holding shared lock"() {
         given:
@@ -799,4 +799,132 @@ class LockOnDemandCrossProcessCacheAccessTest extends ConcurrentSpec {
         1 * lock.close()
         0 * _
     }
+
+    def "retains shared lock on completion of action and releases it when another process requests it"() {
+        def action = Mock(Factory)
+        def lock = Mock(FileLock)
+        def signal = Mock(FileLockReleasedSignal)
+        def contendedAction
+        def cacheAccess = new LockOnDemandCrossProcessCacheAccess("<cache>", file, LockOptionsBuilder.mode(FileLockManager.LockMode.Shared), lockManager, new ReentrantLock(), Stub(CacheInitializationAction), Stub(Action), Stub(Action))
+
+        when:
+        cacheAccess.withFileLock(action)
+
+        then:
+        1 * lockManager.lock(file, { it.mode == FileLockManager.LockMode.Shared }, _, _, _) >> { File target, LockOptions options, String targetDisplayName, String operationDisplayName, Action<FileLockReleasedSignal> whenContended ->
+            contendedAction = whenContended
+            lock
+        }
+        _ * lock.mode >> FileLockManager.LockMode.Shared
+
+        then:
+        1 * action.create() >> "result"
+        0 * _
+
+        when:
+        contendedAction.execute(signal)
+
+        then:
+        1 * lock.close()
+
+        then:
+        1 * signal.trigger()
+        0 * _
+    }
+
+    def "releases shared lock on completion of action when another process requests it while the action is running"() {
+        def action = Mock(Factory)
+        def lock = Mock(FileLock)
+        def signal = Mock(FileLockReleasedSignal)
+        def contendedAction
+        def cacheAccess = new LockOnDemandCrossProcessCacheAccess("<cache>", file, LockOptionsBuilder.mode(FileLockManager.LockMode.Shared), lockManager, new ReentrantLock(), Stub(CacheInitializationAction), Stub(Action), Stub(Action))
+
+        when:
+        cacheAccess.withFileLock(action)
+
+        then:
+        1 * lockManager.lock(file, { it.mode == FileLockManager.LockMode.Shared }, _, _, _) >> { File target, LockOptions options, String targetDisplayName, String operationDisplayName, Action<FileLockReleasedSignal> whenContended ->
+            contendedAction = whenContended
+            lock
+        }
+        _ * lock.mode >> FileLockManager.LockMode.Shared
+
+        then:
+        1 * action.create() >> { contendedAction.execute(signal); "result" }
+
+        then:
+        1 * lock.close()
+
+        then:
+        1 * signal.trigger()
+        0 * _
+    }
+
+    def "upgrades shared lock to exclusive lock"() {
+        def lock = Mock(FileLock)
+        def exclusiveLock = Mock(FileLock)
+        def onOpen = Mock(Action)
+        def onClose = Mock(Action)
+        def cacheAccess = new LockOnDemandCrossProcessCacheAccess("<cache>", file, LockOptionsBuilder.mode(FileLockManager.LockMode.Shared), lockManager, new ReentrantLock(), Stub(CacheInitializationAction), onOpen, onClose)
+
+        when:
+        def release = cacheAccess.acquireFileLock()
+
+        then:
+        1 * lockManager.lock(file, { it.mode == FileLockManager.LockMode.Shared }, _, _, _) >> lock
+        _ * lock.mode >> FileLockManager.LockMode.Shared
+        1 * onOpen.execute(lock)
+        0 * _
+
+        when:
+        cacheAccess.upgradeToExclusiveLock()
+
+        then:
+        _ * lock.mode >> FileLockManager.LockMode.Shared
+        1 * onClose.execute(lock)
+
+        then:
+        1 * lock.close()
+
+        then:
+        1 * lockManager.lock(file, { it.mode == FileLockManager.LockMode.Exclusive }, _, _, _) >> exclusiveLock
+        _ * exclusiveLock.mode >> FileLockManager.LockMode.Exclusive
+        1 * onOpen.execute(exclusiveLock)
+        0 * _
+
+        when:
+        release.run()
+
+        then:
+        _ * exclusiveLock.mode >> FileLockManager.LockMode.Exclusive
+        0 * _
+    }
+
+    def "acquires exclusive lock when cache requires initialization"() {
+        def action = Mock(Factory)
+        def lock = Mock(FileLock)
+        def exclusiveLock = Mock(FileLock)
+        def initAction = Mock(CacheInitializationAction)
+        def cacheAccess = new LockOnDemandCrossProcessCacheAccess("<cache>", file, LockOptionsBuilder.mode(FileLockManager.LockMode.Shared), lockManager, new ReentrantLock(), initAction, Stub(Action), Stub(Action))
+
+        when:
+        cacheAccess.withFileLock(action)
+
+        then:
+        1 * lockManager.lock(file, { it.mode == FileLockManager.LockMode.Shared }, _, _, _) >> lock
+        _ * lock.mode >> FileLockManager.LockMode.Shared
+        1 * initAction.requiresInitialization(lock) >> true
+        1 * lock.close()
+
+        then:
+        1 * lockManager.lock(file, { it.mode == FileLockManager.LockMode.Exclusive }, _, _, _) >> exclusiveLock
+        _ * exclusiveLock.mode >> FileLockManager.LockMode.Exclusive
+        1 * initAction.requiresInitialization(exclusiveLock) >> true
+        1 * exclusiveLock.writeFile(_) >> { Runnable r -> r.run() }
+        1 * initAction.initialize(exclusiveLock)
+
+        then:
+        1 * action.create() >> "result"
+        0 * _
+    }
 }
@@ -25,6 +25,8 @@ class MultiProcessSafePersistentIndexedCacheTest extends Specification {
     final Factory<BTreePersistentIndexedCache<String, String>> factory = Mock()
     final cache = new DefaultMultiProcessSafePersistentIndexedCache<String, String>(factory, fileAccess)
     final BTreePersistentIndexedCache<String, String> backingCache = Mock()
+    final Factory<BTreePersistentIndexedCache<String, String>> readOnlyFactory = Mock()
+    final BTreePersistentIndexedCache<String, String> readOnlyBackingCache = Mock()
 
     def "opens cache on first access"() {
         when:
@@ -135,4 +137,95 @@ class MultiProcessSafePersistentIndexedCacheTest extends Specification {
 
         cache.getIfPresent("something")
     }
+
+    def "opens cache for reading only while holding read lock when reads use a shared lock"() {
+        def cache = new DefaultMultiProcessSafePersistentIndexedCache<String, String>(factory, readOnlyFactory, fileAccess)
+
+        when:
+        def result = cache.getIfPresent("value")
+
+        then:
+        result == "result"
+
+        and:
+        1 * fileAccess.readFile(!null) >> { Factory action -> action.create() }
+        1 * readOnlyFactory.create() >> readOnlyBackingCache
+        1 * readOnlyBackingCache.get("value") >> "result"
+        0 * _._
+
+        when:
+        cache.finishWork()
+
+        then:
+        1 * readOnlyBackingCache.close()
+        0 * _._
+    }
+
+    def "does not create cache when reading with a shared lock and cache file does not exist"() {
+        def cache = new DefaultMultiProcessSafePersistentIndexedCache<String, String>(factory, readOnlyFactory, fileAccess)
+
+        when:
+        def result = cache.getIfPresent("value")
+
+        then:
+        result == null
+
+        and:
+        1 * fileAccess.readFile(!null) >> { Factory action -> action.create() }
+        1 * readOnlyFactory.create() >> null
+        0 * _._
+    }
+
+    def "opens cache for writing while holding write lock when cache opened for reading needs to be repaired"() {
+        def cache = new DefaultMultiProcessSafePersistentIndexedCache<String, String>(factory, readOnlyFactory, fileAccess)
+
+        when:
+        def result = cache.getIfPresent("value")
+
+        then:
+        result == null
+
+        and:
+        1 * fileAccess.readFile(!null) >> { Factory action -> action.create() }
+        1 * readOnlyFactory.create() >> readOnlyBackingCache
+        1 * readOnlyBackingCache.get("value") >> { throw new IndexedCacheStore.WriteRequiredException("corrupt") }
+
+        then:
+        1 * fileAccess.writeFile(!null) >> { Runnable action -> action.run() }
+        1 * readOnlyBackingCache.close()
+        1 * factory.create() >> backingCache
+
+        then:
+        1 * fileAccess.readFile(!null) >> { Factory action -> action.create() }
+        1 * backingCache.get("value") >> null
+        0 * _._
+    }
+
+    def "holds write lock while writing to cache opened for reading with a shared lock"() {
+        def cache = new DefaultMultiProcessSafePersistentIndexedCache<String, String>(factory, readOnlyFactory, fileAccess)
+        _ * fileAccess.readFile(!null) >> { Factory action -> action.create() }
+        1 * readOnlyFactory.create() >> readOnlyBackingCache
+        cache.getIfPresent("value")
+
+        when:
+        cache.put("key", "value")
+
+        then:
+        1 * fileAccess.writeFile(!null) >> { Runnable action -> action.run() }
+        1 * readOnlyBackingCache.close()
+        1 * factory.create() >> backingCache
+
+        then:
+        1 * fileAccess.writeFile(!null) >> { Runnable action -> action.run() }
+        1 * backingCache.put("key", "value")
+        0 * _._
+
+        when:
+        cache.finishWork()
+
+        then:
+        1 * fileAccess.writeFile(!null) >> { Runnable action -> action.run() }
+        1 * backingCache.close()
+        0 * _._
+    }
 }
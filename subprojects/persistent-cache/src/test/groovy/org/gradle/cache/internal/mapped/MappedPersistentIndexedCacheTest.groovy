@@ -0,0 +1,149 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.mapped
+
+import org.gradle.internal.serialize.BaseSerializerFactory
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+class MappedPersistentIndexedCacheTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider(getClass())
+    def serializer = new BaseSerializerFactory().getSerializerFor(String)
+    def cacheFile = tmpDir.file("cache.mapped.bin")
+    // Use small segments so that both mapped and unmapped reads are exercised
+    def cache = newCache()
+
+    def setup() {
+        cache.open()
+    }
+
+    def cleanup() {
+        cache.close()
+    }
+
+    def "returns null for unknown entries"() {
+        expect:
+        cache.get("unknown") == null
+    }
+
+    def "can read entries after updating and removing them"() {
+        when:
+        (0..<1000).each { cache.put("key-" + it, "value-$it" * 10) }
+        (0..<1000).step(2) { cache.put("key-" + it, "updated-" + it) }
+        (0..<1000).step(3) { cache.remove("key-" + it) }
+
+        then:
+        (0..<1000).every { cache.get("key-" + it) == expectedValue(it) }
+    }
+
+    def "entries survive reopening"() {
+        (0..<1000).each { cache.put("key-" + it, "value-$it" * 10) }
+        cache.remove("key-5")
+        cache.close()
+
+        when:
+        def reopened = newCache()
+        reopened.open()
+
+        then:
+        reopened.get("key-5") == null
+        reopened.get("key-6") == "value-6" * 10
+        (0..<1000).findAll { it != 5 }.every { reopened.get("key-" + it) == "value-$it" * 10 }
+
+        cleanup:
+        reopened.close()
+    }
+
+    def "reads entries appended by another instance when reopened"() {
+        cache.put("key", "value")
+        cache.close()
+
+        def other = newCache()
+        other.open()
+        other.put("key", "other value")
+        other.put("new key", "new value")
+        other.close()
+
+        when:
+        cache.open()
+
+        then:
+        cache.get("key") == "other value"
+        cache.get("new key") == "new value"
+    }
+
+    def "discards incompletely written record"() {
+        cache.put("key-1", "value-1")
+        cache.put("key-2", "value-2")
+        cache.close()
+        def length = cacheFile.length()
+        new RandomAccessFile(cacheFile, "rw").withCloseable { it.setLength(length - 2) }
+
+        when:
+        def reopened = newCache()
+        reopened.open()
+        reopened.put("key-3", "value-3")
+
+        then:
+        reopened.get("key-1") == "value-1"
+        reopened.get("key-2") == null
+        reopened.get("key-3") == "value-3"
+
+        cleanup:
+        reopened.close()
+    }
+
+    def "discards file with unknown format"() {
+        cache.close()
+        cacheFile.text = "not a cache file"
+
+        when:
+        cache = newCache()
+        cache.open()
+        cache.put("key", "value")
+
+        then:
+        cache.get("key") == "value"
+    }
+
+    def "compacts file when most records are superseded"() {
+        def value = "x" * 1000
+        (0..<3000).each { cache.put("key-" + (it % 10), value + it) }
+        cache.close()
+        def uncompactedLength = cacheFile.length()
+
+        when:
+        cache.open()
+
+        then:
+        cacheFile.length() < uncompactedLength / 100
+        (0..<10).every { cache.get("key-" + it) == value + (2990 + it) }
+    }
+
+    private MappedPersistentIndexedCache<String, String> newCache() {
+        new MappedPersistentIndexedCache<String, String>(cacheFile, serializer, serializer, 4096)
+    }
+
+    private static String expectedValue(int i) {
+        if (i % 3 == 0) {
+            return null
+        }
+        return i % 2 == 0 ? "updated-" + i : "value-$i" * 10
+    }
+}
@@ -34,12 +34,14 @@
 import java.util.Collection;
 
 public class DefaultHttpSettings implements HttpSettings {
+    public static final int DEFAULT_MAX_CONNECTIONS = 20;
+
     private final Collection<Authentication> authenticationSettings;
     private final SslContextFactory sslContextFactory;
     private final HostnameVerifier hostnameVerifier;
     private final HttpRedirectVerifier redirectVerifier;
     private final boolean followRedirects;
-
+    private final int maxConnections;
 
     private HttpProxySettings proxySettings;
     private HttpProxySettings secureProxySettings;
@@ -49,12 +51,14 @@ public static Builder builder() {
         return new Builder();
     }
 
-    private DefaultHttpSettings(Collection<Authentication> authenticationSettings, SslContextFactory sslContextFactory, HostnameVerifier hostnameVerifier, HttpRedirectVerifier redirectVerifier, boolean followRedirects) {
+    private DefaultHttpSettings(Collection<Authentication> authenticationSettings, SslContextFactory sslContextFactory, HostnameVerifier hostnameVerifier, HttpRedirectVerifier redirectVerifier, boolean followRedirects, int maxConnections) {
         this.followRedirects = followRedirects;
+        this.maxConnections = maxConnections;
         Preconditions.checkNotNull(authenticationSettings, "authenticationSettings");
         Preconditions.checkNotNull(sslContextFactory, "sslContextFactory");
         Preconditions.checkNotNull(hostnameVerifier, "hostnameVerifier");
         Preconditions.checkNotNull(redirectVerifier, "redirectVerifier");
+        Preconditions.checkArgument(maxConnections > 0, "maxConnections must be positive");
 
         this.authenticationSettings = authenticationSettings;
         this.sslContextFactory = sslContextFactory;
@@ -111,12 +115,18 @@ public HostnameVerifier getHostnameVerifier() {
         return hostnameVerifier;
     }
 
+    @Override
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
     public static class Builder {
         private Collection<Authentication> authenticationSettings;
         private SslContextFactory sslContextFactory;
         private HostnameVerifier hostnameVerifier;
         private HttpRedirectVerifier redirectVerifier;
         private boolean followRedirects = true;
+        private int maxConnections = DEFAULT_MAX_CONNECTIONS;
 
         public Builder withAuthenticationSettings(Collection<Authentication> authenticationSettings) {
             this.authenticationSettings = authenticationSettings;
@@ -145,8 +155,13 @@ public Builder followRedirects(boolean followRedirects) {
             return this;
         }
 
+        public Builder withMaxConnections(int maxConnections) {
+            this.maxConnections = maxConnections;
+            return this;
+        }
+
         public HttpSettings build() {
-            return new DefaultHttpSettings(authenticationSettings, sslContextFactory, hostnameVerifier, redirectVerifier, followRedirects);
+            return new DefaultHttpSettings(authenticationSettings, sslContextFactory, hostnameVerifier, redirectVerifier, followRedirects, maxConnections);
         }
     }
 
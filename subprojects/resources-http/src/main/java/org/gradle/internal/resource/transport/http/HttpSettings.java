@@ -38,4 +38,9 @@ public interface HttpSettings {
     SslContextFactory getSslContextFactory();
 
     HostnameVerifier getHostnameVerifier();
+
+    /**
+     * The maximum number of connections kept open to a single host. Requests beyond this number wait for a connection to become available.
+     */
+    int getMaxConnections();
 }
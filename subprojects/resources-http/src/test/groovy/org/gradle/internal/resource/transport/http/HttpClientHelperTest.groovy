@@ -92,6 +92,7 @@ class HttpClientHelperTest extends AbstractHttpClientTest {
         return Stub(HttpSettings) {
             getProxySettings() >> Mock(HttpProxySettings)
             getSecureProxySettings() >> Mock(HttpProxySettings)
+            getMaxConnections() >> DefaultHttpSettings.DEFAULT_MAX_CONNECTIONS
             getSslContextFactory() >> Mock(SslContextFactory) {
                 createSslContext() >> SSLContexts.createDefault()
             }
@@ -51,6 +51,7 @@ class HttpClientHelperTimeoutTest extends Specification {
         Stub(HttpSettings) {
             getProxySettings() >> Mock(HttpProxySettings)
             getSecureProxySettings() >> Mock(HttpProxySettings)
+            getMaxConnections() >> DefaultHttpSettings.DEFAULT_MAX_CONNECTIONS
             getTimeoutSettings() >> { new JavaSystemPropertiesHttpTimeoutSettings() }
             getSslContextFactory() >> Mock(SslContextFactory) {
                 createSslContext() >> SSLContexts.createDefault()
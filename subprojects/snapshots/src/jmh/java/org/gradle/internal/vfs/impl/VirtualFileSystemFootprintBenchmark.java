@@ -0,0 +1,123 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.vfs.impl;
+
+import org.gradle.internal.file.FileMetadata.AccessType;
+import org.gradle.internal.file.impl.DefaultFileMetadata;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.snapshot.AbstractFileSystemLocationSnapshot;
+import org.gradle.internal.snapshot.CaseSensitivity;
+import org.gradle.internal.snapshot.DirectorySnapshot;
+import org.gradle.internal.snapshot.FileSystemLocationSnapshot;
+import org.gradle.internal.snapshot.RegularFileSnapshot;
+import org.gradle.internal.snapshot.SnapshotHierarchy;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures the heap retained by a virtual file system holding the snapshots of a large workspace.
+ *
+ * The retained heap is reported as the {@code retainedBytes} secondary result.
+ * The {@code compactPaths} benchmark stores the absolute paths of snapshots as their interned parent path and their name.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class VirtualFileSystemFootprintBenchmark {
+    private static final int MODULES = 2000;
+    private static final int DIRECTORIES_PER_MODULE = 10;
+    private static final int FILES_PER_DIRECTORY = 20;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+        public long retainedBytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            retainedBytes = 0;
+        }
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-D" + AbstractFileSystemLocationSnapshot.COMPACT_PATHS_PROPERTY + "=false")
+    public SnapshotHierarchy fullPaths(Footprint footprint) {
+        return measureRetainedHeap(footprint);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-D" + AbstractFileSystemLocationSnapshot.COMPACT_PATHS_PROPERTY + "=true")
+    public SnapshotHierarchy compactPaths(Footprint footprint) {
+        return measureRetainedHeap(footprint);
+    }
+
+    private static SnapshotHierarchy measureRetainedHeap(Footprint footprint) {
+        long usedBefore = usedHeapAfterGc();
+        SnapshotHierarchy root = createWorkspace();
+        footprint.retainedBytes = usedHeapAfterGc() - usedBefore;
+        return root;
+    }
+
+    private static SnapshotHierarchy createWorkspace() {
+        SnapshotHierarchy root = DefaultSnapshotHierarchy.empty(CaseSensitivity.CASE_SENSITIVE);
+        String workspace = File.separator + "home" + File.separator + "user" + File.separator + "workspace";
+        for (int module = 0; module < MODULES; module++) {
+            DirectorySnapshot moduleSnapshot = createModule(workspace + File.separator + "module-" + module);
+            root = root.store(moduleSnapshot.getAbsolutePath(), moduleSnapshot, SnapshotHierarchy.NodeDiffListener.NOOP);
+        }
+        return root;
+    }
+
+    private static DirectorySnapshot createModule(String modulePath) {
+        String sourcesPath = modulePath + File.separator + "src" + File.separator + "main" + File.separator + "java";
+        List<FileSystemLocationSnapshot> packages = new ArrayList<>(DIRECTORIES_PER_MODULE);
+        for (int directory = 0; directory < DIRECTORIES_PER_MODULE; directory++) {
+            String packageName = "package" + directory;
+            String packagePath = sourcesPath + File.separator + packageName;
+            List<FileSystemLocationSnapshot> files = new ArrayList<>(FILES_PER_DIRECTORY);
+            for (int file = 0; file < FILES_PER_DIRECTORY; file++) {
+                String fileName = "SomeSourceFile" + file + ".java";
+                // Snapshotting creates a new string for each absolute path, too
+                String filePath = new StringBuilder(packagePath).append(File.separatorChar).append(fileName).toString();
+                files.add(new RegularFileSnapshot(filePath, fileName, HashCode.fromInt(file), DefaultFileMetadata.file(file, file, AccessType.DIRECT)));
+            }
+            packages.add(new DirectorySnapshot(packagePath, packageName, AccessType.DIRECT, HashCode.fromInt(directory), files));
+        }
+        return new DirectorySnapshot(sourcesPath, "java", AccessType.DIRECT, HashCode.fromInt(-1), packages);
+    }
+
+    private static long usedHeapAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.vfs.impl;
+
+import org.gradle.internal.file.FileMetadata.AccessType;
+import org.gradle.internal.file.impl.DefaultFileMetadata;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.snapshot.CaseSensitivity;
+import org.gradle.internal.snapshot.FileSystemLocationSnapshot;
+import org.gradle.internal.snapshot.RegularFileSnapshot;
+import org.gradle.internal.snapshot.SnapshotHierarchy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures the throughput of concurrent stores into the virtual file system.
+ *
+ * Each thread stores snapshots into its own directory, so the updates are to disjoint locations.
+ * The {@code locking} implementation computes each update while holding the update lock.
+ */
+@Fork(1)
+@Threads(16)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class VirtualFileSystemUpdateBenchmark {
+    private static final int STORES_PER_INVOCATION = 1000;
+
+    @Param({"optimistic", "locking"})
+    String updateStrategy;
+
+    AbstractVirtualFileSystem virtualFileSystem;
+    final AtomicInteger threadCount = new AtomicInteger();
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        VfsRootReference rootReference = new VfsRootReference(DefaultSnapshotHierarchy.empty(CaseSensitivity.CASE_SENSITIVE));
+        virtualFileSystem = "locking".equals(updateStrategy)
+            ? new LockingVirtualFileSystem(rootReference)
+            : new NotifyingVirtualFileSystem(rootReference);
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        FileSystemLocationSnapshot[] snapshots;
+
+        @Setup(Level.Iteration)
+        public void setup(VirtualFileSystemUpdateBenchmark benchmark) {
+            String dir = File.separator + "root" + File.separator + "thread" + benchmark.threadCount.incrementAndGet() + File.separator;
+            snapshots = new FileSystemLocationSnapshot[STORES_PER_INVOCATION];
+            for (int i = 0; i < STORES_PER_INVOCATION; i++) {
+                String name = "file" + i;
+                snapshots[i] = new RegularFileSnapshot(dir + name, name, HashCode.fromInt(i), DefaultFileMetadata.file(i, i, AccessType.DIRECT));
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STORES_PER_INVOCATION)
+    public void store(ThreadState state) {
+        for (FileSystemLocationSnapshot snapshot : state.snapshots) {
+            virtualFileSystem.store(snapshot.getAbsolutePath(), snapshot);
+        }
+    }
+
+    private static class NotifyingVirtualFileSystem extends AbstractVirtualFileSystem {
+        public NotifyingVirtualFileSystem(VfsRootReference rootReference) {
+            super(rootReference);
+        }
+
+        @Override
+        protected SnapshotHierarchy updateNotifyingListeners(UpdateFunction updateFunction) {
+            return updateFunction.update(SnapshotHierarchy.NodeDiffListener.NOOP);
+        }
+    }
+
+    private static class LockingVirtualFileSystem extends NotifyingVirtualFileSystem {
+        public LockingVirtualFileSystem(VfsRootReference rootReference) {
+            super(rootReference);
+        }
+
+        @Override
+        public void store(String absolutePath, FileSystemLocationSnapshot snapshot) {
+            rootReference.update(root -> updateNotifyingListeners(diffListener -> root.store(absolutePath, snapshot, diffListener)));
+        }
+    }
+}
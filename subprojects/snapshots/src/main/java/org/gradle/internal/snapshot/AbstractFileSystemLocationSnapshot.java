@@ -16,28 +16,70 @@
 
 package org.gradle.internal.snapshot;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 import org.gradle.internal.file.FileMetadata.AccessType;
 
+import javax.annotation.Nullable;
+import java.io.File;
 import java.util.Optional;
 
 public abstract class AbstractFileSystemLocationSnapshot implements FileSystemLocationSnapshot {
-    private final String absolutePath;
+    /**
+     * Store the absolute path of a snapshot as the interned path of its parent and its name.
+     *
+     * All the snapshots in a directory then share the same parent path instead of each holding its own absolute path,
+     * at the cost of reconstructing the absolute path when it is requested.
+     */
+    public static final String COMPACT_PATHS_PROPERTY = "org.gradle.unsafe.vfs.compact-paths";
+    private static final boolean COMPACT_PATHS = Boolean.getBoolean(COMPACT_PATHS_PROPERTY);
+    private static final Interner<String> PARENT_PATHS = Interners.newWeakInterner();
+
+    /**
+     * The absolute path, or the parent path when {@link #pathCompacted} is set.
+     */
+    private final String path;
     private final String name;
     private final AccessType accessType;
+    private final boolean pathCompacted;
 
     public AbstractFileSystemLocationSnapshot(String absolutePath, String name, AccessType accessType) {
-        this.absolutePath = absolutePath;
+        String parentPath = COMPACT_PATHS ? parentPathOf(absolutePath, name, File.separatorChar) : null;
+        this.pathCompacted = parentPath != null;
+        this.path = pathCompacted
+            ? PARENT_PATHS.intern(parentPath)
+            : absolutePath;
         this.name = name;
         this.accessType = accessType;
     }
 
+    /**
+     * Returns the path which the absolute path can be reconstructed from by appending the separator and the name,
+     * or {@code null} if the name is not the last segment of the absolute path.
+     */
+    @VisibleForTesting
+    @Nullable
+    static String parentPathOf(String absolutePath, String name, char separator) {
+        int separatorIndex = absolutePath.length() - name.length() - 1;
+        if (name.isEmpty()
+            || separatorIndex < 0
+            || absolutePath.charAt(separatorIndex) != separator
+            || !absolutePath.endsWith(name)) {
+            return null;
+        }
+        return absolutePath.substring(0, separatorIndex);
+    }
+
     protected static MissingFileSnapshot missingSnapshotForAbsolutePath(String filePath) {
         return new MissingFileSnapshot(filePath, AccessType.DIRECT);
     }
 
     @Override
     public String getAbsolutePath() {
-        return absolutePath;
+        return pathCompacted
+            ? path + File.separatorChar + name
+            : path;
     }
 
     @Override
@@ -114,7 +156,9 @@ public boolean equals(Object o) {
         if (!name.equals(that.name)) {
             return false;
         }
-        if (!absolutePath.equals(that.absolutePath)) {
+        // Whether the path is compacted only depends on the absolute path and the name,
+        // so snapshots with the same name have the same absolute path exactly when they have the same path and compaction
+        if (pathCompacted != that.pathCompacted || !path.equals(that.path)) {
             return false;
         }
         return getHash().equals(that.getHash());
@@ -122,7 +166,7 @@ public boolean equals(Object o) {
 
     @Override
     public int hashCode() {
-        int result = absolutePath.hashCode();
+        int result = path.hashCode();
         result = 31 * result + name.hashCode();
         result = 31 * result + accessType.hashCode();
         result = 31 * result + getHash().hashCode();
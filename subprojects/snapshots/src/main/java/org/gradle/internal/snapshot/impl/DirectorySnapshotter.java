@@ -17,10 +17,12 @@
 package org.gradle.internal.snapshot.impl;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Interner;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Uninterruptibles;
 import org.gradle.internal.file.FileMetadata;
 import org.gradle.internal.file.FileMetadata.AccessType;
 import org.gradle.internal.file.impl.DefaultFileMetadata;
@@ -50,17 +52,35 @@
 import java.nio.file.Paths;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Deque;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 
 import static org.gradle.internal.snapshot.MerkleDirectorySnapshotBuilder.EmptyDirectoryHandlingStrategy.INCLUDE_EMPTY_DIRS;
 
+/**
+ * Snapshots file system hierarchies.
+ *
+ * The hierarchy is walked on the calling thread.
+ * When a hierarchy contains many regular files, they are hashed in parallel on the given executor once the walk is complete,
+ * before the Merkle tree is built from the recorded walk.
+ * The calling thread hashes files as well, so hashing finishes even when the executor has no free threads.
+ */
 public class DirectorySnapshotter {
     private static final Logger LOGGER = LoggerFactory.getLogger(DirectorySnapshotter.class);
+    @VisibleForTesting
+    static final int PARALLEL_HASHING_THRESHOLD = 64;
+    private static final int FILES_PER_HASHING_TASK = 16;
     private static final EnumSet<FileVisitOption> DONT_FOLLOW_SYMLINKS = EnumSet.noneOf(FileVisitOption.class);
     private static final SymbolicLinkMapping EMPTY_SYMBOLIC_LINK_MAPPING = new SymbolicLinkMapping() {
 
@@ -84,18 +104,28 @@ public Iterable<String> getRemappedSegments(Iterable<String> segments) {
     private final Interner<String> stringInterner;
     private final DefaultExcludes defaultExcludes;
     private final DirectorySnapshotterStatistics.Collector collector;
+    private final ParallelFileHashing parallelHashing;
 
     public DirectorySnapshotter(FileHasher hasher, Interner<String> stringInterner, Collection<String> defaultExcludes, DirectorySnapshotterStatistics.Collector collector) {
+        this(hasher, stringInterner, defaultExcludes, collector, Runnable::run, 1);
+    }
+
+    /**
+     * @param hashingExecutor the executor to hash the files of large hierarchies on
+     * @param hashingParallelism the maximum number of threads hashing the files of a single hierarchy, including the calling thread
+     */
+    public DirectorySnapshotter(FileHasher hasher, Interner<String> stringInterner, Collection<String> defaultExcludes, DirectorySnapshotterStatistics.Collector collector, Executor hashingExecutor, int hashingParallelism) {
         this.hasher = hasher;
         this.stringInterner = stringInterner;
         this.defaultExcludes = new DefaultExcludes(defaultExcludes);
         this.collector = collector;
+        this.parallelHashing = new ParallelFileHashing(hashingExecutor, hashingParallelism);
     }
 
     public FileSystemLocationSnapshot snapshot(String absolutePath, @Nullable SnapshottingFilter.DirectoryWalkerPredicate predicate, final AtomicBoolean hasBeenFiltered) {
         try {
             Path rootPath = Paths.get(absolutePath);
-            PathVisitor visitor = new PathVisitor(predicate, hasBeenFiltered, hasher, stringInterner, defaultExcludes, collector, EMPTY_SYMBOLIC_LINK_MAPPING);
+            PathVisitor visitor = new PathVisitor(predicate, hasBeenFiltered, hasher, parallelHashing, stringInterner, defaultExcludes, collector, EMPTY_SYMBOLIC_LINK_MAPPING);
             Files.walkFileTree(rootPath, DONT_FOLLOW_SYMLINKS, Integer.MAX_VALUE, visitor);
             return visitor.getResult();
         } catch (IOException e) {
@@ -147,8 +177,7 @@ public Iterable<String> getRemappedSegments(Iterable<String> segments) {
         }
     }
 
-    @VisibleForTesting
-    static class DefaultExcludes {
+    public static class DefaultExcludes {
         private final ImmutableSet<String> excludeFileNames;
         private final ImmutableSet<String> excludedDirNames;
         private final Predicate<String> excludedFileNameSpec;
@@ -222,10 +251,12 @@ public boolean test(String element) {
 
     private static class PathVisitor extends DirectorySnapshotterStatistics.CollectingFileVisitor {
         private final RelativePathTracker pathTracker = new RelativePathTracker();
-        private final MerkleDirectorySnapshotBuilder builder;
+        private final List<Consumer<MerkleDirectorySnapshotBuilder>> recordedVisits = new ArrayList<>();
+        private final List<PendingFileSnapshot> filesToHash = new ArrayList<>();
         private final SnapshottingFilter.DirectoryWalkerPredicate predicate;
         private final AtomicBoolean hasBeenFiltered;
         private final FileHasher hasher;
+        private final ParallelFileHashing parallelHashing;
         private final Interner<String> stringInterner;
         private final DefaultExcludes defaultExcludes;
         private final SymbolicLinkMapping symbolicLinkMapping;
@@ -235,16 +266,17 @@ public PathVisitor(
             @Nullable SnapshottingFilter.DirectoryWalkerPredicate predicate,
             AtomicBoolean hasBeenFiltered,
             FileHasher hasher,
+            ParallelFileHashing parallelHashing,
             Interner<String> stringInterner,
             DefaultExcludes defaultExcludes,
             DirectorySnapshotterStatistics.Collector statisticsCollector,
             SymbolicLinkMapping symbolicLinkMapping
         ) {
             super(statisticsCollector);
-            this.builder = MerkleDirectorySnapshotBuilder.sortingRequired();
             this.predicate = predicate;
             this.hasBeenFiltered = hasBeenFiltered;
             this.hasher = hasher;
+            this.parallelHashing = parallelHashing;
             this.stringInterner = stringInterner;
             this.defaultExcludes = defaultExcludes;
             this.symbolicLinkMapping = symbolicLinkMapping;
@@ -255,7 +287,8 @@ protected FileVisitResult doPreVisitDirectory(Path dir, BasicFileAttributes attr
             String fileName = getInternedFileName(dir);
             pathTracker.enter(fileName);
             if (pathTracker.isRoot() || shouldVisit(dir, fileName, true, pathTracker.getSegments())) {
-                builder.enterDirectory(AccessType.DIRECT, intern(symbolicLinkMapping.remapAbsolutePath(dir)), fileName, INCLUDE_EMPTY_DIRS);
+                String internedAbsolutePath = intern(symbolicLinkMapping.remapAbsolutePath(dir));
+                recordedVisits.add(builder -> builder.enterDirectory(AccessType.DIRECT, internedAbsolutePath, fileName, INCLUDE_EMPTY_DIRS));
                 parentDirectories.addFirst(dir.toString());
                 return FileVisitResult.CONTINUE;
             } else {
@@ -283,6 +316,7 @@ protected FileVisitResult doVisitFile(Path file, BasicFileAttributes attrs) {
                                     predicate,
                                     hasBeenFiltered,
                                     hasher,
+                                    parallelHashing,
                                     stringInterner,
                                     defaultExcludes,
                                     collector,
@@ -290,13 +324,14 @@ protected FileVisitResult doVisitFile(Path file, BasicFileAttributes attrs) {
                                 );
                                 Files.walkFileTree(targetDir, EnumSet.noneOf(FileVisitOption.class), Integer.MAX_VALUE, subtreeVisitor);
                                 DirectorySnapshot result = (DirectorySnapshot) subtreeVisitor.getResult();
-                                builder.visitDirectory(new DirectorySnapshot(
+                                DirectorySnapshot symlinkedDirectory = new DirectorySnapshot(
                                     result.getAbsolutePath(),
                                     internedFileName,
                                     AccessType.VIA_SYMLINK,
                                     result.getHash(),
                                     result.getChildren()
-                                ));
+                                );
+                                recordedVisits.add(builder -> builder.visitDirectory(symlinkedDirectory));
                             }
                         } catch (IOException e) {
                             throw new UncheckedIOException(String.format("Could not list contents of directory '%s'.", file), e);
@@ -320,7 +355,16 @@ private boolean introducesCycle(String targetDirString) {
         private void visitResolvedFile(Path file, BasicFileAttributes targetAttributes, AccessType accessType) {
             String internedName = intern(file.getFileName().toString());
             if (shouldVisit(file, internedName, false, pathTracker.getSegments())) {
-                builder.visitLeafElement(snapshotFile(file, internedName, targetAttributes, accessType));
+                String internedRemappedAbsoluteFilePath = intern(symbolicLinkMapping.remapAbsolutePath(file));
+                if (targetAttributes.isRegularFile()) {
+                    // Hash the file later, possibly in parallel with other files
+                    PendingFileSnapshot pendingFileSnapshot = new PendingFileSnapshot(file, internedRemappedAbsoluteFilePath, internedName, targetAttributes, accessType);
+                    filesToHash.add(pendingFileSnapshot);
+                    recordedVisits.add(pendingFileSnapshot);
+                } else {
+                    MissingFileSnapshot missingFileSnapshot = new MissingFileSnapshot(internedRemappedAbsoluteFilePath, internedName, accessType);
+                    recordedVisits.add(builder -> builder.visitLeafElement(missingFileSnapshot));
+                }
             }
         }
 
@@ -334,22 +378,6 @@ private BasicFileAttributes readAttributesOfSymlinkTarget(Path symlink, BasicFil
             }
         }
 
-        private FileSystemLeafSnapshot snapshotFile(Path absoluteFilePath, String internedName, BasicFileAttributes attrs, AccessType accessType) {
-            String internedRemappedAbsoluteFilePath = intern(symbolicLinkMapping.remapAbsolutePath(absoluteFilePath));
-            if (attrs.isRegularFile()) {
-                try {
-                    long lastModified = attrs.lastModifiedTime().toMillis();
-                    long fileLength = attrs.size();
-                    FileMetadata metadata = DefaultFileMetadata.file(lastModified, fileLength, accessType);
-                    HashCode hash = hasher.hash(absoluteFilePath.toFile(), fileLength, lastModified);
-                    return new RegularFileSnapshot(internedRemappedAbsoluteFilePath, internedName, hash, metadata);
-                } catch (UncheckedIOException e) {
-                    LOGGER.info("Could not read file path '{}'.", absoluteFilePath, e);
-                }
-            }
-            return new MissingFileSnapshot(internedRemappedAbsoluteFilePath, internedName, accessType);
-        }
-
         /** unlistable directories (and maybe some locked files) will stop here */
         @Override
         protected FileVisitResult doVisitFileFailed(Path file, IOException exc) {
@@ -363,8 +391,8 @@ protected FileVisitResult doVisitFileFailed(Path file, IOException exc) {
                     boolean isDirectory = Files.isDirectory(file);
                     if (shouldVisit(file, internedFileName, isDirectory, pathTracker.getSegments())) {
                         LOGGER.info("Could not read file path '{}'.", file);
-                        String internedAbsolutePath = intern(file.toString());
-                        builder.visitLeafElement(new MissingFileSnapshot(internedAbsolutePath, internedFileName, AccessType.DIRECT));
+                        MissingFileSnapshot missingFileSnapshot = new MissingFileSnapshot(intern(file.toString()), internedFileName, AccessType.DIRECT);
+                        recordedVisits.add(builder -> builder.visitLeafElement(missingFileSnapshot));
                     }
                 }
                 return FileVisitResult.CONTINUE;
@@ -382,7 +410,7 @@ protected FileVisitResult doPostVisitDirectory(Path dir, IOException exc) {
             if (isNotFileSystemLoopException(exc)) {
                 throw new UncheckedIOException(String.format("Could not read directory path '%s'.", dir), exc);
             }
-            builder.leaveDirectory();
+            recordedVisits.add(MerkleDirectorySnapshotBuilder::leaveDirectory);
             parentDirectories.removeFirst();
             return FileVisitResult.CONTINUE;
         }
@@ -425,7 +453,124 @@ private String getInternedFileName(Path dir) {
         }
 
         public FileSystemLocationSnapshot getResult() {
+            hashFiles();
+            MerkleDirectorySnapshotBuilder builder = MerkleDirectorySnapshotBuilder.sortingRequired();
+            for (Consumer<MerkleDirectorySnapshotBuilder> recordedVisit : recordedVisits) {
+                recordedVisit.accept(builder);
+            }
             return builder.getResult();
         }
+
+        private void hashFiles() {
+            int parallelism = Math.min(parallelHashing.parallelism, filesToHash.size() / FILES_PER_HASHING_TASK);
+            if (filesToHash.size() < PARALLEL_HASHING_THRESHOLD || parallelism <= 1) {
+                for (PendingFileSnapshot fileToHash : filesToHash) {
+                    fileToHash.hash(hasher);
+                }
+            } else {
+                collector.recordHashFilesInParallel(filesToHash.size());
+                parallelHashing.hashFiles(filesToHash, hasher, parallelism);
+            }
+        }
+    }
+
+    private static class PendingFileSnapshot implements Consumer<MerkleDirectorySnapshotBuilder> {
+        private final Path file;
+        private final String internedAbsolutePath;
+        private final String internedName;
+        private final BasicFileAttributes attrs;
+        private final AccessType accessType;
+        private FileSystemLeafSnapshot snapshot;
+
+        public PendingFileSnapshot(Path file, String internedAbsolutePath, String internedName, BasicFileAttributes attrs, AccessType accessType) {
+            this.file = file;
+            this.internedAbsolutePath = internedAbsolutePath;
+            this.internedName = internedName;
+            this.attrs = attrs;
+            this.accessType = accessType;
+        }
+
+        public void hash(FileHasher hasher) {
+            try {
+                long lastModified = attrs.lastModifiedTime().toMillis();
+                long fileLength = attrs.size();
+                FileMetadata metadata = DefaultFileMetadata.file(lastModified, fileLength, accessType);
+                HashCode hash = hasher.hash(file.toFile(), fileLength, lastModified);
+                snapshot = new RegularFileSnapshot(internedAbsolutePath, internedName, hash, metadata);
+            } catch (UncheckedIOException e) {
+                LOGGER.info("Could not read file path '{}'.", file, e);
+                snapshot = new MissingFileSnapshot(internedAbsolutePath, internedName, accessType);
+            }
+        }
+
+        @Override
+        public void accept(MerkleDirectorySnapshotBuilder builder) {
+            builder.visitLeafElement(snapshot);
+        }
+    }
+
+    private static class ParallelFileHashing {
+        private final Executor executor;
+        private final int parallelism;
+
+        ParallelFileHashing(Executor executor, int parallelism) {
+            this.executor = executor;
+            this.parallelism = parallelism;
+        }
+
+        void hashFiles(List<PendingFileSnapshot> files, FileHasher hasher, int parallelism) {
+            HashFilesAction action = new HashFilesAction(files, hasher);
+            for (int i = 1; i < parallelism; i++) {
+                try {
+                    executor.execute(action);
+                } catch (RejectedExecutionException e) {
+                    // The calling thread hashes the remaining files
+                    break;
+                }
+            }
+            action.run();
+            action.awaitCompletion();
+        }
+    }
+
+    /**
+     * Hashes files until all of them have been claimed by one of the threads running the action.
+     */
+    private static class HashFilesAction implements Runnable {
+        private final List<PendingFileSnapshot> files;
+        private final FileHasher hasher;
+        private final AtomicInteger nextFile = new AtomicInteger();
+        private final CountDownLatch remainingFiles;
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        public HashFilesAction(List<PendingFileSnapshot> files, FileHasher hasher) {
+            this.files = files;
+            this.hasher = hasher;
+            this.remainingFiles = new CountDownLatch(files.size());
+        }
+
+        @Override
+        public void run() {
+            int index;
+            while ((index = nextFile.getAndIncrement()) < files.size()) {
+                try {
+                    files.get(index).hash(hasher);
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                } finally {
+                    remainingFiles.countDown();
+                }
+            }
+        }
+
+        void awaitCompletion() {
+            // Only files already claimed by other threads are waited for, so this doesn't depend on the executor starting queued actions
+            Uninterruptibles.awaitUninterruptibly(remainingFiles);
+            Throwable t = failure.get();
+            if (t != null) {
+                Throwables.throwIfUnchecked(t);
+                throw new RuntimeException(t);
+            }
+        }
     }
 }
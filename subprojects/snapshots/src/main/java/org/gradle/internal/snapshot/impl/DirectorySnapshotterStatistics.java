@@ -45,11 +45,17 @@ public interface DirectorySnapshotterStatistics {
      */
     long getFailedFiles();
 
+    /**
+     * The number of files which were hashed in parallel.
+     */
+    long getFilesHashedInParallel();
+
     class Collector {
         private final AtomicLong hierarchyCount = new AtomicLong();
         private final AtomicLong directoryCount = new AtomicLong();
         private final AtomicLong fileCount = new AtomicLong();
         private final AtomicLong failedFileCount = new AtomicLong();
+        private final AtomicLong parallelHashedFileCount = new AtomicLong();
 
         public void recordVisitHierarchy() {
             hierarchyCount.incrementAndGet();
@@ -67,11 +73,16 @@ public void recordVisitFileFailed() {
             failedFileCount.incrementAndGet();
         }
 
+        public void recordHashFilesInParallel(int count) {
+            parallelHashedFileCount.addAndGet(count);
+        }
+
         public DirectorySnapshotterStatistics collect() {
             long hierarchyCount = this.hierarchyCount.getAndSet(0);
             long directoryCount = this.directoryCount.getAndSet(0);
             long fileCount = this.fileCount.getAndSet(0);
             long failedFileCount = this.failedFileCount.getAndSet(0);
+            long parallelHashedFileCount = this.parallelHashedFileCount.getAndSet(0);
 
             return new DirectorySnapshotterStatistics() {
                 @Override
@@ -94,10 +105,15 @@ public long getFailedFiles() {
                     return failedFileCount;
                 }
 
+                @Override
+                public long getFilesHashedInParallel() {
+                    return parallelHashedFileCount;
+                }
+
                 @Override
                 public String toString() {
-                    return MessageFormat.format("Snapshot {0,number,integer} directory hierarchies (visited {1,number,integer} directories, {2,number,integer} files and {3,number,integer} failed files)",
-                        hierarchyCount, directoryCount, fileCount, failedFileCount);
+                    return MessageFormat.format("Snapshot {0,number,integer} directory hierarchies (visited {1,number,integer} directories, {2,number,integer} files and {3,number,integer} failed files, hashed {4,number,integer} files in parallel)",
+                        hierarchyCount, directoryCount, fileCount, failedFileCount, parallelHashedFileCount);
                 }
             };
         }
@@ -17,13 +17,22 @@
 package org.gradle.internal.vfs.impl;
 
 import org.gradle.internal.snapshot.FileSystemLocationSnapshot;
+import org.gradle.internal.snapshot.FileSystemNode;
 import org.gradle.internal.snapshot.MetadataSnapshot;
 import org.gradle.internal.snapshot.SnapshotHierarchy;
 import org.gradle.internal.vfs.VirtualFileSystem;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public abstract class AbstractVirtualFileSystem implements VirtualFileSystem {
+    /**
+     * How often to compute an update without holding the update lock before falling back to computing it while holding the lock.
+     */
+    private static final int MAX_OPTIMISTIC_UPDATE_ATTEMPTS = 3;
 
     protected final VfsRootReference rootReference;
 
@@ -43,19 +52,16 @@ public Optional<MetadataSnapshot> getMetadata(String absolutePath) {
 
     @Override
     public void store(String absolutePath, FileSystemLocationSnapshot snapshot) {
-        rootReference.update(root -> updateNotifyingListeners(diffListener -> root.store(absolutePath, snapshot, diffListener)));
+        updateOptimistically(Collections.singletonList((root, diffListener) -> root.store(absolutePath, snapshot, diffListener)));
     }
 
     @Override
     public void invalidate(Iterable<String> locations) {
-        rootReference.update(root -> {
-            SnapshotHierarchy result = root;
-            for (String location : locations) {
-                SnapshotHierarchy currentRoot = result;
-                result = updateNotifyingListeners(diffListener -> currentRoot.invalidate(location, diffListener));
-            }
-            return result;
-        });
+        List<RootUpdate> updates = new ArrayList<>();
+        for (String location : locations) {
+            updates.add((root, diffListener) -> root.invalidate(location, diffListener));
+        }
+        updateOptimistically(updates);
     }
 
     @Override
@@ -66,6 +72,55 @@ public void invalidateAll() {
         }));
     }
 
+    /**
+     * Applies the updates one after the other.
+     *
+     * The new root is computed without holding the update lock, so updates of different threads don't wait for each other
+     * while computing the new root. Computing the new root doesn't notify the listeners, it only records the changes.
+     * The recorded changes are passed on to the listeners when the new root is published while holding the update lock,
+     * so the listeners see the changes in the same order as they are applied to the root.
+     * If another thread updated the root in the meantime, the update is computed again.
+     */
+    private void updateOptimistically(List<RootUpdate> updates) {
+        if (updates.isEmpty()) {
+            return;
+        }
+        for (int attempt = 0; attempt < MAX_OPTIMISTIC_UPDATE_ATTEMPTS; attempt++) {
+            SnapshotHierarchy expectedRoot = rootReference.getRoot();
+            List<RecordedUpdate> recordedUpdates = new ArrayList<>(updates.size());
+            SnapshotHierarchy result = expectedRoot;
+            for (RootUpdate update : updates) {
+                RecordedUpdate recordedUpdate = new RecordedUpdate(update, result);
+                recordedUpdates.add(recordedUpdate);
+                result = recordedUpdate.getUpdatedRoot();
+            }
+            if (rootReference.compareAndUpdate(expectedRoot, root -> publish(recordedUpdates, root))) {
+                return;
+            }
+        }
+        rootReference.update(root -> {
+            SnapshotHierarchy result = root;
+            for (RootUpdate update : updates) {
+                SnapshotHierarchy currentRoot = result;
+                result = updateNotifyingListeners(diffListener -> update.update(currentRoot, diffListener));
+            }
+            return result;
+        });
+    }
+
+    private SnapshotHierarchy publish(List<RecordedUpdate> recordedUpdates, SnapshotHierarchy root) {
+        SnapshotHierarchy result = root;
+        for (RecordedUpdate recordedUpdate : recordedUpdates) {
+            SnapshotHierarchy currentRoot = result;
+            // Publishing an update can change the root, e.g. when the listener drops the VFS.
+            // Then the remaining updates are applied to the changed root.
+            result = currentRoot == recordedUpdate.getOriginalRoot()
+                ? updateNotifyingListeners(recordedUpdate::replay)
+                : updateNotifyingListeners(diffListener -> recordedUpdate.getUpdate().update(currentRoot, diffListener));
+        }
+        return result;
+    }
+
     /**
      * Runs a single update on a {@link SnapshotHierarchy} and notifies the currently active listeners after the update.
      */
@@ -79,4 +134,51 @@ public interface UpdateFunction {
          */
         SnapshotHierarchy update(SnapshotHierarchy.NodeDiffListener diffListener);
     }
+
+    private interface RootUpdate {
+        SnapshotHierarchy update(SnapshotHierarchy root, SnapshotHierarchy.NodeDiffListener diffListener);
+    }
+
+    /**
+     * An update applied to a root, with the changes recorded for notifying the listeners later.
+     */
+    private static class RecordedUpdate implements SnapshotHierarchy.NodeDiffListener {
+        private final RootUpdate update;
+        private final SnapshotHierarchy originalRoot;
+        private final SnapshotHierarchy updatedRoot;
+        private final List<Consumer<SnapshotHierarchy.NodeDiffListener>> changes = new ArrayList<>();
+
+        public RecordedUpdate(RootUpdate update, SnapshotHierarchy originalRoot) {
+            this.update = update;
+            this.originalRoot = originalRoot;
+            this.updatedRoot = update.update(originalRoot, this);
+        }
+
+        public RootUpdate getUpdate() {
+            return update;
+        }
+
+        public SnapshotHierarchy getOriginalRoot() {
+            return originalRoot;
+        }
+
+        public SnapshotHierarchy getUpdatedRoot() {
+            return updatedRoot;
+        }
+
+        public SnapshotHierarchy replay(SnapshotHierarchy.NodeDiffListener diffListener) {
+            changes.forEach(change -> change.accept(diffListener));
+            return updatedRoot;
+        }
+
+        @Override
+        public void nodeRemoved(FileSystemNode node) {
+            changes.add(diffListener -> diffListener.nodeRemoved(node));
+        }
+
+        @Override
+        public void nodeAdded(FileSystemNode node) {
+            changes.add(diffListener -> diffListener.nodeAdded(node));
+        }
+    }
 }
@@ -40,6 +40,7 @@
 
 import java.io.File;
 import java.util.Optional;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.Lock;
 import java.util.function.Consumer;
@@ -56,6 +57,8 @@ public class DefaultFileSystemAccess implements FileSystemAccess {
     private final DirectorySnapshotterStatistics.Collector statisticsCollector;
     private ImmutableList<String> defaultExcludes;
     private DirectorySnapshotter directorySnapshotter;
+    private Executor hashingExecutor = Runnable::run;
+    private int hashingParallelism = 1;
     private final FileHasher hasher;
     private final StripedProducerGuard<String> producingSnapshots = new StripedProducerGuard<>();
 
@@ -228,8 +231,19 @@ public void updateDefaultExcludes(String... newDefaultExcludesArgs) {
         if (!defaultExcludes.equals(newDefaultExcludes)) {
             LOGGER.debug("Default excludes changes from {} to {}", defaultExcludes, newDefaultExcludes);
             defaultExcludes = newDefaultExcludes;
-            directorySnapshotter = new DirectorySnapshotter(hasher, stringInterner, newDefaultExcludes, statisticsCollector);
+            directorySnapshotter = new DirectorySnapshotter(hasher, stringInterner, newDefaultExcludes, statisticsCollector, hashingExecutor, hashingParallelism);
             virtualFileSystem.invalidateAll();
         }
     }
+
+    /**
+     * Hashes the files of large hierarchies on the given executor, with up to the given number of threads per hierarchy.
+     */
+    public void useParallelHashing(Executor hashingExecutor, int hashingParallelism) {
+        if (this.hashingExecutor != hashingExecutor || this.hashingParallelism != hashingParallelism) {
+            this.hashingExecutor = hashingExecutor;
+            this.hashingParallelism = hashingParallelism;
+            directorySnapshotter = new DirectorySnapshotter(hasher, stringInterner, defaultExcludes, statisticsCollector, hashingExecutor, hashingParallelism);
+        }
+    }
 }
@@ -42,4 +42,27 @@ public void update(UnaryOperator<SnapshotHierarchy> updateFunction) {
             updateLock.unlock();
         }
     }
+
+    /**
+     * Updates the root only if it is still the expected root.
+     *
+     * This allows computing updates without holding the update lock.
+     *
+     * @return whether the root has been updated.
+     */
+    public boolean compareAndUpdate(SnapshotHierarchy expectedRoot, UnaryOperator<SnapshotHierarchy> updateFunction) {
+        if (root != expectedRoot) {
+            return false;
+        }
+        updateLock.lock();
+        try {
+            if (root != expectedRoot) {
+                return false;
+            }
+            root = updateFunction.apply(expectedRoot);
+            return true;
+        } finally {
+            updateLock.unlock();
+        }
+    }
 }
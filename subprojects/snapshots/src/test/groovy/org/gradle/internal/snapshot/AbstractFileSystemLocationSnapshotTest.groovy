@@ -0,0 +1,79 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.snapshot
+
+import org.gradle.internal.file.FileMetadata.AccessType
+import org.gradle.internal.file.impl.DefaultFileMetadata
+import org.gradle.internal.hash.HashCode
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class AbstractFileSystemLocationSnapshotTest extends Specification {
+
+    @Unroll
+    def "parent path of '#absolutePath' with name '#name' is '#parentPath'"() {
+        expect:
+        AbstractFileSystemLocationSnapshot.parentPathOf(absolutePath, name, separator as char) == parentPath
+        parentPath == null || parentPath + separator + name == absolutePath
+
+        where:
+        absolutePath      | name      | separator | parentPath
+        "/some/dir/file"  | "file"    | "/"       | "/some/dir"
+        "/file"           | "file"    | "/"       | ""
+        "/"               | ""        | "/"       | null
+        "C:\\dir\\file"   | "file"    | "\\"      | "C:\\dir"
+        "C:\\file"        | "file"    | "\\"      | "C:"
+        "C:\\"            | ""        | "\\"      | null
+        "C:"              | "C:"      | "\\"      | null
+        "/some/dir/file"  | "other"   | "/"       | null
+        "/some/dir/xfile" | "file"    | "/"       | null
+        "/some/dir/file"  | "dir/fil" | "/"       | null
+        "file"            | "file"    | "/"       | null
+    }
+
+    @Unroll
+    def "snapshots of '#absolutePath' are equal when they have the same path and name"() {
+        def snapshot = regularFile(absolutePath, name)
+        def sameSnapshot = regularFile(absolutePath, name)
+
+        expect:
+        snapshot == sameSnapshot
+        snapshot.hashCode() == sameSnapshot.hashCode()
+        snapshot.absolutePath == absolutePath
+        snapshot.name == name
+
+        where:
+        absolutePath     | name
+        "/some/dir/file" | "file"
+        "/file"          | "file"
+        "/some/dir/file" | "other"
+    }
+
+    def "snapshots with different paths or names are not equal"() {
+        def snapshot = regularFile("/some/dir/file", "file")
+
+        expect:
+        snapshot != regularFile("/some/other/file", "file")
+        snapshot != regularFile("/some/dir/file", "other")
+        snapshot != regularFile("/file", "file")
+        regularFile("/some/dir/xfile", "file") != regularFile("/some/dir/file", "file")
+    }
+
+    private static RegularFileSnapshot regularFile(String absolutePath, String name) {
+        return new RegularFileSnapshot(absolutePath, name, HashCode.fromInt(1234), DefaultFileMetadata.file(1, 2, AccessType.DIRECT))
+    }
+}
@@ -26,6 +26,7 @@ import org.gradle.util.UsesNativeServices
 import org.junit.Rule
 import spock.lang.Specification
 
+import java.util.concurrent.Executors
 import java.util.concurrent.atomic.AtomicBoolean
 
 @UsesNativeServices
@@ -36,7 +37,12 @@ class DirectorySnapshotterStatisticsTest extends Specification {
 
     def fileHasher = new TestFileHasher()
     def statisticsCollector = Mock(DirectorySnapshotterStatistics.Collector)
-    def directorySnapshotter = new DirectorySnapshotter(fileHasher, new StringInterner(), [], statisticsCollector)
+    def hashingExecutor = Executors.newFixedThreadPool(4)
+    def directorySnapshotter = new DirectorySnapshotter(fileHasher, new StringInterner(), [], statisticsCollector, hashingExecutor, 4)
+
+    def cleanup() {
+        hashingExecutor.shutdownNow()
+    }
 
     def "can visit missing file"() {
         when:
@@ -94,6 +100,27 @@ class DirectorySnapshotterStatisticsTest extends Specification {
         0 * _
     }
 
+    def "records files hashed in parallel"() {
+        given:
+        def root = tmpDir.createDir("root")
+        def fileCount = DirectorySnapshotter.PARALLEL_HASHING_THRESHOLD
+        fileCount.times { root.createFile("file-${it}.txt") }
+
+        when:
+        snapshot(root)
+
+        then:
+        1 * statisticsCollector.recordVisitHierarchy()
+
+        then:
+        1 * statisticsCollector.recordVisitDirectory()
+        fileCount * statisticsCollector.recordVisitFile()
+
+        then:
+        1 * statisticsCollector.recordHashFilesInParallel(fileCount)
+        0 * _
+    }
+
     @Requires(TestPrecondition.SYMLINKS)
     def "can visit broken symlink"() {
         given:
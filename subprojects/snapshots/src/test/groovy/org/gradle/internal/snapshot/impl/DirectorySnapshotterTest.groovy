@@ -38,6 +38,7 @@ import spock.lang.Issue
 import spock.lang.Specification
 
 import java.nio.file.Paths
+import java.util.concurrent.Executors
 import java.util.concurrent.atomic.AtomicBoolean
 
 @UsesNativeServices
@@ -48,9 +49,14 @@ class DirectorySnapshotterTest extends Specification {
 
     def fileHasher = new TestFileHasher()
     def statisticsCollector = Stub(DirectorySnapshotterStatistics.Collector)
-    def directorySnapshotter = new DirectorySnapshotter(fileHasher, new StringInterner(), [], statisticsCollector)
+    def hashingExecutor = Executors.newFixedThreadPool(4)
+    def directorySnapshotter = new DirectorySnapshotter(fileHasher, new StringInterner(), [], statisticsCollector, hashingExecutor, 4)
     def actuallyFiltered = new AtomicBoolean(false)
 
+    def cleanup() {
+        hashingExecutor.shutdownNow()
+    }
+
     def "should snapshot without filters"() {
         given:
         def rootDir = tmpDir.createDir("root")
@@ -95,6 +101,24 @@ class DirectorySnapshotterTest extends Specification {
         ] as Set
     }
 
+    def "hashes files of large hierarchies in parallel"() {
+        given:
+        def rootDir = tmpDir.createDir("root")
+        def files = (0..<DirectorySnapshotter.PARALLEL_HASHING_THRESHOLD * 4).collect {
+            rootDir.file("dir-${it % 7}/file-${it}.txt").createFile() << "content-${it}"
+        }
+        def smallDir = rootDir.file("dir-0")
+
+        when:
+        def snapshot = directorySnapshotter.snapshot(rootDir.absolutePath, null, actuallyFiltered)
+        def smallSnapshot = directorySnapshotter.snapshot(smallDir.absolutePath, null, actuallyFiltered)
+
+        then:
+        def regularFiles = SnapshotVisitorUtil.getAbsolutePaths(snapshot, false).findAll { new File(it).file }
+        regularFiles as Set == files*.absolutePath as Set
+        (snapshot as DirectorySnapshot).children.find { it.name == "dir-0" }.hash == smallSnapshot.hash
+    }
+
     def "should snapshot file system root"() {
         given:
         def fileSystemRoot = fileSystemRoot()
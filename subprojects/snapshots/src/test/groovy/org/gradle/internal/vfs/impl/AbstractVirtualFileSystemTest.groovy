@@ -0,0 +1,97 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.vfs.impl
+
+import org.gradle.internal.file.FileMetadata
+import org.gradle.internal.file.impl.DefaultFileMetadata
+import org.gradle.internal.hash.HashCode
+import org.gradle.internal.snapshot.CaseSensitivity
+import org.gradle.internal.snapshot.FileSystemNode
+import org.gradle.internal.snapshot.RegularFileSnapshot
+import org.gradle.internal.snapshot.SnapshotHierarchy
+import spock.lang.Specification
+
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class AbstractVirtualFileSystemTest extends Specification {
+    def rootReference = new VfsRootReference(DefaultSnapshotHierarchy.empty(CaseSensitivity.CASE_SENSITIVE))
+    def publishedUpdates = []
+    def addedNodes = []
+    SnapshotHierarchy lastPublishedRoot = rootReference.root
+    Closure<Boolean> dropVfs = { false }
+
+    def virtualFileSystem = new AbstractVirtualFileSystem(rootReference) {
+        @Override
+        protected SnapshotHierarchy updateNotifyingListeners(UpdateFunction updateFunction) {
+            // Listeners are only notified while holding the update lock, in the order the updates are applied
+            publishedUpdates << (rootReference.root.is(lastPublishedRoot))
+            def newRoot = updateFunction.update(new SnapshotHierarchy.NodeDiffListener() {
+                @Override
+                void nodeRemoved(FileSystemNode node) {
+                }
+
+                @Override
+                void nodeAdded(FileSystemNode node) {
+                    addedNodes << node
+                }
+            })
+            lastPublishedRoot = dropVfs() ? newRoot.empty() : newRoot
+            return lastPublishedRoot
+        }
+    }
+
+    def "concurrent updates of disjoint locations are all retained and published in order"() {
+        def executorService = Executors.newFixedThreadPool(16)
+
+        when:
+        (1..2000).each { num ->
+            executorService.submit {
+                virtualFileSystem.store("/root/dir${num % 20}/file${num}", regularFile("/root/dir${num % 20}/file${num}"))
+            }
+        }
+        executorService.shutdown()
+        executorService.awaitTermination(20, TimeUnit.SECONDS)
+
+        then:
+        (1..2000).every { num -> virtualFileSystem.getSnapshot("/root/dir${num % 20}/file${num}").present }
+        addedNodes.size() == 2000
+        publishedUpdates.size() == 2000
+        publishedUpdates.every()
+    }
+
+    def "applies remaining invalidations to the root changed by publishing"() {
+        ["/root/some/file", "/root/other/file", "/root/retained/file"].each {
+            virtualFileSystem.store(it, regularFile(it))
+        }
+        // Only drop the VFS when publishing the first invalidation
+        def remainingDrops = 1
+        dropVfs = { remainingDrops-- > 0 }
+
+        when:
+        virtualFileSystem.invalidate(["/root/some/file", "/root/other/file"])
+
+        then:
+        !virtualFileSystem.getMetadata("/root/some/file").present
+        !virtualFileSystem.getMetadata("/root/other/file").present
+        !virtualFileSystem.getMetadata("/root/retained/file").present
+    }
+
+    private static RegularFileSnapshot regularFile(String absolutePath) {
+        new RegularFileSnapshot(absolutePath, absolutePath.substring(absolutePath.lastIndexOf('/') + 1), HashCode.fromInt(absolutePath.hashCode()), DefaultFileMetadata.file(1, 1, FileMetadata.AccessType.DIRECT))
+    }
+}
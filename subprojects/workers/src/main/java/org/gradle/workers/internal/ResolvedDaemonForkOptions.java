@@ -0,0 +1,105 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.workers.internal;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.gradle.process.JavaForkOptions;
+import org.gradle.process.internal.JavaForkOptionsFactory;
+import org.gradle.process.internal.JavaForkOptionsInternal;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.util.Map;
+
+/**
+ * A fully resolved copy of {@link DaemonForkOptions}, which does not reference any file collections, argument providers or services of the build that created the options.
+ */
+class ResolvedDaemonForkOptions {
+    private final String executable;
+    private final File workingDir;
+    private final Map<String, String> environment;
+    private final String minHeapSize;
+    private final String maxHeapSize;
+    private final ImmutableList<String> jvmArgs;
+    private final Map<String, String> systemProperties;
+    private final ImmutableList<File> bootstrapClasspath;
+    private final String defaultCharacterEncoding;
+    private final boolean enableAssertions;
+    private final KeepAliveMode keepAliveMode;
+    private final ClassLoaderStructure classLoaderStructure;
+
+    private ResolvedDaemonForkOptions(DaemonForkOptions forkOptions) {
+        JavaForkOptions javaForkOptions = forkOptions.getJavaForkOptions();
+        this.executable = javaForkOptions.getExecutable();
+        this.workingDir = javaForkOptions.getWorkingDir();
+        this.environment = toStrings(javaForkOptions.getEnvironment());
+        this.minHeapSize = javaForkOptions.getMinHeapSize();
+        this.maxHeapSize = javaForkOptions.getMaxHeapSize();
+        this.jvmArgs = ImmutableList.copyOf(javaForkOptions.getJvmArgs());
+        this.systemProperties = toStrings(javaForkOptions.getSystemProperties());
+        this.bootstrapClasspath = ImmutableList.copyOf(javaForkOptions.getBootstrapClasspath().getFiles());
+        this.defaultCharacterEncoding = javaForkOptions.getDefaultCharacterEncoding();
+        this.enableAssertions = javaForkOptions.getEnableAssertions();
+        this.keepAliveMode = forkOptions.getKeepAliveMode();
+        this.classLoaderStructure = forkOptions.getClassLoaderStructure();
+    }
+
+    /**
+     * Resolves the given options, or returns {@code null} when they cannot be restored, as for daemons with debugging enabled.
+     */
+    @Nullable
+    public static ResolvedDaemonForkOptions of(DaemonForkOptions forkOptions) {
+        if (forkOptions.getJavaForkOptions().getDebug()) {
+            // The debug options are not part of the compatibility check, so a daemon would not necessarily be started with the same debug options
+            return null;
+        }
+        return new ResolvedDaemonForkOptions(forkOptions);
+    }
+
+    public DaemonForkOptions toDaemonForkOptions(JavaForkOptionsFactory forkOptionsFactory) {
+        JavaForkOptionsInternal javaForkOptions = forkOptionsFactory.newJavaForkOptions();
+        javaForkOptions.setExecutable(executable);
+        javaForkOptions.setWorkingDir(workingDir);
+        javaForkOptions.setEnvironment(environment);
+        javaForkOptions.setMinHeapSize(minHeapSize);
+        javaForkOptions.setMaxHeapSize(maxHeapSize);
+        javaForkOptions.setJvmArgs(jvmArgs);
+        javaForkOptions.setSystemProperties(systemProperties);
+        javaForkOptions.bootstrapClasspath(bootstrapClasspath);
+        javaForkOptions.setDefaultCharacterEncoding(defaultCharacterEncoding);
+        javaForkOptions.setEnableAssertions(enableAssertions);
+        return new DaemonForkOptionsBuilder(forkOptionsFactory)
+            .javaForkOptions(javaForkOptions)
+            .keepAliveMode(keepAliveMode)
+            .withClassLoaderStructure(classLoaderStructure)
+            .build();
+    }
+
+    private static Map<String, String> toStrings(Map<String, ?> values) {
+        ImmutableMap.Builder<String, String> builder = ImmutableMap.builder();
+        for (Map.Entry<String, ?> entry : values.entrySet()) {
+            builder.put(entry.getKey(), String.valueOf(entry.getValue()));
+        }
+        return builder.build();
+    }
+
+    @Override
+    public String toString() {
+        return "executable: " + executable + ", minHeapSize: " + minHeapSize + ", maxHeapSize: " + maxHeapSize + ", jvmArgs: " + jvmArgs + ", keepAliveMode: " + keepAliveMode;
+    }
+}
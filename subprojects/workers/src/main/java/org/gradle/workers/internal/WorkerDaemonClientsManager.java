@@ -24,6 +24,8 @@
 import org.gradle.api.logging.Logging;
 import org.gradle.initialization.SessionLifecycleListener;
 import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedExecutor;
 import org.gradle.internal.concurrent.Stoppable;
 import org.gradle.internal.event.ListenerManager;
 import org.gradle.internal.exceptions.DefaultMultiCauseException;
@@ -31,6 +33,7 @@
 import org.gradle.internal.logging.events.LogLevelChangeEvent;
 import org.gradle.internal.logging.events.OutputEvent;
 import org.gradle.internal.logging.events.OutputEventListener;
+import org.gradle.process.internal.JavaForkOptionsFactory;
 import org.gradle.process.internal.health.memory.MemoryManager;
 import org.gradle.process.internal.health.memory.OsMemoryInfo;
 import org.gradle.process.internal.worker.WorkerProcess;
@@ -44,12 +47,21 @@
 
 public class WorkerDaemonClientsManager implements Stoppable {
 
+    /**
+     * Enables starting worker daemons in the background at the beginning of a build,
+     * one for each session scoped worker daemon which has been used by the previous build.
+     */
+    public static final String PREWARM_WORKER_DAEMONS_PROPERTY = "org.gradle.unsafe.prewarm-worker-daemons";
+
     private static final Logger LOGGER = Logging.getLogger(WorkerDaemonClientsManager.class);
 
     private final Object lock = new Object();
     private final List<WorkerDaemonClient> allClients = new ArrayList<WorkerDaemonClient>();
     private final List<WorkerDaemonClient> idleClients = new ArrayList<WorkerDaemonClient>();
     private final Action<WorkerProcess> workerProcessCleanupAction = new WorkerProcessCleanupAction();
+    private final List<ResolvedDaemonForkOptions> forkOptionsToPrewarm = new ArrayList<ResolvedDaemonForkOptions>();
+    private boolean sessionRunning;
+    private ManagedExecutor prewarmExecutor;
 
     private final WorkerDaemonStarter workerDaemonStarter;
     private final ListenerManager listenerManager;
@@ -59,10 +71,14 @@ public class WorkerDaemonClientsManager implements Stoppable {
     private final OutputEventListener logLevelChangeEventListener;
     private final WorkerDaemonExpiration workerDaemonExpiration;
     private final MemoryManager memoryManager;
+    private final ExecutorFactory executorFactory;
+    private final JavaForkOptionsFactory forkOptionsFactory;
     private volatile LogLevel currentLogLevel;
 
-    public WorkerDaemonClientsManager(WorkerDaemonStarter workerDaemonStarter, ListenerManager listenerManager, LoggingManagerInternal loggingManager, MemoryManager memoryManager, OsMemoryInfo memoryInfo) {
+    public WorkerDaemonClientsManager(WorkerDaemonStarter workerDaemonStarter, ListenerManager listenerManager, LoggingManagerInternal loggingManager, MemoryManager memoryManager, OsMemoryInfo memoryInfo, ExecutorFactory executorFactory, JavaForkOptionsFactory forkOptionsFactory) {
         this.workerDaemonStarter = workerDaemonStarter;
+        this.executorFactory = executorFactory;
+        this.forkOptionsFactory = forkOptionsFactory;
         this.listenerManager = listenerManager;
         this.loggingManager = loggingManager;
         this.memoryInfo = memoryInfo;
@@ -118,8 +134,59 @@ public void release(WorkerDaemonClient client) {
         }
     }
 
+    private void prewarmClients() {
+        List<ResolvedDaemonForkOptions> toStart;
+        ManagedExecutor executor;
+        synchronized (lock) {
+            sessionRunning = true;
+            if (forkOptionsToPrewarm.isEmpty()) {
+                return;
+            }
+            toStart = new ArrayList<ResolvedDaemonForkOptions>(forkOptionsToPrewarm);
+            forkOptionsToPrewarm.clear();
+            if (prewarmExecutor == null) {
+                prewarmExecutor = executorFactory.create("Worker daemon prewarming");
+            }
+            executor = prewarmExecutor;
+        }
+        LOGGER.debug("Starting {} worker daemon(s) used by the previous build.", toStart.size());
+        for (ResolvedDaemonForkOptions forkOptions : toStart) {
+            executor.execute(() -> startIdleClient(forkOptions));
+        }
+    }
+
+    private void startIdleClient(ResolvedDaemonForkOptions forkOptions) {
+        WorkerDaemonClient client;
+        try {
+            client = workerDaemonStarter.startDaemon(forkOptions.toDaemonForkOptions(forkOptionsFactory), workerProcessCleanupAction);
+        } catch (Exception e) {
+            // The daemon will be started again when it is required, which reports the failure
+            LOGGER.debug("Could not start worker daemon with fork options {} ahead of use.", forkOptions, e);
+            return;
+        }
+        synchronized (lock) {
+            if (sessionRunning) {
+                allClients.add(client);
+                idleClients.add(client);
+                return;
+            }
+        }
+        // The build finished before the daemon has been started
+        client.stop();
+    }
+
     @Override
     public void stop() {
+        ManagedExecutor executor;
+        synchronized (lock) {
+            sessionRunning = false;
+            executor = prewarmExecutor;
+            prewarmExecutor = null;
+        }
+        if (executor != null) {
+            // Do not hold lock while waiting for daemons being started, as these need to acquire the lock when started
+            executor.stop();
+        }
         synchronized (lock) {
             stopWorkers(allClients);
             allClients.clear();
@@ -182,12 +249,27 @@ private void stopWorkers(List<WorkerDaemonClient> clientsToStop) {
 
     private class StopSessionScopedWorkers implements SessionLifecycleListener {
         @Override
-        public void afterStart() { }
+        public void afterStart() {
+            prewarmClients();
+        }
 
         @Override
         public void beforeComplete() {
             synchronized (lock) {
+                sessionRunning = false;
                 List<WorkerDaemonClient> sessionScopedClients = CollectionUtils.filter(allClients, client -> client.getKeepAliveMode() == KeepAliveMode.SESSION);
+                if (Boolean.getBoolean(PREWARM_WORKER_DAEMONS_PROPERTY)) {
+                    // Daemons which have not been used by this build are not started for the next build either.
+                    // Only a resolved copy of the options is kept, so nothing of this build is retained until the next one starts
+                    for (WorkerDaemonClient client : sessionScopedClients) {
+                        if (client.getUses() > 0) {
+                            ResolvedDaemonForkOptions forkOptions = ResolvedDaemonForkOptions.of(client.getForkOptions());
+                            if (forkOptions != null) {
+                                forkOptionsToPrewarm.add(forkOptions);
+                            }
+                        }
+                    }
+                }
                 stopWorkers(sessionScopedClients);
             }
         }
@@ -17,8 +17,11 @@
 package org.gradle.workers.internal
 
 import org.gradle.api.Transformer
+import org.gradle.api.internal.file.TestFiles
 import org.gradle.api.logging.LogLevel
 import org.gradle.initialization.SessionLifecycleListener
+import org.gradle.internal.concurrent.ExecutorFactory
+import org.gradle.internal.concurrent.ManagedExecutor
 import org.gradle.internal.event.DefaultListenerManager
 import org.gradle.internal.event.ListenerManager
 import org.gradle.internal.exceptions.DefaultMultiCauseException
@@ -30,6 +33,8 @@ import org.gradle.process.internal.ExecException
 import org.gradle.process.internal.health.memory.MBeanOsMemoryInfo
 import org.gradle.process.internal.health.memory.MemoryManager
 import org.gradle.util.ConcurrentSpecification
+import org.gradle.util.SetSystemProperties
+import org.junit.Rule
 import spock.lang.Subject
 
 class WorkerDaemonClientsManagerTest extends ConcurrentSpecification {
@@ -38,9 +43,18 @@ class WorkerDaemonClientsManagerTest extends ConcurrentSpecification {
     def listenerManager = Stub(ListenerManager)
     def loggingManager = Stub(LoggingManagerInternal)
     def memoryManager = Mock(MemoryManager)
+    def prewarmExecutor = Mock(ManagedExecutor) {
+        execute(_) >> { Runnable action -> action.run() }
+    }
+    def executorFactory = Stub(ExecutorFactory) {
+        create(_) >> prewarmExecutor
+    }
+
+    @Rule
+    SetSystemProperties systemProperties = new SetSystemProperties()
 
     @Subject
-        manager = new WorkerDaemonClientsManager(starter, listenerManager, loggingManager, memoryManager, new MBeanOsMemoryInfo())
+        manager = new WorkerDaemonClientsManager(starter, listenerManager, loggingManager, memoryManager, new MBeanOsMemoryInfo(), executorFactory, TestFiles.execFactory())
 
     def "does not reserve idle client when no clients"() {
         expect:
@@ -149,7 +163,7 @@ class WorkerDaemonClientsManagerTest extends ConcurrentSpecification {
 
     def "can stop session-scoped clients"() {
         listenerManager = new DefaultListenerManager(Scopes.BuildSession)
-        manager = new WorkerDaemonClientsManager(starter, listenerManager, loggingManager, memoryManager, new MBeanOsMemoryInfo())
+        manager = new WorkerDaemonClientsManager(starter, listenerManager, loggingManager, memoryManager, new MBeanOsMemoryInfo(), executorFactory, TestFiles.execFactory())
         def client1 = Mock(WorkerDaemonClient)
         def client2 = Mock(WorkerDaemonClient)
         starter.startDaemon(options, _) >>> [client1, client2]
@@ -168,7 +182,7 @@ class WorkerDaemonClientsManagerTest extends ConcurrentSpecification {
 
     def "Stopping session-scoped clients does not stop other clients"() {
         listenerManager = new DefaultListenerManager(Scopes.BuildSession)
-        manager = new WorkerDaemonClientsManager(starter, listenerManager, loggingManager, memoryManager, new MBeanOsMemoryInfo())
+        manager = new WorkerDaemonClientsManager(starter, listenerManager, loggingManager, memoryManager, new MBeanOsMemoryInfo(), executorFactory, TestFiles.execFactory())
         def client1 = Mock(WorkerDaemonClient)
         def client2 = Mock(WorkerDaemonClient)
         starter.startDaemon(options, _) >>> [client1, client2]
@@ -185,6 +199,138 @@ class WorkerDaemonClientsManagerTest extends ConcurrentSpecification {
         0 * client2.stop()
     }
 
+    def "starts session-scoped clients used by the previous build when the next build starts"() {
+        System.setProperty(WorkerDaemonClientsManager.PREWARM_WORKER_DAEMONS_PROPERTY, "true")
+        listenerManager = new DefaultListenerManager(Scopes.BuildSession)
+        manager = new WorkerDaemonClientsManager(starter, listenerManager, loggingManager, memoryManager, new MBeanOsMemoryInfo(), executorFactory, TestFiles.execFactory())
+        def sessionLifecycleListener = listenerManager.getBroadcaster(SessionLifecycleListener)
+        def usedOptions = forkOptions("1g")
+        def unusedOptions = forkOptions("2g")
+        DaemonForkOptions prewarmedOptions = null
+        def usedClient = Mock(WorkerDaemonClient) {
+            getKeepAliveMode() >> KeepAliveMode.SESSION
+            getUses() >> 2
+            getForkOptions() >> usedOptions
+        }
+        def unusedClient = Mock(WorkerDaemonClient) {
+            getKeepAliveMode() >> KeepAliveMode.SESSION
+            getUses() >> 0
+            getForkOptions() >> unusedOptions
+        }
+        def prewarmedClient = Mock(WorkerDaemonClient) {
+            isCompatibleWith(usedOptions) >> true
+            getLogLevel() >> LogLevel.DEBUG
+        }
+        starter.startDaemon({ it.is(usedOptions) }, _) >> usedClient
+        starter.startDaemon({ it.is(unusedOptions) }, _) >> unusedClient
+        starter.startDaemon({ !it.is(usedOptions) && !it.is(unusedOptions) }, _) >> { DaemonForkOptions forkOptions, cleanupAction ->
+            prewarmedOptions = forkOptions
+            prewarmedClient
+        }
+
+        when:
+        manager.reserveNewClient(usedOptions)
+        manager.reserveNewClient(unusedOptions)
+        sessionLifecycleListener.beforeComplete()
+
+        then:
+        1 * usedClient.stop()
+        1 * unusedClient.stop()
+
+        when:
+        sessionLifecycleListener.afterStart()
+
+        then:
+        manager.reserveIdleClient(usedOptions) == prewarmedClient
+        manager.reserveIdleClient(unusedOptions) == null
+
+        and:
+        !prewarmedOptions.is(usedOptions)
+        prewarmedOptions.isCompatibleWith(usedOptions)
+        usedOptions.isCompatibleWith(prewarmedOptions)
+        prewarmedOptions.javaForkOptions.jvmArgs == ["-server"]
+        prewarmedOptions.javaForkOptions.systemProperties == [prop: "value"]
+        prewarmedOptions.keepAliveMode == KeepAliveMode.SESSION
+    }
+
+    def "does not start clients with debugging enabled for the next build"() {
+        System.setProperty(WorkerDaemonClientsManager.PREWARM_WORKER_DAEMONS_PROPERTY, "true")
+        listenerManager = new DefaultListenerManager(Scopes.BuildSession)
+        manager = new WorkerDaemonClientsManager(starter, listenerManager, loggingManager, memoryManager, new MBeanOsMemoryInfo(), executorFactory, TestFiles.execFactory())
+        def sessionLifecycleListener = listenerManager.getBroadcaster(SessionLifecycleListener)
+        def debugOptions = forkOptions("1g") { it.debug = true }
+        def client = Mock(WorkerDaemonClient) {
+            getKeepAliveMode() >> KeepAliveMode.SESSION
+            getUses() >> 2
+            getForkOptions() >> debugOptions
+        }
+        starter.startDaemon(debugOptions, _) >> client
+
+        when:
+        manager.reserveNewClient(debugOptions)
+        sessionLifecycleListener.beforeComplete()
+        sessionLifecycleListener.afterStart()
+
+        then:
+        1 * client.stop()
+        0 * prewarmExecutor.execute(_)
+        manager.allClients.empty
+    }
+
+    def "does not start clients used by the previous build when prewarming is disabled"() {
+        listenerManager = new DefaultListenerManager(Scopes.BuildSession)
+        manager = new WorkerDaemonClientsManager(starter, listenerManager, loggingManager, memoryManager, new MBeanOsMemoryInfo(), executorFactory, TestFiles.execFactory())
+        def sessionLifecycleListener = listenerManager.getBroadcaster(SessionLifecycleListener)
+        def client = Mock(WorkerDaemonClient) {
+            getKeepAliveMode() >> KeepAliveMode.SESSION
+            getUses() >> 2
+            getForkOptions() >> options
+        }
+        starter.startDaemon(options, _) >> client
+
+        when:
+        manager.reserveNewClient(options)
+        sessionLifecycleListener.beforeComplete()
+        sessionLifecycleListener.afterStart()
+
+        then:
+        1 * client.stop()
+        0 * prewarmExecutor.execute(_)
+        manager.allClients.empty
+    }
+
+    def "stops clients which have been started after the build has finished"() {
+        System.setProperty(WorkerDaemonClientsManager.PREWARM_WORKER_DAEMONS_PROPERTY, "true")
+        listenerManager = new DefaultListenerManager(Scopes.BuildSession)
+        manager = new WorkerDaemonClientsManager(starter, listenerManager, loggingManager, memoryManager, new MBeanOsMemoryInfo(), executorFactory, TestFiles.execFactory())
+        def sessionLifecycleListener = listenerManager.getBroadcaster(SessionLifecycleListener)
+        Runnable prewarmAction = null
+        def usedOptions = forkOptions("1g")
+        def client = Mock(WorkerDaemonClient) {
+            getKeepAliveMode() >> KeepAliveMode.SESSION
+            getUses() >> 1
+            getForkOptions() >> usedOptions
+        }
+        def prewarmedClient = Mock(WorkerDaemonClient)
+        starter.startDaemon(_, _) >>> [client, prewarmedClient]
+
+        when:
+        manager.reserveNewClient(usedOptions)
+        sessionLifecycleListener.beforeComplete()
+        sessionLifecycleListener.afterStart()
+
+        then:
+        1 * prewarmExecutor.execute(_) >> { Runnable action -> prewarmAction = action }
+
+        when:
+        sessionLifecycleListener.beforeComplete()
+        prewarmAction.run()
+
+        then:
+        1 * prewarmedClient.stop()
+        manager.allClients.empty
+    }
+
     def "clients can be released for further use"() {
         def client = Mock(WorkerDaemonClient) {
             isCompatibleWith(_) >> true
@@ -216,7 +362,7 @@ class WorkerDaemonClientsManagerTest extends ConcurrentSpecification {
         loggingManager.getLevel() >> LogLevel.INFO
 
         when:
-        manager = new WorkerDaemonClientsManager(starter, listenerManager, loggingManager, memoryManager, new MBeanOsMemoryInfo())
+        manager = new WorkerDaemonClientsManager(starter, listenerManager, loggingManager, memoryManager, new MBeanOsMemoryInfo(), executorFactory, TestFiles.execFactory())
 
         then:
         listener != null
@@ -293,7 +439,7 @@ class WorkerDaemonClientsManagerTest extends ConcurrentSpecification {
         WorkerDaemonExpiration workerDaemonExpiration
 
         when:
-        def manager = new WorkerDaemonClientsManager(starter, listenerManager, loggingManager, memoryManager, new MBeanOsMemoryInfo())
+        def manager = new WorkerDaemonClientsManager(starter, listenerManager, loggingManager, memoryManager, new MBeanOsMemoryInfo(), executorFactory, TestFiles.execFactory())
 
         then:
         1 * memoryManager.addMemoryHolder(_) >> { args -> workerDaemonExpiration = args[0] }
@@ -304,4 +450,17 @@ class WorkerDaemonClientsManagerTest extends ConcurrentSpecification {
         then:
         1 * memoryManager.removeMemoryHolder(_) >> { args -> assert args[0] == workerDaemonExpiration }
     }
+
+    private static DaemonForkOptions forkOptions(String maxHeapSize, Closure<?> configure = {}) {
+        def javaForkOptions = TestFiles.execFactory().newJavaForkOptions()
+        javaForkOptions.workingDir = TestFiles.systemSpecificAbsolutePath("foo")
+        javaForkOptions.maxHeapSize = maxHeapSize
+        javaForkOptions.jvmArgs = ["-server"]
+        javaForkOptions.systemProperty("prop", "value")
+        configure(javaForkOptions)
+        return new DaemonForkOptionsBuilder(TestFiles.execFactory())
+            .javaForkOptions(javaForkOptions)
+            .keepAliveMode(KeepAliveMode.SESSION)
+            .build()
+    }
 }